@@ -21,6 +21,7 @@ import com.google.gerrit.index.query.FieldBundle;
 import com.google.gerrit.index.query.IndexPredicate;
 import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryParseException;
+import java.util.Collection;
 import java.util.Optional;
 
 /**
@@ -60,6 +61,36 @@ public interface Index<K, V> {
    */
   void replace(V obj);
 
+  /**
+   * Update multiple documents in the index.
+   *
+   * <p>Semantically equivalent to calling {@link #replace(Object)} for each document, but
+   * implementations may write all documents in one batch. Results may not be immediately visible to
+   * searchers, but should be visible within a reasonable amount of time.
+   *
+   * @param objs document objects
+   */
+  default void replaceAll(Collection<V> objs) {
+    replaceAll(objs, true);
+  }
+
+  /**
+   * Update multiple documents in the index.
+   *
+   * <p>Callers that don't need to read their own writes (e.g. background reindexing) can pass
+   * {@code awaitVisibility = false} to return as soon as the documents are written, rather than
+   * waiting until they are visible to searchers. Implementations that can't tell the two apart may
+   * ignore the flag.
+   *
+   * @param objs document objects
+   * @param awaitVisibility whether to wait until the documents are visible to searchers
+   */
+  default void replaceAll(Collection<V> objs, boolean awaitVisibility) {
+    for (V obj : objs) {
+      replace(obj);
+    }
+  }
+
   /**
    * Delete a document from the index by key.
    *
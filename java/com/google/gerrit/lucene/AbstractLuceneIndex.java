@@ -50,6 +50,7 @@ import com.google.gerrit.server.logging.LoggingContextAwareExecutorService;
 import com.google.gerrit.server.logging.LoggingContextAwareScheduledExecutorService;
 import java.io.IOException;
 import java.sql.Timestamp;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -72,7 +73,6 @@ import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ReferenceManager;
@@ -100,7 +100,8 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
   private final ListeningExecutorService writerThread;
   private final IndexWriter writer;
   private final ReferenceManager<IndexSearcher> searcherManager;
-  private final ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+  private final NrtReopenThread reopenThread;
+  private final LuceneIndexMetrics.IndexMetrics metrics;
   private final Set<NrtFuture> notDoneNrtFutures;
   private final AutoFlush autoFlush;
   private ScheduledExecutorService autoCommitExecutor;
@@ -115,7 +116,8 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
       String subIndex,
       GerritIndexWriterConfig writerConfig,
       SearcherFactory searcherFactory,
-      AutoFlush autoFlush)
+      AutoFlush autoFlush,
+      LuceneIndexMetrics indexMetrics)
       throws IOException {
     this.schema = schema;
     this.sitePaths = sitePaths;
@@ -124,6 +126,7 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
     this.skipFields = skipFields;
     this.autoFlush = autoFlush;
     String index = Joiner.on('_').skipNulls().join(name, subIndex);
+    this.metrics = indexMetrics.forIndex(index + "_" + schema.getVersion());
     long commitPeriod = writerConfig.getCommitWithinMs();
 
     if (commitPeriod < 0) {
@@ -185,11 +188,12 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
                         .build())));
 
     reopenThread =
-        new ControlledRealTimeReopenThread<>(
+        new NrtReopenThread(
             writer,
             searcherManager,
-            0.500 /* maximum stale age (seconds) */,
-            0.010 /* minimum stale age (seconds) */);
+            MILLISECONDS.toNanos(writerConfig.getNrtMinStaleMs()),
+            MILLISECONDS.toNanos(writerConfig.getNrtMaxStaleMs()),
+            metrics);
     reopenThread.setName(index + " NRT");
     reopenThread.setPriority(
         Math.min(Thread.currentThread().getPriority() + 2, Thread.MAX_PRIORITY));
@@ -218,6 +222,7 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
 
     if (autoFlush.equals(AutoFlush.ENABLED)) {
       reopenThread.start();
+      metrics.register(reopenThread);
     }
   }
 
@@ -241,6 +246,7 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
       logger.atWarning().withCause(e).log(
           "interrupted waiting for pending Lucene writes of %s index", name);
     }
+    metrics.unregister(reopenThread);
     reopenThread.close();
 
     // Closing the reopen thread sets its generation to Long.MAX_VALUE, but we
@@ -278,12 +284,55 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
     return submit(() -> writer.updateDocument(term, doc));
   }
 
+  /**
+   * Updates multiple documents as one task of the writer thread.
+   *
+   * <p>Lucene's {@link IndexWriter#updateDocuments} replaces a block of documents identified by a
+   * single term, so the documents are updated one by one, but callers only have to wait for the
+   * searcher generation of the last update.
+   *
+   * @param awaitVisibility whether the returned future should only complete once the documents are
+   *     visible to searchers; if {@code false} it completes once the documents were written and the
+   *     documents become visible within the maximum stale age of the index.
+   */
+  ListenableFuture<?> replaceAll(List<Term> terms, List<Document> docs, boolean awaitVisibility) {
+    checkArgument(
+        terms.size() == docs.size(), "%s terms for %s documents", terms.size(), docs.size());
+    if (terms.isEmpty()) {
+      return Futures.immediateFuture(null);
+    }
+    return submit(
+        () -> {
+          long gen = 0;
+          for (int i = 0; i < terms.size(); i++) {
+            gen = writer.updateDocument(terms.get(i), docs.get(i));
+          }
+          return gen;
+        },
+        awaitVisibility);
+  }
+
   ListenableFuture<?> delete(Term term) {
     return submit(() -> writer.deleteDocuments(term));
   }
 
+  ListenableFuture<?> delete(List<Term> terms, boolean awaitVisibility) {
+    if (terms.isEmpty()) {
+      return Futures.immediateFuture(null);
+    }
+    return submit(() -> writer.deleteDocuments(terms.toArray(new Term[0])), awaitVisibility);
+  }
+
   private ListenableFuture<?> submit(Callable<Long> task) {
+    return submit(task, true);
+  }
+
+  private ListenableFuture<?> submit(Callable<Long> task, boolean awaitVisibility) {
     ListenableFuture<Long> future = Futures.nonCancellationPropagating(writerThread.submit(task));
+    if (!awaitVisibility) {
+      metrics.skippedGenerationWait();
+      return future;
+    }
     return Futures.transformAsync(
         future,
         gen -> {
@@ -38,6 +38,7 @@ import com.google.gerrit.server.query.change.ChangeData;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.sql.Timestamp;
+import java.util.Collection;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.search.SearcherFactory;
@@ -53,7 +54,8 @@ public class ChangeSubIndex extends AbstractLuceneIndex<Change.Id, ChangeData>
       ImmutableSet<String> skipFields,
       GerritIndexWriterConfig writerConfig,
       SearcherFactory searcherFactory,
-      AutoFlush autoFlush)
+      AutoFlush autoFlush,
+      LuceneIndexMetrics indexMetrics)
       throws IOException {
     this(
         schema,
@@ -63,7 +65,8 @@ public class ChangeSubIndex extends AbstractLuceneIndex<Change.Id, ChangeData>
         skipFields,
         writerConfig,
         searcherFactory,
-        autoFlush);
+        autoFlush,
+        indexMetrics);
   }
 
   ChangeSubIndex(
@@ -74,7 +77,8 @@ public class ChangeSubIndex extends AbstractLuceneIndex<Change.Id, ChangeData>
       ImmutableSet<String> skipFields,
       GerritIndexWriterConfig writerConfig,
       SearcherFactory searcherFactory,
-      AutoFlush autoFlush)
+      AutoFlush autoFlush,
+      LuceneIndexMetrics indexMetrics)
       throws IOException {
     super(
         schema,
@@ -85,7 +89,8 @@ public class ChangeSubIndex extends AbstractLuceneIndex<Change.Id, ChangeData>
         subIndex,
         writerConfig,
         searcherFactory,
-        autoFlush);
+        autoFlush,
+        indexMetrics);
   }
 
   @Override
@@ -98,6 +103,11 @@ public class ChangeSubIndex extends AbstractLuceneIndex<Change.Id, ChangeData>
     throw new UnsupportedOperationException("don't use ChangeSubIndex directly");
   }
 
+  @Override
+  public void replaceAll(Collection<ChangeData> objs, boolean awaitVisibility) {
+    throw new UnsupportedOperationException("don't use ChangeSubIndex directly");
+  }
+
   @Override
   public void delete(Change.Id key) {
     throw new UnsupportedOperationException("don't use ChangeSubIndex directly");
@@ -33,6 +33,8 @@ class GerritIndexWriterConfig {
 
   private final IndexWriterConfig luceneConfig;
   private long commitWithinMs;
+  private final long nrtMinStaleMs;
+  private final long nrtMaxStaleMs;
   private final CustomMappingAnalyzer analyzer;
 
   GerritIndexWriterConfig(Config cfg, String name) {
@@ -75,6 +77,10 @@ class GerritIndexWriterConfig {
     } catch (IllegalArgumentException e) {
       commitWithinMs = cfg.getLong("index", name, "commitWithin", 0);
     }
+    nrtMinStaleMs =
+        ConfigUtil.getTimeUnit(cfg, "index", name, "nrtMinStaleAge", 10, MILLISECONDS);
+    nrtMaxStaleMs =
+        ConfigUtil.getTimeUnit(cfg, "index", name, "nrtMaxStaleAge", 500, MILLISECONDS);
   }
 
   CustomMappingAnalyzer getAnalyzer() {
@@ -88,4 +94,12 @@ class GerritIndexWriterConfig {
   long getCommitWithinMs() {
     return commitWithinMs;
   }
+
+  long getNrtMinStaleMs() {
+    return nrtMinStaleMs;
+  }
+
+  long getNrtMaxStaleMs() {
+    return nrtMaxStaleMs;
+  }
 }
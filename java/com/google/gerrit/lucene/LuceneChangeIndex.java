@@ -67,6 +67,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -135,7 +136,8 @@ public class LuceneChangeIndex implements ChangeIndex {
       @IndexExecutor(INTERACTIVE) ListeningExecutorService executor,
       ChangeData.Factory changeDataFactory,
       @Assisted Schema<ChangeData> schema,
-      AutoFlush autoFlush)
+      AutoFlush autoFlush,
+      LuceneIndexMetrics indexMetrics)
       throws IOException {
     this.executor = executor;
     this.changeDataFactory = changeDataFactory;
@@ -161,7 +163,8 @@ public class LuceneChangeIndex implements ChangeIndex {
               skipFields,
               openConfig,
               searcherFactory,
-              autoFlush);
+              autoFlush,
+              indexMetrics);
       closedIndex =
           new ChangeSubIndex(
               schema,
@@ -171,7 +174,8 @@ public class LuceneChangeIndex implements ChangeIndex {
               skipFields,
               closedConfig,
               searcherFactory,
-              autoFlush);
+              autoFlush,
+              indexMetrics);
     } else {
       Path dir = LuceneVersionManager.getDir(sitePaths, CHANGES, schema);
       openIndex =
@@ -182,7 +186,8 @@ public class LuceneChangeIndex implements ChangeIndex {
               skipFields,
               openConfig,
               searcherFactory,
-              autoFlush);
+              autoFlush,
+              indexMetrics);
       closedIndex =
           new ChangeSubIndex(
               schema,
@@ -191,7 +196,8 @@ public class LuceneChangeIndex implements ChangeIndex {
               skipFields,
               closedConfig,
               searcherFactory,
-              autoFlush);
+              autoFlush,
+              indexMetrics);
     }
   }
 
@@ -226,6 +232,36 @@ public class LuceneChangeIndex implements ChangeIndex {
     }
   }
 
+  @Override
+  public void replaceAll(Collection<ChangeData> cds, boolean awaitVisibility) {
+    List<Term> openIds = new ArrayList<>();
+    List<Document> openDocs = new ArrayList<>();
+    List<Term> closedIds = new ArrayList<>();
+    List<Document> closedDocs = new ArrayList<>();
+    for (ChangeData cd : cds) {
+      // toDocument is essentially static and doesn't depend on the specific
+      // sub-index, so just pick one.
+      Document doc = openIndex.toDocument(cd);
+      if (cd.change().isNew()) {
+        openIds.add(LuceneChangeIndex.idTerm(cd));
+        openDocs.add(doc);
+      } else {
+        closedIds.add(LuceneChangeIndex.idTerm(cd));
+        closedDocs.add(doc);
+      }
+    }
+    try {
+      Futures.allAsList(
+              closedIndex.delete(openIds, awaitVisibility),
+              openIndex.replaceAll(openIds, openDocs, awaitVisibility),
+              openIndex.delete(closedIds, awaitVisibility),
+              closedIndex.replaceAll(closedIds, closedDocs, awaitVisibility))
+          .get();
+    } catch (ExecutionException | InterruptedException e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public void insert(ChangeData cd) {
     // toDocument is essentially static and doesn't depend on the specific
@@ -87,7 +87,8 @@ public class LuceneGroupIndex extends AbstractLuceneIndex<AccountGroup.UUID, Int
       SitePaths sitePaths,
       Provider<GroupCache> groupCache,
       @Assisted Schema<InternalGroup> schema,
-      AutoFlush autoFlush)
+      AutoFlush autoFlush,
+      LuceneIndexMetrics indexMetrics)
       throws IOException {
     super(
         schema,
@@ -98,7 +99,8 @@ public class LuceneGroupIndex extends AbstractLuceneIndex<AccountGroup.UUID, Int
         null,
         new GerritIndexWriterConfig(cfg, GROUPS),
         new SearcherFactory(),
-        autoFlush);
+        autoFlush,
+        indexMetrics);
     this.groupCache = groupCache;
 
     indexWriterConfig = new GerritIndexWriterConfig(cfg, GROUPS);
@@ -0,0 +1,130 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.lucene;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.gerrit.metrics.CallbackMetric1;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Metrics about the near-real-time reopening of Lucene searchers. */
+@Singleton
+class LuceneIndexMetrics {
+  private static final Field<String> INDEX =
+      Field.ofString("index", Metadata.Builder::indexName)
+          .description("The name and version of the Lucene index.")
+          .build();
+
+  /** Metrics of a single index. */
+  class IndexMetrics {
+    private final String index;
+
+    private IndexMetrics(String index) {
+      this.index = index;
+    }
+
+    void reopened(long nanos) {
+      reopenLatency.record(index, nanos, NANOSECONDS);
+    }
+
+    void waitedForGeneration(long nanos) {
+      generationsWaited.increment(index);
+      generationWaitLatency.record(index, nanos, NANOSECONDS);
+    }
+
+    void skippedGenerationWait() {
+      generationWaitsSkipped.increment(index);
+    }
+
+    void register(NrtReopenThread reopenThread) {
+      reopenThreads.put(index, reopenThread);
+    }
+
+    void unregister(NrtReopenThread reopenThread) {
+      reopenThreads.remove(index, reopenThread);
+    }
+  }
+
+  private final Timer1<String> reopenLatency;
+  private final Counter1<String> generationsWaited;
+  private final Timer1<String> generationWaitLatency;
+  private final Counter1<String> generationWaitsSkipped;
+  private final Map<String, NrtReopenThread> reopenThreads = new ConcurrentHashMap<>();
+
+  @Inject
+  LuceneIndexMetrics(MetricMaker metricMaker) {
+    reopenLatency =
+        metricMaker.newTimer(
+            "index/lucene/reopen_latency",
+            new Description("Latency of reopening the searcher of a Lucene index")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            INDEX);
+    generationsWaited =
+        metricMaker.newCounter(
+            "index/lucene/generations_waited",
+            new Description(
+                    "Number of times a writer waited for its write to become visible to searchers")
+                .setRate()
+                .setUnit("waits"),
+            INDEX);
+    generationWaitLatency =
+        metricMaker.newTimer(
+            "index/lucene/generation_wait_latency",
+            new Description("Time a writer waited for its write to become visible to searchers")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            INDEX);
+    generationWaitsSkipped =
+        metricMaker.newCounter(
+            "index/lucene/generation_waits_skipped",
+            new Description(
+                    "Number of writes for which the writer didn't wait for the write to become"
+                        + " visible to searchers")
+                .setRate()
+                .setUnit("writes"),
+            INDEX);
+    CallbackMetric1<String, Long> searcherAge =
+        metricMaker.newCallbackMetric(
+            "index/lucene/searcher_age",
+            Long.class,
+            new Description("Time since the searcher of a Lucene index was last reopened")
+                .setGauge()
+                .setUnit(Units.MILLISECONDS),
+            INDEX);
+    metricMaker.newTrigger(
+        searcherAge,
+        () -> {
+          reopenThreads.forEach(
+              (index, thread) ->
+                  searcherAge.set(index, NANOSECONDS.toMillis(thread.searcherAgeNanos())));
+          searcherAge.prune();
+        });
+  }
+
+  IndexMetrics forIndex(String index) {
+    return new IndexMetrics(index);
+  }
+}
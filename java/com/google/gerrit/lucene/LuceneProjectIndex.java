@@ -87,7 +87,8 @@ public class LuceneProjectIndex extends AbstractLuceneIndex<Project.NameKey, Pro
       SitePaths sitePaths,
       Provider<ProjectCache> projectCache,
       @Assisted Schema<ProjectData> schema,
-      AutoFlush autoFlush)
+      AutoFlush autoFlush,
+      LuceneIndexMetrics indexMetrics)
       throws IOException {
     super(
         schema,
@@ -98,7 +99,8 @@ public class LuceneProjectIndex extends AbstractLuceneIndex<Project.NameKey, Pro
         null,
         new GerritIndexWriterConfig(cfg, PROJECTS),
         new SearcherFactory(),
-        autoFlush);
+        autoFlush,
+        indexMetrics);
     this.projectCache = projectCache;
 
     indexWriterConfig = new GerritIndexWriterConfig(cfg, PROJECTS);
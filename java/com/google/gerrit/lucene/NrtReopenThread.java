@@ -0,0 +1,250 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.lucene;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+
+/**
+ * Thread that periodically reopens the searcher of an index, so that changes written to the index
+ * become visible to searchers.
+ *
+ * <p>Based on Lucene's {@link ControlledRealTimeReopenThread}, which reopens after the minimum stale
+ * age while there is a thread waiting for a generation and after the maximum stale age otherwise.
+ * This implementation additionally:
+ *
+ * <ul>
+ *   <li>doesn't reopen the searcher if nothing was written since the last reopen,
+ *   <li>doesn't start reopens more frequently than they take on average, so that under a high
+ *       write rate the thread doesn't spend all of its time reopening, unless several threads are
+ *       blocked waiting for a generation, in which case it reopens correspondingly more often, and
+ *   <li>records the reopen latency, the number of generations waited for and the searcher age.
+ * </ul>
+ */
+final class NrtReopenThread extends Thread implements Closeable {
+  /** Weight of the latest sample in the moving average of the reopen latency. */
+  private static final double REOPEN_LATENCY_WEIGHT = 0.2;
+
+  private final IndexWriter writer;
+  private final ReferenceManager<IndexSearcher> manager;
+  private final long minStaleNanos;
+  private final long maxStaleNanos;
+  private final LuceneIndexMetrics.IndexMetrics metrics;
+
+  private final ReentrantLock reopenLock = new ReentrantLock();
+  private final Condition reopenCond = reopenLock.newCondition();
+
+  private volatile boolean finish;
+  private volatile long waitingGen;
+  private volatile long searchingGen;
+  private volatile long lastRefreshNanos = System.nanoTime();
+  // Written by whichever thread refreshes the searcher, which isn't necessarily this one.
+  private volatile long refreshStartGen;
+  private final AtomicInteger waiters = new AtomicInteger();
+  private long avgReopenNanos;
+
+  NrtReopenThread(
+      IndexWriter writer,
+      ReferenceManager<IndexSearcher> manager,
+      long minStaleNanos,
+      long maxStaleNanos,
+      LuceneIndexMetrics.IndexMetrics metrics) {
+    this.writer = writer;
+    this.manager = manager;
+    this.minStaleNanos = minStaleNanos;
+    this.maxStaleNanos = Math.max(minStaleNanos, maxStaleNanos);
+    this.metrics = metrics;
+    manager.addListener(
+        new ReferenceManager.RefreshListener() {
+          @Override
+          public void beforeRefresh() {
+            // Also refreshes triggered from outside of this thread must record the generation they
+            // make searchable.
+            refreshStartGen = writer.getMaxCompletedSequenceNumber();
+          }
+
+          @Override
+          public void afterRefresh(boolean didRefresh) {
+            refreshDone(didRefresh);
+          }
+        });
+  }
+
+  private synchronized void refreshDone(boolean didRefresh) {
+    searchingGen = refreshStartGen;
+    if (didRefresh) {
+      lastRefreshNanos = System.nanoTime();
+    }
+    notifyAll();
+  }
+
+  @Override
+  public void close() {
+    // Not synchronized, as the thread may need the lock to finish a refresh before it can be joined.
+    finish = true;
+    reopenLock.lock();
+    try {
+      reopenCond.signal();
+    } finally {
+      reopenLock.unlock();
+    }
+    try {
+      join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      // Max it out so any waiting search threads return.
+      searchingGen = Long.MAX_VALUE;
+      notifyAll();
+    }
+  }
+
+  /** Waits for the searcher to cover the given generation. */
+  void waitForGeneration(long targetGen) throws InterruptedException {
+    waitForGeneration(targetGen, -1);
+  }
+
+  /**
+   * Waits for the searcher to cover the given generation.
+   *
+   * <p>Passing {@code maxMillis = 0} doesn't wait, but tells the thread that there is a waiter for
+   * the generation, so that the searcher is reopened after the minimum stale age.
+   *
+   * @param targetGen generation returned by the {@link IndexWriter} operation.
+   * @param maxMillis maximum time to wait, or a negative value to wait forever.
+   * @return whether the searcher covers the generation.
+   */
+  synchronized boolean waitForGeneration(long targetGen, int maxMillis)
+      throws InterruptedException {
+    if (targetGen <= searchingGen) {
+      return true;
+    }
+    if (maxMillis != 0) {
+      waiters.incrementAndGet();
+    }
+    reopenLock.lock();
+    try {
+      if (targetGen > waitingGen) {
+        waitingGen = targetGen;
+      }
+      // Also a new waiter for the same generation may shorten the time until the next reopen.
+      reopenCond.signal();
+    } finally {
+      reopenLock.unlock();
+    }
+    if (maxMillis == 0) {
+      return false;
+    }
+
+    long start = System.nanoTime();
+    try {
+      while (targetGen > searchingGen) {
+        if (maxMillis < 0) {
+          wait();
+        } else {
+          long leftMillis = maxMillis - NANOSECONDS.toMillis(System.nanoTime() - start);
+          if (leftMillis <= 0) {
+            return false;
+          }
+          wait(leftMillis);
+        }
+      }
+      return true;
+    } finally {
+      waiters.decrementAndGet();
+      metrics.waitedForGeneration(System.nanoTime() - start);
+    }
+  }
+
+  /** Returns the time since the searcher was last reopened with new changes. */
+  long searcherAgeNanos() {
+    return System.nanoTime() - lastRefreshNanos;
+  }
+
+  @Override
+  public void run() {
+    long lastReopenStartNanos = System.nanoTime();
+    while (!finish) {
+      while (!finish) {
+        reopenLock.lock();
+        try {
+          long sleepNanos = lastReopenStartNanos + staleNanos() - System.nanoTime();
+          if (sleepNanos <= 0) {
+            break;
+          }
+          reopenCond.awaitNanos(sleepNanos);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        } finally {
+          reopenLock.unlock();
+        }
+      }
+      if (finish) {
+        break;
+      }
+
+      lastReopenStartNanos = System.nanoTime();
+      if (!hasPendingWrites()) {
+        continue;
+      }
+      try {
+        manager.maybeRefreshBlocking();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      long reopenNanos = System.nanoTime() - lastReopenStartNanos;
+      avgReopenNanos =
+          avgReopenNanos == 0
+              ? reopenNanos
+              : (long)
+                  (REOPEN_LATENCY_WEIGHT * reopenNanos
+                      + (1 - REOPEN_LATENCY_WEIGHT) * avgReopenNanos);
+      metrics.reopened(reopenNanos);
+    }
+  }
+
+  private boolean hasPendingWrites() {
+    return writer.getMaxCompletedSequenceNumber() > searchingGen;
+  }
+
+  /**
+   * Returns how long the searcher may be stale before it's reopened.
+   *
+   * <p>While threads are waiting for a generation the searcher is reopened after the minimum stale
+   * age, but not more frequently than reopening takes on average divided by the number of waiting
+   * threads. A single writer waiting for its writes therefore doesn't make the thread reopen
+   * continuously, while many blocked threads get their writes visible sooner. Otherwise the
+   * searcher is reopened after the maximum stale age, if anything was written in the meantime.
+   */
+  private long staleNanos() {
+    if (waitingGen <= searchingGen) {
+      return maxStaleNanos;
+    }
+    // A waiter that doesn't block (maxMillis = 0) still counts as one.
+    int n = Math.max(1, waiters.get());
+    return Math.min(maxStaleNanos, Math.max(minStaleNanos, avgReopenNanos / n));
+  }
+}
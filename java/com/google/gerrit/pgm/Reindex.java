@@ -38,7 +38,10 @@ import com.google.gerrit.server.change.ChangeResource;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.git.WorkQueue.WorkQueueModule;
 import com.google.gerrit.server.index.IndexModule;
+import com.google.gerrit.server.index.change.ChangeIndex;
+import com.google.gerrit.server.index.change.ChangeIndexCollection;
 import com.google.gerrit.server.index.change.ChangeSchemaDefinitions;
+import com.google.gerrit.server.index.change.StaleChangesIndexer;
 import com.google.gerrit.server.index.options.AutoFlush;
 import com.google.gerrit.server.index.options.IsFirstInsertForEntry;
 import com.google.gerrit.server.plugins.PluginGuiceEnvironment;
@@ -87,6 +90,13 @@ public class Reindex extends SiteProgram {
   @Option(name = "--index", usage = "Only reindex specified indices")
   private List<String> indices = new ArrayList<>();
 
+  @Option(
+      name = "--stale-only",
+      usage =
+          "Only reindex changes whose index documents are stale or missing, keeping the existing"
+              + " documents of all other changes; implies --index changes")
+  private boolean staleOnly;
+
   @Option(
       name = "--disable-cache-stats",
       usage =
@@ -144,6 +154,9 @@ public class Reindex extends SiteProgram {
   }
 
   private boolean reindex() {
+    if (staleOnly) {
+      return reindexStaleChanges();
+    }
     boolean ok = true;
     for (IndexDefinition<?, ?, ?> def : indexDefs) {
       if (indices.isEmpty() || indices.contains(def.getName())) {
@@ -154,6 +167,14 @@ public class Reindex extends SiteProgram {
   }
 
   private void checkIndicesOption() throws Die {
+    if (staleOnly) {
+      String changes = ChangeSchemaDefinitions.INSTANCE.getName();
+      if (indices.isEmpty()) {
+        indices.add(changes);
+      } else if (!indices.equals(List.of(changes))) {
+        throw die("--stale-only is only supported for the changes index");
+      }
+    }
     if (indices.isEmpty()) {
       return;
     }
@@ -208,9 +229,10 @@ public class Reindex extends SiteProgram {
           @Override
           protected void configure() {
             super.configure();
+            // Reindexing only stale changes keeps the existing documents, which must be replaced.
             OptionalBinder.newOptionalBinder(binder(), IsFirstInsertForEntry.class)
                 .setBinding()
-                .toInstance(IsFirstInsertForEntry.YES);
+                .toInstance(staleOnly ? IsFirstInsertForEntry.NO : IsFirstInsertForEntry.YES);
           }
         });
     modules.add(new BatchProgramModule(dbInjector));
@@ -266,6 +288,21 @@ public class Reindex extends SiteProgram {
     return result.success();
   }
 
+  private boolean reindexStaleChanges() {
+    ChangeIndex index = sysInjector.getInstance(ChangeIndexCollection.class).getSearchIndex();
+    requireNonNull(index, "no active search index configured for changes");
+
+    StaleChangesIndexer siteIndexer = sysInjector.getInstance(StaleChangesIndexer.class);
+    siteIndexer.setProgressOut(System.err);
+    siteIndexer.setVerboseOut(verbose ? System.out : NullOutputStream.INSTANCE);
+    SiteIndexer.Result result = siteIndexer.indexAll(index);
+    double t = result.elapsed(TimeUnit.MILLISECONDS) / 1000d;
+    System.out.format(
+        "Reindexed %d stale changes in %.01fs (%d failed)\n",
+        result.doneCount(), t, result.failedCount());
+    return result.success();
+  }
+
   private void printCacheStats() {
     try (Writer sw = new StringWriter()) {
       sw.write("Cache Statistics at the end of reindexing\n");
@@ -18,6 +18,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * Context that allows to register {@link RequestStateProvider}s.
@@ -30,10 +31,11 @@ import java.util.Set;
  *
  * <p>Nesting {@code RequestStateContext}s is possible.
  *
- * <p>Currently there is no logic to automatically copy the {@link RequestStateContext} to
- * background threads, but implementing this may be considered in the future. This means that by
- * default we only support cancellation of the main thread, but not of background threads. That's
- * fine as all significant work is being done in the main thread.
+ * <p>The {@link RequestStateContext} is not automatically copied to background threads. This means
+ * that by default we only support cancellation of the main thread, but not of background threads.
+ * That's fine as most significant work is being done in the main thread. Work that is done on
+ * background threads on behalf of the request can be made cancellable by wrapping it with {@link
+ * #copy(Callable)}.
  *
  * <p>{@link com.google.gerrit.server.util.RequestContext} is also a context that is available for
  * the time of the request, but it is not suitable to manage registrations of {@link
@@ -117,6 +119,21 @@ public class RequestStateContext implements AutoCloseable {
     return ImmutableSet.copyOf(threadLocalRequestStateProviders.get());
   }
 
+  /**
+   * Wraps the given {@link Callable} so that it runs with the {@link RequestStateProvider}s that
+   * are registered for the current thread, e.g. to abort work that is done on a background thread
+   * on behalf of the current request when the request is cancelled.
+   */
+  public static <T> Callable<T> copy(Callable<T> callable) {
+    ImmutableSet<RequestStateProvider> requestStateProviders = getRequestStateProviders();
+    return () -> {
+      try (RequestStateContext requestStateContext = open()) {
+        requestStateProviders.forEach(requestStateContext::addRequestStateProvider);
+        return callable.call();
+      }
+    };
+  }
+
   /** Opens a {@code RequestStateContext}. */
   public static RequestStateContext open() {
     return new RequestStateContext();
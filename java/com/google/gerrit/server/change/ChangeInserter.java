@@ -434,6 +434,7 @@ public class ChangeInserter implements InsertChangeOp {
     ctx.addRefUpdate(cmd);
     Optional<ReceiveCommand> autoMerge =
         autoMerger.createAutoMergeCommitIfNecessary(
+            ctx.getProject(),
             ctx.getRepoView(),
             ctx.getRevWalk(),
             ctx.getInserter(),
@@ -14,6 +14,7 @@
 
 package com.google.gerrit.server.change;
 
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.gerrit.extensions.client.ListChangesOption.ALL_COMMITS;
 import static com.google.gerrit.extensions.client.ListChangesOption.ALL_REVISIONS;
@@ -157,6 +158,24 @@ public class ChangeJson {
           CURRENT_COMMIT,
           MESSAGES);
 
+  /**
+   * Options that can be combined with {@link #formatProjections(List)}, as they don't add any data
+   * to the change infos.
+   */
+  public static final ImmutableSet<ListChangesOption> PROJECTION_OPTIONS =
+      ImmutableSet.of(SKIP_DIFFSTAT);
+
+  /**
+   * Index fields that are needed by {@link #formatProjections(List)} and by the visibility check of
+   * the changes.
+   *
+   * <p>The stored change is needed to check the visibility of the changes anyway, so nothing is won
+   * by reading the number, project and status from separate fields. The reviewers are needed to
+   * check the visibility of private changes.
+   */
+  public static final ImmutableSet<String> PROJECTION_FIELDS =
+      ImmutableSet.of(ChangeField.CHANGE.getName(), ChangeField.REVIEWER_SPEC.getName());
+
   @Singleton
   public static class Factory {
     private final AssistedFactory factory;
@@ -329,6 +348,43 @@ public class ChangeJson {
     }
   }
 
+  /**
+   * Formats query results as change infos that only contain the number, project and status of the
+   * changes.
+   *
+   * <p>The changes must have been read from the index with at least the {@link #PROJECTION_FIELDS}.
+   * The change infos are populated from the index only, NoteDb is never read.
+   *
+   * @param in query results.
+   * @return change infos, one list per query result.
+   */
+  public List<List<ChangeInfo>> formatProjections(List<QueryResult<ChangeData>> in) {
+    checkState(
+        PROJECTION_OPTIONS.containsAll(options),
+        "options %s can't be satisfied by projections",
+        options);
+    try (Timer0.Context ignored = metrics.formatQueryResultsLatency.start()) {
+      List<List<ChangeInfo>> res = new ArrayList<>(in.size());
+      for (QueryResult<ChangeData> r : in) {
+        List<ChangeInfo> infos = new ArrayList<>(r.entities().size());
+        for (ChangeData cd : r.entities()) {
+          cd.setStorageConstraint(ChangeData.StorageConstraint.INDEX_ONLY);
+          Change c = cd.change();
+          ChangeInfo info = new ChangeInfo();
+          info._number = c.getId().get();
+          info.project = c.getProject().get();
+          info.status = c.getStatus().asChangeStatus();
+          infos.add(info);
+        }
+        if (!infos.isEmpty() && r.more()) {
+          infos.get(infos.size() - 1)._moreChanges = true;
+        }
+        res.add(infos);
+      }
+      return res;
+    }
+  }
+
   public List<ChangeInfo> format(Collection<ChangeData> in) throws PermissionBackendException {
     accountLoader = accountLoaderFactory.create(has(DETAILED_ACCOUNTS));
     ensureLoaded(in);
@@ -16,30 +16,28 @@ package com.google.gerrit.server.change;
 
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Change;
-import com.google.gerrit.entities.Patch;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.common.FileInfo;
 import com.google.gerrit.extensions.restapi.ResourceConflictException;
+import com.google.gerrit.server.patch.DiffCacheWarmer;
 import com.google.gerrit.server.patch.DiffNotAvailableException;
-import com.google.gerrit.server.patch.DiffOperations;
-import com.google.gerrit.server.patch.DiffOptions;
-import com.google.gerrit.server.patch.FilePathAdapter;
+import com.google.gerrit.server.patch.FileSummaryCache;
 import com.google.gerrit.server.patch.PatchListNotAvailableException;
-import com.google.gerrit.server.patch.filediff.FileDiffOutput;
 import com.google.inject.Inject;
-import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.jgit.errors.NoMergeBaseException;
 import org.eclipse.jgit.lib.ObjectId;
 
-/** Implementation of {@link FileInfoJson} using {@link DiffOperations}. */
+/** Implementation of {@link FileInfoJson} using the {@link FileSummaryCache}. */
 public class FileInfoJsonImpl implements FileInfoJson {
-  private final DiffOperations diffs;
+  private final FileSummaryCache fileSummaryCache;
+  private final DiffCacheWarmer diffCacheWarmer;
 
   @Inject
-  FileInfoJsonImpl(DiffOperations diffOperations) {
-    this.diffs = diffOperations;
+  FileInfoJsonImpl(FileSummaryCache fileSummaryCache, DiffCacheWarmer diffCacheWarmer) {
+    this.fileSummaryCache = fileSummaryCache;
+    this.diffCacheWarmer = diffCacheWarmer;
   }
 
   @Nullable
@@ -47,17 +45,16 @@ public class FileInfoJsonImpl implements FileInfoJson {
   public Map<String, FileInfo> getFileInfoMap(
       Change change, ObjectId objectId, @Nullable PatchSet base)
       throws ResourceConflictException, PatchListNotAvailableException {
+    diffCacheWarmer.recordView(objectId);
     try {
       if (base == null) {
         // Setting parentNum=0 requests the default parent, which is the only parent for
         // single-parent commits, or the auto-merge otherwise
-        return asFileInfo(
-            diffs.listModifiedFilesAgainstParent(
-                change.getProject(), objectId, /* parentNum= */ 0, DiffOptions.DEFAULTS));
+        return fileSummaryCache
+            .getAgainstParent(change.getProject(), objectId, /* parentNum= */ 0)
+            .toFileInfoMap();
       }
-      return asFileInfo(
-          diffs.listModifiedFiles(
-              change.getProject(), base.commitId(), objectId, DiffOptions.DEFAULTS));
+      return fileSummaryCache.get(change.getProject(), base.commitId(), objectId).toFileInfoMap();
     } catch (DiffNotAvailableException e) {
       convertException(e);
       return null; // unreachable. handleAndThrow will throw an exception anyway
@@ -70,9 +67,7 @@ public class FileInfoJsonImpl implements FileInfoJson {
       Project.NameKey project, ObjectId objectId, int parent)
       throws ResourceConflictException, PatchListNotAvailableException {
     try {
-      Map<String, FileDiffOutput> modifiedFiles =
-          diffs.listModifiedFilesAgainstParent(project, objectId, parent, DiffOptions.DEFAULTS);
-      return asFileInfo(modifiedFiles);
+      return fileSummaryCache.getAgainstParent(project, objectId, parent).toFileInfoMap();
     } catch (DiffNotAvailableException e) {
       convertException(e);
       return null; // unreachable. handleAndThrow will throw an exception anyway
@@ -91,35 +86,4 @@ public class FileInfoJsonImpl implements FileInfoJson {
     }
     throw new PatchListNotAvailableException(e);
   }
-
-  private Map<String, FileInfo> asFileInfo(Map<String, FileDiffOutput> fileDiffs) {
-    Map<String, FileInfo> result = new HashMap<>();
-    for (String path : fileDiffs.keySet()) {
-      FileDiffOutput fileDiff = fileDiffs.get(path);
-      FileInfo fileInfo = new FileInfo();
-      fileInfo.status =
-          fileDiff.changeType() != Patch.ChangeType.MODIFIED
-              ? fileDiff.changeType().getCode()
-              : null;
-      fileInfo.oldPath = FilePathAdapter.getOldPath(fileDiff.oldPath(), fileDiff.changeType());
-      fileInfo.sizeDelta = fileDiff.sizeDelta();
-      fileInfo.size = fileDiff.size();
-      fileInfo.oldMode =
-          fileDiff.oldMode().isPresent() && !fileDiff.oldMode().get().equals(Patch.FileMode.MISSING)
-              ? fileDiff.oldMode().get().getMode()
-              : null;
-      fileInfo.newMode =
-          fileDiff.newMode().isPresent() && !fileDiff.newMode().get().equals(Patch.FileMode.MISSING)
-              ? fileDiff.newMode().get().getMode()
-              : null;
-      if (fileDiff.patchType().get() == Patch.PatchType.BINARY) {
-        fileInfo.binary = true;
-      } else {
-        fileInfo.linesInserted = fileDiff.insertions() > 0 ? fileDiff.insertions() : null;
-        fileInfo.linesDeleted = fileDiff.deletions() > 0 ? fileDiff.deletions() : null;
-      }
-      result.put(path, fileInfo);
-    }
-    return result;
-  }
 }
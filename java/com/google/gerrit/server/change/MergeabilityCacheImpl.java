@@ -17,21 +17,31 @@ package com.google.gerrit.server.change;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Converter;
 import com.google.common.base.Enums;
 import com.google.common.base.MoreObjects;
 import com.google.common.cache.Cache;
 import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.extensions.client.SubmitType;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.proto.Protos;
 import com.google.gerrit.server.cache.CacheModule;
 import com.google.gerrit.server.cache.proto.Cache.MergeabilityKeyProto;
 import com.google.gerrit.server.cache.serialize.BooleanCacheSerializer;
 import com.google.gerrit.server.cache.serialize.CacheSerializer;
 import com.google.gerrit.server.cache.serialize.ObjectIdConverter;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.ChangedPaths;
 import com.google.gerrit.server.git.CodeReviewCommit;
 import com.google.gerrit.server.git.CodeReviewCommit.CodeReviewRevWalk;
 import com.google.gerrit.server.submit.SubmitDryRun;
@@ -39,20 +49,36 @@ import com.google.inject.Inject;
 import com.google.inject.Module;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
 
 @Singleton
 public class MergeabilityCacheImpl implements MergeabilityCache {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   private static final String CACHE_NAME = "mergeability";
+  private static final String PREVIOUS_CACHE_NAME = "mergeability_previous";
+
+  /**
+   * Submit types for which the result only depends on a three-way merge of the change with the
+   * destination branch, using their merge base.
+   *
+   * <p>Rebasing and cherry-picking replay the individual commits of the change, and a file that is
+   * modified and then reverted within the change may conflict without showing up in the diff of the
+   * change as a whole.
+   */
+  private static final ImmutableSet<SubmitType> INCREMENTAL_SUBMIT_TYPES =
+      ImmutableSet.of(SubmitType.MERGE_IF_NECESSARY, SubmitType.MERGE_ALWAYS);
 
   public static Module module() {
     return new CacheModule() {
@@ -64,6 +90,7 @@ public class MergeabilityCacheImpl implements MergeabilityCache {
             .version(1)
             .keySerializer(EntryKey.Serializer.INSTANCE)
             .valueSerializer(BooleanCacheSerializer.INSTANCE);
+        cache(PREVIOUS_CACHE_NAME, PreviousKey.class, PreviousResult.class).maximumWeight(1 << 16);
         bind(MergeabilityCache.class).to(MergeabilityCacheImpl.class);
       }
     };
@@ -175,14 +202,74 @@ public class MergeabilityCacheImpl implements MergeabilityCache {
     }
   }
 
+  /** Identifies the latest mergeability result of a commit for a destination branch. */
+  @AutoValue
+  abstract static class PreviousKey {
+    static PreviousKey create(
+        BranchNameKey dest, ObjectId commit, SubmitType submitType, String mergeStrategy) {
+      return new AutoValue_MergeabilityCacheImpl_PreviousKey(
+          dest, commit.copy(), submitType, mergeStrategy);
+    }
+
+    abstract BranchNameKey dest();
+
+    abstract ObjectId commit();
+
+    abstract SubmitType submitType();
+
+    abstract String mergeStrategy();
+  }
+
+  /** Latest mergeability result of a commit, and the branch tip it was computed for. */
+  @AutoValue
+  abstract static class PreviousResult {
+    static PreviousResult create(ObjectId into, boolean mergeable) {
+      return new AutoValue_MergeabilityCacheImpl_PreviousResult(into.copy(), mergeable);
+    }
+
+    abstract ObjectId into();
+
+    abstract boolean mergeable();
+  }
+
+  @Singleton
+  static class Metrics {
+    private final Counter1<Boolean> computations;
+
+    @Inject
+    Metrics(MetricMaker metricMaker) {
+      computations =
+          metricMaker.newCounter(
+              "change/mergeability/computations",
+              new Description("Mergeability computations that missed the mergeability cache")
+                  .setRate()
+                  .setUnit("computations"),
+              Field.ofBoolean("reused", (metadataBuilder, fieldValue) -> {})
+                  .description(
+                      "Whether the result for the previous branch tip was reused because the"
+                          + " branch advanced without touching the files of the change.")
+                  .build());
+    }
+  }
+
   private final SubmitDryRun submitDryRun;
   private final Cache<EntryKey, Boolean> cache;
+  private final Cache<PreviousKey, PreviousResult> previous;
+  private final Metrics metrics;
+  private final boolean incremental;
 
   @Inject
   MergeabilityCacheImpl(
-      SubmitDryRun submitDryRun, @Named(CACHE_NAME) Cache<EntryKey, Boolean> cache) {
+      SubmitDryRun submitDryRun,
+      @Named(CACHE_NAME) Cache<EntryKey, Boolean> cache,
+      @Named(PREVIOUS_CACHE_NAME) Cache<PreviousKey, PreviousResult> previous,
+      Metrics metrics,
+      @GerritServerConfig Config cfg) {
     this.submitDryRun = submitDryRun;
     this.cache = cache;
+    this.previous = previous;
+    this.metrics = metrics;
+    this.incremental = cfg.getBoolean("change", "incrementalMergeability", true);
   }
 
   @Override
@@ -195,21 +282,32 @@ public class MergeabilityCacheImpl implements MergeabilityCache {
       Repository repo) {
     ObjectId into = intoRef != null ? intoRef.getObjectId() : ObjectId.zeroId();
     EntryKey key = new EntryKey(commit, into, submitType, mergeStrategy);
+    PreviousKey previousKey = PreviousKey.create(dest, commit, submitType, mergeStrategy);
     try {
-      return cache.get(
-          key,
-          () -> {
-            if (key.into.equals(ObjectId.zeroId())) {
-              return true; // Assume yes on new branch.
-            }
-            try (CodeReviewRevWalk rw = CodeReviewCommit.newRevWalk(repo)) {
-              Set<RevCommit> accepted = SubmitDryRun.getAlreadyAccepted(repo, rw);
-              accepted.add(rw.parseCommit(key.into));
-              accepted.addAll(Arrays.asList(rw.parseCommit(key.commit).getParents()));
-              return submitDryRun.run(
-                  null, key.submitType, repo, rw, dest, key.into, key.commit, accepted);
-            }
-          });
+      boolean mergeable =
+          cache.get(
+              key,
+              () -> {
+                if (key.into.equals(ObjectId.zeroId())) {
+                  return true; // Assume yes on new branch.
+                }
+                Boolean reused = reusePrevious(repo, key, previous.getIfPresent(previousKey));
+                metrics.computations.increment(reused != null);
+                if (reused != null) {
+                  return reused;
+                }
+                try (CodeReviewRevWalk rw = CodeReviewCommit.newRevWalk(repo)) {
+                  Set<RevCommit> accepted = SubmitDryRun.getAlreadyAccepted(repo, rw);
+                  accepted.add(rw.parseCommit(key.into));
+                  accepted.addAll(Arrays.asList(rw.parseCommit(key.commit).getParents()));
+                  return submitDryRun.run(
+                      null, key.submitType, repo, rw, dest, key.into, key.commit, accepted);
+                }
+              });
+      if (incremental && INCREMENTAL_SUBMIT_TYPES.contains(submitType)) {
+        previous.put(previousKey, PreviousResult.create(into, mergeable));
+      }
+      return mergeable;
     } catch (ExecutionException | UncheckedExecutionException e) {
       logger.atSevere().withCause(e.getCause()).log(
           "Error checking mergeability of %s into %s (%s)",
@@ -218,6 +316,77 @@ public class MergeabilityCacheImpl implements MergeabilityCache {
     }
   }
 
+  /**
+   * Returns the mergeability computed for a previous tip of the destination branch, if it still
+   * applies to the current tip.
+   *
+   * <p>This is the case if the branch was fast-forwarded without changing the merge base with the
+   * commit, and none of the files touched by the branch since the previous tip are touched by the
+   * commit. The three-way merge then sees the same content for all files that the commit touches,
+   * so it either succeeds or conflicts just like before.
+   *
+   * @return the previous result, or {@code null} if mergeability must be computed from scratch.
+   */
+  @Nullable
+  private Boolean reusePrevious(Repository repo, EntryKey key, @Nullable PreviousResult prev) {
+    if (!incremental
+        || prev == null
+        || !INCREMENTAL_SUBMIT_TYPES.contains(key.submitType)
+        || prev.into().equals(key.into)) {
+      return null;
+    }
+    try (RevWalk rw = new RevWalk(repo)) {
+      if (isUnaffected(
+          rw, rw.parseCommit(key.commit), rw.parseCommit(prev.into()), rw.parseCommit(key.into))) {
+        return prev.mergeable();
+      }
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log(
+          "Cannot compare %s with previous branch tip %s, computing mergeability from scratch",
+          key, prev.into().name());
+    }
+    return null;
+  }
+
+  /**
+   * Checks whether advancing the branch from {@code oldInto} to {@code newInto} can affect the
+   * result of merging {@code commit} into it.
+   */
+  @VisibleForTesting
+  static boolean isUnaffected(RevWalk rw, RevCommit commit, RevCommit oldInto, RevCommit newInto)
+      throws IOException {
+    if (!rw.isMergedInto(oldInto, newInto)) {
+      return false; // Branch was rewound.
+    }
+    RevCommit base = mergeBase(rw, commit, oldInto);
+    if (base == null || !base.equals(mergeBase(rw, commit, newInto))) {
+      return false;
+    }
+    // Paths also overlap if one is a directory containing the other, to detect file/directory
+    // conflicts.
+    return !ChangedPaths.overlap(
+        changedPaths(rw, base, commit), changedPaths(rw, oldInto, newInto));
+  }
+
+  @Nullable
+  private static RevCommit mergeBase(RevWalk rw, RevCommit a, RevCommit b) throws IOException {
+    rw.reset();
+    rw.setRevFilter(RevFilter.MERGE_BASE);
+    rw.markStart(a);
+    rw.markStart(b);
+    RevCommit base = rw.next();
+    if (base != null && rw.next() != null) {
+      base = null; // Criss-cross merge, don't bother.
+    }
+    rw.setRevFilter(RevFilter.ALL);
+    return base;
+  }
+
+  private static ImmutableSet<String> changedPaths(RevWalk rw, RevCommit a, RevCommit b)
+      throws IOException {
+    return ChangedPaths.changedPaths(rw, rw.parseTree(a.getTree()), rw.parseTree(b.getTree()));
+  }
+
   @Override
   public Boolean getIfPresent(
       ObjectId commit, Ref intoRef, SubmitType submitType, String mergeStrategy) {
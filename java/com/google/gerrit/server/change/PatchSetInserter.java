@@ -250,6 +250,7 @@ public class PatchSetInserter implements BatchUpdateOp {
 
     Optional<ReceiveCommand> autoMerge =
         autoMerger.createAutoMergeCommitIfNecessary(
+            ctx.getProject(),
             ctx.getRepoView(),
             ctx.getRevWalk(),
             ctx.getInserter(),
@@ -42,12 +42,15 @@ import com.google.inject.assistedinject.Assisted;
 import eu.medsea.mimeutil.MimeType;
 import eu.medsea.mimeutil.MimeUtil2;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
@@ -87,6 +90,10 @@ public class CommentContextLoader {
    * Load the comment context for multiple contextInputs at once. This method will open the
    * repository and read the source files for all necessary contextInputs' file paths.
    *
+   * <p>Each file is looked up only once per commit, and each blob is read only once overall, no
+   * matter how many contextInputs refer to it. The contextInputs are grouped by blob ID before any
+   * blob is read, so that only the text of one blob is held in memory at a time.
+   *
    * @param contextInputs a list of contextInputs.
    * @return a Map where all entries consist of the input contextInputs and the values are their
    *     corresponding {@link CommentContext}.
@@ -96,98 +103,113 @@ public class CommentContextLoader {
     ImmutableMap.Builder<ContextInput, CommentContext> result =
         ImmutableMap.builderWithExpectedSize(Iterables.size(contextInputs));
 
-    // Group contextInputs by commit ID so that each commit is parsed only once
-    Map<ObjectId, List<ContextInput>> commentsByCommitId =
-        contextInputs.stream().collect(groupingBy(ContextInput::commitId));
+    // Group contextInputs by commit ID and file path so that each commit is parsed only once, and
+    // each file is looked up only once per commit.
+    Map<ObjectId, Map<String, List<ContextInput>>> commentsByCommitIdAndPath =
+        contextInputs.stream()
+            .collect(groupingBy(ContextInput::commitId, groupingBy(ContextInput::filePath)));
 
     try (Repository repo = repoManager.openRepository(project);
-        RevWalk rw = new RevWalk(repo)) {
-      for (ObjectId commitId : commentsByCommitId.keySet()) {
+        ObjectReader reader = repoManager.newObjectReader(repo);
+        RevWalk rw = new RevWalk(reader)) {
+      // Unmodified files of different patch sets share the same blob. Collect the files of all
+      // commits by blob ID first, so that each blob is read and split into lines only once.
+      Map<ObjectId, List<FileInputs>> filesByBlobId = new LinkedHashMap<>();
+      for (Map.Entry<ObjectId, Map<String, List<ContextInput>>> perCommit :
+          commentsByCommitIdAndPath.entrySet()) {
+        ObjectId commitId = perCommit.getKey();
         RevCommit commit;
         try {
           commit = rw.parseCommit(commitId);
         } catch (IncorrectObjectTypeException | MissingObjectException e) {
           logger.atWarning().log("Commit %s is missing or has an incorrect object type", commitId);
-          commentsByCommitId
-              .get(commitId)
+          perCommit.getValue().values().stream()
+              .flatMap(List::stream)
               .forEach(contextInput -> result.put(contextInput, CommentContext.empty()));
           continue;
         }
-        for (ContextInput contextInput : commentsByCommitId.get(commitId)) {
-          Optional<Range> range = getStartAndEndLines(contextInput);
-          if (!range.isPresent()) {
-            result.put(contextInput, CommentContext.empty());
+        for (Map.Entry<String, List<ContextInput>> perPath : perCommit.getValue().entrySet()) {
+          String filePath = perPath.getKey();
+          List<ContextInput> withRange = new ArrayList<>();
+          for (ContextInput contextInput : perPath.getValue()) {
+            if (getStartAndEndLines(contextInput).isPresent()) {
+              withRange.add(contextInput);
+            } else {
+              result.put(contextInput, CommentContext.empty());
+            }
+          }
+          if (withRange.isEmpty()) {
             continue;
           }
-          String filePath = contextInput.filePath();
           switch (filePath) {
             case COMMIT_MSG:
-              result.put(
-                  contextInput,
-                  getContextForCommitMessage(
-                      rw.getObjectReader(), commit, range.get(), contextInput.contextPadding()));
+              putContexts(
+                  result,
+                  withRange,
+                  Text.forCommit(reader, commit),
+                  FileContentUtil.TEXT_X_GERRIT_COMMIT_MESSAGE);
               break;
             case MERGE_LIST:
-              result.put(
-                  contextInput,
-                  getContextForMergeList(
-                      rw.getObjectReader(), commit, range.get(), contextInput.contextPadding()));
+              putContexts(
+                  result,
+                  withRange,
+                  Text.forMergeList(ComparisonType.againstParent(1), reader, commit),
+                  FileContentUtil.TEXT_X_GERRIT_MERGE_LIST);
               break;
             default:
-              result.put(
-                  contextInput,
-                  getContextForFilePath(
-                      repo, rw, commit, filePath, range.get(), contextInput.contextPadding()));
+              try (TreeWalk tw = TreeWalk.forPath(reader, filePath, commit.getTree())) {
+                if (tw == null) {
+                  logger.atWarning().log(
+                      "Could not find path %s in the git tree of ID %s.",
+                      filePath, commit.getTree().getId());
+                  withRange.forEach(c -> result.put(c, CommentContext.empty()));
+                } else {
+                  filesByBlobId
+                      .computeIfAbsent(tw.getObjectId(0), id -> new ArrayList<>())
+                      .add(new FileInputs(filePath, tw.getFileMode(0), withRange));
+                }
+              }
           }
         }
       }
+
+      // The text of each blob is released as soon as the context of all its files is computed.
+      for (Map.Entry<ObjectId, List<FileInputs>> perBlob : filesByBlobId.entrySet()) {
+        List<FileInputs> files = perBlob.getValue();
+        Text text =
+            new Text(
+                SrcContentResolver.getSourceContent(
+                    repo, perBlob.getKey(), files.get(0).fileMode()));
+        for (FileInputs file : files) {
+          putContexts(
+              result,
+              file.contextInputs(),
+              text,
+              getContentType(file.fileMode(), file.filePath(), text));
+        }
+      }
       return result.build();
     }
   }
 
-  private CommentContext getContextForCommitMessage(
-      ObjectReader reader, RevCommit commit, Range commentRange, int contextPadding)
-      throws IOException {
-    Text text = Text.forCommit(reader, commit);
-    return createContext(
-        text, commentRange, contextPadding, FileContentUtil.TEXT_X_GERRIT_COMMIT_MESSAGE);
-  }
-
-  private CommentContext getContextForMergeList(
-      ObjectReader reader, RevCommit commit, Range commentRange, int contextPadding)
-      throws IOException {
-    ComparisonType cmp = ComparisonType.againstParent(1);
-    Text text = Text.forMergeList(cmp, reader, commit);
-    return createContext(
-        text, commentRange, contextPadding, FileContentUtil.TEXT_X_GERRIT_MERGE_LIST);
-  }
-
-  private CommentContext getContextForFilePath(
-      Repository repo,
-      RevWalk rw,
-      RevCommit commit,
-      String filePath,
-      Range commentRange,
-      int contextPadding)
-      throws IOException {
-    // TODO(ghareeb): We can further group the comments by file paths to avoid opening
-    // the same file multiple times.
-    try (TreeWalk tw = TreeWalk.forPath(rw.getObjectReader(), filePath, commit.getTree())) {
-      if (tw == null) {
-        logger.atWarning().log(
-            "Could not find path %s in the git tree of ID %s.", filePath, commit.getTree().getId());
-        return CommentContext.empty();
-      }
-      ObjectId id = tw.getObjectId(0);
-      byte[] sourceContent = SrcContentResolver.getSourceContent(repo, id, tw.getFileMode(0));
-      Text textSrc = new Text(sourceContent);
-      String contentType = getContentType(tw, filePath, textSrc);
-      return createContext(textSrc, commentRange, contextPadding, contentType);
+  private static void putContexts(
+      ImmutableMap.Builder<ContextInput, CommentContext> result,
+      List<ContextInput> contextInputs,
+      Text text,
+      String contentType) {
+    for (ContextInput contextInput : contextInputs) {
+      result.put(
+          contextInput,
+          createContext(
+              text,
+              getStartAndEndLines(contextInput).get(),
+              contextInput.contextPadding(),
+              contentType));
     }
   }
 
-  private String getContentType(TreeWalk tw, String filePath, Text src) {
-    PatchScript.FileMode fileMode = PatchScript.FileMode.fromJgitFileMode(tw.getFileMode(0));
+  private String getContentType(FileMode jgitFileMode, String filePath, Text src) {
+    PatchScript.FileMode fileMode = PatchScript.FileMode.fromJgitFileMode(jgitFileMode);
     String mimeType = MimeUtil2.UNKNOWN_MIME_TYPE.toString();
     if (src.size() > 0 && PatchScript.FileMode.SYMLINK != fileMode) {
       MimeType registryMimeType = registry.getMimeType(filePath, src.getContent());
@@ -232,6 +254,31 @@ public class CommentContextLoader {
     return Optional.empty();
   }
 
+  /** The contextInputs that refer to one file of one commit. */
+  private static class FileInputs {
+    private final String filePath;
+    private final FileMode fileMode;
+    private final List<ContextInput> contextInputs;
+
+    FileInputs(String filePath, FileMode fileMode, List<ContextInput> contextInputs) {
+      this.filePath = filePath;
+      this.fileMode = fileMode;
+      this.contextInputs = contextInputs;
+    }
+
+    String filePath() {
+      return filePath;
+    }
+
+    FileMode fileMode() {
+      return fileMode;
+    }
+
+    List<ContextInput> contextInputs() {
+      return contextInputs;
+    }
+  }
+
   @AutoValue
   abstract static class Range {
     static Range create(int start, int end) {
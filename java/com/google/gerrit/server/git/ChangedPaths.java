@@ -0,0 +1,72 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/** Utilities for comparing the paths changed between trees. */
+public class ChangedPaths {
+  /** Returns the paths of the files that differ between the two trees. */
+  public static ImmutableSet<String> changedPaths(RevWalk rw, RevTree a, RevTree b)
+      throws IOException {
+    ImmutableSet.Builder<String> paths = ImmutableSet.builder();
+    try (TreeWalk tw = new TreeWalk(rw.getObjectReader())) {
+      tw.setRecursive(true);
+      tw.setFilter(TreeFilter.ANY_DIFF);
+      tw.addTree(a);
+      tw.addTree(b);
+      while (tw.next()) {
+        paths.add(tw.getPathString());
+      }
+    }
+    return paths.build();
+  }
+
+  /**
+   * Whether two sets of file paths overlap.
+   *
+   * <p>Two paths overlap if they are equal or if one of them is a parent directory of the other,
+   * since a file in one set can then conflict with a directory of the other. Paths that only share
+   * a parent directory, such as {@code a/b} and {@code a/c}, don't overlap.
+   */
+  public static boolean overlap(Set<String> a, Set<String> b) {
+    Set<String> parents = new HashSet<>();
+    for (String path : a) {
+      for (int i = path.lastIndexOf('/'); i > 0; i = path.lastIndexOf('/', i - 1)) {
+        parents.add(path.substring(0, i));
+      }
+    }
+    for (String path : b) {
+      if (a.contains(path) || parents.contains(path)) {
+        return true;
+      }
+      for (int i = path.lastIndexOf('/'); i > 0; i = path.lastIndexOf('/', i - 1)) {
+        if (a.contains(path.substring(0, i))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private ChangedPaths() {}
+}
@@ -20,6 +20,7 @@ import com.google.inject.Singleton;
 import java.io.IOException;
 import java.util.NavigableSet;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 
 /**
@@ -73,6 +74,20 @@ public interface GitRepositoryManager {
   Repository createRepository(Project.NameKey name)
       throws RepositoryNotFoundException, RepositoryExistsException, IOException;
 
+  /**
+   * Get a reader for an open repository.
+   *
+   * <p>Implementations may hand out readers from a pool, so that the state a reader has built up,
+   * e.g. its inflater and its delta base cache, can be reused by the next caller. The reader must
+   * not be used after it was closed.
+   *
+   * @param repo repository opened by this manager.
+   * @return a new or pooled reader. Caller must call {@code close()} when done.
+   */
+  default ObjectReader newObjectReader(Repository repo) {
+    return repo.newObjectReader();
+  }
+
   /** Returns set of all known projects, sorted by natural NameKey order. */
   NavigableSet<Project.NameKey> list();
 
@@ -15,6 +15,7 @@
 package com.google.gerrit.server.git;
 
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.Project.NameKey;
 import com.google.gerrit.entities.RefNames;
@@ -42,6 +43,7 @@ import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryCache;
 import org.eclipse.jgit.lib.RepositoryCache.FileKey;
@@ -112,6 +114,7 @@ public class LocalDiskRepositoryManager implements GitRepositoryManager {
 
   private final Path basePath;
   private final Map<Project.NameKey, FileKey> fileKeyByProject = new ConcurrentHashMap<>();
+  @Nullable private ObjectReaderPool readerPool;
 
   @Inject
   LocalDiskRepositoryManager(SitePaths site, @GerritServerConfig Config cfg) {
@@ -121,6 +124,11 @@ public class LocalDiskRepositoryManager implements GitRepositoryManager {
     }
   }
 
+  @Inject(optional = true)
+  void setObjectReaderPool(ObjectReaderPool readerPool) {
+    this.readerPool = readerPool;
+  }
+
   /**
    * Return the basePath under which the specified project is stored.
    *
@@ -178,6 +186,11 @@ public class LocalDiskRepositoryManager implements GitRepositoryManager {
     }
   }
 
+  @Override
+  public ObjectReader newObjectReader(Repository repo) {
+    return readerPool != null ? readerPool.borrow(repo) : repo.newObjectReader();
+  }
+
   @Override
   public Repository createRepository(Project.NameKey name)
       throws RepositoryNotFoundException, RepositoryExistsException, IOException {
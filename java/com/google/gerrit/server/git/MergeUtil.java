@@ -269,6 +269,62 @@ public class MergeUtil {
               rw, inserter, dc, "HEAD", mergeTip, "CHANGE", originalCommit, mergeResults);
     }
 
+    CodeReviewCommit commit =
+        newCherryPickCommit(
+            inserter, tree, mergeTip, originalCommit, cherryPickCommitterIdent, commitMsg, rw);
+    commit.setFilesWithGitConflicts(filesWithGitConflicts);
+    return commit;
+  }
+
+  /**
+   * Cherry-picks a commit onto the current merge tip, reusing the result of cherry-picking it onto
+   * an earlier tip of the branch.
+   *
+   * <p>The tree of the speculative cherry-pick is merged with the current merge tip, using the
+   * earlier tip as merge base. This only gives the same result as {@link
+   * #createCherryPickFromCommit} if the paths touched by the speculative cherry-pick were not
+   * touched between the earlier and the current tip, which the caller must ensure.
+   *
+   * @param speculationBase the earlier tip onto which the commit was cherry-picked.
+   * @param speculativeTree tree of the speculative cherry-pick; must be readable by {@code rw}.
+   */
+  public CodeReviewCommit createCherryPickFromSpeculativeTree(
+      ObjectInserter inserter,
+      Config repoConfig,
+      RevCommit speculationBase,
+      ObjectId speculativeTree,
+      RevCommit mergeTip,
+      RevCommit originalCommit,
+      PersonIdent cherryPickCommitterIdent,
+      String commitMsg,
+      CodeReviewRevWalk rw)
+      throws IOException, MergeIdenticalTreeException, MergeConflictException,
+          InvalidMergeStrategyException {
+    ThreeWayMerger m = newThreeWayMerger(inserter, repoConfig);
+    m.setBase(speculationBase);
+    if (!m.merge(mergeTip, speculativeTree)) {
+      throw new MergeConflictException(
+          String.format(
+              "merge conflict while merging commits %s and %s",
+              mergeTip.toObjectId(), originalCommit.toObjectId()));
+    }
+    ObjectId tree = m.getResultTreeId();
+    if (tree.equals(mergeTip.getTree())) {
+      throw new MergeIdenticalTreeException("identical tree");
+    }
+    return newCherryPickCommit(
+        inserter, tree, mergeTip, originalCommit, cherryPickCommitterIdent, commitMsg, rw);
+  }
+
+  private CodeReviewCommit newCherryPickCommit(
+      ObjectInserter inserter,
+      ObjectId tree,
+      RevCommit mergeTip,
+      RevCommit originalCommit,
+      PersonIdent cherryPickCommitterIdent,
+      String commitMsg,
+      CodeReviewRevWalk rw)
+      throws IOException {
     CommitBuilder cherryPickCommit = new CommitBuilder();
     cherryPickCommit.setTreeId(tree);
     cherryPickCommit.setParentId(mergeTip);
@@ -276,9 +332,7 @@ public class MergeUtil {
     cherryPickCommit.setCommitter(cherryPickCommitterIdent);
     cherryPickCommit.setMessage(commitMsg);
     matchAuthorToCommitterDate(project, cherryPickCommit);
-    CodeReviewCommit commit = rw.parseCommit(inserter.insert(cherryPickCommit));
-    commit.setFilesWithGitConflicts(filesWithGitConflicts);
-    return commit;
+    return rw.parseCommit(inserter.insert(cherryPickCommit));
   }
 
   @SuppressWarnings("resource") // TemporaryBuffer requires calling close before reading.
@@ -0,0 +1,230 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Bounded pools of idle {@link ObjectReader}s, one per repository.
+ *
+ * <p>Opening a new reader for every cache miss throws away the inflater and the delta base cache
+ * that the previous reader of the same repository had already set up. Readers handed out by the
+ * pool are returned to it when they are closed, so that the next caller for the same repository
+ * can continue to use this state. At most {@code core.objectReaderPoolSize} readers are kept per
+ * repository and at most {@code core.objectReaderPoolMaxIdle} readers across all repositories;
+ * readers closed while the pool is full are closed for real. Each idle reader may hold on to up to
+ * {@code core.deltaBaseCacheLimit} of softly referenced delta bases.
+ *
+ * <p>Pools are kept for at most {@code core.objectReaderPoolMaxRepositories} repositories, and are
+ * dropped once they weren't used for {@link #EXPIRE_AFTER_ACCESS} or their repository was garbage
+ * collected. The idle readers of a dropped pool are closed.
+ */
+@Singleton
+class ObjectReaderPool {
+  @VisibleForTesting static final Duration EXPIRE_AFTER_ACCESS = Duration.ofMinutes(5);
+
+  private final AtomicLong reuseCount = new AtomicLong();
+  private final AtomicLong exhaustedCount = new AtomicLong();
+  private final AtomicLong discardCount = new AtomicLong();
+  private final AtomicInteger totalIdle = new AtomicInteger();
+  private final int maxIdle;
+  private final int maxTotalIdle;
+  private final LoadingCache<Repository, IdleReaders> pools;
+
+  @Inject
+  ObjectReaderPool(@GerritServerConfig Config cfg, MetricMaker metricMaker) {
+    this(
+        cfg.getInt("core", null, "objectReaderPoolSize", 4),
+        cfg.getInt("core", null, "objectReaderPoolMaxRepositories", 256),
+        cfg.getInt("core", null, "objectReaderPoolMaxIdle", 32));
+    metricMaker.newCallbackMetric(
+        "jgit/object_reader_pool/reused",
+        Long.class,
+        new Description("Object readers that were handed out again from a repository's pool.")
+            .setCumulative()
+            .setUnit("readers"),
+        this::getReuseCount);
+    metricMaker.newCallbackMetric(
+        "jgit/object_reader_pool/exhausted",
+        Long.class,
+        new Description(
+                "Object readers that were created because the pool of the repository had no"
+                    + " idle reader.")
+            .setCumulative()
+            .setUnit("readers"),
+        this::getExhaustedCount);
+    metricMaker.newCallbackMetric(
+        "jgit/object_reader_pool/discarded",
+        Long.class,
+        new Description(
+                "Object readers that were closed because the pool of the repository or the pool as"
+                    + " a whole was full, or the pool of the repository was dropped.")
+            .setCumulative()
+            .setUnit("readers"),
+        this::getDiscardCount);
+  }
+
+  @VisibleForTesting
+  ObjectReaderPool(int maxIdle, int maxRepositories, int maxTotalIdle) {
+    this.maxIdle = Math.min(maxIdle, maxTotalIdle);
+    this.maxTotalIdle = maxTotalIdle;
+    this.pools =
+        CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(Math.max(maxRepositories, 0))
+            .expireAfterAccess(EXPIRE_AFTER_ACCESS)
+            .removalListener(this::onRemoval)
+            .build(CacheLoader.from(() -> new IdleReaders()));
+  }
+
+  /** Returns the number of readers that were handed out again after being idle. */
+  long getReuseCount() {
+    return reuseCount.get();
+  }
+
+  /** Returns the number of readers that were created because no reader was idle. */
+  long getExhaustedCount() {
+    return exhaustedCount.get();
+  }
+
+  /** Returns the number of readers that were closed because a pool was full or dropped. */
+  long getDiscardCount() {
+    return discardCount.get();
+  }
+
+  /** Drops all pools, closing their idle readers. */
+  @VisibleForTesting
+  void invalidateAll() {
+    pools.invalidateAll();
+    pools.cleanUp();
+  }
+
+  /**
+   * Returns a reader for the repository, which is returned to the pool when it's closed.
+   *
+   * <p>The reader must not be used after it was closed, as it may then already be used by another
+   * thread.
+   */
+  ObjectReader borrow(Repository repo) {
+    if (maxIdle <= 0) {
+      return repo.newObjectReader();
+    }
+    IdleReaders idle = pools.getUnchecked(repo);
+    ObjectReader reader = idle.poll();
+    if (reader != null) {
+      reuseCount.incrementAndGet();
+    } else {
+      exhaustedCount.incrementAndGet();
+      reader = repo.newObjectReader();
+    }
+    return new PooledReader(reader, idle);
+  }
+
+  private void onRemoval(RemovalNotification<Repository, IdleReaders> notification) {
+    discardCount.addAndGet(notification.getValue().close());
+  }
+
+  /** Idle readers of one repository. Readers returned after the pool was dropped are closed. */
+  private class IdleReaders {
+    private final Deque<ObjectReader> readers = new ArrayDeque<>();
+    private boolean closed;
+
+    synchronized ObjectReader poll() {
+      ObjectReader reader = readers.pollLast();
+      if (reader != null) {
+        totalIdle.decrementAndGet();
+      }
+      return reader;
+    }
+
+    synchronized boolean offer(ObjectReader reader) {
+      if (closed || readers.size() >= maxIdle) {
+        return false;
+      }
+      if (totalIdle.incrementAndGet() > maxTotalIdle) {
+        totalIdle.decrementAndGet();
+        return false;
+      }
+      readers.addLast(reader);
+      return true;
+    }
+
+    /** Closes the idle readers, and returns how many were closed. */
+    synchronized int close() {
+      closed = true;
+      int n = readers.size();
+      readers.forEach(ObjectReader::close);
+      readers.clear();
+      totalIdle.addAndGet(-n);
+      return n;
+    }
+  }
+
+  private class PooledReader extends ObjectReader.Filter {
+    private final ObjectReader reader;
+    private final IdleReaders idle;
+    private boolean closed;
+
+    PooledReader(ObjectReader reader, IdleReaders idle) {
+      this.reader = reader;
+      this.idle = idle;
+      this.streamFileThreshold = reader.getStreamFileThreshold();
+    }
+
+    @Override
+    protected ObjectReader delegate() {
+      checkState(!closed, "reader was already returned to its pool");
+      return reader;
+    }
+
+    @Override
+    public void setAvoidUnreachableObjects(boolean avoid) {
+      delegate().setAvoidUnreachableObjects(avoid);
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      // Don't leak settings of this borrower to the next one.
+      reader.setAvoidUnreachableObjects(false);
+      if (!idle.offer(reader)) {
+        discardCount.incrementAndGet();
+        reader.close();
+      }
+    }
+  }
+}
@@ -116,6 +116,7 @@ public class AsyncReceiveCommits {
       install(new FactoryModuleBuilder().build(ReceiveCommits.Factory.class));
       install(new FactoryModuleBuilder().build(PublishCommentsOp.Factory.class));
       install(new FactoryModuleBuilder().build(BranchCommitValidator.Factory.class));
+      install(new FactoryModuleBuilder().build(AutoCloser.Factory.class));
     }
 
     @Provides
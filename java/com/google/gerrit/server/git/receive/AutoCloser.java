@@ -0,0 +1,527 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.gerrit.server.git.receive;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.gerrit.server.git.receive.ReceiveConstants.SAME_CHANGE_ID_IN_MULTIPLE_CHANGES;
+import static java.util.stream.Collectors.toList;
+import static org.eclipse.jgit.transport.ReceiveCommand.Result.REJECTED_OTHER_REASON;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.PatchSetInfo;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.entities.SubmissionId;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.extensions.registration.DynamicItem;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.ChangeUtil;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.PatchSetUtil;
+import com.google.gerrit.server.change.SetPrivateOp;
+import com.google.gerrit.server.config.UrlFormatter;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.MergedByPushOp;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.gerrit.server.logging.TraceContext;
+import com.google.gerrit.server.logging.TraceContext.TraceTimer;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.patch.AutoMerger;
+import com.google.gerrit.server.patch.PatchSetInfoFactory;
+import com.google.gerrit.server.permissions.ChangePermission;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.gerrit.server.project.NoSuchChangeException;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.InternalChangeQuery;
+import com.google.gerrit.server.update.BatchUpdate;
+import com.google.gerrit.server.update.RepoContext;
+import com.google.gerrit.server.update.RepoOnlyOp;
+import com.google.gerrit.server.update.RetryHelper;
+import com.google.gerrit.server.update.UpdateException;
+import com.google.gerrit.server.util.RequestScopePropagator;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.inject.Inject;
+import com.google.inject.assistedinject.Assisted;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.PushCertificate;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+/**
+ * Closes the changes of commits that were pushed directly to a branch.
+ *
+ * <p>Only holds the state of the push that auto-closing needs, so that batches that exceed {@code
+ * receive.autoCloseTimeout} can be continued in the background without retaining the {@link
+ * ReceiveCommits} of the push, with its receive pack and advertised refs.
+ */
+class AutoCloser {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  interface Factory {
+    AutoCloser create(ProjectState projectState, IdentifiedUser user);
+  }
+
+  /** State of a direct push that is shared by the batches in which its changes are closed. */
+  static class Request {
+    final BranchNameKey branch;
+    final ObjectId newTip;
+    @Nullable final PushCertificate pushCert;
+    private final AtomicReference<SubmissionId> submissionId = new AtomicReference<>();
+
+    Request(BranchNameKey branch, ObjectId newTip, @Nullable PushCertificate pushCert) {
+      this.branch = branch;
+      this.newTip = newTip.copy();
+      this.pushCert = pushCert;
+    }
+
+    /** Returns the submission ID of the push, derived from the first change that is closed. */
+    SubmissionId submissionId(Change change) {
+      submissionId.compareAndSet(null, new SubmissionId(change));
+      return submissionId.get();
+    }
+  }
+
+  private final AutoMerger autoMerger;
+  private final ReceiveCommits.Metrics metrics;
+  private final MergedByPushOp.Factory mergedByPushOpFactory;
+  private final ChangeNotes.Factory notesFactory;
+  private final PatchSetInfoFactory patchSetInfoFactory;
+  private final PatchSetUtil psUtil;
+  private final ReplaceOp.Factory replaceOpFactory;
+  private final GitRepositoryManager repoManager;
+  private final RequestScopePropagator requestScopePropagator;
+  private final RetryHelper retryHelper;
+  private final SetPrivateOp.Factory setPrivateOpFactory;
+  private final DynamicItem<UrlFormatter> urlFormatter;
+
+  private final ProjectState projectState;
+  private final IdentifiedUser user;
+  private final PermissionBackend.ForProject permissions;
+
+  @Inject
+  AutoCloser(
+      AutoMerger autoMerger,
+      ReceiveCommits.Metrics metrics,
+      MergedByPushOp.Factory mergedByPushOpFactory,
+      ChangeNotes.Factory notesFactory,
+      PatchSetInfoFactory patchSetInfoFactory,
+      PatchSetUtil psUtil,
+      PermissionBackend permissionBackend,
+      ReplaceOp.Factory replaceOpFactory,
+      GitRepositoryManager repoManager,
+      RequestScopePropagator requestScopePropagator,
+      RetryHelper retryHelper,
+      SetPrivateOp.Factory setPrivateOpFactory,
+      DynamicItem<UrlFormatter> urlFormatter,
+      @Assisted ProjectState projectState,
+      @Assisted IdentifiedUser user) {
+    this.autoMerger = autoMerger;
+    this.metrics = metrics;
+    this.mergedByPushOpFactory = mergedByPushOpFactory;
+    this.notesFactory = notesFactory;
+    this.patchSetInfoFactory = patchSetInfoFactory;
+    this.psUtil = psUtil;
+    this.replaceOpFactory = replaceOpFactory;
+    this.repoManager = repoManager;
+    this.requestScopePropagator = requestScopePropagator;
+    this.retryHelper = retryHelper;
+    this.setPrivateOpFactory = setPrivateOpFactory;
+    this.urlFormatter = urlFormatter;
+    this.projectState = projectState;
+    this.user = user;
+    this.permissions = permissionBackend.user(user).project(projectState.getNameKey());
+  }
+
+  /**
+   * Returns a task that closes the changes of the given batches of commits in the background.
+   *
+   * <p>The task captures only this auto-closer, the request and the commit IDs. It reads the refs
+   * from the repository rather than from the refs advertised to the push, since the push may have
+   * created patch sets in the meantime, and adds new patch sets on a command of its own.
+   */
+  Runnable inBackground(Request request, List<List<ObjectId>> batches) {
+    ImmutableList<ImmutableList<ObjectId>> commits =
+        batches.stream().map(ImmutableList::copyOf).collect(toImmutableList());
+    return () -> {
+      try (Repository repo = repoManager.openRepository(projectState.getNameKey())) {
+        ReceivePackRefCache refCache = ReceivePackRefCache.noCache(repo.getRefDatabase());
+        ReceiveCommand cmd =
+            new ReceiveCommand(ObjectId.zeroId(), request.newTip, request.branch.branch());
+        int closed = 0;
+        for (List<ObjectId> batch : commits) {
+          closed +=
+              closeBatch(repo, refCache, cmd, request, batch, NullProgressMonitor.INSTANCE).size();
+        }
+        logger.atInfo().log(
+            "Auto-closed %d changes with new patch sets on %s in the background",
+            closed, request.branch);
+      } catch (IOException | RuntimeException e) {
+        logger.atSevere().withCause(e).log(
+            "Failed to auto-close changes on %s in the background", request.branch);
+      }
+    };
+  }
+
+  /**
+   * Closes the changes of one batch of commits that were pushed directly to a branch.
+   *
+   * <p>Commits that are already a patch set of a change on the branch close that change. For the
+   * remaining commits the open changes matching their Change-Id footers are looked up with a single
+   * index query, and a new patch set is added to them before they are closed. All changes of the
+   * batch are closed by a single {@link BatchUpdate}.
+   *
+   * @param refCache the refs in which the patch sets of the commits are looked up.
+   * @param cmd the command of the push, which is rejected if a new patch set isn't valid.
+   * @return the IDs of the closed changes with new patch sets.
+   */
+  ImmutableSet<Change.Id> closeBatch(
+      Repository repo,
+      ReceivePackRefCache refCache,
+      ReceiveCommand cmd,
+      Request request,
+      List<ObjectId> commits,
+      ProgressMonitor progress) {
+    String newTip = request.newTip.name();
+    Set<Change.Id> ids = new HashSet<>();
+    // Shared by all attempts, so that retries don't count changes twice.
+    Set<Change.Id> counted = ConcurrentHashMap.newKeySet();
+    try {
+      // TODO(dborowitz): Combine this BatchUpdate with the main one in
+      // handleRegularCommands
+      retryHelper
+          .changeUpdate(
+              "autoCloseChanges",
+              updateFactory -> {
+                ids.clear();
+                try (BatchUpdate bu =
+                        updateFactory.create(projectState.getNameKey(), user, TimeUtil.now());
+                    ObjectInserter ins = repo.newObjectInserter();
+                    ObjectReader reader = ins.newReader();
+                    RevWalk rw = new RevWalk(reader)) {
+                  bu.setRepository(repo, rw, ins);
+                  // TODO(dborowitz): Teach BatchUpdate to ignore missing changes.
+
+                  int existingPatchSets = 0;
+                  Map<RevCommit, List<Change.Key>> keysByCommit = new LinkedHashMap<>();
+                  COMMIT:
+                  for (ObjectId id : commits) {
+                    // Check if change refs point to this commit. Usually there are 0-1 change refs
+                    // pointing to this commit.
+                    for (PatchSet.Id psId : refCache.patchSetIdsFromObjectId(id)) {
+                      Optional<ChangeNotes> notes = getChangeNotes(psId.changeId());
+                      if (notes.isPresent()
+                          && notes.get().getChange().getDest().equals(request.branch)) {
+                        existingPatchSets++;
+                        bu.addOp(psId.changeId(), setPrivateOpFactory.create(false, null));
+                        bu.addOp(
+                            psId.changeId(),
+                            mergedByPushOpFactory.create(
+                                requestScopePropagator,
+                                psId,
+                                request.submissionId(notes.get().getChange()),
+                                request.branch.branch(),
+                                newTip));
+                        bu.addOp(psId.changeId(), new ChangeProgressOp(progress, counted));
+                        continue COMMIT;
+                      }
+                    }
+
+                    RevCommit c = rw.parseCommit(id);
+                    List<Change.Key> keys =
+                        ChangeUtil.getChangeIdsFromFooter(c, urlFormatter.get()).stream()
+                            .map(k -> Change.key(k.trim()))
+                            .collect(toList());
+                    if (!keys.isEmpty()) {
+                      keysByCommit.put(c, keys);
+                    }
+                  }
+
+                  Map<Change.Key, ChangeData> openChanges =
+                      keysByCommit.isEmpty()
+                          ? ImmutableMap.of()
+                          : retryHelper
+                              .changeIndexQuery(
+                                  "queryOpenChangesByKeys",
+                                  q ->
+                                      openChangesByKey(
+                                          q,
+                                          request.branch,
+                                          keysByCommit.values().stream()
+                                              .flatMap(List::stream)
+                                              .collect(toImmutableSet())))
+                              .call();
+
+                  List<NewPatchSet> replaceAndClose = new ArrayList<>();
+                  for (Map.Entry<RevCommit, List<Change.Key>> e : keysByCommit.entrySet()) {
+                    for (Change.Key key : e.getValue()) {
+                      ChangeData onto = openChanges.get(key);
+                      if (onto != null) {
+                        replaceAndClose.add(new NewPatchSet(onto.notes(), e.getKey()));
+                        break;
+                      }
+                    }
+                  }
+
+                  for (NewPatchSet ps : replaceAndClose) {
+                    Change.Id id = ps.notes.getChangeId();
+                    if (!ps.validate(rw, refCache, cmd)) {
+                      logger.atFine().log("Not closing %s because validation failed", id);
+                      continue;
+                    }
+                    ReplaceOp replaceOp = ps.addOps(bu, rw, request);
+                    bu.addOp(id, setPrivateOpFactory.create(false, null));
+                    bu.addOp(
+                        id,
+                        mergedByPushOpFactory
+                            .create(
+                                requestScopePropagator,
+                                ps.psId,
+                                request.submissionId(ps.notes.getChange()),
+                                request.branch.branch(),
+                                newTip)
+                            .setPatchSetProvider(replaceOp::getPatchSet));
+                    bu.addOp(id, new ChangeProgressOp(progress, counted));
+                    ids.add(id);
+                  }
+
+                  logger.atFine().log(
+                      "Auto-closing %d changes with existing patch sets and %d with new patch"
+                          + " sets",
+                      existingPatchSets, ids.size());
+                  bu.execute();
+                } catch (IOException | StorageException | PermissionBackendException e) {
+                  throw new StorageException("Failed to auto-close changes", e);
+                }
+                return null;
+              })
+          // Use a multiple of the default timeout to account for inner retries that may otherwise
+          // eat up the whole timeout so that no time is left to retry this outer action.
+          .defaultTimeoutMultiplier(5)
+          .call();
+    } catch (RestApiException e) {
+      logger.atSevere().withCause(e).log("Can't insert patchset");
+      return ImmutableSet.of();
+    } catch (UpdateException e) {
+      logger.atSevere().withCause(e).log("Failed to auto-close changes");
+      return ImmutableSet.of();
+    }
+
+    // If we are here, we didn't throw UpdateException. Record the result.
+    // The ordering is indeterminate due to the HashSet; unfortunately, Change.Id doesn't fit into
+    // TreeSet.
+    return ImmutableSet.copyOf(ids);
+  }
+
+  /** A new patch set for an open change whose Change-Id is in the footer of a pushed commit. */
+  private class NewPatchSet {
+    final ChangeNotes notes;
+    final ObjectId newCommitId;
+    BiMap<RevCommit, PatchSet.Id> revisions;
+    PatchSet.Id priorPatchSet;
+    PatchSet.Id psId;
+    PatchSetInfo info;
+
+    NewPatchSet(ChangeNotes notes, RevCommit newCommit) {
+      this.notes = notes;
+      this.newCommitId = newCommit.copy();
+    }
+
+    /**
+     * Validates the new patch set against permissions and the NoteDb status of the change, like a
+     * new patch set that is pushed for review. Rejects {@code cmd} if the new patch set isn't
+     * valid.
+     *
+     * @return whether the new patch set is valid.
+     */
+    boolean validate(RevWalk rw, ReceivePackRefCache refCache, ReceiveCommand cmd)
+        throws IOException, PermissionBackendException {
+      Change.Id changeId = notes.getChangeId();
+      revisions = HashBiMap.create();
+      for (Ref ref : refCache.byPrefix(RefNames.changeRefPrefix(changeId))) {
+        try {
+          PatchSet.Id id = PatchSet.Id.fromRef(ref.getName());
+          if (id != null) {
+            revisions.forcePut(rw.parseCommit(ref.getObjectId()), id);
+          }
+        } catch (IOException err) {
+          logger.atWarning().withCause(err).log(
+              "Project %s contains invalid change ref %s",
+              projectState.getName(), ref.getName());
+        }
+      }
+
+      Change change = notes.getChange();
+      priorPatchSet = change.currentPatchSetId();
+      if (!revisions.containsValue(priorPatchSet)) {
+        metrics.psRevisionMissing.increment();
+        logger.atWarning().log(
+            "Change %d is missing revision for patch set %s",
+            changeId.get(), priorPatchSet.getId());
+        return reject(cmd, "change " + changeId + " missing revisions");
+      }
+
+      RevCommit newCommit = rw.parseCommit(newCommitId);
+
+      // Not allowed to create a new patch set if the current patch set is locked.
+      if (psUtil.isPatchSetLocked(notes)
+          || !permissions.change(notes).test(ChangePermission.ADD_PATCH_SET)) {
+        return reject(cmd, "cannot add patch set to " + changeId + ".");
+      }
+
+      if (change.isClosed()) {
+        return reject(cmd, "change " + changeId + " closed");
+      } else if (revisions.containsKey(newCommit)) {
+        return reject(cmd, "commit already exists (in the change)");
+      }
+
+      List<PatchSet.Id> existingPatchSetsWithSameCommit =
+          refCache.patchSetIdsFromObjectId(newCommit);
+      if (!existingPatchSetsWithSameCommit.isEmpty()) {
+        return reject(
+            cmd,
+            "commit already exists (in the project): "
+                + existingPatchSetsWithSameCommit.get(0).toRefName());
+      }
+
+      for (RevCommit prior : revisions.keySet()) {
+        // Don't allow a change to directly depend upon itself.
+        if (rw.isMergedInto(prior, newCommit)) {
+          return reject(cmd, SAME_CHANGE_ID_IN_MULTIPLE_CHANGES);
+        }
+      }
+
+      psId = ChangeUtil.nextPatchSetId(priorPatchSet);
+      while (refCache.exactRef(psId.toRefName()) != null) {
+        psId = ChangeUtil.nextPatchSetId(psId);
+      }
+      info = patchSetInfoFactory.get(rw, newCommit, psId);
+      return true;
+    }
+
+    /** Adds the ops that create the new patch set, and returns the {@link ReplaceOp}. */
+    ReplaceOp addOps(BatchUpdate bu, RevWalk rw, Request request) throws IOException {
+      RevCommit newCommit = rw.parseCommit(newCommitId);
+      rw.parseBody(newCommit);
+      ReplaceOp replaceOp =
+          replaceOpFactory.create(
+              projectState,
+              notes.getChange(),
+              false,
+              null,
+              priorPatchSet,
+              revisions.inverse().get(priorPatchSet),
+              psId,
+              newCommit,
+              info,
+              ImmutableList.of(),
+              null,
+              request.pushCert,
+              requestScopePropagator);
+      bu.addOp(notes.getChangeId(), replaceOp);
+      bu.addRepoOnlyOp(
+          new RepoOnlyOp() {
+            @Override
+            public void updateRepo(RepoContext ctx) throws Exception {
+              // New patch sets on existing changes don't go through PatchSetInserter, so their auto
+              // merge commits are created here.
+              Optional<ReceiveCommand> autoMerge =
+                  autoMerger.createAutoMergeCommitIfNecessary(
+                      ctx.getProject(),
+                      ctx.getRepoView(),
+                      ctx.getRevWalk(),
+                      ctx.getInserter(),
+                      ctx.getRevWalk().parseCommit(newCommitId));
+              if (autoMerge.isPresent()) {
+                ctx.addRefUpdate(autoMerge.get());
+              }
+            }
+          });
+      return replaceOp;
+    }
+  }
+
+  private static boolean reject(ReceiveCommand cmd, String why) {
+    logger.atFine().log("Rejecting command '%s': %s", cmd, why);
+    cmd.setResult(REJECTED_OTHER_REASON, why);
+    return false;
+  }
+
+  private Optional<ChangeNotes> getChangeNotes(Change.Id changeId) {
+    try {
+      return Optional.of(notesFactory.createChecked(projectState.getNameKey(), changeId));
+    } catch (NoSuchChangeException e) {
+      return Optional.empty();
+    }
+  }
+
+  private Map<Change.Key, ChangeData> openChangesByKey(
+      InternalChangeQuery internalChangeQuery, BranchNameKey branch, Set<Change.Key> keys) {
+    try (TraceTimer traceTimer =
+        TraceContext.newTimer(
+            "AutoCloser#openChangesByKey",
+            Metadata.builder()
+                .projectName(projectState.getName())
+                .branchName(branch.branch())
+                .build())) {
+      Map<Change.Key, ChangeData> r = new HashMap<>();
+      for (ChangeData cd :
+          internalChangeQuery.byBranchKeysOrCommits(branch, keys, ImmutableSet.of())) {
+        try {
+          // ChangeData is not materialised into a ChangeNotes for avoiding
+          // to load a potentially large number of changes meta-data into memory
+          // which would cause unnecessary disk I/O, CPU and heap utilisation.
+          Change change = cd.change();
+          // The key query matches by prefix.
+          if (change.isNew() && keys.contains(change.getKey())) {
+            r.put(change.getKey(), cd);
+          }
+        } catch (NoSuchChangeException e) {
+          // Ignore deleted change
+        }
+      }
+      return r;
+    }
+  }
+}
@@ -18,31 +18,50 @@ import static com.google.gerrit.git.ObjectIds.abbreviateName;
 import static org.eclipse.jgit.transport.ReceiveCommand.Result.REJECTED_OTHER_REASON;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.flogger.FluentLogger;
+import com.google.common.math.IntMath;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.BanCommit;
 import com.google.gerrit.server.git.validators.CommitValidationException;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import com.google.gerrit.server.git.validators.CommitValidators;
+import com.google.gerrit.server.logging.Metadata;
 import com.google.gerrit.server.logging.TraceContext;
 import com.google.gerrit.server.logging.TraceContext.TraceTimer;
 import com.google.gerrit.server.permissions.PermissionBackend;
 import com.google.gerrit.server.project.ProjectState;
 import com.google.gerrit.server.ssh.SshInfo;
+import com.google.gerrit.server.util.RequestScopePropagator;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.notes.NoteMap;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.ReceiveCommand;
 
 /** Validates single commits for a branch. */
@@ -50,6 +69,9 @@ public class BranchCommitValidator {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   private final CommitValidators.Factory commitValidatorsFactory;
+  private final PermissionBackend permissionBackend;
+  private final CommitValidationExecutor executor;
+  private final RequestScopePropagator requestScopePropagator;
   private final IdentifiedUser user;
   private final PermissionBackend.ForProject permissions;
   private final Project project;
@@ -64,8 +86,12 @@ public class BranchCommitValidator {
   /** A boolean validation status and a list of additional messages. */
   @AutoValue
   abstract static class Result {
-    static Result create(boolean isValid, ImmutableList<CommitValidationMessage> messages) {
-      return new AutoValue_BranchCommitValidator_Result(isValid, messages);
+    static Result valid(ImmutableList<CommitValidationMessage> messages) {
+      return new AutoValue_BranchCommitValidator_Result(true, messages, Optional.empty());
+    }
+
+    static Result invalid(ImmutableList<CommitValidationMessage> messages, String rejection) {
+      return new AutoValue_BranchCommitValidator_Result(false, messages, Optional.of(rejection));
     }
 
     /** Whether the commit is valid. */
@@ -76,16 +102,24 @@ public class BranchCommitValidator {
      * {@link #isValid()} status.
      */
     abstract ImmutableList<CommitValidationMessage> messages();
+
+    /** The message with which the command is rejected if the commit is invalid. */
+    abstract Optional<String> rejection();
   }
 
   @Inject
   BranchCommitValidator(
       CommitValidators.Factory commitValidatorsFactory,
       PermissionBackend permissionBackend,
+      CommitValidationExecutor executor,
+      RequestScopePropagator requestScopePropagator,
       SshInfo sshInfo,
       @Assisted ProjectState projectState,
       @Assisted BranchNameKey branch,
       @Assisted IdentifiedUser user) {
+    this.permissionBackend = permissionBackend;
+    this.executor = executor;
+    this.requestScopePropagator = requestScopePropagator;
     this.sshInfo = sshInfo;
     this.user = user;
     this.branch = branch;
@@ -142,6 +176,162 @@ public class BranchCommitValidator {
       @Nullable Change change,
       boolean skipValidation)
       throws IOException {
+    Result result =
+        validate(
+            permissions,
+            repository,
+            objectReader,
+            cmd,
+            commit,
+            pushOptions,
+            isMerged,
+            rejectCommits,
+            change,
+            skipValidation);
+    result.rejection().ifPresent(r -> cmd.setResult(REJECTED_OTHER_REASON, r));
+    return result;
+  }
+
+  /** Whether {@link #validateCommits} validates commits concurrently. */
+  boolean isParallelValidationEnabled() {
+    return executor.isEnabled();
+  }
+
+  /**
+   * Validates several new commits for the same command. If a commit does not validate, the command
+   * is rejected.
+   *
+   * <p>The commits are split into contiguous chunks that are validated concurrently on the {@link
+   * CommitValidationExecutor}. Each chunk is validated with its own object reader, reject-commits
+   * map and permission checker, since none of them are thread-safe, and stops at its first invalid
+   * commit.
+   *
+   * <p>The results are returned in the order of the given commits, up to and including the first
+   * invalid commit. This is the same outcome as validating the commits one by one with {@link
+   * #validateCommit}, regardless of which chunk finishes first. Chunks that the executor rejects
+   * are validated on the calling thread.
+   *
+   * @param repository the repository
+   * @param cmd the ReceiveCommand executing the push.
+   * @param commits the commits being validated, in the order in which they should be reported.
+   * @param isMerged whether this is a merge commit created by magicBranch --merge option
+   * @param skipValidation whether 'skip-validation' was requested.
+   * @return The validation {@link Result}s.
+   */
+  ImmutableList<Result> validateCommits(
+      Repository repository,
+      ReceiveCommand cmd,
+      List<RevCommit> commits,
+      ImmutableListMultimap<String, String> pushOptions,
+      boolean isMerged,
+      boolean skipValidation)
+      throws IOException {
+    try (TraceTimer traceTimer =
+        TraceContext.newTimer(
+            "BranchCommitValidator#validateCommits",
+            Metadata.builder().resourceCount(commits.size()).build())) {
+      int chunkSize = IntMath.divide(commits.size(), executor.parallelism(), RoundingMode.CEILING);
+      List<Future<ImmutableList<Result>>> futures = new ArrayList<>();
+      List<FutureTask<ImmutableList<Result>>> rejected = new ArrayList<>();
+      for (List<RevCommit> chunk : Lists.partition(commits, Math.max(1, chunkSize))) {
+        Callable<ImmutableList<Result>> task =
+            () -> validateChunk(repository, cmd, chunk, pushOptions, isMerged, skipValidation);
+        try {
+          futures.add(executor.submit(requestScopePropagator.wrap(task)));
+        } catch (RejectedExecutionException e) {
+          // The chunk is validated on this thread once the results of the earlier chunks are in.
+          logger.atFine().withCause(e).log(
+              "Validating %d commits on the receiving thread", chunk.size());
+          FutureTask<ImmutableList<Result>> inline = new FutureTask<>(task);
+          futures.add(inline);
+          rejected.add(inline);
+        }
+      }
+
+      ImmutableList.Builder<Result> results = ImmutableList.builder();
+      try {
+        for (Future<ImmutableList<Result>> future : futures) {
+          if (rejected.contains(future)) {
+            ((FutureTask<ImmutableList<Result>>) future).run();
+          }
+          ImmutableList<Result> chunkResults = getChecked(future);
+          results.addAll(chunkResults);
+          Result last = Iterables.getLast(chunkResults);
+          if (!last.isValid()) {
+            cmd.setResult(REJECTED_OTHER_REASON, last.rejection().get());
+            break;
+          }
+        }
+      } finally {
+        // Commits after the first invalid commit don't need to be validated anymore.
+        futures.forEach(f -> f.cancel(false));
+      }
+      return results.build();
+    }
+  }
+
+  private ImmutableList<Result> validateChunk(
+      Repository repository,
+      ReceiveCommand cmd,
+      List<RevCommit> chunk,
+      ImmutableListMultimap<String, String> pushOptions,
+      boolean isMerged,
+      boolean skipValidation)
+      throws IOException {
+    PermissionBackend.ForProject chunkPermissions =
+        permissionBackend.user(user).project(project.getNameKey());
+    ImmutableList.Builder<Result> results = ImmutableList.builder();
+    try (ObjectReader reader = repository.newObjectReader();
+        RevWalk rw = new RevWalk(reader)) {
+      NoteMap rejectCommits = BanCommit.loadRejectCommitsMap(repository, rw);
+      for (RevCommit commit : chunk) {
+        Result result =
+            validate(
+                chunkPermissions,
+                repository,
+                reader,
+                cmd,
+                commit,
+                pushOptions,
+                isMerged,
+                rejectCommits,
+                null,
+                skipValidation);
+        results.add(result);
+        if (!result.isValid()) {
+          break;
+        }
+      }
+    }
+    return results.build();
+  }
+
+  private static <T> T getChecked(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while validating commits");
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new StorageException(e.getCause());
+    }
+  }
+
+  /** Validates a single commit without updating the result of the command. */
+  private Result validate(
+      PermissionBackend.ForProject permissions,
+      Repository repository,
+      ObjectReader objectReader,
+      ReceiveCommand cmd,
+      RevCommit commit,
+      ImmutableListMultimap<String, String> pushOptions,
+      boolean isMerged,
+      NoteMap rejectCommits,
+      @Nullable Change change,
+      boolean skipValidation)
+      throws IOException {
     try (TraceTimer traceTimer = TraceContext.newTimer("BranchCommitValidator#validateCommit")) {
       ImmutableList.Builder<CommitValidationMessage> messages = new ImmutableList.Builder<>();
       try (CommitReceivedEvent receiveEvent =
@@ -186,11 +376,10 @@ public class BranchCommitValidator {
               new CommitValidationMessage(
                   messageForCommit(commit, m.getMessage(), objectReader), m.getType()));
         }
-        cmd.setResult(
-            REJECTED_OTHER_REASON, messageForCommit(commit, e.getMessage(), objectReader));
-        return Result.create(false, messages.build());
+        return Result.invalid(
+            messages.build(), messageForCommit(commit, e.getMessage(), objectReader));
       }
-      return Result.create(true, messages.build());
+      return Result.valid(messages.build());
     }
   }
 
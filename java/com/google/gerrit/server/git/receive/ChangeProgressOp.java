@@ -14,22 +14,38 @@
 
 package com.google.gerrit.server.git.receive;
 
+import com.google.gerrit.entities.Change;
 import com.google.gerrit.server.update.BatchUpdateOp;
 import com.google.gerrit.server.update.ChangeContext;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.jgit.lib.ProgressMonitor;
 
 /** Trivial op to update a counter during {@code updateChange} */
 class ChangeProgressOp implements BatchUpdateOp {
   private final ProgressMonitor progress;
+  private final Set<Change.Id> counted;
 
   ChangeProgressOp(ProgressMonitor progress) {
+    this(progress, ConcurrentHashMap.newKeySet());
+  }
+
+  /**
+   * @param progress counter to update.
+   * @param counted changes that were counted already. Sharing it between the ops of all attempts of
+   *     a retried update counts each change only once.
+   */
+  ChangeProgressOp(ProgressMonitor progress, Set<Change.Id> counted) {
     this.progress = progress;
+    this.counted = counted;
   }
 
   @Override
   public boolean updateChange(ChangeContext ctx) {
-    synchronized (progress) {
-      progress.update(1);
+    if (counted.add(ctx.getChange().getId())) {
+      synchronized (progress) {
+        progress.update(1);
+      }
     }
     return false;
   }
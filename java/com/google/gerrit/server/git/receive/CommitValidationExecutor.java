@@ -0,0 +1,59 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git.receive;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Executor on which the commits of a push are validated concurrently.
+ *
+ * <p>Disabled unless {@code receive.commitValidationThreads} is set to a value greater than 1.
+ * While disabled, the commits of a push are validated one by one on the thread that processes the
+ * push. Validating concurrently requires all commit validators, including the ones of plugins, to
+ * be thread-safe.
+ */
+@Singleton
+class CommitValidationExecutor {
+  private final int threads;
+  @Nullable private final ExecutorService executor;
+
+  @Inject
+  CommitValidationExecutor(@GerritServerConfig Config cfg, WorkQueue workQueue) {
+    threads = Math.max(1, cfg.getInt("receive", null, "commitValidationThreads", 1));
+    executor = threads > 1 ? workQueue.createQueue(threads, "CommitValidation", true) : null;
+  }
+
+  /** Whether commits should be validated concurrently. */
+  boolean isEnabled() {
+    return executor != null;
+  }
+
+  /** Returns the maximum number of commits of a push that are validated concurrently. */
+  int parallelism() {
+    return threads;
+  }
+
+  <T> Future<T> submit(Callable<T> task) {
+    return executor.submit(task);
+  }
+}
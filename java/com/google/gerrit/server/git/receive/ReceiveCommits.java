@@ -45,6 +45,7 @@ import static org.eclipse.jgit.transport.ReceiveCommand.Result.REJECTED_OTHER_RE
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.BiMap;
@@ -77,7 +78,6 @@ import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.PatchSetInfo;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.RefNames;
-import com.google.gerrit.entities.SubmissionId;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.extensions.api.changes.HashtagsInput;
 import com.google.gerrit.extensions.api.changes.NotifyHandling;
@@ -105,6 +105,7 @@ import com.google.gerrit.metrics.Counter0;
 import com.google.gerrit.metrics.Counter3;
 import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.Histogram0;
 import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.server.CancellationMetrics;
 import com.google.gerrit.server.ChangeUtil;
@@ -126,7 +127,6 @@ import com.google.gerrit.server.change.AttentionSetUnchangedOp;
 import com.google.gerrit.server.change.ChangeInserter;
 import com.google.gerrit.server.change.NotifyResolver;
 import com.google.gerrit.server.change.SetHashtagsOp;
-import com.google.gerrit.server.change.SetPrivateOp;
 import com.google.gerrit.server.change.SetTopicOp;
 import com.google.gerrit.server.config.AllProjectsName;
 import com.google.gerrit.server.config.GerritServerConfig;
@@ -138,12 +138,12 @@ import com.google.gerrit.server.edit.ChangeEditUtil;
 import com.google.gerrit.server.git.BanCommit;
 import com.google.gerrit.server.git.ChangeReportFormatter;
 import com.google.gerrit.server.git.GroupCollector;
-import com.google.gerrit.server.git.MergedByPushOp;
 import com.google.gerrit.server.git.MultiProgressMonitor;
 import com.google.gerrit.server.git.MultiProgressMonitor.Task;
 import com.google.gerrit.server.git.ReceivePackInitializer;
 import com.google.gerrit.server.git.TagCache;
 import com.google.gerrit.server.git.ValidationError;
+import com.google.gerrit.server.git.WorkQueue;
 import com.google.gerrit.server.git.validators.CommentCountValidator;
 import com.google.gerrit.server.git.validators.CommentSizeValidator;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
@@ -187,7 +187,6 @@ import com.google.gerrit.server.update.ChangeContext;
 import com.google.gerrit.server.update.PostUpdateContext;
 import com.google.gerrit.server.update.RepoContext;
 import com.google.gerrit.server.update.RepoOnlyOp;
-import com.google.gerrit.server.update.RetryHelper;
 import com.google.gerrit.server.update.SubmissionExecutor;
 import com.google.gerrit.server.update.SubmissionListener;
 import com.google.gerrit.server.update.SuperprojectUpdateOnSubmission;
@@ -225,6 +224,7 @@ import java.util.TreeSet;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -323,9 +323,10 @@ class ReceiveCommits {
   }
 
   @Singleton
-  private static class Metrics {
-    private final Counter0 psRevisionMissing;
+  static class Metrics {
+    final Counter0 psRevisionMissing;
     private final Counter3<String, String, String> pushCount;
+    private final Histogram0 refDbReadsSaved;
 
     @Inject
     Metrics(MetricMaker metricMaker) {
@@ -350,6 +351,14 @@ class ReceiveCommits {
                       "The type of the update (CREATE, UPDATE, CREATE/UPDATE,"
                           + " UPDATE_NONFASTFORWARD, DELETE).")
                   .build());
+      refDbReadsSaved =
+          metricMaker.newHistogram(
+              "receivecommits/ref_cache/refdb_reads_saved",
+              new Description(
+                      "Number of ref lookups of a single push that were answered from the"
+                          + " in-memory ref cache instead of the ref database")
+                  .setCumulative()
+                  .setUnit("reads"));
     }
   }
 
@@ -360,6 +369,7 @@ class ReceiveCommits {
   // Injected fields.
   private final AccountResolver accountResolver;
   private final AllProjectsName allProjectsName;
+  private final AutoCloser.Factory autoCloserFactory;
   private final BatchUpdate.Factory batchUpdateFactory;
   private final CancellationMetrics cancellationMetrics;
   private final ChangeEditUtil editUtil;
@@ -378,7 +388,6 @@ class ReceiveCommits {
   private final DynamicMap<ProjectConfigEntry> pluginConfigEntries;
   private final DynamicSet<PluginPushOption> pluginPushOptions;
   private final PluginSetContext<ReceivePackInitializer> initializers;
-  private final MergedByPushOp.Factory mergedByPushOpFactory;
   private final Metrics metrics;
   private final PatchSetInfoFactory patchSetInfoFactory;
   private final PatchSetUtil psUtil;
@@ -393,7 +402,6 @@ class ReceiveCommits {
   private final ReplaceOp.Factory replaceOpFactory;
   private final PluginSetContext<RequestListener> requestListeners;
   private final PublishCommentsOp.Factory publishCommentsOp;
-  private final RetryHelper retryHelper;
   private final RequestScopePropagator requestScopePropagator;
   private final Sequences seq;
   private final SetHashtagsOp.Factory hashtagsFactory;
@@ -401,10 +409,10 @@ class ReceiveCommits {
   private final ImmutableList<SubmissionListener> superprojectUpdateSubmissionListeners;
   private final TagCache tagCache;
   private final ProjectConfig.Factory projectConfigFactory;
-  private final SetPrivateOp.Factory setPrivateOpFactory;
   private final ReplyAttentionSetUpdates replyAttentionSetUpdates;
   private final DynamicItem<UrlFormatter> urlFormatter;
   private final AutoMerger autoMerger;
+  private final WorkQueue workQueue;
 
   // Assisted injected fields.
   private final ProjectState projectState;
@@ -441,6 +449,9 @@ class ReceiveCommits {
   private ImmutableMap<String, String> loggingTags;
   private ImmutableList<String> transitionalPluginOptions;
 
+  /** Auto-close work that exceeded {@code receive.autoCloseTimeout}; continued after the push. */
+  private final List<Runnable> deferredAutoClose = new ArrayList<>();
+
   /** This object is for single use only. */
   private boolean used;
 
@@ -448,6 +459,7 @@ class ReceiveCommits {
   ReceiveCommits(
       AccountResolver accountResolver,
       AllProjectsName allProjectsName,
+      AutoCloser.Factory autoCloserFactory,
       BatchUpdate.Factory batchUpdateFactory,
       CancellationMetrics cancellationMetrics,
       ProjectConfig.Factory projectConfigFactory,
@@ -467,7 +479,6 @@ class ReceiveCommits {
       DynamicSet<PluginPushOption> pluginPushOptions,
       PluginSetContext<ReceivePackInitializer> initializers,
       PluginSetContext<CommentValidator> commentValidators,
-      MergedByPushOp.Factory mergedByPushOpFactory,
       Metrics metrics,
       PatchSetInfoFactory patchSetInfoFactory,
       PatchSetUtil psUtil,
@@ -482,7 +493,6 @@ class ReceiveCommits {
       RefOperationValidators.Factory refValidatorsFactory,
       ReplaceOp.Factory replaceOpFactory,
       PluginSetContext<RequestListener> requestListeners,
-      RetryHelper retryHelper,
       RequestScopePropagator requestScopePropagator,
       Sequences seq,
       SetHashtagsOp.Factory hashtagsFactory,
@@ -490,10 +500,10 @@ class ReceiveCommits {
       @SuperprojectUpdateOnSubmission
           ImmutableList<SubmissionListener> superprojectUpdateSubmissionListeners,
       TagCache tagCache,
-      SetPrivateOp.Factory setPrivateOpFactory,
       ReplyAttentionSetUpdates replyAttentionSetUpdates,
       DynamicItem<UrlFormatter> urlFormatter,
       AutoMerger autoMerger,
+      WorkQueue workQueue,
       @Assisted ProjectState projectState,
       @Assisted IdentifiedUser user,
       @Assisted ReceivePack rp,
@@ -504,6 +514,7 @@ class ReceiveCommits {
     // Injected fields.
     this.accountResolver = accountResolver;
     this.allProjectsName = allProjectsName;
+    this.autoCloserFactory = autoCloserFactory;
     this.batchUpdateFactory = batchUpdateFactory;
     this.cancellationMetrics = cancellationMetrics;
     this.changeFormatter = changeFormatterProvider.get();
@@ -521,7 +532,6 @@ class ReceiveCommits {
     this.indexer = indexer;
     this.initializers = initializers;
     this.mergeOpProvider = mergeOpProvider;
-    this.mergedByPushOpFactory = mergedByPushOpFactory;
     this.notesFactory = notesFactory;
     this.optionParserFactory = optionParserFactory;
     this.ormProvider = ormProvider;
@@ -539,15 +549,14 @@ class ReceiveCommits {
     this.refValidatorsFactory = refValidatorsFactory;
     this.replaceOpFactory = replaceOpFactory;
     this.requestListeners = requestListeners;
-    this.retryHelper = retryHelper;
     this.requestScopePropagator = requestScopePropagator;
     this.seq = seq;
     this.superprojectUpdateSubmissionListeners = superprojectUpdateSubmissionListeners;
     this.tagCache = tagCache;
     this.projectConfigFactory = projectConfigFactory;
-    this.setPrivateOpFactory = setPrivateOpFactory;
     this.replyAttentionSetUpdates = replyAttentionSetUpdates;
     this.urlFormatter = urlFormatter;
+    this.workQueue = workQueue;
     this.autoMerger = autoMerger;
 
     // Assisted injected fields.
@@ -712,10 +721,16 @@ class ReceiveCommits {
       sendErrorMessages();
 
       commandProgress.end();
+      metrics.refDbReadsSaved.record(receivePackRefCache.lookups());
       loggingTags = traceContext.getTags();
       logger.atFine().log("Processing commands done.");
     }
     progress.end();
+    for (Runnable r : deferredAutoClose) {
+      @SuppressWarnings("unused")
+      Future<?> possiblyIgnoredError =
+          workQueue.getDefaultQueue().submit(requestScopePropagator.wrap(r));
+    }
     return result.build();
   }
 
@@ -2311,6 +2326,11 @@ class ReceiveCommits {
         } else {
           mergedParents = null;
         }
+        // If commits are validated in parallel, they are collected during the walk and validated
+        // in one go afterwards. Checks during the walk that reject the push first validate the
+        // commits collected so far, so that the push gets the same error as with serial validation.
+        List<RevCommit> toValidate =
+            validator.isParallelValidationEnabled() ? new ArrayList<>() : null;
 
         for (; ; ) {
           RevCommit c = receivePack.getRevWalk().next();
@@ -2353,14 +2373,20 @@ class ReceiveCommits {
           }
 
           List<String> idList = ChangeUtil.getChangeIdsFromFooter(c, urlFormatter.get());
-          if (!idList.isEmpty()) {
-            pending.put(c, lookupByChangeKey(c, Change.key(idList.get(idList.size() - 1).trim())));
-          } else {
-            pending.put(c, lookupByCommit(c));
-          }
+          ChangeLookup lookup =
+              new ChangeLookup(
+                  c,
+                  idList.isEmpty() ? null : Change.key(idList.get(idList.size() - 1).trim()));
+          pending.put(c, lookup);
 
           int n = pending.size() + newChanges.size();
           if (maxBatchChanges != 0 && n > maxBatchChanges) {
+            if (toValidate != null
+                && !validateCommitsInParallel(
+                    validator, magicBranch.cmd, toValidate, magicBranch.merged, false)) {
+              logger.atFine().log("Aborting due to invalid commit");
+              return ImmutableList.of();
+            }
             logger.atFine().log("%d changes exceeds limit of %d", n, maxBatchChanges);
             reject(
                 magicBranch.cmd,
@@ -2369,8 +2395,10 @@ class ReceiveCommits {
           }
 
           if (commitAlreadyTracked) {
+            // Other lookups are deferred until the end of the walk, but this one is needed now.
+            lookupChanges(ImmutableList.of(lookup));
             boolean changeExistsOnDestBranch = false;
-            for (ChangeData cd : pending.get(c).destChanges) {
+            for (ChangeData cd : lookup.destChanges) {
               if (cd.change().getDest().equals(magicBranch.dest)) {
                 changeExistsOnDestBranch = true;
                 break;
@@ -2384,25 +2412,39 @@ class ReceiveCommits {
                 "Creating new change for %s even though it is already tracked", name);
           }
 
-          BranchCommitValidator.Result validationResult =
-              validator.validateCommit(
-                  repo,
-                  receivePack.getRevWalk().getObjectReader(),
-                  magicBranch.cmd,
-                  c,
-                  ImmutableListMultimap.copyOf(pushOptions),
-                  magicBranch.merged,
-                  rejectCommits,
-                  null);
-          messages.addAll(validationResult.messages());
-          if (!validationResult.isValid()) {
-            // Not a change the user can propose? Abort as early as possible.
-            logger.atFine().log("Aborting early due to invalid commit");
-            return ImmutableList.of();
+          if (toValidate != null) {
+            toValidate.add(c);
+          } else {
+            BranchCommitValidator.Result validationResult =
+                validator.validateCommit(
+                    repo,
+                    receivePack.getRevWalk().getObjectReader(),
+                    magicBranch.cmd,
+                    c,
+                    ImmutableListMultimap.copyOf(pushOptions),
+                    magicBranch.merged,
+                    rejectCommits,
+                    null);
+            messages.addAll(validationResult.messages());
+            if (!validationResult.isValid()) {
+              // Not a change the user can propose? Abort as early as possible.
+              logger.atFine().log("Aborting early due to invalid commit");
+              return ImmutableList.of();
+            }
           }
 
           // Don't allow merges to be uploaded in commit chain via all-not-in-target
           if (newChangeForAllNotInTarget && c.getParentCount() > 1) {
+            if (toValidate != null) {
+              boolean valid =
+                  validateCommitsInParallel(
+                      validator, magicBranch.cmd, toValidate, magicBranch.merged, false);
+              toValidate.clear();
+              if (!valid) {
+                logger.atFine().log("Aborting due to invalid commit");
+                return ImmutableList.of();
+              }
+            }
             reject(
                 magicBranch.cmd,
                 "Pushing merges in commit chains with 'all not in target' is not allowed,\n"
@@ -2422,6 +2464,15 @@ class ReceiveCommits {
                 + " lookups",
             total, alreadyTracked, newChanges.size(), pending.size());
 
+        if (toValidate != null
+            && !validateCommitsInParallel(
+                validator, magicBranch.cmd, toValidate, magicBranch.merged, false)) {
+          logger.atFine().log("Aborting due to invalid commit");
+          return ImmutableList.of();
+        }
+
+        lookupChanges(pending.values());
+
         if (rejectImplicitMerges) {
           rejectImplicitMerges(mergedParents);
         }
@@ -2661,29 +2712,60 @@ class ReceiveCommits {
     final RevCommit commit;
 
     @Nullable final Change.Key changeKey;
-    final List<ChangeData> destChanges;
 
-    ChangeLookup(RevCommit c, @Nullable Change.Key key, final List<ChangeData> destChanges) {
+    /** Changes on the destination branch; null until looked up by {@code lookupChanges}. */
+    List<ChangeData> destChanges;
+
+    ChangeLookup(RevCommit c, @Nullable Change.Key key) {
       this.commit = c;
       this.changeKey = key;
-      this.destChanges = destChanges;
     }
   }
 
-  private ChangeLookup lookupByChangeKey(RevCommit c, Change.Key key) {
-    try (TraceTimer traceTimer = newTimer("lookupByChangeKey")) {
-      List<ChangeData> byBranchKeyExactMatch =
-          queryProvider.get().byBranchKey(magicBranch.dest, key).stream()
-              .filter(cd -> cd.change().getKey().equals(key))
-              .collect(toList());
-      return new ChangeLookup(c, key, byBranchKeyExactMatch);
+  /**
+   * Looks up the existing changes on the destination branch for the given commits, by Change-Id
+   * if the commit has one and by commit otherwise.
+   *
+   * <p>All lookups that weren't done yet are resolved with a single batch of index queries, rather
+   * than one query per commit.
+   */
+  private void lookupChanges(Collection<ChangeLookup> lookups) {
+    List<ChangeLookup> todo =
+        lookups.stream().filter(l -> l.destChanges == null).collect(toList());
+    if (todo.isEmpty()) {
+      return;
     }
-  }
+    try (TraceTimer traceTimer =
+        newTimer("lookupChanges", Metadata.builder().resourceCount(todo.size()))) {
+      Set<Change.Key> keys = new HashSet<>();
+      Set<String> commits = new HashSet<>();
+      for (ChangeLookup l : todo) {
+        if (l.changeKey != null) {
+          keys.add(l.changeKey);
+        } else {
+          commits.add(l.commit.name());
+        }
+      }
 
-  private ChangeLookup lookupByCommit(RevCommit c) {
-    try (TraceTimer traceTimer = newTimer("lookupByCommit")) {
-      return new ChangeLookup(
-          c, null, queryProvider.get().byBranchCommit(magicBranch.dest, c.getName()));
+      ListMultimap<Change.Key, ChangeData> byKey =
+          MultimapBuilder.hashKeys().arrayListValues().build();
+      ListMultimap<String, ChangeData> byCommit =
+          MultimapBuilder.hashKeys().arrayListValues().build();
+      for (ChangeData cd :
+          queryProvider.get().byBranchKeysOrCommits(magicBranch.dest, keys, commits)) {
+        byKey.put(cd.change().getKey(), cd);
+        if (!commits.isEmpty()) {
+          cd.patchSets().stream()
+              .map(ps -> ps.commitId().name())
+              .filter(commits::contains)
+              .distinct()
+              .forEach(name -> byCommit.put(name, cd));
+        }
+      }
+      for (ChangeLookup l : todo) {
+        l.destChanges =
+            l.changeKey != null ? byKey.get(l.changeKey) : byCommit.get(l.commit.name());
+      }
     }
   }
 
@@ -2833,7 +2915,8 @@ class ReceiveCommits {
         submitInput.notifyDetails.put(
             RecipientType.BCC,
             new NotifyInfo(magicBranch.notifyBcc.stream().map(Object::toString).collect(toList())));
-        op.merge(tipChange, user, false, submitInput, false);
+        op.setRequestScopePropagator(requestScopePropagator)
+            .merge(tipChange, user, false, submitInput, false);
       }
     }
   }
@@ -2869,12 +2952,11 @@ class ReceiveCommits {
     }
   }
 
-  private void readChangesForReplace() {
+  private void readChangesForReplace() throws IOException {
     try (TraceTimer traceTimer = newTimer("readChangesForReplace")) {
-      replaceByChange.values().stream()
-          .map(r -> r.ontoChange)
-          .map(id -> notesFactory.create(repo, project.getNameKey(), id))
-          .forEach(notes -> replaceByChange.get(notes.getChangeId()).notes = notes);
+      notesFactory
+          .createAll(repo, project.getNameKey(), replaceByChange.keySet())
+          .forEach((id, notes) -> replaceByChange.get(id).notes = notes);
     }
   }
 
@@ -2958,15 +3040,6 @@ class ReceiveCommits {
       }
     }
 
-    boolean validateNewPatchSetForAutoClose() throws IOException, PermissionBackendException {
-      if (!validateNewPatchSetNoteDb()) {
-        return false;
-      }
-
-      newPatchSet();
-      return true;
-    }
-
     /** Validates the new PS against permissions and notedb status. */
     private boolean validateNewPatchSetNoteDb() throws IOException, PermissionBackendException {
       try (TraceTimer traceTimer = newTimer("validateNewPatchSetNoteDb")) {
@@ -3206,6 +3279,7 @@ class ReceiveCommits {
                 // their auto merge commits created there.
                 Optional<ReceiveCommand> autoMerge =
                     autoMerger.createAutoMergeCommitIfNecessary(
+                        ctx.getProject(),
                         ctx.getRepoView(),
                         ctx.getRevWalk(),
                         ctx.getInserter(),
@@ -3403,11 +3477,19 @@ class ReceiveCommits {
         markHeadsAsUninteresting(walk, cmd.getRefName());
         int limit = receiveConfig.maxBatchCommits;
         int n = 0;
+        // If commits are validated in parallel, they are collected first and validated in one go.
+        List<RevCommit> toValidate =
+            validator.isParallelValidationEnabled() ? new ArrayList<>() : null;
         for (RevCommit c; (c = walk.next()) != null; ) {
           // Even if skipValidation is set, we still get here when at least one plugin
           // commit validator requires to validate all commits. In this case, however,
           // we don't need to check the commit limit.
           if (++n > limit && !skipValidation) {
+            if (toValidate != null
+                && !validateCommitsInParallel(
+                    validator, cmd, toValidate, false, skipValidation)) {
+              return;
+            }
             logger.atFine().log("Number of new commits exceeds limit of %d", limit);
             reject(
                 cmd,
@@ -3418,6 +3500,10 @@ class ReceiveCommits {
           if (!receivePackRefCache.patchSetIdsFromObjectId(c).isEmpty()) {
             continue;
           }
+          if (toValidate != null) {
+            toValidate.add(c);
+            continue;
+          }
 
           BranchCommitValidator.Result validationResult =
               validator.validateCommit(
@@ -3435,6 +3521,9 @@ class ReceiveCommits {
             break;
           }
         }
+        if (toValidate != null) {
+          validateCommitsInParallel(validator, cmd, toValidate, false, skipValidation);
+        }
         logger.atFine().log("Validated %d new commits", n);
       } catch (IOException err) {
         cmd.setResult(REJECTED_MISSING_OBJECT);
@@ -3444,160 +3533,102 @@ class ReceiveCommits {
     }
   }
 
+  /**
+   * Validates the given commits concurrently.
+   *
+   * <p>On validation failure, the command is rejected.
+   *
+   * @return whether all commits are valid.
+   */
+  private boolean validateCommitsInParallel(
+      BranchCommitValidator validator,
+      ReceiveCommand cmd,
+      List<RevCommit> commits,
+      boolean isMerged,
+      boolean skipValidation)
+      throws IOException {
+    ImmutableList<BranchCommitValidator.Result> results =
+        validator.validateCommits(
+            repo,
+            cmd,
+            commits,
+            ImmutableListMultimap.copyOf(pushOptions),
+            isMerged,
+            skipValidation);
+    results.forEach(r -> messages.addAll(r.messages()));
+    return results.stream().allMatch(BranchCommitValidator.Result::isValid);
+  }
+
   private void autoCloseChanges(ReceiveCommand cmd, Task progress) {
     try (TraceTimer traceTimer = newTimer("autoCloseChanges")) {
       logger.atFine().log("Starting auto-closing of changes");
-      String refName = cmd.getRefName();
-      Set<Change.Id> ids = new HashSet<>();
-
-      // TODO(dborowitz): Combine this BatchUpdate with the main one in
-      // handleRegularCommands
-      try {
-        retryHelper
-            .changeUpdate(
-                "autoCloseChanges",
-                updateFactory -> {
-                  try (BatchUpdate bu =
-                          updateFactory.create(projectState.getNameKey(), user, TimeUtil.now());
-                      ObjectInserter ins = repo.newObjectInserter();
-                      ObjectReader reader = ins.newReader();
-                      RevWalk rw = new RevWalk(reader)) {
-                    if (ObjectId.zeroId().equals(cmd.getOldId())) {
-                      // The user is creating a new branch. The branch can't contain any changes, so
-                      // auto-closing doesn't apply. Exiting here early to spare any further,
-                      // potentially expensive computation that loop over all commits.
-                      return null;
-                    }
-
-                    bu.setRepository(repo, rw, ins);
-                    // TODO(dborowitz): Teach BatchUpdate to ignore missing changes.
-
-                    RevCommit newTip = rw.parseCommit(cmd.getNewId());
-                    BranchNameKey branch = BranchNameKey.create(project.getNameKey(), refName);
-
-                    rw.reset();
-                    rw.sort(RevSort.REVERSE);
-                    rw.markStart(newTip);
-                    rw.markUninteresting(rw.parseCommit(cmd.getOldId()));
-
-                    Map<Change.Key, ChangeData> changeDataByKey = null;
-                    List<ReplaceRequest> replaceAndClose = new ArrayList<>();
-
-                    int existingPatchSets = 0;
-                    int newPatchSets = 0;
-                    SubmissionId submissionId = null;
-                    COMMIT:
-                    for (RevCommit c; (c = rw.next()) != null; ) {
-                      rw.parseBody(c);
-
-                      // Check if change refs point to this commit. Usually there are 0-1 change
-                      // refs pointing to this commit.
-                      for (PatchSet.Id psId :
-                          receivePackRefCache.patchSetIdsFromObjectId(c.copy())) {
-                        Optional<ChangeNotes> notes = getChangeNotes(psId.changeId());
-                        if (notes.isPresent() && notes.get().getChange().getDest().equals(branch)) {
-                          if (submissionId == null) {
-                            submissionId = new SubmissionId(notes.get().getChange());
-                          }
-                          existingPatchSets++;
-                          bu.addOp(
-                              notes.get().getChangeId(), setPrivateOpFactory.create(false, null));
-                          bu.addOp(
-                              psId.changeId(),
-                              mergedByPushOpFactory.create(
-                                  requestScopePropagator,
-                                  psId,
-                                  submissionId,
-                                  refName,
-                                  newTip.getId().getName()));
-                          continue COMMIT;
-                        }
-                      }
-
-                      for (String changeId :
-                          ChangeUtil.getChangeIdsFromFooter(c, urlFormatter.get())) {
-                        if (changeDataByKey == null) {
-                          changeDataByKey =
-                              retryHelper
-                                  .changeIndexQuery(
-                                      "queryOpenChangesByKeyByBranch",
-                                      q -> openChangesByKeyByBranch(q, branch))
-                                  .call();
-                        }
-
-                        ChangeData onto = changeDataByKey.get(Change.key(changeId.trim()));
-                        if (onto != null) {
-                          newPatchSets++;
-                          // Hold onto this until we're done with the walk, as the call to
-                          // req.validate below calls isMergedInto which resets the walk.
-                          ChangeNotes ontoNotes = onto.notes();
-                          ReplaceRequest req =
-                              new ReplaceRequest(ontoNotes.getChangeId(), c, cmd, false);
-                          req.notes = ontoNotes;
-                          replaceAndClose.add(req);
-                          continue COMMIT;
-                        }
-                      }
-                    }
-
-                    for (ReplaceRequest req : replaceAndClose) {
-                      Change.Id id = req.notes.getChangeId();
-                      if (!req.validateNewPatchSetForAutoClose()) {
-                        logger.atFine().log("Not closing %s because validation failed", id);
-                        continue;
-                      }
-                      if (submissionId == null) {
-                        submissionId = new SubmissionId(req.notes.getChange());
-                      }
-                      req.addOps(bu, null);
-                      bu.addOp(id, setPrivateOpFactory.create(false, null));
-                      bu.addOp(
-                          id,
-                          mergedByPushOpFactory
-                              .create(
-                                  requestScopePropagator,
-                                  req.psId,
-                                  submissionId,
-                                  refName,
-                                  newTip.getId().getName())
-                              .setPatchSetProvider(req.replaceOp::getPatchSet));
-                      bu.addOp(id, new ChangeProgressOp(progress));
-                      ids.add(id);
-                    }
-
-                    logger.atFine().log(
-                        "Auto-closing %d changes with existing patch sets and %d with new patch"
-                            + " sets",
-                        existingPatchSets, newPatchSets);
-                    bu.execute();
-                  } catch (IOException | StorageException | PermissionBackendException e) {
-                    throw new StorageException("Failed to auto-close changes", e);
-                  }
+      if (ObjectId.zeroId().equals(cmd.getOldId())) {
+        // The user is creating a new branch. The branch can't contain any changes, so auto-closing
+        // doesn't apply. Exiting here early to spare any further, potentially expensive
+        // computation that loop over all commits.
+        return;
+      }
 
-                  // If we are here, we didn't throw UpdateException. Record the result.
-                  // The ordering is indeterminate due to the HashSet; unfortunately, Change.Id
-                  // doesn't
-                  // fit into TreeSet.
-                  ids.stream()
-                      .forEach(
-                          id -> result.addChange(ReceiveCommitsResult.ChangeStatus.AUTOCLOSED, id));
-
-                  return null;
-                })
-            // Use a multiple of the default timeout to account for inner retries that may otherwise
-            // eat up the whole timeout so that no time is left to retry this outer action.
-            .defaultTimeoutMultiplier(5)
-            .call();
-      } catch (RestApiException e) {
-        logger.atSevere().withCause(e).log("Can't insert patchset");
-      } catch (UpdateException e) {
+      // Only the IDs of the new commits are kept in memory. Their bodies are parsed batch by batch
+      // when the changes of a batch are closed.
+      List<ObjectId> commits = new ArrayList<>();
+      try (RevWalk rw = new RevWalk(repo)) {
+        rw.setRetainBody(false);
+        rw.sort(RevSort.REVERSE);
+        rw.markStart(rw.parseCommit(cmd.getNewId()));
+        rw.markUninteresting(rw.parseCommit(cmd.getOldId()));
+        for (RevCommit c; (c = rw.next()) != null; ) {
+          commits.add(c.copy());
+        }
+      } catch (IOException e) {
         logger.atSevere().withCause(e).log("Failed to auto-close changes");
-      } finally {
-        logger.atFine().log("Done auto-closing changes");
+        return;
       }
+
+      AutoCloser autoCloser = autoCloserFactory.create(projectState, user);
+      AutoCloser.Request request =
+          new AutoCloser.Request(
+              BranchNameKey.create(project.getNameKey(), cmd.getRefName()),
+              cmd.getNewId(),
+              receivePack.getPushCertificate());
+      List<List<ObjectId>> batches = Lists.partition(commits, receiveConfig.autoCloseBatchSize);
+      Stopwatch sw = Stopwatch.createStarted();
+      for (int i = 0; i < batches.size(); i++) {
+        if (i > 0
+            && receiveConfig.autoCloseTimeoutMillis > 0
+            && sw.elapsed(TimeUnit.MILLISECONDS) > receiveConfig.autoCloseTimeoutMillis) {
+          deferAutoClose(autoCloser, request, batches.subList(i, batches.size()));
+          break;
+        }
+        autoCloser
+            .closeBatch(repo, receivePackRefCache, cmd, request, batches.get(i), progress)
+            .forEach(id -> result.addChange(ReceiveCommitsResult.ChangeStatus.AUTOCLOSED, id));
+      }
+      logger.atFine().log("Done auto-closing changes");
     }
   }
 
+  /**
+   * Hands the remaining batches of an auto-close that exceeded {@code receive.autoCloseTimeout}
+   * over to the background.
+   *
+   * <p>The batches are processed once all commands of the push were processed. The background task
+   * only captures the auto-closer, the request and the commit IDs, so that it doesn't retain the
+   * state of the push.
+   */
+  private void deferAutoClose(
+      AutoCloser autoCloser, AutoCloser.Request request, List<List<ObjectId>> batches) {
+    int remaining = batches.stream().mapToInt(List::size).sum();
+    addMessage(
+        String.format(
+            "Auto-closing changes of %d more commits on %s continues in the background;"
+                + " the changes closed in the background are not listed here",
+            remaining, request.branch.shortName()));
+    logger.atInfo().log(
+        "Deferring auto-closing of changes for %d commits on %s", remaining, request.branch);
+    deferredAutoClose.add(autoCloser.inBackground(request, batches));
+  }
+
   private Optional<ChangeNotes> getChangeNotes(Change.Id changeId) {
     try {
       return Optional.of(notesFactory.createChecked(project.getNameKey(), changeId));
@@ -3606,25 +3637,6 @@ class ReceiveCommits {
     }
   }
 
-  private Map<Change.Key, ChangeData> openChangesByKeyByBranch(
-      InternalChangeQuery internalChangeQuery, BranchNameKey branch) {
-    try (TraceTimer traceTimer =
-        newTimer("openChangesByKeyByBranch", Metadata.builder().branchName(branch.branch()))) {
-      Map<Change.Key, ChangeData> r = new HashMap<>();
-      for (ChangeData cd : internalChangeQuery.byBranchOpen(branch)) {
-        try {
-          // ChangeData is not materialised into a ChangeNotes for avoiding
-          // to load a potentially large number of changes meta-data into memory
-          // which would cause unnecessary disk I/O, CPU and heap utilisation.
-          r.put(cd.change().getKey(), cd);
-        } catch (NoSuchChangeException e) {
-          // Ignore deleted change
-        }
-      }
-      return r;
-    }
-  }
-
   private TraceTimer newTimer(String name) {
     return newTimer(getClass(), name);
   }
@@ -18,9 +18,11 @@ import static com.google.gerrit.common.data.GlobalCapability.BATCH_CHANGES_LIMIT
 
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.account.AccountLimits;
+import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jgit.lib.Config;
 
 @Singleton
@@ -28,6 +30,8 @@ class ReceiveConfig {
   final boolean checkMagicRefs;
   final boolean checkReferencedObjectsAreReachable;
   final int maxBatchCommits;
+  final int autoCloseBatchSize;
+  final long autoCloseTimeoutMillis;
   final boolean disablePrivateChanges;
   private final int systemMaxBatchChanges;
   private final AccountLimits.Factory limitsFactory;
@@ -38,6 +42,10 @@ class ReceiveConfig {
     checkReferencedObjectsAreReachable =
         config.getBoolean("receive", null, "checkReferencedObjectsAreReachable", true);
     maxBatchCommits = config.getInt("receive", null, "maxBatchCommits", 10000);
+    autoCloseBatchSize = Math.max(1, config.getInt("receive", null, "autoCloseBatchSize", 1000));
+    autoCloseTimeoutMillis =
+        ConfigUtil.getTimeUnit(
+            config, "receive", null, "autoCloseTimeout", 60_000, TimeUnit.MILLISECONDS);
     systemMaxBatchChanges = config.getInt("receive", "maxBatchChanges", 0);
     disablePrivateChanges = config.getBoolean("change", null, "disablePrivateChanges", false);
     this.limitsFactory = limitsFactory;
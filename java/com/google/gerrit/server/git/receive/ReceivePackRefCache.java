@@ -18,14 +18,14 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ListMultimap;
-import com.google.common.collect.MultimapBuilder;
-import com.google.gerrit.entities.Change;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.RefNames;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Objects;
+import java.util.SortedMap;
 import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
@@ -50,8 +50,9 @@ public interface ReceivePackRefCache {
 
   /**
    * Returns an instance that answers calls based on refs previously advertised and captured in
-   * {@link AllRefsWatcher}. Speeds up inverse lookups by building a {@code Map<ObjectId,
-   * List<Ref>>} and a {@code Map<Change.Id, List<Ref>>}.
+   * {@link AllRefsWatcher}, without reading from the ref database. Builds an immutable index of the
+   * refs by name, sorted to answer prefix lookups without scanning all refs, and of the patch set
+   * refs by {@link ObjectId} to answer inverse lookups.
    *
    * <p>This implementation speeds up lookups when the ref database does not support inverse ({@code
    * ObjectId} to name) lookups.
@@ -70,6 +71,11 @@ public interface ReceivePackRefCache {
   @Nullable
   Ref exactRef(String ref) throws IOException;
 
+  /** Returns the number of lookups that were answered without reading from the ref database. */
+  default int lookups() {
+    return 0;
+  }
+
   class NoCache implements ReceivePackRefCache {
     private final RefDatabase delegate;
 
@@ -98,17 +104,16 @@ public interface ReceivePackRefCache {
   }
 
   class WithAdvertisedRefs implements ReceivePackRefCache {
-    /** We estimate that a change has an average of 4 patch sets plus the meta ref. */
-    private static final int ESTIMATED_NUMBER_OF_REFS_PER_CHANGE = 5;
-
     private final Supplier<Map<String, Ref>> allRefsSupplier;
+    private int lookups;
 
-    // Collections lazily populated during processing.
+    // Indexes lazily built from the advertised refs on first use. Once built they are never
+    // modified, so all lookups of a push see the same snapshot of the refs.
     private Map<String, Ref> allRefs;
+    /** Contains all refs, sorted by name. */
+    private ImmutableSortedMap<String, Ref> refsByName;
     /** Contains only patch set refs. */
-    private ListMultimap<Change.Id, Ref> refsByChange;
-    /** Contains all refs. */
-    private ListMultimap<ObjectId, Ref> refsByObjectId;
+    private ImmutableListMultimap<ObjectId, PatchSet.Id> patchSetsByObjectId;
 
     private WithAdvertisedRefs(Supplier<Map<String, Ref>> allRefsSupplier) {
       this.allRefsSupplier = allRefsSupplier;
@@ -116,62 +121,56 @@ public interface ReceivePackRefCache {
 
     @Override
     public ImmutableList<PatchSet.Id> patchSetIdsFromObjectId(ObjectId id) {
-      lazilyInitRefMaps();
-      return refsByObjectId.get(id).stream()
-          .map(r -> PatchSet.Id.fromRef(r.getName()))
-          .filter(Objects::nonNull)
-          .collect(toImmutableList());
+      lookups++;
+      if (patchSetsByObjectId == null) {
+        ImmutableListMultimap.Builder<ObjectId, PatchSet.Id> b = ImmutableListMultimap.builder();
+        for (Ref ref : byPrefixUncounted(RefNames.REFS_CHANGES)) {
+          PatchSet.Id psId = PatchSet.Id.fromRef(ref.getName());
+          if (psId != null && ref.getObjectId() != null) {
+            b.put(ref.getObjectId(), psId);
+          }
+        }
+        patchSetsByObjectId = b.build();
+      }
+      return patchSetsByObjectId.get(id);
     }
 
     @Override
     public ImmutableList<Ref> byPrefix(String prefix) {
-      lazilyInitRefMaps();
-      if (RefNames.isRefsChanges(prefix)) {
-        Change.Id cId = Change.Id.fromRefPart(prefix);
-        if (cId != null) {
-          return refsByChange.get(cId).stream()
-              .filter(r -> r.getName().startsWith(prefix))
-              .collect(toImmutableList());
-        }
-      }
-      return allRefs().values().stream()
-          .filter(r -> r.getName().startsWith(prefix))
-          .collect(toImmutableList());
+      lookups++;
+      return byPrefixUncounted(prefix);
     }
 
     @Override
     @Nullable
     public Ref exactRef(String name) {
+      lookups++;
       return allRefs().get(name);
     }
 
-    private Map<String, Ref> allRefs() {
-      if (allRefs == null) {
-        allRefs = allRefsSupplier.get();
-      }
-      return allRefs;
+    @Override
+    public int lookups() {
+      return lookups;
     }
 
-    private void lazilyInitRefMaps() {
-      if (refsByChange != null) {
-        return;
+    private ImmutableList<Ref> byPrefixUncounted(String prefix) {
+      if (refsByName == null) {
+        Map<String, Ref> refs = allRefs();
+        refsByName =
+            refs instanceof SortedMap && ((SortedMap<String, Ref>) refs).comparator() == null
+                ? ImmutableSortedMap.copyOfSorted((SortedMap<String, Ref>) refs)
+                : ImmutableSortedMap.copyOf(refs);
       }
+      return refsByName.tailMap(prefix).values().stream()
+          .takeWhile(r -> r.getName().startsWith(prefix))
+          .collect(toImmutableList());
+    }
 
-      refsByObjectId = MultimapBuilder.hashKeys().arrayListValues().build();
-      refsByChange =
-          MultimapBuilder.hashKeys(allRefs().size() / ESTIMATED_NUMBER_OF_REFS_PER_CHANGE)
-              .arrayListValues(ESTIMATED_NUMBER_OF_REFS_PER_CHANGE)
-              .build();
-      for (Ref ref : allRefs().values()) {
-        ObjectId objectId = ref.getObjectId();
-        if (objectId != null) {
-          refsByObjectId.put(objectId, ref);
-          Change.Id changeId = Change.Id.fromRef(ref.getName());
-          if (changeId != null) {
-            refsByChange.put(changeId, ref);
-          }
-        }
+    private Map<String, Ref> allRefs() {
+      if (allRefs == null) {
+        allRefs = allRefsSupplier.get();
       }
+      return allRefs;
     }
   }
 }
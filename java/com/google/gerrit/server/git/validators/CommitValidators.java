@@ -35,6 +35,11 @@ import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.extensions.api.config.ConsistencyCheckInfo.ConsistencyProblemInfo;
 import com.google.gerrit.extensions.registration.DynamicItem;
 import com.google.gerrit.extensions.restapi.AuthException;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.ChangeUtil;
 import com.google.gerrit.server.GerritPersonIdent;
 import com.google.gerrit.server.IdentifiedUser;
@@ -95,6 +100,24 @@ public class CommitValidators {
   public static final Pattern NEW_PATCHSET_PATTERN =
       Pattern.compile("^" + REFS_CHANGES + "(?:[0-9][0-9]/)?([1-9][0-9]*)(?:/[1-9][0-9]*)?$");
 
+  @Singleton
+  static class Metrics {
+    private final Timer1<String> validatorLatency;
+
+    @Inject
+    Metrics(MetricMaker metricMaker) {
+      validatorLatency =
+          metricMaker.newTimer(
+              "receivecommits/commit_validation/latency",
+              new Description("Latency of running a commit validator on a single commit")
+                  .setCumulative()
+                  .setUnit(Units.MILLISECONDS),
+              Field.ofString("validator", Metadata.Builder::className)
+                  .description("The simple class name of the commit validator.")
+                  .build());
+    }
+  }
+
   @Singleton
   public static class Factory {
     private final PersonIdent gerritIdent;
@@ -109,6 +132,7 @@ public class CommitValidators {
     private final ProjectConfig.Factory projectConfigFactory;
     private final DiffOperations diffOperations;
     private final Config config;
+    private final Metrics metrics;
 
     @Inject
     Factory(
@@ -123,7 +147,8 @@ public class CommitValidators {
         AccountValidator accountValidator,
         ProjectCache projectCache,
         ProjectConfig.Factory projectConfigFactory,
-        DiffOperations diffOperations) {
+        DiffOperations diffOperations,
+        Metrics metrics) {
       this.gerritIdent = gerritIdent;
       this.urlFormatter = urlFormatter;
       this.config = config;
@@ -136,6 +161,7 @@ public class CommitValidators {
       this.projectCache = projectCache;
       this.projectConfigFactory = projectConfigFactory;
       this.diffOperations = diffOperations;
+      this.metrics = metrics;
     }
 
     public CommitValidators forReceiveCommits(
@@ -169,7 +195,7 @@ public class CommitValidators {
           .add(new AccountCommitValidator(repoManager, allUsers, accountValidator))
           .add(new GroupCommitValidator(allUsers))
           .add(new LabelConfigValidator(diffOperations));
-      return new CommitValidators(validators.build());
+      return new CommitValidators(validators.build(), metrics);
     }
 
     public CommitValidators forGerritCommits(
@@ -199,7 +225,7 @@ public class CommitValidators {
           .add(new AccountCommitValidator(repoManager, allUsers, accountValidator))
           .add(new GroupCommitValidator(allUsers))
           .add(new LabelConfigValidator(diffOperations));
-      return new CommitValidators(validators.build());
+      return new CommitValidators(validators.build(), metrics);
     }
 
     public CommitValidators forMergedCommits(
@@ -226,14 +252,16 @@ public class CommitValidators {
           .add(new ProjectStateValidationListener(projectState))
           .add(new AuthorUploaderValidator(user, perm, urlFormatter.get()))
           .add(new CommitterUploaderValidator(user, perm, urlFormatter.get()));
-      return new CommitValidators(validators.build());
+      return new CommitValidators(validators.build(), metrics);
     }
   }
 
   private final List<CommitValidationListener> validators;
+  private final Metrics metrics;
 
-  CommitValidators(List<CommitValidationListener> validators) {
+  CommitValidators(List<CommitValidationListener> validators, Metrics metrics) {
     this.validators = validators;
+    this.metrics = metrics;
   }
 
   public List<CommitValidationMessage> validate(CommitReceivedEvent receiveEvent)
@@ -249,7 +277,9 @@ public class CommitValidators {
                     .projectName(receiveEvent.getProjectNameKey().get())
                     .branchName(receiveEvent.getBranchNameKey().branch())
                     .commit(receiveEvent.commit.name())
-                    .build())) {
+                    .build());
+            Timer1.Context<String> ignoredContext =
+                metrics.validatorLatency.start(commitValidator.getClass().getSimpleName())) {
           messages.addAll(commitValidator.onCommitReceived(receiveEvent));
         }
       }
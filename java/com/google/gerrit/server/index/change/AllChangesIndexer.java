@@ -64,6 +64,7 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
   private VolatileTask doneTask;
   private Task failedTask;
   private static final int PROJECT_SLICE_MAX_REFS = 1000;
+  private static final int BATCH_SIZE = 100;
 
   private final MultiProgressMonitor.Factory multiProgressMonitorFactory;
 
@@ -205,6 +206,7 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
     private final ProjectSlice projectSlice;
     private final ProgressMonitor done;
     private final ProgressMonitor failed;
+    private final List<ChangeData> batch = new ArrayList<>(BATCH_SIZE);
 
     private ProjectSliceIndexer(
         ChangeIndexer indexer,
@@ -231,6 +233,7 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
               projectSlice.name(),
               id -> (id.get() % projectSlice.slices()) == projectSlice.slice())
           .forEach(r -> index(r));
+      flush();
       OnlineReindexMode.end();
       return null;
     }
@@ -240,17 +243,53 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
         fail("Failed to read change " + r.id() + " for indexing", true, r.error().get());
         return;
       }
+      batch.add(changeDataFactory.create(r.notes()));
+      if (batch.size() >= BATCH_SIZE) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      if (batch.isEmpty()) {
+        return;
+      }
+      List<ChangeData> cds = new ArrayList<>(batch);
+      batch.clear();
+      try {
+        indexer.index(cds);
+      } catch (RejectedExecutionException e) {
+        // Server shutdown, don't spam the logs.
+        cds.forEach(cd -> failSilently());
+        return;
+      } catch (Exception e) {
+        // Retry the changes one by one to find out which of them failed. Some of them may already
+        // have been written by the batch, so replace rather than insert their documents.
+        logger.atFine().withCause(e).log(
+            "Failed to index batch of %d changes, indexing them one by one", cds.size());
+        cds.forEach(this::retry);
+        return;
+      }
+      cds.forEach(this::indexed);
+    }
+
+    private void retry(ChangeData cd) {
       try {
-        indexer.index(changeDataFactory.create(r.notes()));
-        done.update(1);
-        verboseWriter.format(
-            "Reindexed change %d (project: %s)\n", r.id().get(), r.notes().getProjectName().get());
+        indexer.replace(cd);
       } catch (RejectedExecutionException e) {
         // Server shutdown, don't spam the logs.
         failSilently();
+        return;
       } catch (Exception e) {
-        fail("Failed to index change " + r.id(), true, e);
+        fail("Failed to index change " + cd.getId(), true, e);
+        return;
       }
+      indexed(cd);
+    }
+
+    private void indexed(ChangeData cd) {
+      done.update(1);
+      verboseWriter.format(
+          "Reindexed change %d (project: %s)\n", cd.getId().get(), cd.project().get());
     }
 
     private void fail(String error, boolean failed, Throwable e) {
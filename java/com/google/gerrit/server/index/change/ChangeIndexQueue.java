@@ -0,0 +1,228 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Queue that coalesces asynchronous index requests for changes.
+ *
+ * <p>A change that is updated many times in a short period of time (e.g. voted on by several bots
+ * right after a patch set upload) only needs to be reindexed once, after the last update. Requests
+ * are held back for {@code index.coalesceDelay} to absorb such bursts. Requests for a change that is
+ * already pending are merged into the pending one. Pending requests are then handed to the {@link
+ * ChangeIndexer} in batches of at most {@code index.coalesceMaxBatchSize} changes.
+ *
+ * <p>A change is removed from the queue right before its batch is indexed, so that requests which
+ * arrive while the batch is being indexed are queued again rather than being dropped.
+ *
+ * <p>Disabled unless {@code index.coalesceDelay} is set to a positive value.
+ */
+@Singleton
+public class ChangeIndexQueue {
+  private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+  /** Pending request to index a change. */
+  class Entry extends ChangeIndexer.BatchEntry {
+    final ChangeIndexer indexer;
+    private final long enqueuedNanos;
+
+    private Entry(
+        ChangeIndexer indexer, Project.NameKey project, Change.Id id, long enqueuedNanos) {
+      super(project, id);
+      this.indexer = indexer;
+      this.enqueuedNanos = enqueuedNanos;
+    }
+
+    @Override
+    void done() {
+      metrics.lag.record(ticker.read() - enqueuedNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private static class Metrics {
+    final Counter0 requests;
+    final Counter0 deduplicated;
+    final Timer0 lag;
+
+    Metrics(MetricMaker metricMaker, Supplier<Integer> depth) {
+      requests =
+          metricMaker.newCounter(
+              "index/change/queue/requests",
+              new Description("Number of asynchronous change index requests")
+                  .setRate()
+                  .setUnit("requests"));
+      deduplicated =
+          metricMaker.newCounter(
+              "index/change/queue/deduplicated",
+              new Description(
+                      "Number of asynchronous change index requests that were merged into a"
+                          + " pending request for the same change")
+                  .setRate()
+                  .setUnit("requests"));
+      lag =
+          metricMaker.newTimer(
+              "index/change/queue/lag",
+              new Description(
+                      "Time from queuing a change index request until the change is indexed")
+                  .setCumulative()
+                  .setUnit(Units.MILLISECONDS));
+      metricMaker.newCallbackMetric(
+          "index/change/queue/depth",
+          Integer.class,
+          new Description("Number of changes waiting in the change index queue")
+              .setGauge()
+              .setUnit("changes"),
+          depth);
+    }
+  }
+
+  private final long delayMillis;
+  private final int maxBatchSize;
+  private final Ticker ticker;
+  private final Metrics metrics;
+  @Nullable private final ScheduledExecutorService scheduler;
+
+  private final Map<Change.Id, Entry> pending = new LinkedHashMap<>();
+  private boolean flushScheduled;
+
+  @Inject
+  ChangeIndexQueue(
+      @GerritServerConfig Config cfg, WorkQueue workQueue, MetricMaker metricMaker, Ticker ticker) {
+    this(
+        ConfigUtil.getTimeUnit(cfg, "index", null, "coalesceDelay", 0, TimeUnit.MILLISECONDS),
+        cfg.getInt("index", "coalesceMaxBatchSize", DEFAULT_MAX_BATCH_SIZE),
+        metricMaker,
+        ticker,
+        createScheduler(cfg, workQueue));
+  }
+
+  @VisibleForTesting
+  ChangeIndexQueue(
+      long delayMillis,
+      int maxBatchSize,
+      MetricMaker metricMaker,
+      Ticker ticker,
+      @Nullable ScheduledExecutorService scheduler) {
+    this.delayMillis = delayMillis;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.ticker = ticker;
+    this.scheduler = delayMillis > 0 ? scheduler : null;
+    this.metrics = new Metrics(metricMaker, this::size);
+  }
+
+  @Nullable
+  private static ScheduledExecutorService createScheduler(Config cfg, WorkQueue workQueue) {
+    if (ConfigUtil.getTimeUnit(cfg, "index", null, "coalesceDelay", 0, TimeUnit.MILLISECONDS)
+        <= 0) {
+      return null;
+    }
+    return workQueue.createQueue(1, "ChangeIndexQueue");
+  }
+
+  /** Whether index requests should be coalesced by this queue. */
+  public boolean isEnabled() {
+    return scheduler != null;
+  }
+
+  /** Returns the number of changes that are currently waiting to be indexed. */
+  public synchronized int size() {
+    return pending.size();
+  }
+
+  /**
+   * Queues a change for indexing.
+   *
+   * @param indexer indexer that should index the change.
+   * @param project the project to which the change belongs.
+   * @param id ID of the change to index.
+   * @param onQueued invoked if the change was not pending yet.
+   * @return future for the indexing of the change; shared by all requests that were coalesced.
+   */
+  ListenableFuture<ChangeData> add(
+      ChangeIndexer indexer, Project.NameKey project, Change.Id id, Runnable onQueued) {
+    metrics.requests.increment();
+    Entry entry;
+    synchronized (this) {
+      entry = pending.get(id);
+      if (entry != null) {
+        metrics.deduplicated.increment();
+        return entry.future;
+      }
+      entry = new Entry(indexer, project, id, ticker.read());
+      pending.put(id, entry);
+      if (!flushScheduled) {
+        flushScheduled = true;
+        @SuppressWarnings("unused")
+        Future<?> possiblyIgnoredError =
+            scheduler.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    onQueued.run();
+    return entry.future;
+  }
+
+  @VisibleForTesting
+  void flush() {
+    List<Entry> batch = new ArrayList<>();
+    synchronized (this) {
+      Iterator<Entry> it = pending.values().iterator();
+      while (it.hasNext() && batch.size() < maxBatchSize) {
+        batch.add(it.next());
+        it.remove();
+      }
+      if (pending.isEmpty()) {
+        flushScheduled = false;
+      } else {
+        // More changes are waiting, flush them right away rather than waiting for another delay.
+        @SuppressWarnings("unused")
+        Future<?> possiblyIgnoredError = scheduler.submit(this::flush);
+      }
+    }
+
+    Map<ChangeIndexer, List<Entry>> byIndexer = new IdentityHashMap<>();
+    for (Entry e : batch) {
+      byIndexer.computeIfAbsent(e.indexer, i -> new ArrayList<>()).add(e);
+    }
+    byIndexer.forEach(ChangeIndexer::indexBatch);
+  }
+}
@@ -14,13 +14,16 @@
 
 package com.google.gerrit.server.index.change;
 
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.gerrit.server.git.QueueProvider.QueueType.BATCH;
+import static java.util.stream.Collectors.toList;
 
 import com.google.common.base.Objects;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.Project;
@@ -43,8 +46,10 @@ import com.google.gerrit.server.util.ThreadLocalRequestContext;
 import com.google.inject.OutOfScopeException;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -62,12 +67,32 @@ import org.eclipse.jgit.lib.Config;
 public class ChangeIndexer {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  private static final RequestContext NO_USER =
+      () -> {
+        throw new OutOfScopeException("No user during ChangeIndexer");
+      };
+
   public interface Factory {
     ChangeIndexer create(ListeningExecutorService executor, ChangeIndex index);
 
     ChangeIndexer create(ListeningExecutorService executor, ChangeIndexCollection indexes);
   }
 
+  /** A change that is indexed as part of a batch. */
+  static class BatchEntry {
+    final Project.NameKey project;
+    final Change.Id id;
+    final SettableFuture<ChangeData> future = SettableFuture.create();
+
+    BatchEntry(Project.NameKey project, Change.Id id) {
+      this.project = project;
+      this.id = id;
+    }
+
+    /** Invoked after the change was indexed or deleted from the index. */
+    void done() {}
+  }
+
   @Nullable private final ChangeIndexCollection indexes;
   @Nullable private final ChangeIndex index;
   private final ChangeData.Factory changeDataFactory;
@@ -79,6 +104,7 @@ public class ChangeIndexer {
   private final StalenessChecker stalenessChecker;
   private final boolean autoReindexIfStale;
   private final IsFirstInsertForEntry isFirstInsertForEntry;
+  private final ChangeIndexQueue indexQueue;
 
   private final Map<Change.Id, IndexTask> queuedIndexTasks = new ConcurrentHashMap<>();
   private final Set<ReindexIfStaleTask> queuedReindexIfStaleTasks =
@@ -95,7 +121,8 @@ public class ChangeIndexer {
       @IndexExecutor(BATCH) ListeningExecutorService batchExecutor,
       @Assisted ListeningExecutorService executor,
       @Assisted ChangeIndex index,
-      IsFirstInsertForEntry isFirstInsertForEntry) {
+      IsFirstInsertForEntry isFirstInsertForEntry,
+      ChangeIndexQueue indexQueue) {
     this.executor = executor;
     this.changeDataFactory = changeDataFactory;
     this.notesFactory = notesFactory;
@@ -107,6 +134,7 @@ public class ChangeIndexer {
     this.index = index;
     this.indexes = null;
     this.isFirstInsertForEntry = isFirstInsertForEntry;
+    this.indexQueue = indexQueue;
   }
 
   @AssistedInject
@@ -120,7 +148,8 @@ public class ChangeIndexer {
       @IndexExecutor(BATCH) ListeningExecutorService batchExecutor,
       @Assisted ListeningExecutorService executor,
       @Assisted ChangeIndexCollection indexes,
-      IsFirstInsertForEntry isFirstInsertForEntry) {
+      IsFirstInsertForEntry isFirstInsertForEntry,
+      ChangeIndexQueue indexQueue) {
     this.executor = executor;
     this.changeDataFactory = changeDataFactory;
     this.notesFactory = notesFactory;
@@ -132,6 +161,7 @@ public class ChangeIndexer {
     this.index = null;
     this.indexes = indexes;
     this.isFirstInsertForEntry = isFirstInsertForEntry;
+    this.indexQueue = indexQueue;
   }
 
   private static boolean autoReindexIfStale(Config cfg) {
@@ -141,10 +171,22 @@ public class ChangeIndexer {
   /**
    * Start indexing a change.
    *
+   * <p>If the {@link ChangeIndexQueue} is enabled, requests of indexers that write to the index
+   * collection are coalesced with other requests for the same change and indexed in batches.
+   *
    * @param changeId change to index.
    * @return future for the indexing task.
    */
   public ListenableFuture<ChangeData> indexAsync(Project.NameKey project, Change.Id changeId) {
+    if (indexes != null && indexQueue.isEnabled()) {
+      return Futures.nonCancellationPropagating(
+          indexQueue.add(
+              this,
+              project,
+              changeId,
+              () -> fireChangeScheduledForIndexingEvent(project.get(), changeId.get())));
+    }
+
     // If the change was already scheduled for indexing, we do not need to schedule it again. Change
     // updates that happened after the change was scheduled for indexing will automatically be taken
     // into account when the index task is executed (as it reads the current change state).
@@ -215,7 +257,140 @@ public class ChangeIndexer {
     autoReindexIfStale(cd);
   }
 
+  /**
+   * Start indexing multiple changes of a project.
+   *
+   * <p>The changes are loaded in parallel on the executor of this indexer, and are then written to
+   * the index in one batch, unless the {@link ChangeIndexQueue} is enabled, in which case the
+   * requests are coalesced and batched by the queue. The returned future may complete before the
+   * changes are visible to searchers, so this method should only be used by callers that don't need
+   * to read their own writes.
+   *
+   * @param project the project to which the changes belong.
+   * @param changeIds changes to index.
+   * @return future for the indexing task.
+   */
+  public ListenableFuture<List<ChangeData>> indexAsync(
+      Project.NameKey project, Collection<Change.Id> changeIds) {
+    List<ListenableFuture<ChangeData>> futures = new ArrayList<>(changeIds.size());
+    if (indexes != null && indexQueue.isEnabled()) {
+      for (Change.Id id : changeIds) {
+        futures.add(indexAsync(project, id));
+      }
+      return Futures.allAsList(futures);
+    }
+    for (Change.Id id : changeIds) {
+      fireChangeScheduledForIndexingEvent(project.get(), id.get());
+      futures.add(submit(new LoadTask(project, id)));
+    }
+    // Changes that couldn't be loaded are left out of the batch, but fail the returned future.
+    ListenableFuture<Void> written =
+        Futures.transform(
+            Futures.successfulAsList(futures),
+            cds -> {
+              writeBatch(cds.stream().filter(cd -> cd != null).collect(toList()));
+              return null;
+            },
+            executor);
+    return Futures.transformAsync(written, unused -> Futures.allAsList(futures), directExecutor());
+  }
+
+  /**
+   * Synchronously index multiple changes, writing them to the index in one batch.
+   *
+   * <p>Doesn't wait for the changes to become visible to searchers, hence this method is meant for
+   * bulk reindexing.
+   *
+   * @param cds changes to index.
+   */
+  public void index(List<ChangeData> cds) {
+    for (ChangeData cd : cds) {
+      fireChangeScheduledForIndexingEvent(cd.project().get(), cd.getId().get());
+    }
+    indexImpl(cds, false);
+  }
+
+  /**
+   * Synchronously index a change, replacing its document even if this indexer was configured to
+   * insert documents.
+   *
+   * <p>Used to retry the changes of a failed batch one by one, as some of them may already have
+   * been written by the batch.
+   *
+   * @param cd change to index.
+   */
+  void replace(ChangeData cd) {
+    fireChangeScheduledForIndexingEvent(cd.project().get(), cd.getId().get());
+    indexImpl(cd, false);
+    autoReindexIfStale(cd);
+  }
+
+  /**
+   * Indexes a batch of changes asynchronously on the executor of this indexer.
+   *
+   * <p>The futures of the entries are completed once the changes are indexed.
+   */
+  void indexBatch(List<? extends BatchEntry> entries) {
+    try {
+      @SuppressWarnings("unused")
+      Future<?> possiblyIgnoredError = submit(new BatchIndexTask(entries));
+    } catch (RuntimeException e) {
+      logger.atSevere().withCause(e).log(
+          "Failed to submit batch of %d changes for indexing", entries.size());
+      entries.forEach(entry -> entry.future.setException(e));
+    }
+  }
+
+  private void indexImpl(List<ChangeData> cds, boolean awaitVisibility) {
+    if (cds.isEmpty()) {
+      return;
+    }
+    for (Index<?, ChangeData> i : getWriteIndexes()) {
+      try (TraceTimer traceTimer =
+          TraceContext.newTimer(
+              "Reindexing changes in index",
+              Metadata.builder()
+                  .resourceCount(cds.size())
+                  .indexVersion(i.getSchema().getVersion())
+                  .build())) {
+        if (isFirstInsertForEntry.equals(IsFirstInsertForEntry.YES)) {
+          for (ChangeData cd : cds) {
+            i.insert(cd);
+          }
+        } else {
+          i.replaceAll(cds, awaitVisibility);
+        }
+      } catch (RuntimeException e) {
+        throw new StorageException(
+            String.format(
+                "Failed to reindex %d changes in index version %d",
+                cds.size(), i.getSchema().getVersion()),
+            e);
+      }
+    }
+    for (ChangeData cd : cds) {
+      fireChangeIndexedEvent(cd.project().get(), cd.getId().get());
+      autoReindexIfStale(cd);
+    }
+  }
+
+  private void writeBatch(List<ChangeData> cds) {
+    RequestContext oldCtx = context.setContext(NO_USER);
+    try {
+      indexImpl(cds, false);
+    } catch (RuntimeException e) {
+      logger.atSevere().withCause(e).log("Failed to index batch of %d changes", cds.size());
+      throw e;
+    } finally {
+      context.setContext(oldCtx);
+    }
+  }
+
   private void indexImpl(ChangeData cd) {
+    indexImpl(cd, isFirstInsertForEntry.equals(IsFirstInsertForEntry.YES));
+  }
+
+  private void indexImpl(ChangeData cd, boolean insert) {
     logger.atFine().log("Reindex change %d in index.", cd.getId().get());
     for (Index<?, ChangeData> i : getWriteIndexes()) {
       try (TraceTimer traceTimer =
@@ -226,7 +401,7 @@ public class ChangeIndexer {
                   .patchSetId(cd.currentPatchSet().number())
                   .indexVersion(i.getSchema().getVersion())
                   .build())) {
-        if (isFirstInsertForEntry.equals(IsFirstInsertForEntry.YES)) {
+        if (insert) {
           i.insert(cd);
         } else {
           i.replace(cd);
@@ -364,11 +539,7 @@ public class ChangeIndexer {
     @Override
     public final T call() throws Exception {
       try {
-        RequestContext newCtx =
-            () -> {
-              throw new OutOfScopeException("No user during ChangeIndexer");
-            };
-        RequestContext oldCtx = context.setContext(newCtx);
+        RequestContext oldCtx = context.setContext(NO_USER);
         try {
           return callImpl();
         } finally {
@@ -453,6 +624,95 @@ public class ChangeIndexer {
     }
   }
 
+  /** Loads a change to be written to the index as part of a batch. */
+  private class LoadTask extends AbstractIndexTask<ChangeData> {
+    private LoadTask(Project.NameKey project, Change.Id id) {
+      super(project, id);
+    }
+
+    @Nullable
+    @Override
+    public ChangeData callImpl() throws Exception {
+      try {
+        return changeDataFactory.create(notesFactory.createChecked(project, id));
+      } catch (NoSuchChangeException e) {
+        doDelete(id);
+      }
+      return null;
+    }
+
+    @Override
+    public String toString() {
+      return "load-change-" + id;
+    }
+
+    @Override
+    protected void remove() {}
+  }
+
+  // Not AbstractIndexTask as it handles multiple changes.
+  private class BatchIndexTask implements Callable<Void> {
+    private final List<? extends BatchEntry> entries;
+
+    private BatchIndexTask(List<? extends BatchEntry> entries) {
+      this.entries = entries;
+    }
+
+    @Override
+    public Void call() {
+      RequestContext oldCtx = context.setContext(NO_USER);
+      try {
+        List<ChangeData> cds = new ArrayList<>(entries.size());
+        List<BatchEntry> loaded = new ArrayList<>(entries.size());
+        for (BatchEntry e : entries) {
+          try {
+            cds.add(changeDataFactory.create(notesFactory.createChecked(e.project, e.id)));
+            loaded.add(e);
+          } catch (NoSuchChangeException ex) {
+            delete(e);
+          } catch (RuntimeException ex) {
+            fail(e, ex);
+          }
+        }
+        try {
+          indexImpl(cds, true);
+        } catch (RuntimeException ex) {
+          loaded.forEach(e -> fail(e, ex));
+          return null;
+        }
+        for (int i = 0; i < loaded.size(); i++) {
+          BatchEntry e = loaded.get(i);
+          e.future.set(cds.get(i));
+          e.done();
+        }
+      } finally {
+        context.setContext(oldCtx);
+      }
+      return null;
+    }
+
+    private void delete(BatchEntry e) {
+      try {
+        doDelete(e.id);
+      } catch (RuntimeException ex) {
+        fail(e, ex);
+        return;
+      }
+      e.future.set(null);
+      e.done();
+    }
+
+    private void fail(BatchEntry e, RuntimeException ex) {
+      logger.atSevere().withCause(ex).log("Failed to index change %s", e.id);
+      e.future.setException(ex);
+    }
+
+    @Override
+    public String toString() {
+      return "index-changes-batch-" + entries.size();
+    }
+  }
+
   // Not AbstractIndexTask as it doesn't need a request context.
   private class DeleteTask implements Callable<ChangeData> {
     private final Change.Id id;
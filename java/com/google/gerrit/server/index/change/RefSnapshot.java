@@ -0,0 +1,108 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import com.google.gerrit.entities.Project;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Refs of a single repository that are read in bulk.
+ *
+ * <p>Used to check the staleness of many change documents of the same project without reading the
+ * same refs from the ref database over and over again. Refs under a prefix are read once, the
+ * first time the prefix or a ref below it is requested; refs outside of any loaded prefix are read
+ * individually and remembered.
+ *
+ * <p>Not thread-safe.
+ */
+public class RefSnapshot {
+  /** Provides the snapshot of a project, opening it if needed. */
+  @FunctionalInterface
+  public interface Loader {
+    RefSnapshot get(Project.NameKey project) throws IOException;
+  }
+
+  private final Repository repo;
+  private final NavigableMap<String, ObjectId> refs = new TreeMap<>();
+  private final Set<String> missing = new HashSet<>();
+  private final Set<String> loadedPrefixes = new HashSet<>();
+
+  public RefSnapshot(Repository repo) {
+    this.repo = repo;
+  }
+
+  /**
+   * Reads all refs under the given prefix, unless they were read already.
+   *
+   * @param prefix ref prefix, should end with '/'.
+   */
+  public RefSnapshot preload(String prefix) throws IOException {
+    if (isLoaded(prefix)) {
+      return this;
+    }
+    for (Ref r : repo.getRefDatabase().getRefsByPrefix(prefix)) {
+      if (r.getObjectId() != null) {
+        refs.put(r.getName(), r.getObjectId());
+      }
+    }
+    loadedPrefixes.add(prefix);
+    return this;
+  }
+
+  /** Returns the value of the ref, or {@link ObjectId#zeroId()} if the ref doesn't exist. */
+  public ObjectId get(String name) throws IOException {
+    ObjectId id = refs.get(name);
+    if (id != null) {
+      return id;
+    }
+    if (missing.contains(name) || isLoaded(name)) {
+      return ObjectId.zeroId();
+    }
+    Ref ref = repo.exactRef(name);
+    if (ref == null || ref.getObjectId() == null) {
+      missing.add(name);
+      return ObjectId.zeroId();
+    }
+    refs.put(name, ref.getObjectId());
+    return ref.getObjectId();
+  }
+
+  /** Returns all refs under the given prefix, ordered by name. */
+  public Stream<Map.Entry<String, ObjectId>> byPrefix(String prefix) throws IOException {
+    preload(prefix);
+    return refs.tailMap(prefix, true).entrySet().stream()
+        .takeWhile(e -> e.getKey().startsWith(prefix));
+  }
+
+  private boolean isLoaded(String name) {
+    // Check the '/'-terminated prefixes of the name rather than iterating over all loaded
+    // prefixes, as there may be one loaded prefix per checked change.
+    for (int i = name.indexOf('/'); i >= 0; i = name.indexOf('/', i + 1)) {
+      if (loadedPrefixes.contains(name.substring(0, i + 1))) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -14,9 +14,11 @@
 
 package com.google.gerrit.server.index.change;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.gerrit.server.query.change.ChangeData.asChanges;
 
+import com.google.common.collect.Lists;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -55,6 +57,7 @@ import org.eclipse.jgit.lib.Config;
  */
 public class ReindexAfterRefUpdate implements GitBatchRefUpdateListener {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final int BATCH_SIZE = 100;
 
   private final OneOffRequestContext requestContext;
   private final Provider<InternalChangeQuery> queryProvider;
@@ -115,10 +118,16 @@ public class ReindexAfterRefUpdate implements GitBatchRefUpdateListener {
           new FutureCallback<List<Change>>() {
             @Override
             public void onSuccess(List<Change> changes) {
-              for (Change c : changes) {
+              ChangeIndexer changeIndexer = indexerFactory.create(executor, indexes);
+              // The changes of each batch are loaded in parallel, but their documents are written
+              // together, so that the index doesn't need to be refreshed once per change when many
+              // open changes are affected by the update.
+              for (List<Change> batch : Lists.partition(changes, BATCH_SIZE)) {
                 @SuppressWarnings("unused")
                 Future<?> possiblyIgnoredError =
-                    indexerFactory.create(executor, indexes).indexAsync(c.getProject(), c.getId());
+                    changeIndexer.indexAsync(
+                        Project.nameKey(event.getProjectName()),
+                        batch.stream().map(Change::getId).collect(toImmutableList()));
               }
             }
 
@@ -0,0 +1,297 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static com.google.common.util.concurrent.Futures.successfulAsList;
+import static com.google.common.util.concurrent.Futures.transform;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static com.google.gerrit.server.git.QueueProvider.QueueType.BATCH;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.index.SiteIndexer;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.MultiProgressMonitor;
+import com.google.gerrit.server.git.MultiProgressMonitor.Task;
+import com.google.gerrit.server.git.MultiProgressMonitor.TaskKind;
+import com.google.gerrit.server.index.IndexExecutor;
+import com.google.gerrit.server.index.StalenessCheckResult;
+import com.google.gerrit.server.index.change.StalenessChecker.RefStatePattern;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.project.NoSuchChangeException;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.ChangePredicates;
+import com.google.inject.Inject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Implementation that reindexes only the changes whose index documents are stale or missing.
+ *
+ * <p>Rather than checking changes one by one as {@link StalenessChecker#check(Change.Id)} does,
+ * the stored ref states of all documents of a project are streamed from the index and compared
+ * against refs that are read in bulk once per project. Documents of changes that no longer exist in
+ * the repository are deleted from the index.
+ *
+ * <p>Used to bring an index up to date after a crash or a restore from backup without paying for a
+ * full reindex.
+ */
+public class StaleChangesIndexer extends SiteIndexer<Change.Id, ChangeData, ChangeIndex> {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final int PAGE_SIZE = 1000;
+
+  private static final ImmutableSet<String> FIELDS =
+      ImmutableSet.of(
+          ChangeField.LEGACY_ID_STR.getName(),
+          ChangeField.PROJECT_SPEC.getName(),
+          ChangeField.REF_STATE.getName(),
+          ChangeField.REF_STATE_PATTERN.getName());
+
+  private final MultiProgressMonitor.Factory multiProgressMonitorFactory;
+  private final ChangeData.Factory changeDataFactory;
+  private final GitRepositoryManager repoManager;
+  private final ListeningExecutorService executor;
+  private final ChangeIndexer.Factory indexerFactory;
+  private final ChangeNotes.Factory notesFactory;
+  private final ProjectCache projectCache;
+  private final IndexConfig indexConfig;
+
+  @Inject
+  StaleChangesIndexer(
+      MultiProgressMonitor.Factory multiProgressMonitorFactory,
+      ChangeData.Factory changeDataFactory,
+      GitRepositoryManager repoManager,
+      @IndexExecutor(BATCH) ListeningExecutorService executor,
+      ChangeIndexer.Factory indexerFactory,
+      ChangeNotes.Factory notesFactory,
+      ProjectCache projectCache,
+      IndexConfig indexConfig) {
+    this.multiProgressMonitorFactory = multiProgressMonitorFactory;
+    this.changeDataFactory = changeDataFactory;
+    this.repoManager = repoManager;
+    this.executor = executor;
+    this.indexerFactory = indexerFactory;
+    this.notesFactory = notesFactory;
+    this.projectCache = projectCache;
+    this.indexConfig = indexConfig;
+  }
+
+  /** Reindexes the stale and missing changes of all projects. */
+  @Override
+  public Result indexAll(ChangeIndex index) {
+    return indexProjects(index, projectCache.all());
+  }
+
+  /** Reindexes the stale and missing changes of the given projects. */
+  public Result indexProjects(ChangeIndex index, Collection<Project.NameKey> projects) {
+    Stopwatch sw = Stopwatch.createStarted();
+    if (!index.getSchema().hasField(ChangeField.REF_STATE)
+        || !index.getSchema().hasField(ChangeField.REF_STATE_PATTERN)) {
+      logger.atSevere().log(
+          "Change index version %d doesn't store ref states; a full reindex is required",
+          index.getSchema().getVersion());
+      return Result.create(sw, false, 0, 0);
+    }
+
+    AtomicBoolean ok = new AtomicBoolean(true);
+    MultiProgressMonitor mpm =
+        multiProgressMonitorFactory.create(
+            progressOut, TaskKind.INDEXING, "Reindexing stale changes");
+    Task projTask = mpm.beginSubTask("projects", projects.size());
+    Task doneTask = mpm.beginSubTask("stale changes", MultiProgressMonitor.UNKNOWN);
+    Task failedTask = mpm.beginSubTask("failed", MultiProgressMonitor.UNKNOWN);
+    ChangeIndexer indexer = indexerFactory.create(executor, index);
+
+    List<ListenableFuture<?>> futures = new ArrayList<>(projects.size());
+    for (Project.NameKey project : projects) {
+      ListenableFuture<?> future =
+          executor.submit(new ProjectIndexer(index, indexer, project, doneTask, failedTask));
+      addErrorListener(future, "project " + project, projTask, ok);
+      futures.add(future);
+    }
+
+    try {
+      mpm.waitFor(
+          transform(
+              successfulAsList(futures),
+              x -> {
+                mpm.end();
+                return null;
+              },
+              directExecutor()));
+    } catch (UncheckedExecutionException e) {
+      logger.atSevere().withCause(e).log("Error in stale changes indexer");
+      ok.set(false);
+    }
+
+    int nFailed = failedTask.getCount();
+    if (nFailed > 0) {
+      logger.atWarning().log("Failed to reindex %d stale changes", nFailed);
+      ok.set(false);
+    }
+    return Result.create(sw, ok.get(), doneTask.getCount(), nFailed);
+  }
+
+  private class ProjectIndexer implements Callable<Void> {
+    private final ChangeIndex index;
+    private final ChangeIndexer indexer;
+    private final Project.NameKey project;
+    private final ProgressMonitor done;
+    private final ProgressMonitor failed;
+    private final Map<Project.NameKey, RefSnapshot> snapshots = new HashMap<>();
+    private final List<Repository> openRepos = new ArrayList<>();
+
+    private ProjectIndexer(
+        ChangeIndex index,
+        ChangeIndexer indexer,
+        Project.NameKey project,
+        ProgressMonitor done,
+        ProgressMonitor failed) {
+      this.index = index;
+      this.indexer = indexer;
+      this.project = project;
+      this.done = done;
+      this.failed = failed;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      Set<Change.Id> stale;
+      try {
+        stale = findStale();
+      } finally {
+        openRepos.forEach(Repository::close);
+      }
+      // Reindex only after all documents were read, since reindexing may change the order in which
+      // the index returns documents.
+      for (Change.Id id : stale) {
+        reindex(id);
+      }
+      return null;
+    }
+
+    private Set<Change.Id> findStale() throws Exception {
+      RefSnapshot own =
+          snapshot(project).preload(RefNames.REFS_CHANGES).preload(RefNames.REFS_USERS);
+      Set<Change.Id> inRepo = new HashSet<>();
+      own.byPrefix(RefNames.REFS_CHANGES)
+          .map(e -> Change.Id.fromRef(e.getKey()))
+          .filter(Objects::nonNull)
+          .forEach(inRepo::add);
+
+      Set<Change.Id> stale = new HashSet<>();
+      Set<Change.Id> seen = new HashSet<>();
+      int pageSize = Math.min(PAGE_SIZE, indexConfig.maxPageSize());
+      for (int start = 0; ; start += pageSize) {
+        ImmutableList<ChangeData> page =
+            index
+                .getSource(
+                    ChangePredicates.project(project),
+                    IndexedChangeQuery.createOptions(indexConfig, start, pageSize, FIELDS))
+                .read()
+                .toList();
+        for (ChangeData cd : page) {
+          Change.Id id = cd.getId();
+          seen.add(id);
+          if (!inRepo.contains(id) || isStale(cd)) {
+            stale.add(id);
+          }
+        }
+        if (page.size() < pageSize) {
+          break;
+        }
+      }
+
+      for (Change.Id id : inRepo) {
+        if (!seen.contains(id)) {
+          verboseWriter.format("Change %d (project: %s) missing from index\n", id.get(), project);
+          stale.add(id);
+        }
+      }
+      return stale;
+    }
+
+    private boolean isStale(ChangeData cd) {
+      ListMultimap<Project.NameKey, RefStatePattern> patterns =
+          StalenessChecker.parsePatterns(
+              cd.getRefStatePatterns() != null ? cd.getRefStatePatterns() : ImmutableList.of());
+      StalenessCheckResult result =
+          StalenessChecker.check(this::snapshot, cd.getId(), cd.getRefStates(), patterns);
+      if (result.isStale()) {
+        verboseWriter.println(result.reason().orElse("Change " + cd.getId() + " is stale"));
+      }
+      return result.isStale();
+    }
+
+    private RefSnapshot snapshot(Project.NameKey p) throws IOException {
+      RefSnapshot snapshot = snapshots.get(p);
+      if (snapshot == null) {
+        Repository repo = repoManager.openRepository(p);
+        openRepos.add(repo);
+        snapshot = new RefSnapshot(repo);
+        snapshots.put(p, snapshot);
+      }
+      return snapshot;
+    }
+
+    private void reindex(Change.Id id) {
+      try {
+        indexer.index(changeDataFactory.create(notesFactory.createChecked(project, id)));
+        verboseWriter.format("Reindexed stale change %d (project: %s)\n", id.get(), project);
+      } catch (NoSuchChangeException e) {
+        indexer.delete(id);
+        verboseWriter.format("Deleted change %d (project: %s) from index\n", id.get(), project);
+      } catch (RejectedExecutionException e) {
+        // Server shutdown, don't spam the logs.
+        failed.update(1);
+        return;
+      } catch (Exception e) {
+        failed.update(1);
+        logger.atWarning().withCause(e).log("Failed to reindex stale change %s", id);
+        verboseWriter.println("Failed to reindex stale change " + id);
+        return;
+      }
+      done.update(1);
+    }
+
+    @Override
+    public String toString() {
+      return "Reindex stale changes of project " + project;
+    }
+  }
+}
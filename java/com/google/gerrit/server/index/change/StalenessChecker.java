@@ -43,6 +43,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Pattern;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 
@@ -109,6 +110,29 @@ public class StalenessChecker {
     return refsAreStale(repoManager, id, states, patterns);
   }
 
+  /**
+   * Returns a {@link StalenessCheckResult} with structured information about staleness of the
+   * provided change, comparing against refs that were read in bulk.
+   *
+   * <p>Meant for checking many documents in one go, see {@link StaleChangesIndexer}.
+   */
+  public static StalenessCheckResult check(
+      RefSnapshot.Loader snapshots,
+      Change.Id id,
+      SetMultimap<Project.NameKey, RefState> states,
+      ListMultimap<Project.NameKey, RefStatePattern> patterns) {
+    Set<Project.NameKey> projects = Sets.union(states.keySet(), patterns.keySet());
+
+    for (Project.NameKey p : projects) {
+      StalenessCheckResult result = refsAreStale(snapshots, id, p, states, patterns);
+      if (result.isStale()) {
+        return result;
+      }
+    }
+
+    return StalenessCheckResult.notStale();
+  }
+
   @VisibleForTesting
   static StalenessCheckResult refsAreStale(
       GitRepositoryManager repoManager,
@@ -179,6 +203,36 @@ public class StalenessChecker {
     }
   }
 
+  private static StalenessCheckResult refsAreStale(
+      RefSnapshot.Loader snapshots,
+      Change.Id id,
+      Project.NameKey project,
+      SetMultimap<Project.NameKey, RefState> allStates,
+      ListMultimap<Project.NameKey, RefStatePattern> allPatterns) {
+    try {
+      RefSnapshot snapshot = snapshots.get(project);
+      Set<RefState> states = allStates.get(project);
+      for (RefState state : states) {
+        ObjectId actual = snapshot.get(state.ref());
+        if (!state.id().equals(actual)) {
+          return StalenessCheckResult.stale(
+              "Ref states don't match for document %s (%s != %s)", id, state, actual.name());
+        }
+      }
+      for (RefStatePattern pattern : allPatterns.get(project)) {
+        if (!pattern.match(snapshot, states)) {
+          return StalenessCheckResult.stale(
+              "Ref patterns don't match for document %s. Pattern: %s States: %s",
+              id, pattern, states);
+        }
+      }
+      return StalenessCheckResult.notStale();
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("error checking staleness of %s in %s", id, project);
+      return StalenessCheckResult.stale("Exceptions while processing document %s", e.getMessage());
+    }
+  }
+
   /**
    * Pattern for matching refs.
    *
@@ -233,5 +287,12 @@ public class StalenessChecker {
       }
       return true;
     }
+
+    private boolean match(RefSnapshot snapshot, Set<RefState> expected) throws IOException {
+      return snapshot
+          .byPrefix(prefix())
+          .filter(e -> match(e.getKey()))
+          .allMatch(e -> expected.contains(RefState.create(e.getKey(), e.getValue())));
+    }
   }
 }
@@ -82,11 +82,13 @@ public abstract class AbstractChangeNotes<T> {
 
   /** An {@link AutoCloseable} for parsing a single commit into ChangeNotesCommits. */
   public static class LoadHandle implements AutoCloseable {
+    private final GitRepositoryManager repoManager;
     private final Repository repo;
     private final ObjectId id;
     private ChangeNotesRevWalk rw;
 
-    private LoadHandle(Repository repo, @Nullable ObjectId id) {
+    private LoadHandle(GitRepositoryManager repoManager, Repository repo, @Nullable ObjectId id) {
+      this.repoManager = repoManager;
       this.repo = requireNonNull(repo);
 
       if (ObjectId.zeroId().equals(id)) {
@@ -99,7 +101,7 @@ public abstract class AbstractChangeNotes<T> {
 
     public ChangeNotesRevWalk walk() {
       if (rw == null) {
-        rw = ChangeNotesCommit.newRevWalk(repo);
+        rw = ChangeNotesCommit.newRevWalk(repoManager.newObjectReader(repo));
       }
       return rw;
     }
@@ -196,7 +198,7 @@ public abstract class AbstractChangeNotes<T> {
       id = readRef(repo);
     }
 
-    return new LoadHandle(repo, id);
+    return new LoadHandle(args.repoManager, repo, id);
   }
 
   public T reload() {
@@ -25,6 +25,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
@@ -70,6 +71,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Predicate;
@@ -163,6 +165,40 @@ public class ChangeNotes extends AbstractChangeNotes<ChangeNotes> {
       return new ChangeNotes(args, newChange(project, changeId), true, null).load(repository);
     }
 
+    /**
+     * Loads the notes of several changes of a project.
+     *
+     * <p>Rather than reading the meta ref of each change separately, the meta refs of all changes
+     * are read from the ref database in a single call.
+     *
+     * @throws IOException if the meta refs can't be read.
+     * @throws NoSuchChangeException (unchecked) if one of the changes doesn't exist.
+     */
+    public ImmutableMap<Change.Id, ChangeNotes> createAll(
+        Repository repository, Project.NameKey project, Collection<Change.Id> changeIds)
+        throws IOException {
+      checkArgument(project != null, "project is required");
+      Map<String, Ref> metaRefs =
+          repository
+              .getRefDatabase()
+              .exactRef(changeIds.stream().map(RefNames::changeMetaRef).toArray(String[]::new));
+      ImmutableMap.Builder<Change.Id, ChangeNotes> notes =
+          ImmutableMap.builderWithExpectedSize(changeIds.size());
+      for (Change.Id changeId : changeIds) {
+        Ref metaRef = metaRefs.get(RefNames.changeMetaRef(changeId));
+        notes.put(
+            changeId,
+            new ChangeNotes(
+                    args,
+                    newChange(project, changeId),
+                    true,
+                    null,
+                    metaRef != null ? metaRef.getObjectId() : null)
+                .load(repository));
+      }
+      return notes.build();
+    }
+
     /**
      * Create change notes for a change that was loaded from index. This method should only be used
      * when database access is harmful and potentially stale data from the index is acceptable.
@@ -52,6 +52,17 @@ public class ChangeNotesCommit extends RevCommit {
     return new ChangeNotesRevWalk(repo);
   }
 
+  /** A {@link RevWalk} producing {@link ChangeNotesCommit}s that closes the reader when closed. */
+  public static ChangeNotesRevWalk newRevWalk(ObjectReader reader) {
+    return new ChangeNotesRevWalk(reader) {
+      @Override
+      public void close() {
+        super.close();
+        reader.close();
+      }
+    };
+  }
+
   public static ChangeNotesRevWalk newStagedRevWalk(
       Repository repo, Iterable<InsertedObject> stagedObjs) {
     final InMemoryInserter ins = new InMemoryInserter(repo);
@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableListMultimap.flatteningToImmutableListMultimap;
 import static com.google.gerrit.server.logging.TraceContext.newTimer;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ListMultimap;
@@ -34,6 +35,7 @@ import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.git.RefUpdateUtil;
 import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.FanOutExecutor;
 import com.google.gerrit.server.GerritPersonIdent;
 import com.google.gerrit.server.cancellation.RequestStateContext;
 import com.google.gerrit.server.cancellation.RequestStateContext.NonCancellableOperationContext;
@@ -53,6 +55,9 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.BatchRefUpdate;
 import org.eclipse.jgit.lib.Config;
@@ -87,9 +92,11 @@ public class NoteDbUpdateManager implements AutoCloseable {
   private final GitRepositoryManager repoManager;
   private final AllUsersName allUsersName;
   private final NoteDbMetrics metrics;
+  private final ExecutorService executor;
   private final Project.NameKey projectName;
   private final int maxUpdates;
   private final int maxPatchSets;
+  private final boolean pipelined;
   private final ListMultimap<String, ChangeUpdate> changeUpdates;
   private final ListMultimap<String, ChangeDraftUpdate> draftUpdates;
   private final ListMultimap<String, RobotCommentUpdate> robotCommentUpdates;
@@ -112,16 +119,19 @@ public class NoteDbUpdateManager implements AutoCloseable {
       GitRepositoryManager repoManager,
       AllUsersName allUsersName,
       NoteDbMetrics metrics,
+      @FanOutExecutor ExecutorService executor,
       AllUsersAsyncUpdate updateAllUsersAsync,
       @Assisted Project.NameKey projectName) {
     this.serverIdent = serverIdent;
     this.repoManager = repoManager;
     this.allUsersName = allUsersName;
     this.metrics = metrics;
+    this.executor = executor;
     this.updateAllUsersAsync = updateAllUsersAsync;
     this.projectName = projectName;
     maxUpdates = cfg.getInt("change", null, "maxUpdates", MAX_UPDATES_DEFAULT);
     maxPatchSets = cfg.getInt("change", null, "maxPatchSets", MAX_PATCH_SETS_DEFAULT);
+    pipelined = cfg.getBoolean("notedb", null, "pipelinedUpdates", false);
     changeUpdates = MultimapBuilder.hashKeys().arrayListValues().build();
     draftUpdates = MultimapBuilder.hashKeys().arrayListValues().build();
     robotCommentUpdates = MultimapBuilder.hashKeys().arrayListValues().build();
@@ -334,14 +344,31 @@ public class NoteDbUpdateManager implements AutoCloseable {
       // we may have stale draft comments. Doing it in this order allows stale
       // comments to be filtered out by ChangeNotes, reflecting the fact that
       // comments can only go from DRAFT to PUBLISHED, not vice versa.
+      //
+      // In pipelined mode the objects for All-Users are written while the change repo is updated.
+      // The All-Users refs are still only updated after the change refs were updated.
+      Future<?> allUsersFlush = pipelined && !dryrun ? flushAsync(allUsersRepo) : null;
       BatchRefUpdate result;
       try (TraceContext.TraceTimer ignored =
           newTimer("NoteDbUpdateManager#updateRepo", Metadata.empty())) {
         result = execute(changeRepo, dryrun, pushCert);
+      } catch (IOException | RuntimeException e) {
+        if (allUsersFlush != null) {
+          // Don't close the All-Users repo while its objects are still being written.
+          try {
+            awaitFlush(allUsersFlush);
+          } catch (IOException | RuntimeException e2) {
+            e.addSuppressed(e2);
+          }
+        }
+        throw e;
+      }
+      if (allUsersFlush != null) {
+        awaitFlush(allUsersFlush);
       }
       try (TraceContext.TraceTimer ignored =
           newTimer("NoteDbUpdateManager#updateAllUsersSync", Metadata.empty())) {
-        execute(allUsersRepo, dryrun, null);
+        execute(allUsersRepo, dryrun, null, allUsersFlush == null);
       }
       if (!dryrun) {
         // Only execute the asynchronous operation if we are not in dry-run mode: The dry run would
@@ -365,18 +392,52 @@ public class NoteDbUpdateManager implements AutoCloseable {
                 cu -> cu.getAttentionSetUpdates().stream()));
   }
 
+  @Nullable
+  private Future<?> flushAsync(@Nullable OpenRepo or) {
+    if (or == null || or.cmds.isEmpty()) {
+      return null;
+    }
+    return executor.submit(
+        () -> {
+          or.flush();
+          return null;
+        });
+  }
+
+  private static void awaitFlush(Future<?> flush) throws IOException {
+    try {
+      flush.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing objects", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
+  }
+
   @Nullable
   private BatchRefUpdate execute(OpenRepo or, boolean dryrun, @Nullable PushCertificate pushCert)
       throws IOException {
+    return execute(or, dryrun, pushCert, true);
+  }
+
+  @Nullable
+  private BatchRefUpdate execute(
+      OpenRepo or, boolean dryrun, @Nullable PushCertificate pushCert, boolean flush)
+      throws IOException {
     if (or == null || or.cmds.isEmpty()) {
       return null;
     }
-    if (!dryrun) {
-      or.flush();
-    } else {
-      // OpenRepo buffers objects separately; caller may assume that objects are available in the
-      // inserter it previously passed via setChangeRepo.
-      or.flushToFinalInserter();
+    if (flush) {
+      if (!dryrun) {
+        or.flush();
+      } else {
+        // OpenRepo buffers objects separately; caller may assume that objects are available in the
+        // inserter it previously passed via setChangeRepo.
+        or.flushToFinalInserter();
+      }
     }
 
     BatchRefUpdate bru = or.repo.getRefDatabase().newBatchUpdate();
@@ -0,0 +1,271 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.Histogram0;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.update.RepoView;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+/**
+ * Store of the auto-merge commits of merge commits.
+ *
+ * <p>Recently used auto-merge commits are kept in an in-memory cache, so that they are found
+ * without looking up their {@code refs/cache-automerge/} ref. The cache only contains auto-merge
+ * commits that are stored in the repository.
+ *
+ * <p>If {@code change.cacheAutomergeAsync} is set, creating a change or patch set for a merge
+ * commit doesn't compute the auto-merge commit and doesn't update its ref in the request. Instead
+ * the merge commit is queued, and the auto-merge commits of all queued merge commits of a project
+ * are computed and their refs created in the background, with one batch ref update. Reads never
+ * update refs: an auto-merge commit that is needed before its ref is created, e.g. because the
+ * patch set is diffed against it, is computed by the reader and only its objects are inserted. The
+ * reader schedules the merge commit again, which also covers merge commits whose scheduled refs
+ * were lost because the server didn't stop cleanly. Since the auto-merge commit only depends on the
+ * merge commit, the ref created in the background points to the same commit that comments may
+ * already reference.
+ */
+@Singleton
+public class AutoMergeStore {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String CACHE_NAME = "auto_merge";
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        // Auto-merge commits without ref may be pruned from the repository, so entries expire.
+        cache(CACHE_NAME, Key.class, ObjectId.class)
+            .maximumWeight(10_000)
+            .expireAfterWrite(Duration.ofDays(1));
+        bind(AutoMergeStore.class);
+      }
+    };
+  }
+
+  @AutoValue
+  abstract static class Key {
+    static Key create(Project.NameKey project, ObjectId merge) {
+      return new AutoValue_AutoMergeStore_Key(project, merge.copy());
+    }
+
+    abstract Project.NameKey project();
+
+    abstract ObjectId merge();
+  }
+
+  @Singleton
+  static class Metrics {
+    final Counter1<Boolean> lookups;
+    final Histogram0 batchSize;
+
+    @Inject
+    Metrics(MetricMaker metricMaker) {
+      lookups =
+          metricMaker.newCounter(
+              "git/auto-merge/store_lookups",
+              new Description("Lookups of auto-merge commits in the in-memory store")
+                  .setRate()
+                  .setUnit("lookups"),
+              Field.ofBoolean("hit", (metadataBuilder, fieldValue) -> {})
+                  .description("Whether the auto-merge commit was found in the store.")
+                  .build());
+      batchSize =
+          metricMaker.newHistogram(
+              "git/auto-merge/ref_batch_size",
+              new Description(
+                      "Number of auto-merge refs created in the background with one batch ref"
+                          + " update")
+                  .setCumulative()
+                  .setUnit("refs"));
+    }
+  }
+
+  private final Cache<Key, ObjectId> recent;
+  private final GitRepositoryManager repoManager;
+  private final Provider<AutoMerger> autoMerger;
+  private final Metrics metrics;
+  private final long batchDelayMillis;
+  @Nullable private final ScheduledExecutorService executor;
+
+  /** Merge commits whose auto-merge refs are still to be created, by project. */
+  private Map<Project.NameKey, Set<ObjectId>> pending = new HashMap<>();
+
+  private boolean flushScheduled;
+
+  @Inject
+  AutoMergeStore(
+      @Named(CACHE_NAME) Cache<Key, ObjectId> recent,
+      GitRepositoryManager repoManager,
+      Provider<AutoMerger> autoMerger,
+      Metrics metrics,
+      WorkQueue workQueue,
+      @GerritServerConfig Config cfg) {
+    this.recent = recent;
+    this.repoManager = repoManager;
+    this.autoMerger = autoMerger;
+    this.metrics = metrics;
+    this.batchDelayMillis =
+        ConfigUtil.getTimeUnit(
+            cfg,
+            "change",
+            null,
+            "cacheAutomergeBatchDelay",
+            TimeUnit.SECONDS.toMillis(5),
+            TimeUnit.MILLISECONDS);
+    this.executor =
+        AutoMerger.cacheAutomerge(cfg)
+                && cfg.getBoolean("change", null, "cacheAutomergeAsync", false)
+            ? workQueue.createQueue(1, "AutoMergeStore", true)
+            : null;
+  }
+
+  /** Whether the auto-merge refs are created in the background, see {@link #schedule}. */
+  boolean isAsync() {
+    return executor != null;
+  }
+
+  /** Returns the auto-merge commit of the merge commit, if it's known to be in the repository. */
+  Optional<ObjectId> get(Project.NameKey project, ObjectId merge) {
+    ObjectId autoMerge = recent.getIfPresent(Key.create(project, merge));
+    metrics.lookups.increment(autoMerge != null);
+    return Optional.ofNullable(autoMerge);
+  }
+
+  /** Records the auto-merge commit of the merge commit, which must be in the repository. */
+  void put(Project.NameKey project, ObjectId merge, ObjectId autoMerge) {
+    recent.put(Key.create(project, merge), autoMerge.copy());
+  }
+
+  /**
+   * Schedules creating the auto-merge commit and its ref for the merge commit in the background. If
+   * the ref exists by then, nothing is done for the merge commit.
+   *
+   * <p>Must only be called if {@link #isAsync()}.
+   */
+  synchronized void schedule(Project.NameKey project, ObjectId merge) {
+    pending.computeIfAbsent(project, p -> new HashSet<>()).add(merge.copy());
+    if (!flushScheduled) {
+      flushScheduled = true;
+      @SuppressWarnings("unused")
+      Future<?> possiblyIgnoredError =
+          executor.schedule(this::flush, batchDelayMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Creates the auto-merge commits and refs of all scheduled merge commits. */
+  @VisibleForTesting
+  public void flush() {
+    Map<Project.NameKey, Set<ObjectId>> batch;
+    synchronized (this) {
+      batch = pending;
+      pending = new HashMap<>();
+      flushScheduled = false;
+    }
+    batch.forEach(
+        (project, merges) -> {
+          try {
+            createRefs(project, merges);
+          } catch (IOException e) {
+            logger.atWarning().withCause(e).log(
+                "Failed to create %d auto-merge refs in %s", merges.size(), project);
+          }
+        });
+  }
+
+  private void createRefs(Project.NameKey project, Set<ObjectId> merges) throws IOException {
+    try (Repository repo = repoManager.openRepository(project);
+        ObjectInserter ins = repo.newObjectInserter();
+        ObjectReader reader = ins.newReader();
+        RevWalk rw = new RevWalk(reader)) {
+      RepoView repoView = new RepoView(repo, rw, ins);
+      BatchRefUpdate bru = repo.getRefDatabase().newBatchUpdate();
+      // Refs created concurrently by another server must not fail the other updates.
+      bru.setAtomic(false);
+      Map<String, ObjectId> mergesByRef = new HashMap<>();
+      for (ObjectId merge : merges) {
+        String refName = RefNames.refsCacheAutomerge(merge.name());
+        if (repo.exactRef(refName) != null) {
+          continue;
+        }
+        RevCommit mergeCommit;
+        try {
+          mergeCommit = rw.parseCommit(merge);
+        } catch (MissingObjectException e) {
+          // The change or patch set was not created after all.
+          continue;
+        }
+        ObjectId autoMerge = autoMerger.get().createAutoMergeCommit(repoView, rw, ins, mergeCommit);
+        bru.addCommand(new ReceiveCommand(ObjectId.zeroId(), autoMerge, refName));
+        mergesByRef.put(refName, merge);
+      }
+      if (bru.getCommands().isEmpty()) {
+        return;
+      }
+      ins.flush();
+      bru.execute(rw, NullProgressMonitor.INSTANCE);
+      metrics.batchSize.record(bru.getCommands().size());
+      for (ReceiveCommand cmd : bru.getCommands()) {
+        if (cmd.getResult() == ReceiveCommand.Result.OK) {
+          put(project, mergesByRef.get(cmd.getRefName()), cmd.getNewId());
+        } else {
+          logger.atFine().log(
+              "Auto-merge ref %s not created: %s", cmd.getRefName(), cmd.getResult());
+        }
+      }
+    }
+  }
+}
@@ -17,7 +17,9 @@ package com.google.gerrit.server.patch;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.UsedAt;
+import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.metrics.Counter1;
 import com.google.gerrit.metrics.Description;
@@ -71,6 +73,9 @@ import org.eclipse.jgit.transport.ReceiveCommand;
  *
  * <p>The second point means that these commits are referenced from NoteDb. The consequence of this
  * is that these refs should never be deleted.
+ *
+ * <p>If {@code change.cacheAutomergeAsync} is set, the auto-merge commits and refs of new changes
+ * and patch sets are created in the background by the {@link AutoMergeStore}.
  */
 @Singleton
 public class AutoMerger {
@@ -92,6 +97,7 @@ public class AutoMerger {
   private final Counter1<OperationType> counter;
   private final Timer1<OperationType> latency;
   private final Provider<PersonIdent> gerritIdentProvider;
+  private final AutoMergeStore autoMergeStore;
   private final boolean save;
   private final ThreeWayMergeStrategy configuredMergeStrategy;
 
@@ -99,7 +105,8 @@ public class AutoMerger {
   AutoMerger(
       MetricMaker metricMaker,
       @GerritServerConfig Config cfg,
-      @GerritPersonIdent Provider<PersonIdent> gerritIdentProvider) {
+      @GerritPersonIdent Provider<PersonIdent> gerritIdentProvider,
+      AutoMergeStore autoMergeStore) {
     Field<OperationType> operationTypeField =
         Field.ofEnum(OperationType.class, "type", Metadata.Builder::operationName)
             .description("The type of the operation (CACHE_LOAD, IN_MEMORY_WRITE, ON_DISK_WRITE).")
@@ -118,6 +125,7 @@ public class AutoMerger {
             operationTypeField);
     this.save = cacheAutomerge(cfg);
     this.gerritIdentProvider = gerritIdentProvider;
+    this.autoMergeStore = autoMergeStore;
     this.configuredMergeStrategy = MergeUtil.getMergeStrategy(cfg);
   }
 
@@ -164,6 +172,27 @@ public class AutoMerger {
   public Optional<ReceiveCommand> createAutoMergeCommitIfNecessary(
       RepoView repoView, RevWalk rw, ObjectInserter ins, RevCommit maybeMergeCommit)
       throws IOException {
+    return createAutoMergeCommitIfNecessary(null, repoView, rw, ins, maybeMergeCommit);
+  }
+
+  /**
+   * Like {@link #createAutoMergeCommitIfNecessary(RepoView, RevWalk, ObjectInserter, RevCommit)},
+   * but if the auto-merge commits are created asynchronously, the merge commit is only scheduled in
+   * the {@link AutoMergeStore} and no {@link ReceiveCommand} is returned.
+   *
+   * @param project the project of the merge commit, or {@code null} to always create the auto merge
+   *     commit synchronously.
+   * @return A {@link ReceiveCommand} wrapped in an {@link Optional} to be used in a {@link
+   *     org.eclipse.jgit.lib.BatchRefUpdate}. {@link Optional#empty()} in case we don't need an
+   *     auto merge commit, or it's created asynchronously.
+   */
+  public Optional<ReceiveCommand> createAutoMergeCommitIfNecessary(
+      @Nullable Project.NameKey project,
+      RepoView repoView,
+      RevWalk rw,
+      ObjectInserter ins,
+      RevCommit maybeMergeCommit)
+      throws IOException {
     if (maybeMergeCommit.getParentCount() != 2 || !save) {
       logger.atFine().log("AutoMerge not required");
       return Optional.empty();
@@ -175,6 +204,11 @@ public class AutoMerger {
       logger.atFine().log("AutoMerge alredy exists");
       return Optional.empty();
     }
+    if (project != null && autoMergeStore.isAsync()) {
+      logger.atFine().log("AutoMerge scheduled");
+      autoMergeStore.schedule(project, maybeMergeCommit);
+      return Optional.empty();
+    }
 
     return Optional.of(
         new ReceiveCommand(
@@ -39,14 +39,20 @@ import org.eclipse.jgit.revwalk.RevWalk;
 @Singleton
 class BaseCommitUtil {
   private final AutoMerger autoMerger;
+  private final AutoMergeStore autoMergeStore;
   private final GitRepositoryManager repoManager;
 
   /** If true, auto-merge results are stored in the repository. */
   private final boolean saveAutomerge;
 
   @Inject
-  BaseCommitUtil(AutoMerger am, @GerritServerConfig Config cfg, GitRepositoryManager repoManager) {
+  BaseCommitUtil(
+      AutoMerger am,
+      AutoMergeStore autoMergeStore,
+      @GerritServerConfig Config cfg,
+      GitRepositoryManager repoManager) {
     this.autoMerger = am;
+    this.autoMergeStore = autoMergeStore;
     this.saveAutomerge = AutoMerger.cacheAutomerge(cfg);
     this.repoManager = repoManager;
   }
@@ -57,7 +63,7 @@ class BaseCommitUtil {
         ObjectInserter ins = newInserter(repo);
         ObjectReader reader = ins.newReader();
         RevWalk rw = new RevWalk(reader)) {
-      return getParentCommit(repo, ins, rw, parentNum, newCommit);
+      return getParentCommit(project, repo, ins, rw, parentNum, newCommit);
     }
   }
 
@@ -81,6 +87,7 @@ class BaseCommitUtil {
   /**
    * Returns the parent commit Object of the commit represented by the commitId parameter.
    *
+   * @param project name of the git repository.
    * @param repo a git repository.
    * @param ins a git object inserter in the database.
    * @param rw a {@link RevWalk} object of the repository.
@@ -93,6 +100,7 @@ class BaseCommitUtil {
    */
   @Nullable
   RevObject getParentCommit(
+      Project.NameKey project,
       Repository repo,
       ObjectInserter ins,
       RevWalk rw,
@@ -118,28 +126,44 @@ class BaseCommitUtil {
                 "diff against auto-merge commits is only supported if 'change.cacheAutomerge' config is set to true.");
           }
           // TODO(ghareeb): Avoid persisting auto-merge commits.
-          return getAutoMergeFromGitOrCreate(repo, ins, rw, current);
+          return getAutoMergeFromGitOrCreate(project, repo, ins, rw, current);
         }
         return null;
     }
   }
 
   /**
-   * Gets the auto-merge commit from git if it already exists. If not, the auto-merge is created,
-   * persisted in git and the cache-automerge ref is updated for the merge commit.
+   * Gets the auto-merge commit from the {@link AutoMergeStore} or from git if it already exists. If
+   * not, the auto-merge commit is created and its objects are inserted into git, but no ref is
+   * updated. If the auto-merge refs of new patch sets are created asynchronously, the merge commit
+   * is scheduled in the {@link AutoMergeStore}, which creates the ref in the background. As the
+   * auto-merge commit only depends on the merge commit, the ref then points to the returned commit.
    *
    * @return the auto-merge {@link RevCommit}
    */
   private RevCommit getAutoMergeFromGitOrCreate(
-      Repository repo, ObjectInserter ins, RevWalk rw, RevCommit mergeCommit) throws IOException {
+      Project.NameKey project,
+      Repository repo,
+      ObjectInserter ins,
+      RevWalk rw,
+      RevCommit mergeCommit)
+      throws IOException {
+    Optional<ObjectId> stored = autoMergeStore.get(project, mergeCommit);
+    if (stored.isPresent()) {
+      return rw.parseCommit(stored.get());
+    }
     String refName = RefNames.refsCacheAutomerge(mergeCommit.name());
     Optional<RevCommit> autoMergeCommit = autoMerger.lookupCommit(repo, rw, refName);
     if (autoMergeCommit.isPresent()) {
+      autoMergeStore.put(project, mergeCommit, autoMergeCommit.get());
       return autoMergeCommit.get();
     }
     ObjectId autoMergeId =
         autoMerger.createAutoMergeCommit(new RepoView(repo, rw, ins), rw, ins, mergeCommit);
     ins.flush();
+    if (autoMergeStore.isAsync()) {
+      autoMergeStore.schedule(project, mergeCommit);
+    }
     return rw.parseCommit(autoMergeId);
   }
 
@@ -0,0 +1,122 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import com.google.gerrit.server.cancellation.RequestCancelledException;
+import com.google.gerrit.server.cancellation.RequestStateContext;
+import com.google.gerrit.server.cancellation.RequestStateProvider;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.diff.SequenceComparator;
+
+/**
+ * Diff algorithm that aborts when the request on whose behalf it runs is cancelled.
+ *
+ * <p>The loops of the JGit diff algorithms can't be interrupted. This wraps a JGit {@link
+ * DiffAlgorithm} and checks the {@link com.google.gerrit.server.cancellation.RequestStateProvider}s
+ * of the current thread periodically while the algorithm compares the elements of the sequences.
+ * If the request was cancelled, e.g. because its deadline was exceeded, the diff computation is
+ * aborted with a {@link RequestCancelledException}.
+ *
+ * <p>Diffs that are computed on the {@link DiffExecutor} must be submitted with {@link
+ * #submit(ExecutorService, Callable)} or {@link RequestStateContext#copy(Callable)} for the
+ * cancellation of the request to be noticed.
+ */
+public class CancellableDiffAlgorithm extends DiffAlgorithm {
+  /** Mask for the number of comparisons after which it's checked whether to abort. */
+  private static final int CHECK_MASK = (1 << 12) - 1;
+
+  public static DiffAlgorithm wrap(DiffAlgorithm diffAlgorithm) {
+    if (diffAlgorithm instanceof CancellableDiffAlgorithm) {
+      return diffAlgorithm;
+    }
+    return new CancellableDiffAlgorithm(diffAlgorithm);
+  }
+
+  /**
+   * Submits a diff computation to the executor, so that it aborts when the current request is
+   * cancelled, or when the returned future is cancelled, e.g. because the caller stopped waiting
+   * for the result.
+   */
+  public static <T> Future<T> submit(ExecutorService executor, Callable<T> task) {
+    AtomicReference<Future<T>> future = new AtomicReference<>();
+    RequestStateProvider futureCancelled =
+        onCancelled -> {
+          if (future.get().isCancelled()) {
+            onCancelled.onCancel(
+                RequestStateProvider.Reason.SERVER_DEADLINE_EXCEEDED, "diff computation cancelled");
+          }
+        };
+    FutureTask<T> futureTask =
+        new FutureTask<>(
+            RequestStateContext.copy(
+                () -> {
+                  try (RequestStateContext requestStateContext =
+                      RequestStateContext.open().addRequestStateProvider(futureCancelled)) {
+                    return task.call();
+                  }
+                }));
+    future.set(futureTask);
+    executor.execute(futureTask);
+    return futureTask;
+  }
+
+  private final DiffAlgorithm diffAlgorithm;
+
+  private CancellableDiffAlgorithm(DiffAlgorithm diffAlgorithm) {
+    this.diffAlgorithm = diffAlgorithm;
+  }
+
+  @Override
+  public <S extends Sequence> EditList diffNonCommon(
+      SequenceComparator<? super S> cmp, S a, S b) {
+    RequestStateContext.abortIfCancelled();
+    return diffAlgorithm.diffNonCommon(new CancellableComparator<S>(cmp), a, b);
+  }
+
+  private static class CancellableComparator<S extends Sequence> extends SequenceComparator<S> {
+    private final SequenceComparator<? super S> cmp;
+    private int comparisons;
+
+    CancellableComparator(SequenceComparator<? super S> cmp) {
+      this.cmp = cmp;
+    }
+
+    @Override
+    public boolean equals(S a, int ai, S b, int bi) {
+      if ((++comparisons & CHECK_MASK) == 0) {
+        RequestStateContext.abortIfCancelled();
+      }
+      return cmp.equals(a, ai, b, bi);
+    }
+
+    @Override
+    public int hash(S seq, int ptr) {
+      return cmp.hash(seq, ptr);
+    }
+
+    @Override
+    public Edit reduceCommonStartEnd(S a, S b, Edit e) {
+      return cmp.reduceCommonStartEnd(a, b, e);
+    }
+  }
+}
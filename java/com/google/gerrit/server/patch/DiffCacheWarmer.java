@@ -0,0 +1,200 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import com.google.gerrit.extensions.events.RevisionCreatedListener;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Computes the diffs of new patch sets in the background, so that the first reviewer who opens a
+ * patch set finds them in the diff caches.
+ *
+ * <p>For each new patch set the modified files and the file diffs against its parent and against
+ * the previous patch set are computed on a low-priority queue. Patch sets with more modified files
+ * than {@code change.precomputeDiffsMaxFiles} are skipped.
+ *
+ * <p>Disabled unless {@code change.precomputeDiffs} is set.
+ */
+@Singleton
+public class DiffCacheWarmer implements RevisionCreatedListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  @Singleton
+  static class Metrics {
+    final Timer0 latency;
+    final Counter0 skipped;
+    final Counter1<Boolean> firstViews;
+
+    @Inject
+    Metrics(MetricMaker metricMaker) {
+      latency =
+          metricMaker.newTimer(
+              "diff/warming/latency",
+              new Description("Latency of precomputing the diffs of a new patch set")
+                  .setCumulative()
+                  .setUnit(Units.MILLISECONDS));
+      skipped =
+          metricMaker.newCounter(
+              "diff/warming/skipped",
+              new Description(
+                      "Number of new patch sets whose diffs were not precomputed because they"
+                          + " modify too many files")
+                  .setRate()
+                  .setUnit("patch sets"));
+      firstViews =
+          metricMaker.newCounter(
+              "diff/warming/first_views",
+              new Description("First views of the files of new patch sets")
+                  .setRate()
+                  .setUnit("views"),
+              Field.ofBoolean("warmed", (metadataBuilder, fieldValue) -> {})
+                  .description(
+                      "Whether the diffs of the patch set were precomputed before it was first"
+                          + " viewed.")
+                  .build());
+    }
+  }
+
+  private final DiffOperations diffOperations;
+  private final ChangeNotes.Factory notesFactory;
+  private final Metrics metrics;
+  private final int maxFiles;
+  @Nullable private final ExecutorService executor;
+
+  /**
+   * Commits of new patch sets that were not viewed yet, mapped to whether their diffs were
+   * precomputed.
+   */
+  private final Cache<ObjectId, Boolean> notViewed =
+      CacheBuilder.newBuilder().maximumSize(10_000).expireAfterWrite(Duration.ofDays(7)).build();
+
+  @Inject
+  DiffCacheWarmer(
+      DiffOperations diffOperations,
+      ChangeNotes.Factory notesFactory,
+      Metrics metrics,
+      WorkQueue workQueue,
+      @GerritServerConfig Config cfg) {
+    this(
+        diffOperations,
+        notesFactory,
+        metrics,
+        cfg.getBoolean("change", null, "precomputeDiffs", false)
+            ? workQueue.createQueue(1, "DiffCacheWarmer", Thread.MIN_PRIORITY, true)
+            : null,
+        cfg.getInt("change", null, "precomputeDiffsMaxFiles", 500));
+  }
+
+  @VisibleForTesting
+  DiffCacheWarmer(
+      DiffOperations diffOperations,
+      ChangeNotes.Factory notesFactory,
+      Metrics metrics,
+      @Nullable ExecutorService executor,
+      int maxFiles) {
+    this.diffOperations = diffOperations;
+    this.notesFactory = notesFactory;
+    this.metrics = metrics;
+    this.executor = executor;
+    this.maxFiles = maxFiles;
+  }
+
+  @Override
+  public void onRevisionCreated(Event event) {
+    if (executor == null) {
+      return;
+    }
+    Project.NameKey project = Project.nameKey(event.getChange().project);
+    RevisionInfo revision = event.getRevision();
+    PatchSet.Id psId = PatchSet.id(Change.id(event.getChange()._number), revision._number);
+    if (revision.commit != null && revision.commit.commit != null) {
+      notViewed.put(ObjectId.fromString(revision.commit.commit), false);
+    }
+    @SuppressWarnings("unused")
+    Future<?> possiblyIgnoredError = executor.submit(() -> warm(project, psId));
+  }
+
+  /**
+   * Records that the files of the patch set with the given commit are viewed, for the hit rate of
+   * the precomputation.
+   */
+  public void recordView(ObjectId commit) {
+    if (executor == null) {
+      return;
+    }
+    Boolean warmed = notViewed.asMap().remove(commit);
+    if (warmed != null) {
+      metrics.firstViews.increment(warmed);
+    }
+  }
+
+  private void warm(Project.NameKey project, PatchSet.Id psId) {
+    try (Timer0.Context ignored = metrics.latency.start()) {
+      ChangeNotes notes = notesFactory.createChecked(project, psId.changeId());
+      PatchSet ps = notes.getPatchSets().get(psId);
+      if (ps == null) {
+        return;
+      }
+      ObjectId commit = ps.commitId();
+      Map<ObjectId, Boolean> notViewedMap = notViewed.asMap();
+      // Setting parentNum=0 requests the default parent, which is the only parent for
+      // single-parent commits, or the auto-merge otherwise
+      if (diffOperations.countModifiedFilesAgainstParent(project, commit, /* parentNum= */ 0)
+          > maxFiles) {
+        metrics.skipped.increment();
+        notViewedMap.remove(commit);
+        return;
+      }
+
+      diffOperations.listModifiedFilesAgainstParent(
+          project, commit, /* parentNum= */ 0, DiffOptions.DEFAULTS);
+      Map.Entry<PatchSet.Id, PatchSet> previous =
+          notes.getPatchSets().headMap(psId, false).lastEntry();
+      if (previous != null) {
+        diffOperations.listModifiedFiles(
+            project, previous.getValue().commitId(), commit, DiffOptions.DEFAULTS);
+      }
+      notViewedMap.replace(commit, false, true);
+    } catch (Exception e) {
+      logger.atWarning().withCause(e).log("Failed to precompute diffs of %s in %s", psId, project);
+    }
+  }
+}
@@ -15,14 +15,30 @@
 package com.google.gerrit.server.patch;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.logging.LoggingContextAwareExecutorService;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Config;
 
-/** Module providing the {@link DiffExecutor}. */
+/**
+ * Module providing the {@link DiffExecutor}.
+ *
+ * <p>The executor has a bounded number of threads and a bounded queue, so that the number of diffs
+ * that are computed concurrently doesn't grow without bounds. Tasks that don't fit into the queue,
+ * or that are submitted after shutdown, are rejected with a {@link RejectedExecutionException}.
+ * The diff loaders report them as {@link DiffNotAvailableException}, so that the results are not
+ * cached.
+ */
 public class DiffExecutorModule extends AbstractModule {
 
   @Override
@@ -31,9 +47,41 @@ public class DiffExecutorModule extends AbstractModule {
   @Provides
   @Singleton
   @DiffExecutor
-  public ExecutorService provideDiffExecutor() {
-    return new LoggingContextAwareExecutorService(
-        Executors.newCachedThreadPool(
-            new ThreadFactoryBuilder().setNameFormat("Diff-%d").setDaemon(true).build()));
+  public ExecutorService provideDiffExecutor(
+      @GerritServerConfig Config config, MetricMaker metricMaker) {
+    int poolSize =
+        Math.max(
+            config.getInt(
+                "execution",
+                null,
+                "diffThreadPoolSize",
+                2 * Runtime.getRuntime().availableProcessors()),
+            1);
+    int queueSize = config.getInt("execution", null, "diffQueueSize", 1000);
+    Counter0 rejections =
+        metricMaker.newCounter(
+            "diff/executor/rejections",
+            new Description(
+                    "Number of diff computations that were rejected by the diff executor because"
+                        + " its queue was full")
+                .setRate()
+                .setUnit("tasks"));
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(Math.max(queueSize, 1)),
+            new ThreadFactoryBuilder().setNameFormat("Diff-%d").setDaemon(true).build(),
+            (r, e) -> {
+              if (e.isShutdown()) {
+                throw new RejectedExecutionException("diff executor is shut down");
+              }
+              rejections.increment();
+              throw new RejectedExecutionException("diff executor queue is full");
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return new LoggingContextAwareExecutorService(executor);
   }
 }
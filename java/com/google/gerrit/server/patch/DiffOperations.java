@@ -63,6 +63,21 @@ public interface DiffOperations {
       Project.NameKey project, ObjectId newCommit, int parentNum, DiffOptions diffOptions)
       throws DiffNotAvailableException;
 
+  /**
+   * Returns the number of files that differ between a commit and one of its parents, not counting
+   * the commit message and merge list. Only the list of modified files is retrieved from the diff
+   * cache, the file diffs aren't computed.
+   *
+   * @param project a project name representing a git repository.
+   * @param newCommit 20 bytes SHA-1 of the new commit used in the diff.
+   * @param parentNum integer specifying which parent to use as base. If zero, the only parent will
+   *     be used or the auto-merge if {@code newCommit} is a merge commit.
+   * @throws DiffNotAvailableException if the {@code newCommit} could not be parsed for extracting
+   *     the base commit, or if an internal error occurred in Git while evaluating the diff.
+   */
+  int countModifiedFilesAgainstParent(Project.NameKey project, ObjectId newCommit, int parentNum)
+      throws DiffNotAvailableException;
+
   /**
    * This method is similar to {@link #listModifiedFilesAgainstParent(NameKey, ObjectId, int,
    * DiffOptions)} but loads the modified files directly instead of retrieving them from the diff
@@ -103,6 +118,21 @@ public interface DiffOperations {
       Project.NameKey project, ObjectId oldCommit, ObjectId newCommit, DiffOptions diffOptions)
       throws DiffNotAvailableException;
 
+  /**
+   * Returns the number of files that differ between a commit and one of its parents, not counting
+   * the commit message and merge list. Only the list of modified files is retrieved from the diff
+   * cache, the file diffs aren't computed.
+   *
+   * @param project a project name representing a git repository.
+   * @param newCommit 20 bytes SHA-1 of the new commit used in the diff.
+   * @param parentNum integer specifying which parent to use as base. If zero, the only parent will
+   *     be used or the auto-merge if {@code newCommit} is a merge commit.
+   * @throws DiffNotAvailableException if the {@code newCommit} could not be parsed for extracting
+   *     the base commit, or if an internal error occurred in Git while evaluating the diff.
+   */
+  int countModifiedFilesAgainstParent(Project.NameKey project, ObjectId newCommit, int parentNum)
+      throws DiffNotAvailableException;
+
   /**
    * This method is similar to {@link #listModifiedFilesAgainstParent(NameKey, ObjectId, int,
    * DiffOptions)} but loads the modified files directly instead of retrieving them from the diff
@@ -29,6 +29,7 @@ import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
 import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.patch.diff.ModifiedFilesCache;
 import com.google.gerrit.server.patch.diff.ModifiedFilesCacheImpl;
 import com.google.gerrit.server.patch.diff.ModifiedFilesCacheKey;
@@ -80,13 +81,14 @@ public class DiffOperationsImpl implements DiffOperations {
           Patch.ChangeType.COPIED);
 
   private static final int RENAME_SCORE = 60;
-  private static final DiffAlgorithm DEFAULT_DIFF_ALGORITHM =
+  static final DiffAlgorithm DEFAULT_DIFF_ALGORITHM =
       DiffAlgorithm.HISTOGRAM_WITH_FALLBACK_MYERS;
   private static final Whitespace DEFAULT_WHITESPACE = Whitespace.IGNORE_NONE;
 
   private final ModifiedFilesCache modifiedFilesCache;
   private final FileDiffCache fileDiffCache;
   private final BaseCommitUtil baseCommitUtil;
+  private final DiffAlgorithm diffAlgorithm;
 
   public static Module module() {
     return new CacheModule() {
@@ -97,6 +99,8 @@ public class DiffOperationsImpl implements DiffOperations {
         install(ModifiedFilesCacheImpl.module());
         install(GitFileDiffCacheImpl.module());
         install(FileDiffCacheImpl.module());
+        install(AutoMergeStore.module());
+        install(FileSummaryCache.module());
       }
     };
   }
@@ -105,10 +109,13 @@ public class DiffOperationsImpl implements DiffOperations {
   public DiffOperationsImpl(
       ModifiedFilesCache modifiedFilesCache,
       FileDiffCache fileDiffCache,
-      BaseCommitUtil baseCommit) {
+      BaseCommitUtil baseCommit,
+      @GerritServerConfig Config cfg) {
     this.modifiedFilesCache = modifiedFilesCache;
     this.fileDiffCache = fileDiffCache;
     this.baseCommitUtil = baseCommit;
+    this.diffAlgorithm =
+        cfg.getEnum("cache", "git_file_diff", "algorithm", DEFAULT_DIFF_ALGORITHM);
   }
 
   @Override
@@ -124,6 +131,21 @@ public class DiffOperationsImpl implements DiffOperations {
     }
   }
 
+  @Override
+  public int countModifiedFilesAgainstParent(
+      Project.NameKey project, ObjectId newCommit, int parentNum)
+      throws DiffNotAvailableException {
+    try {
+      DiffParameters diffParams = computeDiffParameters(project, newCommit, parentNum);
+      return modifiedFilesCache
+          .get(createModifiedFilesKey(project, diffParams.baseCommit(), newCommit))
+          .size();
+    } catch (IOException e) {
+      throw new DiffNotAvailableException(
+          "Failed to evaluate the parent/base commit for commit " + newCommit, e);
+    }
+  }
+
   @Override
   public Map<String, ModifiedFile> loadModifiedFilesAgainstParent(
       Project.NameKey project,
@@ -194,7 +216,7 @@ public class DiffOperationsImpl implements DiffOperations {
               diffParams.baseCommit(),
               newCommit,
               fileName,
-              DEFAULT_DIFF_ALGORITHM,
+              diffAlgorithm,
               /* useTimeout= */ true,
               whitespace);
       return getModifiedFileForKey(key);
@@ -218,7 +240,7 @@ public class DiffOperationsImpl implements DiffOperations {
             oldCommit,
             newCommit,
             fileName,
-            DEFAULT_DIFF_ALGORITHM,
+            diffAlgorithm,
             /* useTimeout= */ true,
             whitespace);
     return getModifiedFileForKey(key);
@@ -231,6 +253,7 @@ public class DiffOperationsImpl implements DiffOperations {
       ObjectId newCommit = diffParams.newCommit();
       ObjectId oldCommit = diffParams.baseCommit();
       ComparisonType cmp = diffParams.comparisonType();
+      DiffAlgorithm algorithm = diffOptions.diffAlgorithm().orElse(diffAlgorithm);
 
       ImmutableList<ModifiedFile> modifiedFiles =
           modifiedFilesCache.get(createModifiedFilesKey(project, oldCommit, newCommit));
@@ -242,7 +265,7 @@ public class DiffOperationsImpl implements DiffOperations {
               oldCommit,
               newCommit,
               COMMIT_MSG,
-              DEFAULT_DIFF_ALGORITHM,
+              algorithm,
               /* useTimeout= */ true,
               /* whitespace= */ null));
 
@@ -253,7 +276,7 @@ public class DiffOperationsImpl implements DiffOperations {
                 oldCommit,
                 newCommit,
                 MERGE_LIST,
-                DEFAULT_DIFF_ALGORITHM,
+                algorithm,
                 /* useTimeout= */ true,
                 /*whitespace = */ null));
       }
@@ -269,7 +292,7 @@ public class DiffOperationsImpl implements DiffOperations {
                         entity.newPath().isPresent()
                             ? entity.newPath().get()
                             : entity.oldPath().get(),
-                        DEFAULT_DIFF_ALGORITHM,
+                        algorithm,
                         /* useTimeout= */ true,
                         /* whitespace= */ null))
             .forEach(fileCacheKeys::add);
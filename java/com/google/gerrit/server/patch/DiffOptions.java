@@ -15,6 +15,8 @@
 package com.google.gerrit.server.patch;
 
 import com.google.auto.value.AutoValue;
+import com.google.gerrit.server.patch.gitfilediff.GitFileDiffCacheImpl.DiffAlgorithm;
+import java.util.Optional;
 
 @AutoValue
 public abstract class DiffOptions {
@@ -23,6 +25,12 @@ public abstract class DiffOptions {
 
   public abstract boolean skipFilesWithAllEditsDueToRebase();
 
+  /**
+   * The algorithm to compute the file diffs with. If not set, the algorithm configured in {@code
+   * cache.git_file_diff.algorithm} is used.
+   */
+  public abstract Optional<DiffAlgorithm> diffAlgorithm();
+
   public static DiffOptions.Builder builder() {
     return new AutoValue_DiffOptions.Builder();
   }
@@ -31,6 +39,8 @@ public abstract class DiffOptions {
   public abstract static class Builder {
     public abstract Builder skipFilesWithAllEditsDueToRebase(boolean value);
 
+    public abstract Builder diffAlgorithm(DiffAlgorithm value);
+
     public abstract DiffOptions build();
   }
 }
@@ -14,14 +14,9 @@
 
 package com.google.gerrit.server.patch;
 
-import com.google.gerrit.entities.Patch;
 import com.google.gerrit.entities.Project;
-import com.google.gerrit.server.patch.filediff.FileDiffOutput;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Callable;
 import org.eclipse.jgit.lib.ObjectId;
 
@@ -30,14 +25,14 @@ public class DiffSummaryLoader implements Callable<DiffSummary> {
     DiffSummaryLoader create(DiffSummaryKey key, Project.NameKey project);
   }
 
-  private final DiffOperations diffOperations;
+  private final FileSummaryCache fileSummaryCache;
   private final DiffSummaryKey key;
   private final Project.NameKey project;
 
   @Inject
   DiffSummaryLoader(
-      DiffOperations diffOps, @Assisted DiffSummaryKey k, @Assisted Project.NameKey p) {
-    diffOperations = diffOps;
+      FileSummaryCache cache, @Assisted DiffSummaryKey k, @Assisted Project.NameKey p) {
+    fileSummaryCache = cache;
     key = k;
     project = p;
   }
@@ -46,44 +41,10 @@ public class DiffSummaryLoader implements Callable<DiffSummary> {
   public DiffSummary call() throws Exception {
     ObjectId oldId = key.toPatchListKey().getOldId();
     ObjectId newId = key.toPatchListKey().getNewId();
-    Map<String, FileDiffOutput> diffList =
+    FileSummaries fileSummaries =
         oldId == null
-            ? diffOperations.listModifiedFilesAgainstParent(
-                project, newId, /* parentNum= */ 0, DiffOptions.DEFAULTS)
-            : diffOperations.listModifiedFiles(project, oldId, newId, DiffOptions.DEFAULTS);
-    return toDiffSummary(diffList);
-  }
-
-  private DiffSummary toDiffSummary(Map<String, FileDiffOutput> fileDiffs) {
-    List<String> r = new ArrayList<>(fileDiffs.size());
-    int linesInserted = 0;
-    int linesDeleted = 0;
-    for (String path : fileDiffs.keySet()) {
-      if (Patch.isMagic(path)) {
-        continue;
-      }
-      FileDiffOutput fileDiff = fileDiffs.get(path);
-      linesInserted += fileDiff.insertions();
-      linesDeleted += fileDiff.deletions();
-      switch (fileDiff.changeType()) {
-        case ADDED:
-        case MODIFIED:
-        case DELETED:
-        case COPIED:
-        case REWRITE:
-          r.add(
-              FilePathAdapter.getNewPath(
-                  fileDiff.oldPath(), fileDiff.newPath(), fileDiff.changeType()));
-          break;
-
-        case RENAMED:
-          r.add(FilePathAdapter.getOldPath(fileDiff.oldPath(), fileDiff.changeType()));
-          r.add(
-              FilePathAdapter.getNewPath(
-                  fileDiff.oldPath(), fileDiff.newPath(), fileDiff.changeType()));
-          break;
-      }
-    }
-    return new DiffSummary(r.stream().sorted().toArray(String[]::new), linesInserted, linesDeleted);
+            ? fileSummaryCache.getAgainstParent(project, newId, /* parentNum= */ 0)
+            : fileSummaryCache.get(project, oldId, newId);
+    return fileSummaries.toDiffSummary();
   }
 }
@@ -0,0 +1,233 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.gerrit.server.patch.DiffUtil.stringSize;
+
+import com.google.common.base.Strings;
+import com.google.gerrit.entities.Patch;
+import com.google.gerrit.extensions.common.FileInfo;
+import com.google.gerrit.proto.Protos;
+import com.google.gerrit.server.cache.proto.Cache.FileSummariesProto;
+import com.google.gerrit.server.cache.serialize.CacheSerializer;
+import com.google.gerrit.server.patch.filediff.FileDiffOutput;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Summaries of the files that differ between two commits, as shown in the file list of a revision.
+ *
+ * <p>The attributes of the files are stored in columns, i.e. one primitive array per attribute
+ * with one entry per file, rather than in one object per file. This keeps the summaries of
+ * revisions with many files compact in memory and on disk.
+ */
+public class FileSummaries {
+  private final String[] paths;
+  private final String[] oldPaths;
+  private final byte[] changeTypes;
+  private final BitSet binary;
+  private final int[] insertions;
+  private final int[] deletions;
+  private final long[] sizes;
+  private final long[] sizeDeltas;
+  private final int[] oldModes;
+  private final int[] newModes;
+
+  /**
+   * Creates the summaries of the given file diffs.
+   *
+   * @param fileDiffs file diffs by file path, as returned by {@link DiffOperations}.
+   */
+  public static FileSummaries create(Map<String, FileDiffOutput> fileDiffs) {
+    int n = fileDiffs.size();
+    FileSummaries s =
+        new FileSummaries(
+            new String[n],
+            new String[n],
+            new byte[n],
+            new BitSet(n),
+            new int[n],
+            new int[n],
+            new long[n],
+            new long[n],
+            new int[n],
+            new int[n]);
+    int i = 0;
+    for (Map.Entry<String, FileDiffOutput> e : fileDiffs.entrySet()) {
+      FileDiffOutput fileDiff = e.getValue();
+      s.paths[i] = e.getKey();
+      s.oldPaths[i] = FilePathAdapter.getOldPath(fileDiff.oldPath(), fileDiff.changeType());
+      s.changeTypes[i] = (byte) fileDiff.changeType().getCode();
+      s.binary.set(i, fileDiff.patchType().get() == Patch.PatchType.BINARY);
+      s.insertions[i] = fileDiff.insertions();
+      s.deletions[i] = fileDiff.deletions();
+      s.sizes[i] = fileDiff.size();
+      s.sizeDeltas[i] = fileDiff.sizeDelta();
+      s.oldModes[i] = mode(fileDiff.oldMode());
+      s.newModes[i] = mode(fileDiff.newMode());
+      i++;
+    }
+    return s;
+  }
+
+  private static int mode(Optional<Patch.FileMode> mode) {
+    // Patch.FileMode.MISSING has mode 0, too.
+    return mode.map(Patch.FileMode::getMode).orElse(0);
+  }
+
+  private FileSummaries(
+      String[] paths,
+      String[] oldPaths,
+      byte[] changeTypes,
+      BitSet binary,
+      int[] insertions,
+      int[] deletions,
+      long[] sizes,
+      long[] sizeDeltas,
+      int[] oldModes,
+      int[] newModes) {
+    this.paths = paths;
+    this.oldPaths = oldPaths;
+    this.changeTypes = changeTypes;
+    this.binary = binary;
+    this.insertions = insertions;
+    this.deletions = deletions;
+    this.sizes = sizes;
+    this.sizeDeltas = sizeDeltas;
+    this.oldModes = oldModes;
+    this.newModes = newModes;
+  }
+
+  /** Returns the number of files. */
+  public int size() {
+    return paths.length;
+  }
+
+  private Patch.ChangeType changeType(int i) {
+    return Patch.ChangeType.forCode((char) changeTypes[i]);
+  }
+
+  /** Returns a new {@link FileInfo} per file, by file path. */
+  public Map<String, FileInfo> toFileInfoMap() {
+    Map<String, FileInfo> result = new HashMap<>();
+    for (int i = 0; i < paths.length; i++) {
+      FileInfo fileInfo = new FileInfo();
+      fileInfo.status = changeType(i) != Patch.ChangeType.MODIFIED ? (char) changeTypes[i] : null;
+      fileInfo.oldPath = oldPaths[i];
+      fileInfo.sizeDelta = sizeDeltas[i];
+      fileInfo.size = sizes[i];
+      fileInfo.oldMode = oldModes[i] != 0 ? oldModes[i] : null;
+      fileInfo.newMode = newModes[i] != 0 ? newModes[i] : null;
+      if (binary.get(i)) {
+        fileInfo.binary = true;
+      } else {
+        fileInfo.linesInserted = insertions[i] > 0 ? insertions[i] : null;
+        fileInfo.linesDeleted = deletions[i] > 0 ? deletions[i] : null;
+      }
+      result.put(paths[i], fileInfo);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the {@link DiffSummary} of the files, which leaves out the magic files and lists both
+   * paths of renamed files.
+   */
+  public DiffSummary toDiffSummary() {
+    List<String> r = new ArrayList<>(paths.length);
+    int linesInserted = 0;
+    int linesDeleted = 0;
+    for (int i = 0; i < paths.length; i++) {
+      if (Patch.isMagic(paths[i])) {
+        continue;
+      }
+      linesInserted += insertions[i];
+      linesDeleted += deletions[i];
+      if (changeType(i) == Patch.ChangeType.RENAMED) {
+        r.add(oldPaths[i]);
+      }
+      r.add(paths[i]);
+    }
+    return new DiffSummary(r.stream().sorted().toArray(String[]::new), linesInserted, linesDeleted);
+  }
+
+  /** Returns the approximate size of the summaries in memory, in bytes. */
+  int weight() {
+    int size = 16 + 10 * 8; // Object and array references
+    for (int i = 0; i < paths.length; i++) {
+      size += stringSize(paths[i]) + (oldPaths[i] != null ? stringSize(oldPaths[i]) : 0);
+    }
+    // Array entries: references to the paths, change type, modes, line counts and sizes.
+    size += paths.length * (2 * 8 + 1 + 4 * 4 + 2 * 8);
+    return size;
+  }
+
+  public enum Serializer implements CacheSerializer<FileSummaries> {
+    INSTANCE;
+
+    @Override
+    public byte[] serialize(FileSummaries s) {
+      FileSummariesProto.Builder proto =
+          FileSummariesProto.newBuilder()
+              .setChangeType(ByteString.copyFrom(s.changeTypes))
+              .setBinary(ByteString.copyFrom(s.binary.toByteArray()));
+      for (int i = 0; i < s.paths.length; i++) {
+        proto
+            .addPath(s.paths[i])
+            .addOldPath(Strings.nullToEmpty(s.oldPaths[i]))
+            .addInsertions(s.insertions[i])
+            .addDeletions(s.deletions[i])
+            .addSize(s.sizes[i])
+            .addSizeDelta(s.sizeDeltas[i])
+            .addOldMode(s.oldModes[i])
+            .addNewMode(s.newModes[i]);
+      }
+      return Protos.toByteArray(proto.build());
+    }
+
+    @Override
+    public FileSummaries deserialize(byte[] in) {
+      FileSummariesProto proto = Protos.parseUnchecked(FileSummariesProto.parser(), in);
+      int n = proto.getPathCount();
+      FileSummaries s =
+          new FileSummaries(
+              proto.getPathList().toArray(new String[n]),
+              new String[n],
+              proto.getChangeType().toByteArray(),
+              BitSet.valueOf(proto.getBinary().toByteArray()),
+              new int[n],
+              new int[n],
+              new long[n],
+              new long[n],
+              new int[n],
+              new int[n]);
+      for (int i = 0; i < n; i++) {
+        s.oldPaths[i] = Strings.emptyToNull(proto.getOldPath(i));
+        s.insertions[i] = proto.getInsertions(i);
+        s.deletions[i] = proto.getDeletions(i);
+        s.sizes[i] = proto.getSize(i);
+        s.sizeDeltas[i] = proto.getSizeDelta(i);
+        s.oldModes[i] = proto.getOldMode(i);
+        s.newModes[i] = proto.getNewMode(i);
+      }
+      return s;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.gerrit.server.patch.DiffUtil.stringSize;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.proto.Protos;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.proto.Cache.FileSummaryKeyProto;
+import com.google.gerrit.server.cache.serialize.CacheSerializer;
+import com.google.gerrit.server.cache.serialize.ObjectIdConverter;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.patch.gitfilediff.GitFileDiffCacheImpl.DiffAlgorithm;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Cache of the {@link FileSummaries} of revisions, from which the file lists of revisions and the
+ * {@link DiffSummary} of changes are rendered without loading the diff of every file.
+ *
+ * <p>The summaries are computed from {@link DiffOperations} with the default {@link DiffOptions}
+ * and the diff algorithm configured in {@code cache.git_file_diff.algorithm}, which is part of the
+ * key. As the file lists are always computed without ignoring whitespace, the whitespace option is
+ * not part of the key.
+ */
+@Singleton
+public class FileSummaryCache {
+  static final String CACHE_NAME = "file_summary";
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        persist(CACHE_NAME, Key.class, FileSummaries.class)
+            .version(2)
+            .keySerializer(Key.Serializer.INSTANCE)
+            .valueSerializer(FileSummaries.Serializer.INSTANCE)
+            .maximumWeight(10 << 20)
+            .weigher(FileSummaryWeigher.class)
+            .diskLimit(1 << 30);
+        bind(FileSummaryCache.class);
+      }
+    };
+  }
+
+  @AutoValue
+  abstract static class Key {
+    static Key create(
+        Project.NameKey project,
+        ObjectId commit,
+        @Nullable ObjectId base,
+        int parentNum,
+        DiffAlgorithm diffAlgorithm) {
+      return new AutoValue_FileSummaryCache_Key(
+          project,
+          commit.copy(),
+          base != null ? base.copy() : null,
+          base != null ? 0 : parentNum,
+          diffAlgorithm);
+    }
+
+    abstract Project.NameKey project();
+
+    abstract ObjectId commit();
+
+    /** The commit to compare against, or {@code null} to compare against a parent. */
+    @Nullable
+    abstract ObjectId base();
+
+    /** The 1-based parent to compare against, or 0 for the default parent. */
+    abstract int parentNum();
+
+    abstract DiffAlgorithm diffAlgorithm();
+
+    int weight() {
+      return stringSize(project().get()) + 20 * 2 + 4 + 4;
+    }
+
+    enum Serializer implements CacheSerializer<Key> {
+      INSTANCE;
+
+      @Override
+      public byte[] serialize(Key key) {
+        ObjectIdConverter idConverter = ObjectIdConverter.create();
+        FileSummaryKeyProto.Builder proto =
+            FileSummaryKeyProto.newBuilder()
+                .setProject(key.project().get())
+                .setCommit(idConverter.toByteString(key.commit()))
+                .setParentNum(key.parentNum())
+                .setDiffAlgorithm(key.diffAlgorithm().name());
+        if (key.base() != null) {
+          proto.setBase(idConverter.toByteString(key.base()));
+        }
+        return Protos.toByteArray(proto.build());
+      }
+
+      @Override
+      public Key deserialize(byte[] in) {
+        FileSummaryKeyProto proto = Protos.parseUnchecked(FileSummaryKeyProto.parser(), in);
+        ObjectIdConverter idConverter = ObjectIdConverter.create();
+        return create(
+            Project.nameKey(proto.getProject()),
+            idConverter.fromByteString(proto.getCommit()),
+            proto.getBase().isEmpty() ? null : idConverter.fromByteString(proto.getBase()),
+            proto.getParentNum(),
+            DiffAlgorithm.valueOf(proto.getDiffAlgorithm()));
+      }
+    }
+  }
+
+  static class FileSummaryWeigher implements Weigher<Key, FileSummaries> {
+    @Override
+    public int weigh(Key key, FileSummaries value) {
+      return key.weight() + value.weight();
+    }
+  }
+
+  private final Cache<Key, FileSummaries> cache;
+  private final DiffOperations diffOperations;
+  private final DiffAlgorithm diffAlgorithm;
+
+  @Inject
+  FileSummaryCache(
+      @Named(CACHE_NAME) Cache<Key, FileSummaries> cache,
+      DiffOperations diffOperations,
+      @GerritServerConfig Config cfg) {
+    this.cache = cache;
+    this.diffOperations = diffOperations;
+    this.diffAlgorithm =
+        cfg.getEnum(
+            "cache", "git_file_diff", "algorithm", DiffOperationsImpl.DEFAULT_DIFF_ALGORITHM);
+  }
+
+  /**
+   * Returns the summaries of the files that differ between a commit and one of its parents.
+   *
+   * @param parentNum the 1-based parent to compare against. 0 requests the default parent, which is
+   *     the only parent for single-parent commits, or the auto-merge otherwise.
+   */
+  public FileSummaries getAgainstParent(Project.NameKey project, ObjectId commit, int parentNum)
+      throws DiffNotAvailableException {
+    return get(Key.create(project, commit, null, parentNum, diffAlgorithm));
+  }
+
+  /** Returns the summaries of the files that differ between two commits. */
+  public FileSummaries get(Project.NameKey project, ObjectId base, ObjectId commit)
+      throws DiffNotAvailableException {
+    return get(Key.create(project, commit, base, 0, diffAlgorithm));
+  }
+
+  private FileSummaries get(Key key) throws DiffNotAvailableException {
+    try {
+      return cache.get(key, () -> load(key));
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), DiffNotAvailableException.class);
+      throw new DiffNotAvailableException(e.getCause());
+    } catch (UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+  }
+
+  private FileSummaries load(Key key) throws DiffNotAvailableException {
+    DiffOptions diffOptions =
+        DiffOptions.builder()
+            .skipFilesWithAllEditsDueToRebase(true)
+            .diffAlgorithm(key.diffAlgorithm())
+            .build();
+    return FileSummaries.create(
+        key.base() == null
+            ? diffOperations.listModifiedFilesAgainstParent(
+                key.project(), key.commit(), key.parentNum(), diffOptions)
+            : diffOperations.listModifiedFiles(
+                key.project(), key.base(), key.commit(), diffOptions));
+  }
+}
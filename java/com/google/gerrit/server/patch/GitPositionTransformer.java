@@ -14,7 +14,6 @@
 
 package com.google.gerrit.server.patch;
 
-import static com.google.common.collect.Comparators.emptiesFirst;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static java.util.Comparator.comparing;
@@ -24,10 +23,8 @@ import static java.util.stream.Collectors.groupingBy;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -55,12 +52,12 @@ import java.util.stream.Stream;
  *       duplicate the position entry and use each of the new file paths with it. If a file path
  *       maps to no file in the target tree (deleted file), apply the specified conflict strategy
  *       (e.g. drop position completely or map to next best guess).
- *   <li>Per file path, go through the file from top to bottom and keep track of how the range
- *       mappings for that file shift the lines. Derive the shifted amount by comparing the number
- *       of lines between source and target in the range mapping. While going through the file,
- *       shift each encountered position by the currently tracked amount. If a position overlaps
- *       with the lines of a range mapping, apply the specified conflict strategy (e.g. drop
- *       position completely or map to next best guess).
+ *   <li>Per file path, sort the range mappings for that file and derive how each of them shifts
+ *       the lines after it by comparing the number of lines between source and target. For each
+ *       position, look up the range mappings preceding it by binary search and shift the position
+ *       by the amount of the last of them. If a position overlaps with the lines of a range
+ *       mapping, apply the specified conflict strategy (e.g. drop position completely or map to
+ *       next best guess).
  * </ol>
  */
 public class GitPositionTransformer {
@@ -173,10 +170,7 @@ public class GitPositionTransformer {
         .collect(
             groupingBy(
                 mapping -> mapping.file().newPath().orElse(""),
-                collectingAndThen(
-                    Collectors.<Mapping, Set<RangeMapping>>reducing(
-                        new HashSet<>(), Mapping::ranges, Sets::union),
-                    ImmutableSet::copyOf)));
+                Collectors.flatMapping(mapping -> mapping.ranges().stream(), toImmutableSet())));
   }
 
   private static <T> Map<String, ImmutableList<PositionedEntity<T>>> groupByFilePath(
@@ -202,52 +196,86 @@ public class GitPositionTransformer {
 
   private <T> ImmutableList<PositionedEntity<T>> shiftRangesInOneFile(
       List<PositionedEntity<T>> sameFileEntities, Set<RangeMapping> sameFileRangeMappings) {
-    ImmutableList<PositionedEntity<T>> sortedEntities = sortByStartEnd(sameFileEntities);
-    ImmutableList<RangeMapping> sortedMappings = sortByOldStartEnd(sameFileRangeMappings);
-
-    int shiftedAmount = 0;
-    int mappingIndex = 0;
-    int entityIndex = 0;
+    SortedRangeMappings sortedMappings = new SortedRangeMappings(sameFileRangeMappings);
     ImmutableList.Builder<PositionedEntity<T>> resultingEntities =
-        ImmutableList.builderWithExpectedSize(sortedEntities.size());
-    while (entityIndex < sortedEntities.size() && mappingIndex < sortedMappings.size()) {
-      PositionedEntity<T> entity = sortedEntities.get(entityIndex);
-      if (entity.position().lineRange().isPresent()) {
-        Range range = entity.position().lineRange().get();
-        RangeMapping mapping = sortedMappings.get(mappingIndex);
-        if (mapping.oldLineRange().end() <= range.start()) {
-          shiftedAmount = mapping.newLineRange().end() - mapping.oldLineRange().end();
-          mappingIndex++;
-        } else if (range.end() <= mapping.oldLineRange().start()) {
-          resultingEntities.add(entity.shiftPositionBy(shiftedAmount));
-          entityIndex++;
-        } else {
-          positionConflictStrategy
-              .getOnRangeConflict(entity.position())
-              .map(entity::withPosition)
-              .ifPresent(resultingEntities::add);
-          entityIndex++;
-        }
-      } else {
+        ImmutableList.builderWithExpectedSize(sameFileEntities.size());
+    for (PositionedEntity<T> entity : sameFileEntities) {
+      if (!entity.position().lineRange().isPresent()) {
         // No range -> no need to shift.
         resultingEntities.add(entity);
-        entityIndex++;
+        continue;
+      }
+      Range range = entity.position().lineRange().get();
+      int mappingIndex = sortedMappings.firstEndingAfter(range.start());
+      if (mappingIndex < sortedMappings.size()
+          && range.end() > sortedMappings.oldStart(mappingIndex)) {
+        positionConflictStrategy
+            .getOnRangeConflict(entity.position())
+            .map(entity::withPosition)
+            .ifPresent(resultingEntities::add);
+      } else {
+        resultingEntities.add(entity.shiftPositionBy(sortedMappings.shiftBefore(mappingIndex)));
       }
-    }
-    for (int i = entityIndex; i < sortedEntities.size(); i++) {
-      resultingEntities.add(sortedEntities.get(i).shiftPositionBy(shiftedAmount));
     }
     return resultingEntities.build();
   }
 
-  private static <T> ImmutableList<PositionedEntity<T>> sortByStartEnd(
-      List<PositionedEntity<T>> entities) {
-    return entities.stream()
-        .sorted(
-            comparing(
-                entity -> entity.position().lineRange(),
-                emptiesFirst(comparing(Range::start).thenComparing(Range::end))))
-        .collect(toImmutableList());
+  /**
+   * The range mappings of one file as sorted primitive arrays, so that the mapping relevant for a
+   * position can be found by binary search instead of walking all mappings before it.
+   */
+  private static class SortedRangeMappings {
+    private final int[] oldStarts;
+    /** Maximum end in the source tree of the mappings up to each index, which is non-decreasing. */
+    private final int[] maxOldEnds;
+    /** Shift of the lines after each mapping, i.e. the difference of its ends. */
+    private final int[] shifts;
+
+    SortedRangeMappings(Set<RangeMapping> mappings) {
+      ImmutableList<RangeMapping> sorted = sortByOldStartEnd(mappings);
+      oldStarts = new int[sorted.size()];
+      maxOldEnds = new int[sorted.size()];
+      shifts = new int[sorted.size()];
+      int maxOldEnd = Integer.MIN_VALUE;
+      for (int i = 0; i < sorted.size(); i++) {
+        RangeMapping mapping = sorted.get(i);
+        oldStarts[i] = mapping.oldLineRange().start();
+        maxOldEnd = Math.max(maxOldEnd, mapping.oldLineRange().end());
+        maxOldEnds[i] = maxOldEnd;
+        shifts[i] = mapping.newLineRange().end() - mapping.oldLineRange().end();
+      }
+    }
+
+    int size() {
+      return oldStarts.length;
+    }
+
+    int oldStart(int index) {
+      return oldStarts[index];
+    }
+
+    /**
+     * Returns the index of the first mapping which doesn't end before or at the given line, or
+     * {@link #size()} if there is none. All mappings before that index precede the line.
+     */
+    int firstEndingAfter(int line) {
+      int low = 0;
+      int high = maxOldEnds.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (maxOldEnds[mid] <= line) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /** Returns the shift of lines which precede the mapping with the given index. */
+    int shiftBefore(int index) {
+      return index > 0 ? shifts[index - 1] : 0;
+    }
   }
 
   private static ImmutableList<RangeMapping> sortByOldStartEnd(Set<RangeMapping> mappings) {
@@ -32,10 +32,12 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import org.eclipse.jgit.diff.DiffAlgorithm;
 import org.eclipse.jgit.diff.Edit;
 import org.eclipse.jgit.diff.MyersDiff;
 import org.eclipse.jgit.lib.Config;
@@ -52,6 +54,8 @@ class IntraLineLoader implements Callable<IntraLineDiff> {
 
   private static final Pattern CONTROL_BLOCK_START_RE = Pattern.compile("[{:][ \\t]*$");
 
+  private static final DiffAlgorithm MYERS = CancellableDiffAlgorithm.wrap(MyersDiff.INSTANCE);
+
   private final ExecutorService diffExecutor;
   private final long timeoutMillis;
   private final IntraLineDiffKey key;
@@ -78,11 +82,17 @@ class IntraLineLoader implements Callable<IntraLineDiff> {
 
   @Override
   public IntraLineDiff call() throws Exception {
-    Future<IntraLineDiff> result =
-        diffExecutor.submit(
-            () ->
-                IntraLineLoader.compute(
-                    args.aText(), args.bText(), args.edits(), args.editsDueToRebase()));
+    Future<IntraLineDiff> result;
+    try {
+      result =
+          CancellableDiffAlgorithm.submit(
+              diffExecutor,
+              () ->
+                  IntraLineLoader.compute(
+                      args.aText(), args.bText(), args.edits(), args.editsDueToRebase()));
+    } catch (RejectedExecutionException e) {
+      throw new DiffNotAvailableException("Cannot compute intraline diff", e);
+    }
     try {
       return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
     } catch (InterruptedException | TimeoutException e) {
@@ -95,7 +105,9 @@ class IntraLineLoader implements Callable<IntraLineDiff> {
           args.path(),
           key.getBlobA().name(),
           key.getBlobB().name());
-      result.cancel(true);
+      // Don't interrupt the worker: the CancellableDiffAlgorithm notices that the future was
+      // cancelled and aborts the computation.
+      result.cancel(false);
       return new IntraLineDiff(IntraLineDiff.Status.TIMEOUT);
     } catch (ExecutionException e) {
       // If there was an error computing the result, carry it
@@ -121,7 +133,7 @@ class IntraLineLoader implements Callable<IntraLineDiff> {
         CharText b = new CharText(bText, e.getBeginB(), e.getEndB());
         CharTextComparator cmp = new CharTextComparator();
 
-        List<Edit> wordEdits = MyersDiff.INSTANCE.diff(cmp, a, b);
+        List<Edit> wordEdits = MYERS.diff(cmp, a, b);
 
         // Combine edits that are really close together. If they are
         // just a few characters apart we tend to get better results
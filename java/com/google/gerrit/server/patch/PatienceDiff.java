@@ -0,0 +1,215 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import com.google.gerrit.common.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.diff.SequenceComparator;
+import org.eclipse.jgit.diff.Subsequence;
+import org.eclipse.jgit.diff.SubsequenceComparator;
+
+/**
+ * Patience diff algorithm.
+ *
+ * <p>Matches the elements that occur exactly once in both sequences, keeps the longest run of them
+ * that is in the same order in both sequences and recursively diffs the regions between them. For
+ * regions without such unique elements the fallback algorithm is used.
+ *
+ * <p>JGit doesn't provide this algorithm. Its {@link org.eclipse.jgit.diff.HistogramDiff} is an
+ * extension of it that also uses low-occurrence elements as anchors.
+ *
+ * <p>The hashes of all elements are computed once per diff into {@code int} arrays, which are
+ * reused by all recursion levels and to reject unequal elements before comparing them.
+ */
+public class PatienceDiff extends DiffAlgorithm {
+  private final DiffAlgorithm fallback;
+
+  public PatienceDiff(DiffAlgorithm fallback) {
+    this.fallback = fallback;
+  }
+
+  @Override
+  public <S extends Sequence> EditList diffNonCommon(
+      SequenceComparator<? super S> cmp, S a, S b) {
+    State<S> state = new State<>(cmp, a, b);
+    state.diff(0, a.size(), 0, b.size());
+    return state.edits;
+  }
+
+  /** Element that occurs in {@code a}, with the number of its occurrences in both sequences. */
+  private static class Slot {
+    final int a;
+    int aCount = 1;
+    int b = -1;
+    int bCount;
+
+    Slot(int a) {
+      this.a = a;
+    }
+  }
+
+  private class State<S extends Sequence> {
+    private final SequenceComparator<? super S> cmp;
+    private final S a;
+    private final S b;
+    private final int[] aHashes;
+    private final int[] bHashes;
+    private final EditList edits = new EditList();
+
+    State(SequenceComparator<? super S> cmp, S a, S b) {
+      this.cmp = cmp;
+      this.a = a;
+      this.b = b;
+      this.aHashes = hashes(cmp, a);
+      this.bHashes = hashes(cmp, b);
+    }
+
+    void diff(int aBegin, int aEnd, int bBegin, int bEnd) {
+      while (aBegin < aEnd && bBegin < bEnd && equal(aBegin, bBegin)) {
+        aBegin++;
+        bBegin++;
+      }
+      while (aBegin < aEnd && bBegin < bEnd && equal(aEnd - 1, bEnd - 1)) {
+        aEnd--;
+        bEnd--;
+      }
+      if (aBegin == aEnd || bBegin == bEnd) {
+        if (aBegin < aEnd || bBegin < bEnd) {
+          edits.add(new Edit(aBegin, aEnd, bBegin, bEnd));
+        }
+        return;
+      }
+
+      List<Slot> anchors = anchors(aBegin, aEnd, bBegin, bEnd);
+      if (anchors.isEmpty()) {
+        Subsequence<S> as = new Subsequence<>(a, aBegin, aEnd);
+        Subsequence<S> bs = new Subsequence<>(b, bBegin, bEnd);
+        edits.addAll(
+            Subsequence.toBase(
+                fallback.diffNonCommon(new SubsequenceComparator<S>(cmp), as, bs), as, bs));
+        return;
+      }
+      for (Slot anchor : anchors) {
+        diff(aBegin, anchor.a, bBegin, anchor.b);
+        aBegin = anchor.a + 1;
+        bBegin = anchor.b + 1;
+      }
+      diff(aBegin, aEnd, bBegin, bEnd);
+    }
+
+    /**
+     * Returns the elements that occur exactly once in both regions and that form the longest
+     * subsequence of them that is in the same order in both regions, in this order.
+     */
+    private List<Slot> anchors(int aBegin, int aEnd, int bBegin, int bEnd) {
+      Map<Integer, List<Slot>> byHash = new HashMap<>();
+      for (int i = aBegin; i < aEnd; i++) {
+        Slot slot = find(byHash, aHashes[i], a, i);
+        if (slot == null) {
+          byHash.computeIfAbsent(aHashes[i], h -> new ArrayList<>(1)).add(new Slot(i));
+        } else {
+          slot.aCount++;
+        }
+      }
+      for (int j = bBegin; j < bEnd; j++) {
+        Slot slot = find(byHash, bHashes[j], b, j);
+        if (slot != null) {
+          slot.b = j;
+          slot.bCount++;
+        }
+      }
+
+      List<Slot> unique = new ArrayList<>();
+      for (List<Slot> slots : byHash.values()) {
+        for (Slot slot : slots) {
+          if (slot.aCount == 1 && slot.bCount == 1) {
+            unique.add(slot);
+          }
+        }
+      }
+      unique.sort(Comparator.comparingInt(slot -> slot.a));
+      return longestIncreasingSubsequence(unique);
+    }
+
+    @Nullable
+    private Slot find(Map<Integer, List<Slot>> byHash, int hash, S seq, int index) {
+      List<Slot> slots = byHash.get(hash);
+      if (slots == null) {
+        return null;
+      }
+      for (Slot slot : slots) {
+        if (cmp.equals(a, slot.a, seq, index)) {
+          return slot;
+        }
+      }
+      return null;
+    }
+
+    private boolean equal(int i, int j) {
+      return aHashes[i] == bHashes[j] && cmp.equals(a, i, b, j);
+    }
+  }
+
+  /**
+   * Returns the longest subsequence of the slots, which are ordered by their index in {@code a},
+   * that is ordered by the index in {@code b} as well. Uses patience sorting.
+   */
+  private static List<Slot> longestIncreasingSubsequence(List<Slot> slots) {
+    int n = slots.size();
+    // tails[k] is the slot ending the increasing subsequence of length k + 1 with the lowest end.
+    int[] tails = new int[n];
+    int[] predecessors = new int[n];
+    int length = 0;
+    for (int i = 0; i < n; i++) {
+      int b = slots.get(i).b;
+      int lo = 0;
+      int hi = length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (slots.get(tails[mid]).b < b) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      predecessors[i] = lo > 0 ? tails[lo - 1] : -1;
+      tails[lo] = i;
+      if (lo == length) {
+        length++;
+      }
+    }
+    Slot[] result = new Slot[length];
+    for (int i = length > 0 ? tails[length - 1] : -1, k = length - 1; k >= 0; k--) {
+      result[k] = slots.get(i);
+      i = predecessors[i];
+    }
+    return Arrays.asList(result);
+  }
+
+  private static <S extends Sequence> int[] hashes(SequenceComparator<? super S> cmp, S s) {
+    int[] hashes = new int[s.size()];
+    Arrays.setAll(hashes, i -> cmp.hash(s, i));
+    return hashes;
+  }
+}
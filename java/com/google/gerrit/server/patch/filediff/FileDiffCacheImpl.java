@@ -30,6 +30,7 @@ import com.google.gerrit.entities.Patch;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
 import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cancellation.RequestStateContext;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.logging.Metadata;
 import com.google.gerrit.server.logging.TraceContext;
@@ -178,7 +179,7 @@ public class FileDiffCacheImpl implements FileDiffCache {
           List<FileDiffCacheKey> fileKeys = new ArrayList<>();
 
           try (Repository repo = repoManager.openRepository(project);
-              ObjectReader reader = repo.newObjectReader();
+              ObjectReader reader = repoManager.newObjectReader(repo);
               RevWalk rw = new RevWalk(reader)) {
 
             for (FileDiffCacheKey key : keysByProject.get(project)) {
@@ -389,6 +390,7 @@ public class FileDiffCacheImpl implements FileDiffCache {
       Map<FileDiffCacheKey, FileDiffOutput> result = new HashMap<>();
 
       for (AugmentedFileDiffCacheKey augmentedKey : allFileDiffs.keySet()) {
+        RequestStateContext.abortIfCancelled();
         AllFileGitDiffs allDiffs = allFileDiffs.get(augmentedKey);
         GitFileDiff mainGitDiff = allDiffs.mainDiff().gitDiff();
 
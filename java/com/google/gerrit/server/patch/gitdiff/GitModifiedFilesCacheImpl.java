@@ -116,7 +116,7 @@ public class GitModifiedFilesCacheImpl implements GitModifiedFilesCache {
     @Override
     public ImmutableList<ModifiedFile> load(GitModifiedFilesCacheKey key) throws IOException {
       try (Repository repo = repoManager.openRepository(key.project());
-          ObjectReader reader = repo.newObjectReader()) {
+          ObjectReader reader = repoManager.newObjectReader(repo)) {
         List<DiffEntry> entries = getGitTreeDiff(repo, reader, key);
 
         return entries.stream().map(Loader::toModifiedFile).collect(toImmutableList());
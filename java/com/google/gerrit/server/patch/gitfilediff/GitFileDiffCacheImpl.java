@@ -14,6 +14,7 @@
 
 package com.google.gerrit.server.patch.gitfilediff;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.function.Function.identity;
 
 import com.google.auto.value.AutoValue;
@@ -33,16 +34,21 @@ import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
 import com.google.gerrit.metrics.Counter0;
 import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Histogram0;
 import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cancellation.RequestStateContext;
+import com.google.gerrit.server.cancellation.RequestStateProvider;
 import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.logging.Metadata;
 import com.google.gerrit.server.logging.TraceContext;
 import com.google.gerrit.server.logging.TraceContext.TraceTimer;
+import com.google.gerrit.server.patch.CancellableDiffAlgorithm;
 import com.google.gerrit.server.patch.DiffExecutor;
 import com.google.gerrit.server.patch.DiffNotAvailableException;
+import com.google.gerrit.server.patch.PatienceDiff;
 import com.google.gerrit.server.util.git.CloseablePool;
 import com.google.inject.Inject;
 import com.google.inject.Module;
@@ -55,16 +61,23 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.Collectors;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.MyersDiff;
 import org.eclipse.jgit.diff.RawTextComparator;
 import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.Config;
@@ -78,6 +91,9 @@ import org.eclipse.jgit.util.io.DisabledOutputStream;
 public class GitFileDiffCacheImpl implements GitFileDiffCache {
   private static final String GIT_DIFF = "git_file_diff";
 
+  /** Minimum number of files of a batch per worker when computing the file diffs in parallel. */
+  private static final int FILES_PER_WORKER = 16;
+
   public static Module module() {
     return new CacheModule() {
       @Override
@@ -97,6 +113,7 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
   @Singleton
   static class Metrics {
     final Counter0 timeouts;
+    final Histogram0 parallelism;
 
     @Inject
     Metrics(MetricMaker metricMaker) {
@@ -107,23 +124,42 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
                       "Total number of git file diff computations that resulted in timeouts.")
                   .setRate()
                   .setUnit("count"));
+      parallelism =
+          metricMaker.newHistogram(
+              "caches/diff/parallelism",
+              new Description(
+                      "Number of workers computing the git file diffs of a batch in parallel.")
+                  .setCumulative()
+                  .setUnit("workers"));
     }
   }
 
   /** Enum for the supported diff algorithms for the file diff computation. */
   public enum DiffAlgorithm {
     HISTOGRAM_WITH_FALLBACK_MYERS,
-    HISTOGRAM_NO_FALLBACK
+    HISTOGRAM_NO_FALLBACK,
+    /** Patience diff, using Myers for regions without unique lines. */
+    PATIENCE,
+    MYERS
   }
 
   /** Creates a new JGit diff algorithm instance using the Gerrit's {@link DiffAlgorithm} enum. */
   public static class DiffAlgorithmFactory {
     public static org.eclipse.jgit.diff.DiffAlgorithm create(DiffAlgorithm diffAlgorithm) {
-      HistogramDiff result = new HistogramDiff();
-      if (diffAlgorithm.equals(DiffAlgorithm.HISTOGRAM_NO_FALLBACK)) {
-        result.setFallbackAlgorithm(null);
+      switch (diffAlgorithm) {
+        case PATIENCE:
+          return CancellableDiffAlgorithm.wrap(new PatienceDiff(MyersDiff.INSTANCE));
+        case MYERS:
+          return CancellableDiffAlgorithm.wrap(MyersDiff.INSTANCE);
+        case HISTOGRAM_NO_FALLBACK:
+        case HISTOGRAM_WITH_FALLBACK_MYERS:
+        default:
+          HistogramDiff result = new HistogramDiff();
+          if (diffAlgorithm.equals(DiffAlgorithm.HISTOGRAM_NO_FALLBACK)) {
+            result.setFallbackAlgorithm(null);
+          }
+          return CancellableDiffAlgorithm.wrap(result);
       }
-      return result;
     }
   }
 
@@ -158,6 +194,7 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
     private final GitRepositoryManager repoManager;
     private final ExecutorService diffExecutor;
     private final long timeoutMillis;
+    private final int maxParallelism;
     private final Metrics metrics;
 
     @Inject
@@ -176,6 +213,7 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
               "timeout",
               TimeUnit.MILLISECONDS.convert(5, TimeUnit.SECONDS),
               TimeUnit.MILLISECONDS);
+      this.maxParallelism = cfg.getInt("cache", GIT_DIFF, "maxParallelism", 4);
       this.metrics = metrics;
     }
 
@@ -201,6 +239,8 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
         ImmutableMap.Builder<GitFileDiffCacheKey, GitFileDiff> result =
             ImmutableMap.builderWithExpectedSize(Iterables.size(keys));
 
+        // Bounds the workers of this request across all its repositories and diff options.
+        Semaphore workers = new Semaphore(Math.max(1, maxParallelism));
         Map<Project.NameKey, List<GitFileDiffCacheKey>> byProject =
             Streams.stream(keys)
                 .distinct()
@@ -216,7 +256,7 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
 
             for (Map.Entry<DiffOptions, List<GitFileDiffCacheKey>> group :
                 optionsGroups.entrySet()) {
-              result.putAll(loadAllImpl(repo, group.getKey(), group.getValue()));
+              result.putAll(loadAllImpl(repo, group.getKey(), group.getValue(), workers));
             }
           }
         }
@@ -228,10 +268,12 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
      * Loads the git file diffs for all keys of the same repository, and having the same diff {@code
      * options}.
      *
+     * @param workers permits for the workers computing the diffs in parallel, shared by all batches
+     *     of the request.
      * @return The git file diffs for all input keys.
      */
     private Map<GitFileDiffCacheKey, GitFileDiff> loadAllImpl(
-        Repository repo, DiffOptions options, List<GitFileDiffCacheKey> keys)
+        Repository repo, DiffOptions options, List<GitFileDiffCacheKey> keys, Semaphore workers)
         throws IOException, DiffNotAvailableException {
       ImmutableMap.Builder<GitFileDiffCacheKey, GitFileDiff> result =
           ImmutableMap.builderWithExpectedSize(keys.size());
@@ -243,18 +285,33 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
         try (CloseablePool<DiffFormatter>.Handle formatter = diffPool.get()) {
           diffEntries = loadDiffEntries(formatter.get(), options, filePaths.values());
         }
+        List<GitFileDiffCacheKey> toCompute = new ArrayList<>();
         for (GitFileDiffCacheKey key : filePaths.keySet()) {
           String newFilePath = filePaths.get(key);
-          if (!diffEntries.containsKey(newFilePath)) {
-            result.put(
-                key,
-                GitFileDiff.empty(
-                    AbbreviatedObjectId.fromObjectId(key.oldTree()),
-                    AbbreviatedObjectId.fromObjectId(key.newTree()),
-                    newFilePath));
+          if (diffEntries.containsKey(newFilePath)) {
+            toCompute.add(key);
             continue;
           }
-          List<DiffEntry> entries = diffEntries.get(newFilePath);
+          result.put(
+              key,
+              GitFileDiff.empty(
+                  AbbreviatedObjectId.fromObjectId(key.oldTree()),
+                  AbbreviatedObjectId.fromObjectId(key.newTree()),
+                  newFilePath));
+        }
+        if (toCompute.isEmpty()) {
+          return result.build();
+        }
+
+        int parallelism = parallelism(toCompute.size());
+        if (parallelism > 1) {
+          result.putAll(
+              new ParallelLoad(toCompute, diffEntries, diffPool, workers).run(parallelism));
+          return result.build();
+        }
+        metrics.parallelism.record(1);
+        for (GitFileDiffCacheKey key : toCompute) {
+          List<DiffEntry> entries = diffEntries.get(filePaths.get(key));
           if (entries.size() == 1) {
             result.put(key, createGitFileDiff(entries.get(0), key, diffPool));
           } else {
@@ -263,7 +320,7 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
             // converting a symlink to a regular file). We combine both diff entries into a single
             // entry with {changeType = Rewrite}.
             List<GitFileDiff> gitDiffs = new ArrayList<>();
-            for (DiffEntry entry : diffEntries.get(newFilePath)) {
+            for (DiffEntry entry : entries) {
               gitDiffs.add(createGitFileDiff(entry, key, diffPool));
             }
             result.put(key, createRewriteEntry(gitDiffs));
@@ -273,6 +330,15 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
       }
     }
 
+    /**
+     * Returns the number of workers to compute the diffs of a batch of files in parallel, at most
+     * {@code cache.git_file_diff.maxParallelism}.
+     */
+    private int parallelism(int fileCount) {
+      return Math.max(
+          1, Math.min(maxParallelism, (fileCount + FILES_PER_WORKER - 1) / FILES_PER_WORKER));
+    }
+
     private static ListMultimap<String, DiffEntry> loadDiffEntries(
         DiffFormatter diffFormatter, DiffOptions diffOptions, Collection<String> filePaths)
         throws IOException {
@@ -337,7 +403,7 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
      */
     private GitFileDiff createGitFileDiff(
         DiffEntry diffEntry, GitFileDiffCacheKey key, CloseablePool<DiffFormatter> diffPool)
-        throws IOException {
+        throws IOException, DiffNotAvailableException {
       if (!key.useTimeout()) {
         try (CloseablePool<DiffFormatter>.Handle formatter = diffPool.get()) {
           FileHeader fileHeader = formatter.get().toFileHeader(diffEntry);
@@ -349,20 +415,27 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
       // only used by a single thread concurrently. However, ObjectReaders have a reference to
       // Repository which might not be thread safe (FileRepository is, DfsRepository might not).
       // This could lead to a race condition.
-      Future<GitFileDiff> fileDiffFuture =
-          diffExecutor.submit(
-              () -> {
-                try (CloseablePool<DiffFormatter>.Handle formatter = diffPool.get()) {
-                  return GitFileDiff.create(diffEntry, formatter.get().toFileHeader(diffEntry));
-                }
-              });
+      Future<GitFileDiff> fileDiffFuture;
+      try {
+        fileDiffFuture =
+            CancellableDiffAlgorithm.submit(
+                diffExecutor,
+                () -> {
+                  try (CloseablePool<DiffFormatter>.Handle formatter = diffPool.get()) {
+                    return GitFileDiff.create(diffEntry, formatter.get().toFileHeader(diffEntry));
+                  }
+                });
+      } catch (RejectedExecutionException e) {
+        throw new DiffNotAvailableException("Cannot compute diff of " + key.newFilePath(), e);
+      }
       try {
         // We employ the timeout because of a bug in Myers diff in JGit. See
         // bugs.chromium.org/p/gerrit/issues/detail?id=487 for more details. The bug may happen
         // if the algorithm used in diffs is HISTOGRAM_WITH_FALLBACK_MYERS.
         return fileDiffFuture.get(timeoutMillis, TimeUnit.MILLISECONDS);
       } catch (InterruptedException | TimeoutException e) {
-        // If timeout happens, create a negative result
+        // If timeout happens, abort the computation and create a negative result
+        fileDiffFuture.cancel(false);
         metrics.timeouts.increment();
         return GitFileDiff.createNegative(
             AbbreviatedObjectId.fromObjectId(key.oldTree()),
@@ -376,6 +449,186 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
       }
     }
 
+    /**
+     * Computes the diffs of a batch of files on several threads of the {@link DiffExecutor}.
+     *
+     * <p>Each worker takes the next file of the batch until all files are computed, using its own
+     * {@link DiffFormatter}, and hence its own {@link org.eclipse.jgit.lib.ObjectReader}, from the
+     * pool. The calling thread collects the results in order. If the diff of a file takes longer
+     * than {@link #timeoutMillis}, the file gets a negative result and another worker is started if
+     * a permit is left, so that the remaining files are still computed while the timed out
+     * computation is aborted by the {@link CancellableDiffAlgorithm}. All computations are aborted
+     * if the request is cancelled. A worker holds one of the {@code workers} permits of the request
+     * until it stopped, so that the workers of all batches of a request, including those that are
+     * still aborting a timed out computation, never exceed {@code
+     * cache.git_file_diff.maxParallelism}.
+     */
+    private class ParallelLoad {
+      private final List<GitFileDiffCacheKey> keys;
+      private final ListMultimap<String, DiffEntry> diffEntries;
+      private final CloseablePool<DiffFormatter> diffPool;
+      private final Semaphore workers;
+      private final List<CompletableFuture<GitFileDiff>> results;
+      private final AtomicLongArray startNanos;
+      private final AtomicInteger next = new AtomicInteger();
+      private final Set<Integer> timedOut = ConcurrentHashMap.newKeySet();
+
+      ParallelLoad(
+          List<GitFileDiffCacheKey> keys,
+          ListMultimap<String, DiffEntry> diffEntries,
+          CloseablePool<DiffFormatter> diffPool,
+          Semaphore workers) {
+        this.keys = keys;
+        this.diffEntries = diffEntries;
+        this.diffPool = diffPool;
+        this.workers = workers;
+        this.results = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+          results.add(new CompletableFuture<>());
+        }
+        this.startNanos = new AtomicLongArray(keys.size());
+      }
+
+      ImmutableMap<GitFileDiffCacheKey, GitFileDiff> run(int parallelism)
+          throws IOException, DiffNotAvailableException {
+        ImmutableMap.Builder<GitFileDiffCacheKey, GitFileDiff> result =
+            ImmutableMap.builderWithExpectedSize(keys.size());
+        try {
+          // Waits for workers of earlier batches that are still aborting a timed out computation.
+          workers.acquire();
+          startWorker();
+          int started = 1;
+          while (started < parallelism && workers.tryAcquire()) {
+            startWorker();
+            started++;
+          }
+          metrics.parallelism.record(started);
+          for (int i = 0; i < keys.size(); i++) {
+            result.put(keys.get(i), await(i));
+          }
+          return result.build();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while computing git file diffs", e);
+        } finally {
+          // Don't let the workers start on further files if we failed.
+          next.set(keys.size());
+        }
+      }
+
+      /** Starts a worker, which takes over a permit already acquired from {@link #workers}. */
+      private void startWorker() {
+        try {
+          @SuppressWarnings("unused")
+          Future<?> possiblyIgnoredError =
+              diffExecutor.submit(
+                  RequestStateContext.copy(
+                      () -> {
+                        work();
+                        return null;
+                      }));
+        } catch (RejectedExecutionException e) {
+          workers.release();
+          // Fail the files that no worker has taken yet, so that waiting for them doesn't hang.
+          DiffNotAvailableException failure =
+              new DiffNotAvailableException("Cannot compute git file diffs", e);
+          for (int i = next.getAndIncrement(); i < keys.size(); i = next.getAndIncrement()) {
+            results.get(i).completeExceptionally(failure);
+          }
+        }
+      }
+
+      private void work() {
+        // Aborts the diff computation of a file once it timed out.
+        AtomicInteger current = new AtomicInteger(-1);
+        RequestStateProvider timeout =
+            onCancelled -> {
+              if (timedOut.contains(current.get())) {
+                onCancelled.onCancel(
+                    RequestStateProvider.Reason.SERVER_DEADLINE_EXCEEDED,
+                    String.format("%s.timeout=%dms", GIT_DIFF, timeoutMillis));
+              }
+            };
+        try (RequestStateContext requestStateContext =
+                RequestStateContext.open().addRequestStateProvider(timeout);
+            CloseablePool<DiffFormatter>.Handle formatter = diffPool.getIfOpen()) {
+          if (formatter == null) {
+            // The batch was already done when this worker started, there are no files left.
+            return;
+          }
+          for (int i = next.getAndIncrement(); i < keys.size(); i = next.getAndIncrement()) {
+            current.set(i);
+            startNanos.set(i, System.nanoTime());
+            try {
+              results.get(i).complete(computeGitFileDiff(keys.get(i), formatter.get()));
+            } catch (Exception e) {
+              results.get(i).completeExceptionally(e);
+            }
+          }
+        } catch (RuntimeException e) {
+          // Creating the DiffFormatter failed.
+          for (int i = next.getAndIncrement(); i < keys.size(); i = next.getAndIncrement()) {
+            results.get(i).completeExceptionally(e);
+          }
+        } finally {
+          workers.release();
+        }
+      }
+
+      private GitFileDiff computeGitFileDiff(GitFileDiffCacheKey key, DiffFormatter formatter)
+          throws IOException, DiffNotAvailableException {
+        List<DiffEntry> entries = diffEntries.get(key.newFilePath());
+        if (entries.size() == 1) {
+          return GitFileDiff.create(entries.get(0), formatter.toFileHeader(entries.get(0)));
+        }
+        // Two {Added, Deleted} entries for the same file, see loadAllImpl.
+        List<GitFileDiff> gitDiffs = new ArrayList<>();
+        for (DiffEntry entry : entries) {
+          gitDiffs.add(GitFileDiff.create(entry, formatter.toFileHeader(entry)));
+        }
+        return createRewriteEntry(gitDiffs);
+      }
+
+      private GitFileDiff await(int i) throws IOException, DiffNotAvailableException {
+        GitFileDiffCacheKey key = keys.get(i);
+        CompletableFuture<GitFileDiff> result = results.get(i);
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+          if (!key.useTimeout()) {
+            return result.get();
+          }
+          while (true) {
+            // The file is taken by a worker shortly after all files before it, which are done.
+            long start = startNanos.get(i);
+            long waitNanos = start == 0 ? timeoutNanos : start + timeoutNanos - System.nanoTime();
+            try {
+              return result.get(Math.max(waitNanos, 0), NANOSECONDS);
+            } catch (TimeoutException e) {
+              if (start != 0 && !result.isDone()) {
+                // Aborts the computation and starts another worker for the remaining files.
+                timedOut.add(i);
+                if (workers.tryAcquire()) {
+                  startWorker();
+                }
+                metrics.timeouts.increment();
+                return GitFileDiff.createNegative(
+                    AbbreviatedObjectId.fromObjectId(key.oldTree()),
+                    AbbreviatedObjectId.fromObjectId(key.newTree()),
+                    key.newFilePath());
+              }
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while computing git file diffs", e);
+        } catch (ExecutionException e) {
+          Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+          Throwables.throwIfInstanceOf(e.getCause(), DiffNotAvailableException.class);
+          throw new IOException(e.getMessage(), e.getCause());
+        }
+      }
+    }
+
     /**
      * Extract the file path from a {@link DiffEntry}. Returns the old file path if the entry
      * corresponds to a deleted file, otherwise it returns the new file path.
@@ -25,6 +25,7 @@ import com.google.gerrit.extensions.registration.Extension;
 import com.google.gerrit.index.IndexConfig;
 import com.google.gerrit.index.QueryOptions;
 import com.google.gerrit.index.query.IndexPredicate;
+import com.google.gerrit.index.query.IsVisibleToPredicate;
 import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryProcessor;
 import com.google.gerrit.metrics.MetricMaker;
@@ -64,6 +65,7 @@ public class ChangeQueryProcessor extends QueryProcessor<ChangeData>
       changePluginDefinedInfoFactoriesByPlugin = new ArrayList<>();
   private final Sequences sequences;
   private final IndexConfig indexConfig;
+  private boolean indexOnlyVisibility;
 
   static {
     // It is assumed that basic rewrites do not touch visibleto predicates.
@@ -107,6 +109,17 @@ public class ChangeQueryProcessor extends QueryProcessor<ChangeData>
     return this;
   }
 
+  /**
+   * Checks the visibility of the changes from the data read from the index only.
+   *
+   * <p>The requested fields must include the fields that the visibility check needs, i.e. the
+   * stored change and the reviewers.
+   */
+  public ChangeQueryProcessor setIndexOnlyVisibility(boolean indexOnlyVisibility) {
+    this.indexOnlyVisibility = indexOnlyVisibility;
+    return this;
+  }
+
   @Override
   protected QueryOptions createOptions(
       IndexConfig indexConfig,
@@ -142,8 +155,39 @@ public class ChangeQueryProcessor extends QueryProcessor<ChangeData>
 
   @Override
   protected Predicate<ChangeData> enforceVisibility(Predicate<ChangeData> pred) {
+    ChangeIsVisibleToPredicate isVisible =
+        changeIsVisibleToPredicateFactory.forUser(userProvider.get());
     return new AndChangeSource(
-        pred, changeIsVisibleToPredicateFactory.forUser(userProvider.get()), start, indexConfig);
+        pred,
+        indexOnlyVisibility ? new IndexOnlyIsVisibleToPredicate(isVisible) : isVisible,
+        start,
+        indexConfig);
+  }
+
+  /** Checks the visibility of a change without backfilling missing data from NoteDb. */
+  private static class IndexOnlyIsVisibleToPredicate extends IsVisibleToPredicate<ChangeData> {
+    private final ChangeIsVisibleToPredicate delegate;
+
+    IndexOnlyIsVisibleToPredicate(ChangeIsVisibleToPredicate delegate) {
+      super(delegate.getOperator(), delegate.getValue());
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean match(ChangeData cd) {
+      ChangeData.StorageConstraint storageConstraint = cd.getStorageConstraint();
+      cd.setStorageConstraint(ChangeData.StorageConstraint.INDEX_ONLY);
+      try {
+        return delegate.match(cd);
+      } finally {
+        cd.setStorageConstraint(storageConstraint);
+      }
+    }
+
+    @Override
+    public int getCost() {
+      return delegate.getCost();
+    }
   }
 
   @Override
@@ -0,0 +1,174 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.query.change;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.client.ChangeStatus;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.events.RevisionCreatedListener;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.submit.SubmitDryRun;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Precomputes the conflicts of new patch sets with the other open changes of their branch.
+ *
+ * <p>The {@code conflicts:} operator checks each open change on the branch that touches one of the
+ * files of the change by a trial merge. The results are stored in the persistent {@link
+ * ConflictsCache}, keyed by the pair of commits, so that they stay valid when the branch advances.
+ * Filling the cache whenever a patch set is created keeps this pairwise conflict matrix up to date,
+ * so that {@code conflicts:} queries only need cache lookups.
+ *
+ * <p>Disabled unless {@code change.precomputeConflicts} is set.
+ */
+@Singleton
+public class ConflictsCacheWarmer implements RevisionCreatedListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  @Singleton
+  static class Metrics {
+    final Timer0 latency;
+    final Counter0 trialMerges;
+
+    @Inject
+    Metrics(MetricMaker metricMaker) {
+      latency =
+          metricMaker.newTimer(
+              "change/conflicts/precompute_latency",
+              new Description(
+                      "Latency of precomputing the conflicts of a new patch set with the other"
+                          + " open changes of its branch")
+                  .setCumulative()
+                  .setUnit(Units.MILLISECONDS));
+      trialMerges =
+          metricMaker.newCounter(
+              "change/conflicts/precompute_trial_merges",
+              new Description(
+                      "Number of trial merges done while precomputing conflicts, for pairs of"
+                          + " changes that were not cached yet")
+                  .setRate()
+                  .setUnit("merges"));
+    }
+  }
+
+  private final ChangeData.Factory changeDataFactory;
+  private final Provider<InternalChangeQuery> queryProvider;
+  private final IndexConfig indexConfig;
+  private final ProjectCache projectCache;
+  private final ConflictsCache conflictsCache;
+  private final GitRepositoryManager repoManager;
+  private final SubmitDryRun submitDryRun;
+  private final OneOffRequestContext requestContext;
+  private final Metrics metrics;
+  @Nullable private final ScheduledExecutorService executor;
+
+  @Inject
+  ConflictsCacheWarmer(
+      ChangeData.Factory changeDataFactory,
+      Provider<InternalChangeQuery> queryProvider,
+      IndexConfig indexConfig,
+      ProjectCache projectCache,
+      ConflictsCache conflictsCache,
+      GitRepositoryManager repoManager,
+      SubmitDryRun submitDryRun,
+      OneOffRequestContext requestContext,
+      Metrics metrics,
+      WorkQueue workQueue,
+      @GerritServerConfig Config cfg) {
+    this.changeDataFactory = changeDataFactory;
+    this.queryProvider = queryProvider;
+    this.indexConfig = indexConfig;
+    this.projectCache = projectCache;
+    this.conflictsCache = conflictsCache;
+    this.repoManager = repoManager;
+    this.submitDryRun = submitDryRun;
+    this.requestContext = requestContext;
+    this.metrics = metrics;
+    this.executor =
+        cfg.getBoolean("change", null, "conflictsPredicateEnabled", true)
+                && cfg.getBoolean("change", null, "precomputeConflicts", false)
+            ? workQueue.createQueue(1, "ConflictsCacheWarmer", true)
+            : null;
+  }
+
+  @Override
+  public void onRevisionCreated(Event event) {
+    ChangeInfo change = event.getChange();
+    if (executor == null || change.status != ChangeStatus.NEW) {
+      return;
+    }
+    Project.NameKey project = Project.nameKey(change.project);
+    Change.Id id = Change.id(change._number);
+    @SuppressWarnings("unused")
+    Future<?> possiblyIgnoredError = executor.submit(() -> precompute(project, id));
+  }
+
+  @VisibleForTesting
+  void precompute(Project.NameKey project, Change.Id id) {
+    try (ManualRequestContext ctx = requestContext.open();
+        Timer0.Context ignored = metrics.latency.start()) {
+      ChangeData cd = changeDataFactory.create(project, id);
+      Change c = cd.change();
+      List<String> files = cd.currentFilePaths();
+      if (!c.isNew() || files.isEmpty() || 4 + files.size() > indexConfig.maxTerms()) {
+        return;
+      }
+
+      List<Predicate<ChangeData>> and = ConflictsPredicate.overlapping(c, files);
+      and.add(ChangeStatusPredicate.open());
+      ConflictsPredicate.ChangeDataCache changeDataCache =
+          new ConflictsPredicate.ChangeDataCache(cd, projectCache);
+      for (ChangeData other : queryProvider.get().query(Predicate.and(and))) {
+        ConflictKey key = ConflictsPredicate.conflictKey(other, changeDataCache);
+        if (key == null) {
+          continue;
+        }
+        ConflictsPredicate.Loader loader =
+            new ConflictsPredicate.Loader(other, changeDataCache, repoManager, submitDryRun);
+        conflictsCache.get(
+            key,
+            () -> {
+              metrics.trialMerges.increment();
+              return loader.call();
+            });
+      }
+    } catch (Exception e) {
+      logger.atWarning().withCause(e).log(
+          "Failed to precompute conflicts of change %s in %s", id, project);
+    }
+  }
+}
@@ -21,6 +21,7 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 
 import com.google.common.flogger.FluentLogger;
 import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.BooleanProjectConfig;
 import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.entities.Change;
@@ -31,6 +32,7 @@ import com.google.gerrit.index.query.PostFilterPredicate;
 import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryParseException;
 import com.google.gerrit.server.git.CodeReviewCommit;
+import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.project.NoSuchProjectException;
 import com.google.gerrit.server.project.ProjectCache;
 import com.google.gerrit.server.project.ProjectState;
@@ -81,6 +83,17 @@ public class ConflictsPredicate {
       throw new QueryParseException(TOO_MANY_FILES);
     }
 
+    List<Predicate<ChangeData>> and = overlapping(c, files);
+    ChangeDataCache changeDataCache = new ChangeDataCache(cd, args.projectCache);
+    and.add(new CheckConflict(value, args, c, changeDataCache));
+    return Predicate.and(and);
+  }
+
+  /**
+   * Returns the predicates matching the other changes on the destination branch of {@code c} that
+   * touch any of the given files. Only these changes can conflict with {@code c}.
+   */
+  static List<Predicate<ChangeData>> overlapping(Change c, List<String> files) {
     List<Predicate<ChangeData>> filePredicates = new ArrayList<>(files.size());
     for (String file : files) {
       filePredicates.add(ChangePredicates.path(file));
@@ -91,10 +104,7 @@ public class ConflictsPredicate {
     and.add(ChangePredicates.ref(c.getDest().branch()));
     and.add(Predicate.not(ChangePredicates.idStr(c.getId())));
     and.add(Predicate.or(filePredicates));
-
-    ChangeDataCache changeDataCache = new ChangeDataCache(cd, args.projectCache);
-    and.add(new CheckConflict(value, args, c, changeDataCache));
-    return Predicate.and(and);
+    return and;
   }
 
   private static final class CheckConflict extends PostFilterPredicate<ChangeData> {
@@ -120,27 +130,20 @@ public class ConflictsPredicate {
           return false;
         }
         otherProject = otherChange.getProject();
+        other = object.currentPatchSet().commitId();
 
-        SubmitTypeRecord str = object.submitTypeRecord();
-        if (!str.isOk()) {
-          return false;
-        }
-
-        ProjectState projectState;
+        ConflictKey conflictsKey;
         try {
-          projectState = changeDataCache.getProjectState();
+          conflictsKey = conflictKey(object, changeDataCache);
         } catch (NoSuchProjectException e) {
           return false;
         }
-
-        other = object.currentPatchSet().commitId();
-        ConflictKey conflictsKey =
-            ConflictKey.create(
-                changeDataCache.getTestAgainst(),
-                other,
-                str.type,
-                projectState.is(BooleanProjectConfig.USE_CONTENT_MERGE));
-        return args.conflictsCache.get(conflictsKey, new Loader(object, changeDataCache, args));
+        if (conflictsKey == null) {
+          return false;
+        }
+        return args.conflictsCache.get(
+            conflictsKey,
+            new Loader(object, changeDataCache, args.repoManager, args.submitDryRun));
       } catch (StorageException | ExecutionException | UncheckedExecutionException e) {
         ObjectId finalOther = other;
         warnWithOccasionalStackTrace(
@@ -160,6 +163,25 @@ public class ConflictsPredicate {
     }
   }
 
+  /**
+   * Returns the key under which the result of checking the given change for conflicts with the
+   * change of {@code changeDataCache} is cached, or {@code null} if the change has no valid submit
+   * type.
+   */
+  @Nullable
+  static ConflictKey conflictKey(ChangeData other, ChangeDataCache changeDataCache)
+      throws NoSuchProjectException {
+    SubmitTypeRecord str = other.submitTypeRecord();
+    if (!str.isOk()) {
+      return null;
+    }
+    return ConflictKey.create(
+        changeDataCache.getTestAgainst(),
+        other.currentPatchSet().commitId(),
+        str.type,
+        changeDataCache.getProjectState().is(BooleanProjectConfig.USE_CONTENT_MERGE));
+  }
+
   static class ChangeDataCache {
     private final ChangeData cd;
     private final ProjectCache projectCache;
@@ -204,27 +226,30 @@ public class ConflictsPredicate {
         .logVarargs("(Re-logging with stack trace) " + format, args);
   }
 
-  private static class Loader implements Callable<Boolean> {
+  static class Loader implements Callable<Boolean> {
     private final ChangeData changeData;
     private final ConflictsPredicate.ChangeDataCache changeDataCache;
-    private final ChangeQueryBuilder.Arguments args;
+    private final GitRepositoryManager repoManager;
+    private final SubmitDryRun submitDryRun;
 
-    private Loader(
+    Loader(
         ChangeData changeData,
         ConflictsPredicate.ChangeDataCache changeDataCache,
-        ChangeQueryBuilder.Arguments args) {
+        GitRepositoryManager repoManager,
+        SubmitDryRun submitDryRun) {
       this.changeData = changeData;
       this.changeDataCache = changeDataCache;
-      this.args = args;
+      this.repoManager = repoManager;
+      this.submitDryRun = submitDryRun;
     }
 
     @Override
     public Boolean call() throws Exception {
       Change otherChange = changeData.change();
       ObjectId other = changeData.currentPatchSet().commitId();
-      try (Repository repo = args.repoManager.openRepository(otherChange.getProject());
+      try (Repository repo = repoManager.openRepository(otherChange.getProject());
           CodeReviewCommit.CodeReviewRevWalk rw = CodeReviewCommit.newRevWalk(repo)) {
-        return !args.submitDryRun.run(
+        return !submitDryRun.run(
             null,
             changeData.submitTypeRecord().type,
             repo,
@@ -42,7 +42,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Supplier;
 import org.eclipse.jgit.lib.ObjectId;
@@ -115,6 +117,35 @@ public class InternalChangeQuery extends InternalQuery<ChangeData, InternalChang
     return query(byBranchKeyPred(branch, key));
   }
 
+  /**
+   * Returns the changes on a branch that have one of the given Change-Ids, or one of the given
+   * commits as a patch set.
+   *
+   * <p>Looks up the changes of many commits with a few OR queries rather than one query per
+   * commit. Change-Ids are matched by prefix, callers that need exact matches must filter the
+   * results.
+   */
+  public List<ChangeData> byBranchKeysOrCommits(
+      BranchNameKey branch, Collection<Change.Key> keys, Collection<String> hashes) {
+    List<Predicate<ChangeData>> preds = new ArrayList<>(keys.size() + hashes.size());
+    keys.forEach(k -> preds.add(change(k)));
+    preds.addAll(commits(hashes));
+    if (preds.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    List<Predicate<ChangeData>> queries = new ArrayList<>();
+    // Account for the ref and project predicates.
+    for (List<Predicate<ChangeData>> part : Lists.partition(preds, indexConfig.maxTerms() - 2)) {
+      queries.add(and(ref(branch), project(branch.project()), or(part)));
+    }
+    Map<Change.Id, ChangeData> changes = new LinkedHashMap<>();
+    for (List<ChangeData> result : query(queries)) {
+      result.forEach(cd -> changes.putIfAbsent(cd.getId(), cd));
+    }
+    return ImmutableList.copyOf(changes.values());
+  }
+
   public List<ChangeData> byBranchKeyOpen(Project.NameKey project, String branch, Change.Key key) {
     return query(and(byBranchKeyPred(BranchNameKey.create(project, branch), key), open()));
   }
@@ -14,7 +14,6 @@
 
 package com.google.gerrit.server.restapi.change;
 
-import com.google.common.collect.Iterables;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.extensions.client.ListChangesOption;
 import com.google.gerrit.extensions.client.ListOption;
@@ -27,6 +26,10 @@ import com.google.gerrit.extensions.restapi.TopLevelResource;
 import com.google.gerrit.index.query.QueryParseException;
 import com.google.gerrit.index.query.QueryRequiresAuthException;
 import com.google.gerrit.index.query.QueryResult;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.server.AnonymousUser;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.DynamicOptions;
@@ -39,6 +42,7 @@ import com.google.gerrit.server.query.change.ChangeQueryBuilder;
 import com.google.gerrit.server.query.change.ChangeQueryProcessor;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.google.inject.Singleton;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -49,17 +53,39 @@ import org.kohsuke.args4j.Option;
 public class QueryChanges implements RestReadView<TopLevelResource>, DynamicOptions.BeanReceiver {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  @Singleton
+  static class Metrics {
+    private final Counter1<Boolean> projectionQueries;
+
+    @Inject
+    Metrics(MetricMaker metricMaker) {
+      projectionQueries =
+          metricMaker.newCounter(
+              "http/server/rest_api/query_changes/projection_queries",
+              new Description(
+                      "Number of change queries in projection mode, by whether the results could"
+                          + " be formatted from the index only")
+                  .setRate()
+                  .setUnit("queries"),
+              Field.ofBoolean("fast_path", (metadataBuilder, fieldValue) -> {})
+                  .description("Whether the results were formatted from the index only.")
+                  .build());
+    }
+  }
+
   private final ChangeJson.Factory json;
   private final ChangeQueryBuilder qb;
   private final Provider<ChangeQueryProcessor> queryProcessorProvider;
   private final HashMap<String, DynamicOptions.DynamicBean> dynamicBeans = new HashMap<>();
   private final Provider<CurrentUser> userProvider;
   private final PermissionBackend permissionBackend;
+  private final Metrics metrics;
   private EnumSet<ListChangesOption> options;
   private Integer limit;
   private Integer start;
   private Boolean noLimit;
   private Boolean skipVisibility;
+  private boolean projection;
 
   @Option(
       name = "--query",
@@ -112,6 +138,15 @@ public class QueryChanges implements RestReadView<TopLevelResource>, DynamicOpti
     skipVisibility = on;
   }
 
+  @Option(
+      name = "--projection",
+      usage =
+          "Only return the number, project and status of the changes, read from the index."
+              + " Ignored if output options other than SKIP_DIFFSTAT are requested.")
+  public void setProjection(boolean on) {
+    projection = on;
+  }
+
   @Override
   public void setDynamicBean(String plugin, DynamicOptions.DynamicBean dynamicBean) {
     dynamicBeans.put(plugin, dynamicBean);
@@ -123,12 +158,14 @@ public class QueryChanges implements RestReadView<TopLevelResource>, DynamicOpti
       ChangeQueryBuilder qb,
       Provider<ChangeQueryProcessor> queryProcessorProvider,
       Provider<CurrentUser> userProvider,
-      PermissionBackend permissionBackend) {
+      PermissionBackend permissionBackend,
+      Metrics metrics) {
     this.json = json;
     this.qb = qb;
     this.queryProcessorProvider = queryProcessorProvider;
     this.userProvider = userProvider;
     this.permissionBackend = permissionBackend;
+    this.metrics = metrics;
 
     options = EnumSet.noneOf(ListChangesOption.class);
   }
@@ -191,16 +228,24 @@ public class QueryChanges implements RestReadView<TopLevelResource>, DynamicOpti
       throw new QueryParseException("limit of 10 queries");
     }
 
-    int cnt = queries.size();
-    List<QueryResult<ChangeData>> results = queryProcessor.query(qb.parse(queries));
-    List<List<ChangeInfo>> res =
-        json.create(options, queryProcessor.getInfosFactory()).format(results);
-    for (int n = 0; n < cnt; n++) {
-      List<ChangeInfo> info = res.get(n);
-      if (results.get(n).more() && !info.isEmpty()) {
-        Iterables.getLast(info)._moreChanges = true;
-      }
+    // Projections can be formatted from the index only if no other data was requested, neither by
+    // output options nor by plugins.
+    boolean indexOnly =
+        projection
+            && ChangeJson.PROJECTION_OPTIONS.containsAll(options)
+            && dynamicBeans.isEmpty();
+    if (projection) {
+      metrics.projectionQueries.increment(indexOnly);
+    }
+    if (indexOnly) {
+      queryProcessor.setRequestedFields(ChangeJson.PROJECTION_FIELDS);
+      queryProcessor.setIndexOnlyVisibility(true);
     }
-    return res;
+
+    List<QueryResult<ChangeData>> results = queryProcessor.query(qb.parse(queries));
+    // ChangeJson sets _moreChanges on the last change of each result.
+    return indexOnly
+        ? json.create(options).formatProjections(results)
+        : json.create(options, queryProcessor.getInfosFactory()).format(results);
   }
 }
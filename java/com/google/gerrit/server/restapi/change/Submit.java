@@ -64,7 +64,9 @@ import com.google.gerrit.server.query.change.InternalChangeQuery;
 import com.google.gerrit.server.submit.ChangeSet;
 import com.google.gerrit.server.submit.MergeOp;
 import com.google.gerrit.server.submit.MergeSuperSet;
+import com.google.gerrit.server.submit.MergeSuperSetCache;
 import com.google.gerrit.server.update.UpdateException;
+import com.google.gerrit.server.util.RequestScopePropagator;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -106,7 +108,7 @@ public class Submit
   private final GitRepositoryManager repoManager;
   private final PermissionBackend permissionBackend;
   private final Provider<MergeOp> mergeOpProvider;
-  private final Provider<MergeSuperSet> mergeSuperSet;
+  private final MergeSuperSetCache mergeSuperSetCache;
   private final AccountResolver accountResolver;
   private final String label;
   private final String labelWithParents;
@@ -119,13 +121,14 @@ public class Submit
   private final PatchSetUtil psUtil;
   private final ProjectCache projectCache;
   private final ChangeJson.Factory json;
+  @Nullable private Provider<RequestScopePropagator> requestScopePropagator;
 
   @Inject
   Submit(
       GitRepositoryManager repoManager,
       PermissionBackend permissionBackend,
       Provider<MergeOp> mergeOpProvider,
-      Provider<MergeSuperSet> mergeSuperSet,
+      MergeSuperSetCache mergeSuperSetCache,
       AccountResolver accountResolver,
       @GerritServerConfig Config cfg,
       Provider<InternalChangeQuery> queryProvider,
@@ -135,7 +138,7 @@ public class Submit
     this.repoManager = repoManager;
     this.permissionBackend = permissionBackend;
     this.mergeOpProvider = mergeOpProvider;
-    this.mergeSuperSet = mergeSuperSet;
+    this.mergeSuperSetCache = mergeSuperSetCache;
     this.accountResolver = accountResolver;
     this.label =
         MoreObjects.firstNonNull(
@@ -168,6 +171,17 @@ public class Submit
     this.json = json;
   }
 
+  /**
+   * Sets the propagator that carries the request scope of the submitting request to the threads on
+   * which the projects of the submission are merged. Only injected if the front-end that serves the
+   * request binds a {@link RequestScopePropagator}, otherwise {@link MergeOp} only carries the
+   * request context to these threads.
+   */
+  @Inject(optional = true)
+  void setRequestScopePropagator(Provider<RequestScopePropagator> requestScopePropagator) {
+    this.requestScopePropagator = requestScopePropagator;
+  }
+
   @Override
   public Response<ChangeInfo> apply(RevisionResource rsrc, @Nullable SubmitInput input)
       throws RestApiException, RepositoryNotFoundException, IOException, PermissionBackendException,
@@ -209,6 +223,9 @@ public class Submit
     }
 
     try (MergeOp op = mergeOpProvider.get()) {
+      if (requestScopePropagator != null) {
+        op.setRequestScopePropagator(requestScopePropagator.get());
+      }
       Change updatedChange;
 
       updatedChange = op.merge(change, submitter, true, input, false);
@@ -321,9 +338,8 @@ public class Submit
     }
 
     ChangeSet cs =
-        mergeSuperSet
-            .get()
-            .completeChangeSet(cd.change(), resource.getUser(), /*includingTopicClosure= */ false);
+        mergeSuperSetCache.completeChangeSet(
+            cd.change(), resource.getUser(), /*includingTopicClosure= */ false);
     String topic = change.getTopic();
     int topicSize = 0;
     if (!Strings.isNullOrEmpty(topic)) {
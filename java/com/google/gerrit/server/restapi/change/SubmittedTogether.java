@@ -39,7 +39,7 @@ import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.gerrit.server.query.change.InternalChangeQuery;
 import com.google.gerrit.server.submit.ChangeSet;
-import com.google.gerrit.server.submit.MergeSuperSet;
+import com.google.gerrit.server.submit.MergeSuperSetCache;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import java.io.IOException;
@@ -65,7 +65,7 @@ public class SubmittedTogether implements RestReadView<ChangeResource> {
 
   private final ChangeJson.Factory json;
   private final Provider<InternalChangeQuery> queryProvider;
-  private final Provider<MergeSuperSet> mergeSuperSet;
+  private final MergeSuperSetCache mergeSuperSetCache;
   private final Provider<WalkSorter> sorter;
 
   @Option(name = "-o", usage = "Output options")
@@ -91,11 +91,11 @@ public class SubmittedTogether implements RestReadView<ChangeResource> {
   SubmittedTogether(
       ChangeJson.Factory json,
       Provider<InternalChangeQuery> queryProvider,
-      Provider<MergeSuperSet> mergeSuperSet,
+      MergeSuperSetCache mergeSuperSetCache,
       Provider<WalkSorter> sorter) {
     this.json = json;
     this.queryProvider = queryProvider;
-    this.mergeSuperSet = mergeSuperSet;
+    this.mergeSuperSetCache = mergeSuperSetCache;
     this.sorter = sorter;
   }
 
@@ -129,9 +129,8 @@ public class SubmittedTogether implements RestReadView<ChangeResource> {
 
       if (c.isNew()) {
         ChangeSet cs =
-            mergeSuperSet
-                .get()
-                .completeChangeSet(c, resource.getUser(), options.contains(TOPIC_CLOSURE));
+            mergeSuperSetCache.completeChangeSet(
+                c, resource.getUser(), options.contains(TOPIC_CLOSURE));
         cds = ensureRequiredDataIsLoaded(cs.changes().asList());
         hidden = cs.nonVisibleChanges().size();
       } else if (c.isMerged()) {
@@ -32,6 +32,7 @@ import com.google.gerrit.server.project.NoSuchChangeException;
 import com.google.gerrit.server.update.ChangeContext;
 import com.google.gerrit.server.update.RepoContext;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import org.eclipse.jgit.lib.ObjectId;
@@ -39,6 +40,9 @@ import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.revwalk.RevCommit;
 
 public class CherryPick extends SubmitStrategy {
+  private final List<CodeReviewCommit> speculate = new ArrayList<>();
+  private boolean speculationStarted;
+  @Nullable private SpeculativeCherryPicker.Speculation speculation;
 
   CherryPick(SubmitStrategy.Arguments args) {
     super(args);
@@ -58,6 +62,7 @@ public class CherryPick extends SubmitStrategy {
         ops.add(new CherryPickRootOp(n));
       } else if (n.getParentCount() == 1) {
         ops.add(new CherryPickOneOp(n));
+        speculate.add(n);
       } else {
         ops.add(new CherryPickMultipleParentsOp(n));
       }
@@ -66,6 +71,26 @@ public class CherryPick extends SubmitStrategy {
     return ops.build();
   }
 
+  /**
+   * Returns the speculative cherry-picks of the single-parent commits, starting them on first use.
+   */
+  @Nullable
+  private SpeculativeCherryPicker.Speculation speculation(RepoContext ctx) throws IOException {
+    if (!speculationStarted) {
+      speculationStarted = true;
+      speculation =
+          args.speculativeCherryPicker.start(args, ctx.getRepoView().getConfig(), speculate);
+    }
+    return speculation;
+  }
+
+  @Override
+  void cancelPendingWork() {
+    if (speculation != null) {
+      speculation.cancel();
+    }
+  }
+
   private class CherryPickRootOp extends SubmitStrategyOp {
     private CherryPickRootOp(CodeReviewCommit toMerge) {
       super(CherryPick.this.args, toMerge);
@@ -105,18 +130,24 @@ public class CherryPick extends SubmitStrategy {
 
       PersonIdent committer = ctx.newCommitterIdent(args.caller);
       try {
-        newCommit =
-            args.mergeUtil.createCherryPickFromCommit(
-                ctx.getInserter(),
-                ctx.getRepoView().getConfig(),
-                args.mergeTip.getCurrentTip(),
-                toMerge,
-                committer,
-                cherryPickCmtMsg,
-                args.rw,
-                0,
-                false,
-                false);
+        SpeculativeCherryPicker.Speculation speculation = speculation(ctx);
+        if (speculation != null) {
+          newCommit = speculation.apply(ctx, toMerge, mergeTip, committer, cherryPickCmtMsg);
+        }
+        if (newCommit == null) {
+          newCommit =
+              args.mergeUtil.createCherryPickFromCommit(
+                  ctx.getInserter(),
+                  ctx.getRepoView().getConfig(),
+                  args.mergeTip.getCurrentTip(),
+                  toMerge,
+                  committer,
+                  cherryPickCmtMsg,
+                  args.rw,
+                  0,
+                  false,
+                  false);
+        }
       } catch (MergeConflictException mce) {
         // Keep going in the case of a single merge failure; the goal is to
         // cherry-pick as many commits as possible.
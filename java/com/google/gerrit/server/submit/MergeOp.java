@@ -30,6 +30,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.common.Nullable;
@@ -84,6 +85,7 @@ import com.google.gerrit.server.update.SubmissionExecutor;
 import com.google.gerrit.server.update.SubmissionListener;
 import com.google.gerrit.server.update.SuperprojectUpdateOnSubmission;
 import com.google.gerrit.server.update.UpdateException;
+import com.google.gerrit.server.util.RequestScopePropagator;
 import com.google.gerrit.server.util.time.TimeUtil;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -99,6 +101,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.eclipse.jgit.errors.ConfigInvalidException;
@@ -142,8 +145,11 @@ public class MergeOp implements AutoCloseable {
         bb.put(cd.change().getDest(), cd.getId());
       }
       byBranch = bb.build();
-      commits = new HashMap<>();
-      problems = MultimapBuilder.treeKeys(comparing(Change.Id::get)).arrayListValues(1).build();
+      // The merge strategies of different projects may run concurrently.
+      commits = new ConcurrentHashMap<>();
+      problems =
+          Multimaps.synchronizedListMultimap(
+              MultimapBuilder.treeKeys(comparing(Change.Id::get)).arrayListValues(1).build());
       this.allowClosed = allowClosed;
     }
 
@@ -235,6 +241,7 @@ public class MergeOp implements AutoCloseable {
   private final MergeSuperSet mergeSuperSet;
   private final MergeValidators.Factory mergeValidatorsFactory;
   private final Provider<InternalChangeQuery> queryProvider;
+  private final SubmitExecutor submitExecutor;
   private final SubmitStrategyFactory submitStrategyFactory;
   private final SubscriptionGraph.Factory subscriptionGraphFactory;
   private final SubmoduleCommits.Factory submoduleCommitsFactory;
@@ -259,6 +266,7 @@ public class MergeOp implements AutoCloseable {
   private Set<Project.NameKey> projects;
   private boolean dryrun;
   private TopicMetrics topicMetrics;
+  @Nullable private RequestScopePropagator requestScopePropagator;
 
   @Inject
   MergeOp(
@@ -268,6 +276,7 @@ public class MergeOp implements AutoCloseable {
       MergeSuperSet mergeSuperSet,
       MergeValidators.Factory mergeValidatorsFactory,
       Provider<InternalChangeQuery> queryProvider,
+      SubmitExecutor submitExecutor,
       SubmitStrategyFactory submitStrategyFactory,
       SubmoduleCommits.Factory submoduleCommitsFactory,
       SubscriptionGraph.Factory subscriptionGraphFactory,
@@ -285,6 +294,7 @@ public class MergeOp implements AutoCloseable {
     this.mergeSuperSet = mergeSuperSet;
     this.mergeValidatorsFactory = mergeValidatorsFactory;
     this.queryProvider = queryProvider;
+    this.submitExecutor = submitExecutor;
     this.submitStrategyFactory = submitStrategyFactory;
     this.submoduleCommitsFactory = submoduleCommitsFactory;
     this.subscriptionGraphFactory = subscriptionGraphFactory;
@@ -298,6 +308,15 @@ public class MergeOp implements AutoCloseable {
     this.storeSubmitRequirementsOpFactory = storeSubmitRequirementsOpFactory;
   }
 
+  /**
+   * Sets the propagator that carries the request scope to the threads on which the projects of the
+   * submission are merged if {@code change.submitThreads} is greater than 1.
+   */
+  public MergeOp setRequestScopePropagator(RequestScopePropagator requestScopePropagator) {
+    this.requestScopePropagator = requestScopePropagator;
+    return this;
+  }
+
   @Override
   public void close() {
     if (orm != null) {
@@ -658,12 +677,19 @@ public class MergeOp implements AutoCloseable {
       try {
         submissionExecutor.setAdditionalBatchUpdateListeners(
             ImmutableList.of(new SubmitStrategyListener(submitInput, strategies, commitStatus)));
+        // Superprojects can only be merged after their subprojects, since the gitlinks are updated
+        // to the new tips of the subprojects.
+        submissionExecutor.setUpdateRepoExecutor(
+            subscriptionGraph.getAffectedSuperProjects().isEmpty()
+                ? submitExecutor.forCurrentRequest(requestScopePropagator)
+                : null);
         submissionExecutor.execute(batchUpdates);
       } finally {
         // If the BatchUpdate fails it can be that merging some of the changes was actually
         // successful. This is why we must to collect the updated changes also when an
         // exception was thrown.
         strategies.forEach(s -> updatedChanges.putAll(s.getUpdatedChanges()));
+        strategies.forEach(SubmitStrategy::cancelPendingWork);
 
         // Do not leave executed BatchUpdates in the OpenRepos
         if (!dryrun) {
@@ -40,10 +40,10 @@ import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.ObjectReader;
@@ -86,7 +86,7 @@ public class MergeOpRepoManager implements AutoCloseable {
       branches = Maps.newHashMapWithExpectedSize(1);
     }
 
-    OpenBranch getBranch(BranchNameKey branch) throws IntegrationConflictException {
+    synchronized OpenBranch getBranch(BranchNameKey branch) throws IntegrationConflictException {
       OpenBranch ob = branches.get(branch);
       if (ob == null) {
         ob = new OpenBranch(this, branch);
@@ -107,7 +107,7 @@ public class MergeOpRepoManager implements AutoCloseable {
       return rw;
     }
 
-    public BatchUpdate getUpdate() {
+    public synchronized BatchUpdate getUpdate() {
       checkState(caller != null, "call setContext before getUpdate");
       if (update == null) {
         update =
@@ -121,7 +121,7 @@ public class MergeOpRepoManager implements AutoCloseable {
     }
 
     // We want to reuse the open repo BUT not the BatchUpdate (because they are already executed)
-    public void resetExecutedUpdates() {
+    public synchronized void resetExecutedUpdates() {
       if (update != null && update.isExecuted()) {
         update.close();
         update = null;
@@ -182,7 +182,8 @@ public class MergeOpRepoManager implements AutoCloseable {
     this.batchUpdateFactory = batchUpdateFactory;
     this.onSubmitValidatorsFactory = onSubmitValidatorsFactory;
 
-    openRepos = new HashMap<>();
+    // The projects of a submission may be merged concurrently, see SubmitExecutor.
+    openRepos = new ConcurrentHashMap<>();
   }
 
   public void setContext(Instant ts, IdentifiedUser caller, NotifyResolver.Result notify) {
@@ -191,9 +192,11 @@ public class MergeOpRepoManager implements AutoCloseable {
     this.notify = requireNonNull(notify);
   }
 
-  public OpenRepo getRepo(Project.NameKey project) throws NoSuchProjectException, IOException {
-    if (openRepos.containsKey(project)) {
-      return openRepos.get(project);
+  public synchronized OpenRepo getRepo(Project.NameKey project)
+      throws NoSuchProjectException, IOException {
+    OpenRepo existing = openRepos.get(project);
+    if (existing != null) {
+      return existing;
     }
 
     ProjectState projectState = projectCache.get(project).orElseThrow(noSuchProject(project));
@@ -224,7 +227,7 @@ public class MergeOpRepoManager implements AutoCloseable {
   }
 
   @Override
-  public void close() {
+  public synchronized void close() {
     for (OpenRepo repo : openRepos.values()) {
       repo.close();
     }
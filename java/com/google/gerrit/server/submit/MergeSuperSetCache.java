@@ -0,0 +1,343 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.submit;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.util.stream.Collectors.joining;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Streams;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.AccountGroup;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.InternalChangeQuery;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Caches the sets of changes that would be submitted together with a change, as computed by {@link
+ * MergeSuperSet}.
+ *
+ * <p>Computing the set walks the history of all involved changes and queries the open changes of
+ * their topics, which is expensive for large topics. The UI asks for the set repeatedly, for the
+ * "Submitted Together" tab and for rendering the submit button.
+ *
+ * <p>An entry is only reused as long as the state the computation depended on is unchanged: the
+ * meta refs of all changes in the set, the tips of their destination branches, the project
+ * configurations that control their visibility and, if topics were included, the open changes of
+ * their topics. All of these are read from the repositories and the change index on every lookup,
+ * so updates made on other servers are taken into account.
+ *
+ * <p>The actual submission must not use this cache, it always computes the set from scratch.
+ */
+@Singleton
+public class MergeSuperSetCache {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String CACHE_NAME = "merge_super_set";
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, Key.class, Entry.class)
+            .maximumWeight(1024)
+            .expireAfterWrite(Duration.ofMinutes(10));
+        bind(MergeSuperSetCache.class);
+      }
+    };
+  }
+
+  @AutoValue
+  abstract static class Key {
+    static Key create(
+        Change.Id changeId,
+        boolean includingTopicClosure,
+        Object user,
+        ImmutableSet<AccountGroup.UUID> groups) {
+      return new AutoValue_MergeSuperSetCache_Key(changeId, includingTopicClosure, user, groups);
+    }
+
+    abstract Change.Id changeId();
+
+    abstract boolean includingTopicClosure();
+
+    abstract Object user();
+
+    abstract ImmutableSet<AccountGroup.UUID> groups();
+  }
+
+  @AutoValue
+  abstract static class Entry {
+    static Entry create(
+        ImmutableMap<Change.Id, Project.NameKey> changes,
+        ImmutableMap<Change.Id, Project.NameKey> nonVisibleChanges,
+        ImmutableMap<Project.NameKey, ImmutableMap<String, ObjectId>> refs,
+        ImmutableMap<Project.NameKey, String> configs,
+        ImmutableMap<String, ImmutableSet<Change.Id>> topics) {
+      return new AutoValue_MergeSuperSetCache_Entry(
+          changes, nonVisibleChanges, refs, configs, topics);
+    }
+
+    abstract ImmutableMap<Change.Id, Project.NameKey> changes();
+
+    abstract ImmutableMap<Change.Id, Project.NameKey> nonVisibleChanges();
+
+    /** Refs the computation depended on, by project; missing refs are recorded as zero ID. */
+    abstract ImmutableMap<Project.NameKey, ImmutableMap<String, ObjectId>> refs();
+
+    /** Revisions of the project configs, including parents, by project. */
+    abstract ImmutableMap<Project.NameKey, String> configs();
+
+    /** Open changes of the topics of the changes, if topics were included. */
+    abstract ImmutableMap<String, ImmutableSet<Change.Id>> topics();
+  }
+
+  @Singleton
+  static class Metrics {
+    private final Counter1<Boolean> lookups;
+
+    @Inject
+    Metrics(MetricMaker metricMaker) {
+      lookups =
+          metricMaker.newCounter(
+              "change/merge_super_set_cache/lookups",
+              new Description("Lookups of the set of changes that would be submitted together")
+                  .setRate()
+                  .setUnit("lookups"),
+              Field.ofBoolean("hit", (metadataBuilder, fieldValue) -> {})
+                  .description("Whether an up to date entry was found in the cache.")
+                  .build());
+    }
+  }
+
+  private final Cache<Key, Entry> cache;
+  private final Provider<MergeSuperSet> mergeSuperSet;
+  private final Provider<InternalChangeQuery> queryProvider;
+  private final ChangeData.Factory changeDataFactory;
+  private final GitRepositoryManager repoManager;
+  private final ProjectCache projectCache;
+  private final Metrics metrics;
+  private final boolean wholeTopicEnabled;
+
+  @Inject
+  MergeSuperSetCache(
+      @Named(CACHE_NAME) Cache<Key, Entry> cache,
+      Provider<MergeSuperSet> mergeSuperSet,
+      Provider<InternalChangeQuery> queryProvider,
+      ChangeData.Factory changeDataFactory,
+      GitRepositoryManager repoManager,
+      ProjectCache projectCache,
+      Metrics metrics,
+      @GerritServerConfig Config cfg) {
+    this.cache = cache;
+    this.mergeSuperSet = mergeSuperSet;
+    this.queryProvider = queryProvider;
+    this.changeDataFactory = changeDataFactory;
+    this.repoManager = repoManager;
+    this.projectCache = projectCache;
+    this.metrics = metrics;
+    this.wholeTopicEnabled = MergeSuperSet.wholeTopicEnabled(cfg);
+  }
+
+  /**
+   * Returns the set of changes that would be submitted together with the given change, reusing a
+   * previous computation for the same user if it is still up to date.
+   *
+   * <p>Same as {@link MergeSuperSet#completeChangeSet(Change, CurrentUser, boolean)}, but must only
+   * be used for displaying the set, not for submitting it.
+   */
+  public ChangeSet completeChangeSet(Change change, CurrentUser user, boolean includingTopicClosure)
+      throws IOException, PermissionBackendException {
+    Key key =
+        Key.create(
+            change.getId(),
+            wholeTopicEnabled || includingTopicClosure,
+            user.getCacheKey(),
+            ImmutableSet.copyOf(user.getEffectiveGroups().getKnownGroups()));
+    Entry entry = cache.getIfPresent(key);
+    if (entry != null && isUpToDate(entry)) {
+      metrics.lookups.increment(true);
+      return toChangeSet(entry);
+    }
+    metrics.lookups.increment(false);
+
+    ChangeSet cs =
+        mergeSuperSet.get().completeChangeSet(change, user, key.includingTopicClosure());
+    try {
+      Entry newEntry = toEntry(cs, key.includingTopicClosure());
+      if (newEntry != null) {
+        cache.put(key, newEntry);
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.atWarning().withCause(e).log("Cannot cache submitted together set of %s", change);
+    }
+    return cs;
+  }
+
+  private boolean isUpToDate(Entry entry) {
+    try {
+      for (Map.Entry<String, ImmutableSet<Change.Id>> e : entry.topics().entrySet()) {
+        if (!openChangesOfTopic(e.getKey()).equals(e.getValue())) {
+          return false;
+        }
+      }
+      for (Map.Entry<Project.NameKey, String> e : entry.configs().entrySet()) {
+        if (!configVersion(e.getKey()).equals(e.getValue())) {
+          return false;
+        }
+      }
+      for (Map.Entry<Project.NameKey, ImmutableMap<String, ObjectId>> e :
+          entry.refs().entrySet()) {
+        if (!readRefs(e.getKey(), e.getValue().keySet()).equals(e.getValue())) {
+          return false;
+        }
+      }
+      return true;
+    } catch (IOException | RuntimeException e) {
+      logger.atWarning().withCause(e).log("Cannot check submitted together set for staleness");
+      return false;
+    }
+  }
+
+  private ChangeSet toChangeSet(Entry entry) {
+    List<ChangeData> changes = new ArrayList<>(entry.changes().size());
+    entry.changes().forEach((id, project) -> changes.add(changeDataFactory.create(project, id)));
+    List<ChangeData> nonVisible = new ArrayList<>(entry.nonVisibleChanges().size());
+    entry
+        .nonVisibleChanges()
+        .forEach((id, project) -> nonVisible.add(changeDataFactory.create(project, id)));
+    return new ChangeSet(changes, nonVisible);
+  }
+
+  /**
+   * Returns the entry for the given set, or {@code null} if the set should not be cached because a
+   * change joined one of its topics while it was computed.
+   */
+  @Nullable
+  private Entry toEntry(ChangeSet cs, boolean includingTopicClosure) throws IOException {
+    ImmutableMap.Builder<Change.Id, Project.NameKey> changes = ImmutableMap.builder();
+    ImmutableMap.Builder<Change.Id, Project.NameKey> nonVisible = ImmutableMap.builder();
+    SetMultimap<Project.NameKey, String> refNames =
+        MultimapBuilder.hashKeys().linkedHashSetValues().build();
+    Set<Change.Id> allIds = new HashSet<>();
+    Set<String> topicNames = new HashSet<>();
+    for (ChangeData cd : Streams.concat(cs.changes().stream(), cs.nonVisibleChanges().stream())) {
+      if (cs.ids().contains(cd.getId())) {
+        changes.put(cd.getId(), cd.project());
+      } else {
+        nonVisible.put(cd.getId(), cd.project());
+      }
+      allIds.add(cd.getId());
+      Change c = cd.change();
+      refNames.put(cd.project(), RefNames.changeMetaRef(cd.getId()));
+      refNames.put(cd.project(), c.getDest().branch());
+      if (includingTopicClosure && !Strings.isNullOrEmpty(c.getTopic())) {
+        topicNames.add(c.getTopic());
+      }
+    }
+
+    // The topic closure contains all open changes of its topics. A change that is missing from the
+    // set was added to the topic after the set was computed, caching the set would hide it.
+    ImmutableMap.Builder<String, ImmutableSet<Change.Id>> topics = ImmutableMap.builder();
+    for (String topic : topicNames) {
+      ImmutableSet<Change.Id> members = openChangesOfTopic(topic);
+      if (!allIds.containsAll(members)) {
+        return null;
+      }
+      topics.put(topic, members);
+    }
+
+    ImmutableMap.Builder<Project.NameKey, ImmutableMap<String, ObjectId>> refs =
+        ImmutableMap.builder();
+    ImmutableMap.Builder<Project.NameKey, String> configs = ImmutableMap.builder();
+    for (Project.NameKey project : refNames.keySet()) {
+      refs.put(project, readRefs(project, refNames.get(project)));
+      configs.put(project, configVersion(project));
+    }
+    return Entry.create(
+        changes.build(),
+        nonVisible.build(),
+        refs.build(),
+        configs.build(),
+        topics.build());
+  }
+
+  private ImmutableSet<Change.Id> openChangesOfTopic(String topic) {
+    return queryProvider.get().byTopicOpen(topic).stream()
+        .map(ChangeData::getId)
+        .collect(toImmutableSet());
+  }
+
+  private ImmutableMap<String, ObjectId> readRefs(Project.NameKey project, Iterable<String> names)
+      throws IOException {
+    ImmutableMap.Builder<String, ObjectId> result = ImmutableMap.builder();
+    try (Repository repo = repoManager.openRepository(project)) {
+      for (String name : names) {
+        Ref ref = repo.getRefDatabase().exactRef(name);
+        ObjectId id = ref != null ? ref.getObjectId() : null;
+        result.put(name, id != null ? id : ObjectId.zeroId());
+      }
+    }
+    return result.build();
+  }
+
+  private String configVersion(Project.NameKey project) {
+    return projectCache
+        .get(project)
+        .map(
+            ps ->
+                Streams.stream(ps.tree())
+                    .map(ProjectState::getConfig)
+                    .map(c -> c.getRevision().map(ObjectId::name).orElse(""))
+                    .collect(joining(",")))
+        .orElse("");
+  }
+}
@@ -0,0 +1,262 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.submit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.restapi.MergeConflictException;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.FanOutExecutor;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.ChangedPaths;
+import com.google.gerrit.server.git.CodeReviewCommit;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.InMemoryInserter;
+import com.google.gerrit.server.git.InsertedObject;
+import com.google.gerrit.server.git.MergeUtil;
+import com.google.gerrit.server.update.RepoContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.ThreeWayMerger;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Cherry-picks the commits of a submission speculatively and in parallel.
+ *
+ * <p>The {@link CherryPick} strategy applies the commits of a submission one after the other, each
+ * onto the result of the previous one. For commits that don't depend on each other, e.g. a topic
+ * of independent changes, most of the work doesn't depend on the previous cherry-picks though: the
+ * content merges of the files that a commit touches. These merges are done in parallel onto the
+ * initial tip of the branch, in memory, while the serial phase proceeds.
+ *
+ * <p>In the serial phase a speculative result is only used if none of the paths it touches were
+ * touched by the commits applied before it. Its tree is then merged with the current tip, which
+ * doesn't need any content merges. Otherwise, or if the speculative cherry-pick failed, the commit
+ * is cherry-picked as usual.
+ *
+ * <p>Disabled unless {@code change.speculativeCherryPick} is set.
+ */
+@Singleton
+class SpeculativeCherryPicker {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  @Singleton
+  static class Metrics {
+    private final Counter1<Boolean> cherryPicks;
+
+    @Inject
+    Metrics(MetricMaker metricMaker) {
+      cherryPicks =
+          metricMaker.newCounter(
+              "submit/speculative_cherry_picks",
+              new Description("Cherry-picks of submitted commits that were computed speculatively")
+                  .setRate()
+                  .setUnit("cherry-picks"),
+              Field.ofBoolean("used", (metadataBuilder, fieldValue) -> {})
+                  .description(
+                      "Whether the speculative result could be used, or the commit had to be"
+                          + " cherry-picked again.")
+                  .build());
+    }
+  }
+
+  /** Result of a speculative cherry-pick onto the initial tip of the branch. */
+  private static class Result {
+    final ObjectId tree;
+    final ImmutableList<InsertedObject> objects;
+    final ImmutableSet<String> paths;
+
+    Result(ObjectId tree, ImmutableList<InsertedObject> objects, ImmutableSet<String> paths) {
+      this.tree = tree;
+      this.objects = objects;
+      this.paths = paths;
+    }
+  }
+
+  /** Speculative cherry-picks of the commits of one branch of a submission. */
+  class Speculation {
+    private final SubmitStrategy.Arguments args;
+    private final RevCommit base;
+    private final Map<ObjectId, Future<Result>> results;
+
+    private Speculation(
+        SubmitStrategy.Arguments args, RevCommit base, Map<ObjectId, Future<Result>> results) {
+      this.args = args;
+      this.base = base;
+      this.results = results;
+    }
+
+    /**
+     * Cherry-picks the commit onto the current merge tip from its speculative result.
+     *
+     * @return the new commit, or {@code null} if the commit must be cherry-picked as usual.
+     */
+    @Nullable
+    CodeReviewCommit apply(
+        RepoContext ctx,
+        CodeReviewCommit toMerge,
+        RevCommit mergeTip,
+        PersonIdent committer,
+        String commitMsg)
+        throws IOException {
+      Future<Result> future = results.remove(toMerge);
+      if (future == null) {
+        return null;
+      }
+      Result result;
+      try {
+        result = future.get();
+      } catch (ExecutionException e) {
+        logger.atWarning().withCause(e.getCause()).log(
+            "Speculative cherry-pick of %s failed", toMerge.name());
+        result = null;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for speculative cherry-pick", e);
+      }
+      if (result == null
+          || ChangedPaths.overlap(changedPaths(args.rw, base, mergeTip), result.paths)) {
+        metrics.cherryPicks.increment(false);
+        return null;
+      }
+
+      for (InsertedObject obj : result.objects) {
+        ctx.getInserter().insert(obj.type(), obj.data().toByteArray());
+      }
+      try {
+        CodeReviewCommit commit =
+            args.mergeUtil.createCherryPickFromSpeculativeTree(
+                ctx.getInserter(),
+                ctx.getRepoView().getConfig(),
+                base,
+                result.tree,
+                mergeTip,
+                toMerge,
+                committer,
+                commitMsg,
+                args.rw);
+        metrics.cherryPicks.increment(true);
+        return commit;
+      } catch (MergeConflictException | MergeIdenticalTreeException e) {
+        // Can't happen for disjoint paths, but the regular cherry-pick knows how to report it.
+        metrics.cherryPicks.increment(false);
+        return null;
+      }
+    }
+
+    /** Cancels the speculative cherry-picks that weren't applied, if they haven't started yet. */
+    void cancel() {
+      // Running cherry-picks aren't interrupted, as interrupting a thread that reads a pack file
+      // can close the file for the other readers of the repository.
+      results.values().forEach(f -> f.cancel(false));
+      results.clear();
+    }
+  }
+
+  private final ExecutorService executor;
+  private final GitRepositoryManager repoManager;
+  private final Metrics metrics;
+  private final boolean enabled;
+
+  @Inject
+  SpeculativeCherryPicker(
+      @FanOutExecutor ExecutorService executor,
+      GitRepositoryManager repoManager,
+      Metrics metrics,
+      @GerritServerConfig Config cfg) {
+    this.executor = executor;
+    this.repoManager = repoManager;
+    this.metrics = metrics;
+    this.enabled = cfg.getBoolean("change", null, "speculativeCherryPick", false);
+  }
+
+  /**
+   * Starts cherry-picking the given commits onto the initial tip of the branch.
+   *
+   * @return the speculation, or {@code null} if the commits are not cherry-picked speculatively.
+   */
+  @Nullable
+  Speculation start(
+      SubmitStrategy.Arguments args, Config repoConfig, List<CodeReviewCommit> commits) {
+    RevCommit base = args.mergeTip.getInitialTip();
+    if (!enabled || base == null || commits.size() < 2) {
+      return null;
+    }
+    Project.NameKey project = args.destBranch.project();
+    MergeUtil mergeUtil = args.mergeUtil;
+    Map<ObjectId, Future<Result>> results = new HashMap<>();
+    for (CodeReviewCommit c : commits) {
+      ObjectId commit = c.copy();
+      ObjectId parent = c.getParent(0).copy();
+      results.put(
+          commit,
+          executor.submit(() -> speculate(project, repoConfig, mergeUtil, base, commit, parent)));
+    }
+    return new Speculation(args, base, results);
+  }
+
+  @Nullable
+  private Result speculate(
+      Project.NameKey project,
+      Config repoConfig,
+      MergeUtil mergeUtil,
+      ObjectId base,
+      ObjectId commit,
+      ObjectId parent)
+      throws IOException {
+    try (Repository repo = repoManager.openRepository(project);
+        ObjectReader reader = repo.newObjectReader();
+        InMemoryInserter ins = new InMemoryInserter(reader);
+        RevWalk rw = new RevWalk(ins.newReader())) {
+      ThreeWayMerger m = mergeUtil.newThreeWayMerger(ins, repoConfig);
+      m.setBase(parent);
+      if (!m.merge(base, commit)) {
+        return null;
+      }
+      ObjectId tree = m.getResultTreeId();
+      RevCommit baseCommit = rw.parseCommit(base);
+      if (tree.equals(baseCommit.getTree())) {
+        return null;
+      }
+      ImmutableSet<String> paths =
+          ChangedPaths.changedPaths(rw, rw.parseTree(baseCommit.getTree()), rw.parseTree(tree));
+      return new Result(tree, ins.getInsertedObjects(), paths);
+    }
+  }
+
+  private static ImmutableSet<String> changedPaths(RevWalk rw, RevCommit a, RevCommit b)
+      throws IOException {
+    return ChangedPaths.changedPaths(rw, rw.parseTree(a.getTree()), rw.parseTree(b.getTree()));
+  }
+}
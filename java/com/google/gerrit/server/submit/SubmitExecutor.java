@@ -0,0 +1,79 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.submit;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.util.RequestContext;
+import com.google.gerrit.server.util.RequestScopePropagator;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Executor on which the merge strategies of the projects of a submission are run concurrently.
+ *
+ * <p>Disabled unless {@code change.submitThreads} is set to a value greater than 1. While disabled,
+ * the projects of a submission are merged one after another on the thread that handles the
+ * submission.
+ */
+@Singleton
+class SubmitExecutor {
+  private final ThreadLocalRequestContext requestContext;
+  @Nullable private final ExecutorService executor;
+
+  @Inject
+  SubmitExecutor(
+      @GerritServerConfig Config cfg,
+      WorkQueue workQueue,
+      ThreadLocalRequestContext requestContext) {
+    this.requestContext = requestContext;
+    int threads = cfg.getInt("change", null, "submitThreads", 1);
+    executor = threads > 1 ? workQueue.createQueue(threads, "Submit", true) : null;
+  }
+
+  /**
+   * Returns an executor that runs tasks in the request scope of the calling thread, or {@code null}
+   * if projects should be merged one after another.
+   *
+   * @param requestScopePropagator propagator for the request scope of the calling thread. If
+   *     {@code null}, only the {@link RequestContext} of the calling thread is carried to the
+   *     worker threads.
+   */
+  @Nullable
+  Executor forCurrentRequest(@Nullable RequestScopePropagator requestScopePropagator) {
+    if (executor == null) {
+      return null;
+    }
+    if (requestScopePropagator != null) {
+      return task -> executor.execute(requestScopePropagator.wrap(task));
+    }
+    RequestContext ctx = requestContext.getContext();
+    return task ->
+        executor.execute(
+            () -> {
+              RequestContext old = requestContext.setContext(ctx);
+              try {
+                task.run();
+              } finally {
+                requestContext.setContext(old);
+              }
+            });
+  }
+}
@@ -123,6 +123,7 @@ public abstract class SubmitStrategy {
     final ProjectConfig.Factory projectConfigFactory;
     final SetPrivateOp.Factory setPrivateOpFactory;
     final SubmitWithStickyApprovalDiff submitWithStickyApprovalDiff;
+    final SpeculativeCherryPicker speculativeCherryPicker;
 
     final BranchNameKey destBranch;
     final CodeReviewRevWalk rw;
@@ -164,6 +165,7 @@ public abstract class SubmitStrategy {
         ProjectConfig.Factory projectConfigFactory,
         SetPrivateOp.Factory setPrivateOpFactory,
         SubmitWithStickyApprovalDiff submitWithStickyApprovalDiff,
+        SpeculativeCherryPicker speculativeCherryPicker,
         @Assisted BranchNameKey destBranch,
         @Assisted CommitStatus commitStatus,
         @Assisted CodeReviewRevWalk rw,
@@ -194,6 +196,7 @@ public abstract class SubmitStrategy {
       this.queryProvider = queryProvider;
       this.setPrivateOpFactory = setPrivateOpFactory;
       this.submitWithStickyApprovalDiff = submitWithStickyApprovalDiff;
+      this.speculativeCherryPicker = speculativeCherryPicker;
 
       this.serverIdent = serverIdent;
       this.destBranch = destBranch;
@@ -289,6 +292,12 @@ public abstract class SubmitStrategy {
     }
   }
 
+  /**
+   * Stops work that this submit strategy started in the background and that is no longer needed,
+   * because the submission completed or was aborted.
+   */
+  void cancelPendingWork() {}
+
   private void maybeAddTestHelperOp(BatchUpdate bu, Change.Id changeId) {
     if (args.submitInput instanceof TestSubmitInput) {
       bu.addOp(changeId, new TestHelperOp(changeId, args));
@@ -93,9 +93,10 @@ class SubmoduleCommits {
   /**
    * Use the commit as tip of the branch
    *
-   * <p>This keeps track of the tip of the branch as the submission progresses.
+   * <p>This keeps track of the tip of the branch as the submission progresses. May be called
+   * concurrently by the merge strategies of different projects.
    */
-  void addBranchTip(BranchNameKey branch, CodeReviewCommit tip) {
+  synchronized void addBranchTip(BranchNameKey branch, CodeReviewCommit tip) {
     branchTips.put(branch, tip);
   }
 
@@ -20,6 +20,7 @@ import static com.google.common.collect.ImmutableMultiset.toImmutableMultiset;
 import static com.google.common.flogger.LazyArgs.lazy;
 import static java.util.Comparator.comparing;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 
@@ -34,6 +35,8 @@ import com.google.common.collect.Multiset;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.AttentionSetUpdate;
 import com.google.gerrit.entities.BranchNameKey;
@@ -48,10 +51,16 @@ import com.google.gerrit.extensions.restapi.BadRequestException;
 import com.google.gerrit.extensions.restapi.ResourceConflictException;
 import com.google.gerrit.extensions.restapi.ResourceNotFoundException;
 import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.GerritPersonIdent;
 import com.google.gerrit.server.account.AccountState;
 import com.google.gerrit.server.change.NotifyResolver;
+import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.extensions.events.AttentionSetObserver;
 import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
 import com.google.gerrit.server.git.GitRepositoryManager;
@@ -71,6 +80,7 @@ import com.google.gerrit.server.project.NoSuchRefException;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.inject.Inject;
 import com.google.inject.Module;
+import com.google.inject.Singleton;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
 import java.time.Instant;
@@ -83,8 +93,11 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
@@ -133,6 +146,27 @@ public class BatchUpdate implements AutoCloseable {
   public static void execute(
       Collection<BatchUpdate> updates, ImmutableList<BatchUpdateListener> listeners, boolean dryrun)
       throws UpdateException, RestApiException {
+    execute(updates, listeners, dryrun, null);
+  }
+
+  /**
+   * Executes the given updates.
+   *
+   * @param updates updates to execute, all for different projects.
+   * @param listeners listeners that are notified about the progress of the execution.
+   * @param dryrun whether the updates should only be simulated.
+   * @param updateRepoExecutor executor on which the {@link RepoOnlyOp#updateRepo} phases of the
+   *     updates are run concurrently, or {@code null} to run them one after another on the calling
+   *     thread. The ops of a single update always run one after another. Refs are still only
+   *     updated in the following phase, one update after another, with an atomic {@link
+   *     BatchRefUpdate} per repository.
+   */
+  public static void execute(
+      Collection<BatchUpdate> updates,
+      ImmutableList<BatchUpdateListener> listeners,
+      boolean dryrun,
+      @Nullable Executor updateRepoExecutor)
+      throws UpdateException, RestApiException {
     requireNonNull(listeners);
     if (updates.isEmpty()) {
       return;
@@ -140,21 +174,28 @@ public class BatchUpdate implements AutoCloseable {
 
     checkDifferentProject(updates);
 
-    try {
-      List<ListenableFuture<ChangeData>> indexFutures = new ArrayList<>();
+    BatchUpdate first = updates.iterator().next();
+    Metrics metrics = first.metrics;
+    boolean pipelined = first.pipelined;
+    try (Timer1.Context<Boolean> ignored = metrics.latency.start(pipelined)) {
+      ListMultimap<BatchUpdate, ListenableFuture<ChangeData>> indexFutures =
+          MultimapBuilder.linkedHashKeys().arrayListValues().build();
       List<ChangesHandle> changesHandles = new ArrayList<>(updates.size());
       try {
-        for (BatchUpdate u : updates) {
-          u.executeUpdateRepo();
+        try (Timer1.Context<Phase> ignored2 = metrics.phaseLatency.start(Phase.UPDATE_REPO)) {
+          executeUpdateRepos(updates, updateRepoExecutor);
         }
         notifyAfterUpdateRepo(listeners);
-        for (BatchUpdate u : updates) {
-          changesHandles.add(u.executeChangeOps(listeners, dryrun));
-        }
-        for (ChangesHandle h : changesHandles) {
-          h.execute();
-          if (h.requiresReindex()) {
-            indexFutures.addAll(h.startIndexFutures());
+        try (Timer1.Context<Phase> ignored2 = metrics.phaseLatency.start(Phase.UPDATE_CHANGES)) {
+          for (BatchUpdate u : updates) {
+            changesHandles.add(u.executeChangeOps(listeners, dryrun));
+          }
+          for (ChangesHandle h : changesHandles) {
+            h.execute();
+            h.recordLatency();
+            if (h.requiresReindex()) {
+              indexFutures.putAll(h.update(), h.startIndexFutures());
+            }
           }
         }
         notifyAfterUpdateRefs(listeners);
@@ -165,11 +206,21 @@ public class BatchUpdate implements AutoCloseable {
         }
       }
 
-      Map<Change.Id, ChangeData> changeDatas =
-          Futures.allAsList(indexFutures).get().stream()
-              // filter out null values that were returned for change deletions
-              .filter(Objects::nonNull)
-              .collect(toMap(cd -> cd.change().getId(), Function.identity()));
+      if (pipelined) {
+        // All mutations are finished, so the events of each update can be fired and its
+        // post-update steps can be run as soon as its own changes are indexed, while the changes of
+        // the following updates are still being indexed.
+        for (BatchUpdate u : updates) {
+          Map<Change.Id, ChangeData> changeDatas = awaitIndexFutures(metrics, indexFutures.get(u));
+          u.fireRefChangeEvent();
+          if (!dryrun) {
+            u.executePostOps(metrics, changeDatas);
+          }
+        }
+        return;
+      }
+
+      Map<Change.Id, ChangeData> changeDatas = awaitIndexFutures(metrics, indexFutures.values());
 
       // Fire ref update events only after all mutations are finished, since callers may assume a
       // patch set ref being created means the change was created, or a branch advancing meaning
@@ -178,7 +229,7 @@ public class BatchUpdate implements AutoCloseable {
 
       if (!dryrun) {
         for (BatchUpdate u : updates) {
-          u.executePostOps(changeDatas);
+          u.executePostOps(metrics, changeDatas);
         }
       }
     } catch (Exception e) {
@@ -186,6 +237,56 @@ public class BatchUpdate implements AutoCloseable {
     }
   }
 
+  private static void executeUpdateRepos(
+      Collection<BatchUpdate> updates, @Nullable Executor executor) throws Exception {
+    if (executor == null || updates.size() < 2) {
+      for (BatchUpdate u : updates) {
+        u.executeUpdateRepo();
+      }
+      return;
+    }
+
+    List<ListenableFutureTask<Void>> tasks = new ArrayList<>(updates.size());
+    for (BatchUpdate u : updates) {
+      ListenableFutureTask<Void> task =
+          ListenableFutureTask.create(
+              () -> {
+                u.executeUpdateRepo();
+                return null;
+              });
+      tasks.add(task);
+      executor.execute(task);
+    }
+
+    // Wait for all updates, also if one of them failed, so that no repository is still in use when
+    // the updates are closed. Report the failure of the first update that failed, in update order.
+    Throwable failure = null;
+    for (ListenableFutureTask<Void> task : tasks) {
+      try {
+        Uninterruptibles.getUninterruptibly(task);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    if (failure != null) {
+      Throwables.throwIfInstanceOf(failure, Exception.class);
+      Throwables.throwIfUnchecked(failure);
+      throw new UpdateException(failure);
+    }
+  }
+
+  private static Map<Change.Id, ChangeData> awaitIndexFutures(
+      Metrics metrics, Collection<ListenableFuture<ChangeData>> indexFutures) throws Exception {
+    try (Timer1.Context<Phase> ignored = metrics.phaseLatency.start(Phase.INDEX)) {
+      return Futures.allAsList(indexFutures).get().stream()
+          // filter out null values that were returned for change deletions
+          .filter(Objects::nonNull)
+          .collect(toMap(cd -> cd.change().getId(), Function.identity()));
+    }
+  }
+
   private static void notifyAfterUpdateRepo(ImmutableList<BatchUpdateListener> listeners)
       throws Exception {
     for (BatchUpdateListener listener : listeners) {
@@ -372,6 +473,56 @@ public class BatchUpdate implements AutoCloseable {
     }
   }
 
+  /** Phases of the execution of a batch update, for which the latency is recorded. */
+  enum Phase {
+    UPDATE_REPO,
+    UPDATE_CHANGES,
+    INDEX,
+    POST_UPDATE
+  }
+
+  @Singleton
+  static class Metrics {
+    final Timer1<Boolean> latency;
+    final Timer1<Phase> phaseLatency;
+    final Timer1<Phase> projectPhaseLatency;
+
+    @Inject
+    Metrics(MetricMaker metricMaker) {
+      latency =
+          metricMaker.newTimer(
+              "batch_update/latency",
+              new Description("Latency of executing batch updates, including post-update steps")
+                  .setCumulative()
+                  .setUnit(Units.MILLISECONDS),
+              Field.ofBoolean("pipelined", (metadataBuilder, fieldValue) -> {})
+                  .description("Whether the batch update was executed in pipelined mode.")
+                  .build());
+      phaseLatency =
+          metricMaker.newTimer(
+              "batch_update/phase_latency",
+              new Description("Latency of the phases of executing batch updates")
+                  .setCumulative()
+                  .setUnit(Units.MILLISECONDS),
+              Field.ofEnum(Phase.class, "phase", (metadataBuilder, fieldValue) -> {})
+                  .description(
+                      "The phase of the execution (UPDATE_REPO, UPDATE_CHANGES, INDEX,"
+                          + " POST_UPDATE).")
+                  .build());
+      projectPhaseLatency =
+          metricMaker.newTimer(
+              "batch_update/project_phase_latency",
+              new Description(
+                      "Latency of the phases of executing batch updates that are executed per"
+                          + " project")
+                  .setCumulative()
+                  .setUnit(Units.MILLISECONDS),
+              Field.ofEnum(Phase.class, "phase", (metadataBuilder, fieldValue) -> {})
+                  .description("The phase of the execution (UPDATE_REPO, UPDATE_CHANGES).")
+                  .build());
+    }
+  }
+
   /** Per-change result status from {@link #executeChangeOps}. */
   private enum ChangeResult {
     SKIPPED,
@@ -386,6 +537,8 @@ public class BatchUpdate implements AutoCloseable {
   private final NoteDbUpdateManager.Factory updateManagerFactory;
   private final ChangeIndexer indexer;
   private final GitReferenceUpdated gitRefUpdated;
+  private final Metrics metrics;
+  private final boolean pipelined;
 
   private final Project.NameKey project;
   private final CurrentUser user;
@@ -412,6 +565,7 @@ public class BatchUpdate implements AutoCloseable {
 
   @Inject
   BatchUpdate(
+      @GerritServerConfig Config cfg,
       GitRepositoryManager repoManager,
       @GerritPersonIdent PersonIdent serverIdent,
       ChangeData.Factory changeDataFactory,
@@ -421,6 +575,7 @@ public class BatchUpdate implements AutoCloseable {
       ChangeIndexer indexer,
       GitReferenceUpdated gitRefUpdated,
       AttentionSetObserver attentionSetObserver,
+      Metrics metrics,
       @Assisted Project.NameKey project,
       @Assisted CurrentUser user,
       @Assisted Instant when) {
@@ -435,7 +590,9 @@ public class BatchUpdate implements AutoCloseable {
     this.user = user;
     this.when = when;
     this.attentionSetObserver = attentionSetObserver;
+    this.metrics = metrics;
     zoneId = serverIdent.getZoneId();
+    pipelined = cfg.getBoolean("notedb", null, "pipelinedUpdates", false);
   }
 
   @Override
@@ -568,7 +725,11 @@ public class BatchUpdate implements AutoCloseable {
   }
 
   private void executeUpdateRepo() throws UpdateException, RestApiException {
-    try {
+    try (Timer1.Context<Phase> updateRepoTimer =
+            metrics.projectPhaseLatency.start(Phase.UPDATE_REPO);
+        TraceContext.TraceTimer traceTimer =
+            TraceContext.newTimer(
+                "BatchUpdate#updateRepo", Metadata.builder().projectName(project.get()).build())) {
       logDebug("Executing updateRepo on %d ops", ops.size());
       RepoContextImpl ctx = new RepoContextImpl();
       for (Map.Entry<Change.Id, BatchUpdateOp> op : ops.entries()) {
@@ -622,6 +783,7 @@ public class BatchUpdate implements AutoCloseable {
     private final NoteDbUpdateManager manager;
     private final boolean dryrun;
     private final Map<Change.Id, ChangeResult> results;
+    private long elapsedNanos;
 
     ChangesHandle(NoteDbUpdateManager manager, boolean dryrun) {
       this.manager = manager;
@@ -634,15 +796,26 @@ public class BatchUpdate implements AutoCloseable {
       manager.close();
     }
 
+    BatchUpdate update() {
+      return BatchUpdate.this;
+    }
+
     void setResult(Change.Id id, ChangeResult result) {
       ChangeResult old = results.putIfAbsent(id, result);
       checkArgument(old == null, "result for change %s already set: %s", id, old);
     }
 
     void execute() throws IOException {
+      long start = System.nanoTime();
       BatchUpdate.this.batchRefUpdate = manager.execute(dryrun);
       BatchUpdate.this.executed = manager.isExecuted();
       BatchUpdate.this.attentionSetUpdates = manager.attentionSetUpdates();
+      elapsedNanos += System.nanoTime() - start;
+    }
+
+    /** Records the time spent on applying and writing the change updates of this update. */
+    void recordLatency() {
+      metrics.projectPhaseLatency.record(Phase.UPDATE_CHANGES, elapsedNanos, NANOSECONDS);
     }
 
     boolean requiresReindex() {
@@ -683,6 +856,7 @@ public class BatchUpdate implements AutoCloseable {
 
   private ChangesHandle executeChangeOps(
       ImmutableList<BatchUpdateListener> batchUpdateListeners, boolean dryrun) throws Exception {
+    long start = System.nanoTime();
     logDebug("Executing change ops");
     initRepository();
     Repository repo = repoView.getRepository();
@@ -736,6 +910,7 @@ public class BatchUpdate implements AutoCloseable {
         handle.setResult(id, ChangeResult.UPSERTED);
       }
     }
+    handle.elapsedNanos += System.nanoTime() - start;
     return handle;
   }
 
@@ -755,6 +930,13 @@ public class BatchUpdate implements AutoCloseable {
     return new ChangeContextImpl(notes);
   }
 
+  private void executePostOps(Metrics metrics, Map<Change.Id, ChangeData> changeDatas)
+      throws Exception {
+    try (Timer1.Context<Phase> ignored = metrics.phaseLatency.start(Phase.POST_UPDATE)) {
+      executePostOps(changeDatas);
+    }
+  }
+
   private void executePostOps(Map<Change.Id, ChangeData> changeDatas) throws Exception {
     PostUpdateContextImpl ctx = new PostUpdateContextImpl(changeDatas);
     for (BatchUpdateOp op : ops.values()) {
@@ -15,10 +15,12 @@
 package com.google.gerrit.server.update;
 
 import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.server.submit.MergeOpRepoManager;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 public class SubmissionExecutor {
@@ -26,6 +28,7 @@ public class SubmissionExecutor {
   private final ImmutableList<SubmissionListener> submissionListeners;
   private final boolean dryrun;
   private ImmutableList<BatchUpdateListener> additionalListeners = ImmutableList.of();
+  @Nullable private Executor updateRepoExecutor;
 
   public SubmissionExecutor(boolean dryrun, ImmutableList<SubmissionListener> submissionListeners) {
     this.dryrun = dryrun;
@@ -44,6 +47,14 @@ public class SubmissionExecutor {
     this.additionalListeners = additionalListeners;
   }
 
+  /**
+   * Set the executor on which the repository updates of the different projects are run
+   * concurrently, or {@code null} to run them one after another. Can be set again in each try.
+   */
+  public void setUpdateRepoExecutor(@Nullable Executor updateRepoExecutor) {
+    this.updateRepoExecutor = updateRepoExecutor;
+  }
+
   /** Execute the batch updates, reporting to all the Submission and BatchUpdateListeners. */
   public void execute(Collection<BatchUpdate> updates) throws RestApiException, UpdateException {
     submissionListeners.forEach(l -> l.beforeBatchUpdates(updates));
@@ -58,7 +69,7 @@ public class SubmissionExecutor {
                     .map(Optional::get)
                     .collect(Collectors.toList()))
             .build();
-    BatchUpdate.execute(updates, listeners, dryrun);
+    BatchUpdate.execute(updates, listeners, dryrun, updateRepoExecutor);
   }
 
   /**
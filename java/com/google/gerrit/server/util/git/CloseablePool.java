@@ -14,7 +14,10 @@
 
 package com.google.gerrit.server.util.git;
 
+import static com.google.common.base.Preconditions.checkState;
+
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
@@ -59,12 +62,22 @@ public class CloseablePool<T extends AutoCloseable> implements AutoCloseable {
    * pool.
    */
   public synchronized Handle get() {
+    checkState(ts != null, "CloseablePool %s is closed", this);
     if (ts.isEmpty()) {
       return new Handle(tCreator.get());
     }
     return new Handle(ts.remove(ts.size() - 1));
   }
 
+  /**
+   * Like {@link #get()}, but returns {@code null} instead of failing if the pool was already
+   * closed.
+   */
+  @Nullable
+  public synchronized Handle getIfOpen() {
+    return ts != null ? get() : null;
+  }
+
   private synchronized boolean discard(T t) {
     if (ts != null) {
       ts.add(t);
@@ -41,5 +41,6 @@ public class IndexCommandsModule extends CommandModule {
     }
     command(index, IndexChangesCommand.class);
     command(index, IndexChangesInProjectCommand.class);
+    command(index, IndexStaleChangesCommand.class);
   }
 }
@@ -0,0 +1,81 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.sshd.commands;
+
+import static com.google.gerrit.common.data.GlobalCapability.MAINTAIN_SERVER;
+import static java.util.stream.Collectors.toList;
+
+import com.google.gerrit.extensions.annotations.RequiresAnyCapability;
+import com.google.gerrit.index.SiteIndexer;
+import com.google.gerrit.server.index.change.ChangeIndex;
+import com.google.gerrit.server.index.change.ChangeIndexCollection;
+import com.google.gerrit.server.index.change.StaleChangesIndexer;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.gerrit.sshd.SshCommand;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+@RequiresAnyCapability({MAINTAIN_SERVER})
+@CommandMetaData(
+    name = "stale-changes",
+    description = "Reindex only the changes whose index documents are stale or missing")
+final class IndexStaleChangesCommand extends SshCommand {
+
+  @Inject private ChangeIndexCollection indexes;
+
+  @Inject private Provider<StaleChangesIndexer> staleChangesIndexer;
+
+  @Option(name = "--verbose", usage = "output details for each stale change")
+  private boolean verbose;
+
+  @Argument(
+      index = 0,
+      multiValued = true,
+      metaVar = "PROJECT",
+      usage = "projects for which stale changes should be indexed; default is all projects")
+  private List<ProjectState> projects = new ArrayList<>();
+
+  @Override
+  protected void run() throws UnloggedFailure, Failure, Exception {
+    enableGracefulStop();
+    ChangeIndex index = indexes.getSearchIndex();
+    if (index == null) {
+      throw die("no change search index configured");
+    }
+
+    StaleChangesIndexer indexer = staleChangesIndexer.get();
+    indexer.setProgressOut(err);
+    if (verbose) {
+      indexer.setVerboseOut(out);
+    }
+    SiteIndexer.Result result =
+        projects.isEmpty()
+            ? indexer.indexAll(index)
+            : indexer.indexProjects(
+                index, projects.stream().map(ProjectState::getNameKey).collect(toList()));
+    stdout.format(
+        "Reindexed %d stale changes in %.01fs\n",
+        result.doneCount(), result.elapsed(TimeUnit.MILLISECONDS) / 1000d);
+    if (!result.success()) {
+      throw die(String.format("failed to reindex %d stale changes", result.failedCount()));
+    }
+  }
+}
@@ -37,6 +37,8 @@ import com.google.gerrit.entities.Patch;
 import com.google.gerrit.entities.Permission;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.api.changes.ReviewInput;
+import com.google.gerrit.extensions.client.ChangeStatus;
+import com.google.gerrit.extensions.client.ListChangesOption;
 import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.restapi.AuthException;
 import com.google.gerrit.extensions.restapi.BadRequestException;
@@ -364,6 +366,83 @@ public class QueryChangesIT extends AbstractDaemonTest {
     assertThat(result3).hasSize(1);
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void projectionOnlyReturnsNumberProjectAndStatus() throws Exception {
+    int numericId1 = createChange().getChange().getId().get();
+    gApi.changes().id(numericId1).abandon();
+    int numericId2 = createChange().getChange().getId().get();
+    int numericId3 = createChange().getChange().getId().get();
+
+    QueryChanges queryChanges = queryChangesProvider.get();
+    queryChanges.addQuery("is:open limit:1 repo:" + project.get());
+    queryChanges.addQuery("repo:" + project.get());
+    queryChanges.setProjection(true);
+    List<List<ChangeInfo>> result =
+        (List<List<ChangeInfo>>) queryChanges.apply(TopLevelResource.INSTANCE).value();
+
+    assertThat(result).hasSize(2);
+    assertThat(result.get(0)).hasSize(1);
+    ChangeInfo limited = result.get(0).get(0);
+    assertThat(limited._number).isEqualTo(numericId3);
+    assertThat(limited.project).isEqualTo(project.get());
+    assertThat(limited.status).isEqualTo(ChangeStatus.NEW);
+    assertThat(limited._moreChanges).isTrue();
+    assertThat(limited.id).isNull();
+    assertThat(limited.branch).isNull();
+    assertThat(limited.subject).isNull();
+    assertThat(limited.owner).isNull();
+    assertThat(limited.updated).isNull();
+    assertThat(limited.insertions).isNull();
+
+    assertThat(result.get(1).stream().map(c -> c._number).collect(toList()))
+        .containsExactly(numericId3, numericId2, numericId1)
+        .inOrder();
+    assertThat(result.get(1).stream().map(c -> c.status).collect(toList()))
+        .containsExactly(ChangeStatus.NEW, ChangeStatus.NEW, ChangeStatus.ABANDONED)
+        .inOrder();
+    assertNoChangeHasMoreChangesSet(result.get(1));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void projectionIsIgnoredIfOtherOptionsAreRequested() throws Exception {
+    createChange();
+    createChange();
+
+    QueryChanges queryChanges = queryChangesProvider.get();
+    queryChanges.addQuery("is:open limit:1 repo:" + project.get());
+    queryChanges.setProjection(true);
+    queryChanges.addOption(ListChangesOption.LABELS);
+    List<ChangeInfo> result =
+        (List<ChangeInfo>) queryChanges.apply(TopLevelResource.INSTANCE).value();
+
+    assertThat(result).hasSize(1);
+    assertThat(result.get(0).subject).isNotNull();
+    assertThat(result.get(0).labels).isNotNull();
+    assertThat(result.get(0)._moreChanges).isTrue();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void projectionOmitsInvisibleChanges() throws Exception {
+    TestRepository<InMemoryRepository> userRepo = cloneProject(project, user);
+    PushOneCommit.Result privateChange =
+        pushFactory.create(user.newIdent(), userRepo).to("refs/for/master");
+    requestScopeOperations.setApiUser(user.id());
+    gApi.changes().id(privateChange.getChangeId()).setPrivate(true);
+    requestScopeOperations.setApiUser(admin.id());
+    int visible = createChange().getChange().getId().get();
+
+    QueryChanges queryChanges = queryChangesProvider.get();
+    queryChanges.addQuery("is:open repo:" + project.get());
+    queryChanges.setProjection(true);
+    List<ChangeInfo> result =
+        (List<ChangeInfo>) queryChanges.apply(TopLevelResource.INSTANCE).value();
+
+    assertThat(result.stream().map(c -> c._number).collect(toList())).containsExactly(visible);
+  }
+
   private static void assertNoChangeHasMoreChangesSet(List<ChangeInfo> results) {
     for (ChangeInfo info : results) {
       assertThat(info._moreChanges).isNull();
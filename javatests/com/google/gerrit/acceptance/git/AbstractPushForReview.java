@@ -103,9 +103,11 @@ import com.google.gerrit.extensions.restapi.testing.AttentionSetUpdateSubject;
 import com.google.gerrit.git.ObjectIds;
 import com.google.gerrit.server.ChangeMessagesUtil;
 import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.WorkQueue;
 import com.google.gerrit.server.git.receive.NoteDbPushOption;
 import com.google.gerrit.server.git.receive.PluginPushOption;
 import com.google.gerrit.server.git.receive.ReceiveConstants;
+import com.google.gerrit.server.git.validators.CommitValidationException;
 import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import com.google.gerrit.server.group.SystemGroupBackend;
@@ -124,6 +126,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
@@ -162,6 +165,7 @@ public abstract class AbstractPushForReview extends AbstractDaemonTest {
   @Inject private ProjectOperations projectOperations;
   @Inject private RequestScopeOperations requestScopeOperations;
   @Inject private ExtensionRegistry extensionRegistry;
+  @Inject private WorkQueue workQueue;
 
   private static String NEW_CHANGE_INDICATOR = " [NEW]";
   private LabelType patchSetLock;
@@ -494,6 +498,38 @@ public abstract class AbstractPushForReview extends AbstractDaemonTest {
     assertThat(change.currentRevision).isEqualTo(c.name());
   }
 
+  @Test
+  @GerritConfig(name = "receive.autoCloseBatchSize", value = "2")
+  public void autocloseInBatches() throws Exception {
+    List<PushOneCommit.Result> changes = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      PushOneCommit.Result r = createChange();
+      r.assertOkStatus();
+      changes.add(r);
+    }
+
+    // Amend the last commit locally, so that its change is closed by Change-Id
+    RevCommit c = testRepo.amend(Iterables.getLast(changes).getCommit()).create();
+    testRepo.reset(c);
+
+    // Push directly, closing the changes in 3 batches
+    String master = "refs/heads/master";
+    assertPushOk(pushHead(testRepo, master, false), master);
+
+    List<ChangeInfo> infos = new ArrayList<>();
+    for (PushOneCommit.Result r : changes) {
+      infos.add(gApi.changes().id(r.getChangeId()).get());
+    }
+    assertThat(infos.stream().map(i -> i.status).distinct().collect(toList()))
+        .containsExactly(ChangeStatus.MERGED);
+    // All batches share the submission ID of the push
+    assertThat(infos.stream().map(i -> i.submissionId).distinct().collect(toList()))
+        .containsExactly(infos.get(0).submissionId);
+    ChangeInfo last = Iterables.getLast(infos);
+    assertThat(last.revisions).hasSize(2);
+    assertThat(last.currentRevision).isEqualTo(c.name());
+  }
+
   @Test
   public void pushForMasterWithTopic() throws Exception {
     TopicValidator topicValidator = new TopicValidator();
@@ -2580,6 +2616,111 @@ public abstract class AbstractPushForReview extends AbstractDaemonTest {
     }
   }
 
+  /**
+   * Validator that rejects the commits with the given subjects. The commit with subject {@code
+   * Change 1} is only validated once the commit with the given subject {@code waitFor} was
+   * validated, so that with parallel validation the first chunk finishes last.
+   */
+  private static class SlowFirstCommitValidator implements CommitValidationListener {
+    private final ImmutableSet<String> rejected;
+    @Nullable private final String waitFor;
+    private final CountDownLatch waitForValidated = new CountDownLatch(1);
+
+    SlowFirstCommitValidator(@Nullable String waitFor, ImmutableSet<String> rejected) {
+      this.waitFor = waitFor;
+      this.rejected = rejected;
+    }
+
+    @Override
+    public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receivedEvent)
+        throws CommitValidationException {
+      String subject = receivedEvent.commit.getShortMessage();
+      if (waitFor != null && subject.equals("Change 1")) {
+        try {
+          assertThat(waitForValidated.await(30, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      try {
+        if (rejected.contains(subject)) {
+          throw new CommitValidationException("rejected " + subject);
+        }
+        return ImmutableList.of(
+            new CommitValidationMessage("validated " + subject, false));
+      } finally {
+        if (subject.equals(waitFor)) {
+          waitForValidated.countDown();
+        }
+      }
+    }
+  }
+
+  @Test
+  @GerritConfig(name = "receive.commitValidationThreads", value = "4")
+  public void parallelCommitValidationReportsMessagesInCommitOrder() throws Exception {
+    try (Registration registration =
+        extensionRegistry
+            .newRegistration()
+            .add(new SlowFirstCommitValidator("Change 8", ImmutableSet.of()))) {
+      initChanges(8);
+      PushResult r = pushHead(testRepo, "refs/for/master");
+      assertPushOk(r, "refs/for/master");
+      assertValidatedInOrder(r.getMessages(), 8);
+    }
+  }
+
+  @Test
+  @GerritConfig(name = "receive.commitValidationThreads", value = "4")
+  public void parallelCommitValidationRejectsPushWithFirstInvalidCommit() throws Exception {
+    // The chunks are [1, 2], [3, 4], [5, 6] and [7, 8]. Change 7 is rejected before Change 3.
+    try (Registration registration =
+        extensionRegistry
+            .newRegistration()
+            .add(
+                new SlowFirstCommitValidator(
+                    "Change 7", ImmutableSet.of("Change 3", "Change 7")))) {
+      List<RevCommit> commits = initChanges(8);
+      PushResult r = pushHead(testRepo, "refs/for/master");
+      assertPushRejected(
+          r,
+          "refs/for/master",
+          String.format("commit %s: rejected Change 3", abbreviateName(commits.get(2))));
+      assertValidatedInOrder(r.getMessages(), 2);
+      assertThat(r.getMessages()).doesNotContain("validated Change 5");
+    }
+    assertThat(gApi.changes().query("status:open").get()).isEmpty();
+  }
+
+  @Test
+  @GerritConfig(name = "receive.commitValidationThreads", value = "4")
+  public void parallelCommitValidationFallsBackToReceivingThread() throws Exception {
+    // The first push creates the executor, which then rejects all tasks.
+    createChange().assertOkStatus();
+    workQueue.getExecutor("CommitValidation").shutdown();
+    try (Registration registration =
+        extensionRegistry
+            .newRegistration()
+            .add(new SlowFirstCommitValidator(null, ImmutableSet.of("Change 6")))) {
+      List<RevCommit> commits = initChanges(8);
+      PushResult r = pushHead(testRepo, "refs/for/master");
+      assertPushRejected(
+          r,
+          "refs/for/master",
+          String.format("commit %s: rejected Change 6", abbreviateName(commits.get(5))));
+      assertValidatedInOrder(r.getMessages(), 5);
+    }
+  }
+
+  private static void assertValidatedInOrder(String messages, int validatedCount) {
+    int previous = -1;
+    for (int i = 1; i <= validatedCount; i++) {
+      int index = messages.indexOf("validated Change " + i);
+      assertWithMessage("Change %s in %s", i, messages).that(index).isGreaterThan(previous);
+      previous = index;
+    }
+  }
+
   private static class TestPluginPushOption implements PluginPushOption {
     private final String name;
     private final String description;
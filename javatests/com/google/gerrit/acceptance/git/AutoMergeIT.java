@@ -22,19 +22,29 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.acceptance.AbstractDaemonTest;
 import com.google.gerrit.acceptance.GitUtil;
 import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.acceptance.config.GerritConfig;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.RawInputUtil;
 import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.extensions.common.ChangeInput;
+import com.google.gerrit.extensions.common.FileInfo;
 import com.google.gerrit.extensions.common.MergeInput;
+import com.google.gerrit.server.patch.AutoMergeStore;
+import com.google.inject.Inject;
+import java.util.Map;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.junit.Before;
 import org.junit.Test;
 
 /** Ensures that auto merge commits are created when a new patch set or change is uploaded. */
 public class AutoMergeIT extends AbstractDaemonTest {
+  @Inject private AutoMergeStore autoMergeStore;
+
   private RevCommit parent1;
   private RevCommit parent2;
 
@@ -141,6 +151,40 @@ public class AutoMergeIT extends AbstractDaemonTest {
     assertAutoMergeCreated(ObjectId.fromString(newChangePatchSetSha1));
   }
 
+  @Test
+  @GerritConfig(name = "change.cacheAutomergeAsync", value = "true")
+  @GerritConfig(name = "change.cacheAutomergeBatchDelay", value = "1h")
+  public void diffAgainstScheduledAutoMergeDoesNotCreateRef() throws Exception {
+    PushOneCommit m =
+        pushFactory.create(
+            admin.newIdent(), testRepo, "merge", ImmutableMap.of("foo", "foo-1", "bar", "bar-2"));
+    m.setParents(ImmutableList.of(parent1, parent2));
+    PushOneCommit.Result result = m.to("refs/for/master");
+    result.assertOkStatus();
+
+    // Diffing against the auto-merge commit computes it, but leaves the ref to the background.
+    Map<String, FileInfo> files = gApi.changes().id(result.getChangeId()).current().files();
+    assertNoAutoMergeCreated(result.getCommit());
+
+    autoMergeStore.flush();
+    ObjectId autoMerge = getAutoMerge(result.getCommit());
+    assertThat(autoMerge).isNotNull();
+    try (Repository repo = repoManager.openRepository(project);
+        RevWalk rw = new RevWalk(repo)) {
+      // The auto-merge commit only depends on the merge commit, so the ref points to the commit
+      // that was diffed against.
+      RevCommit autoMergeCommit = rw.parseCommit(autoMerge);
+      assertThat(autoMergeCommit.getCommitterIdent().getWhen())
+          .isEqualTo(result.getCommit().getCommitterIdent().getWhen());
+      assertThat(autoMergeCommit.getParents())
+          .asList()
+          .containsExactly(parent1, parent2)
+          .inOrder();
+    }
+    assertThat(gApi.changes().id(result.getChangeId()).current().files().keySet())
+        .isEqualTo(files.keySet());
+  }
+
   @Test
   public void noAutoMergeCreatedWhenPushingNonMergeCommit() throws Exception {
     PushOneCommit.Result change = createChange();
@@ -191,6 +235,14 @@ public class AutoMergeIT extends AbstractDaemonTest {
     }
   }
 
+  @Nullable
+  private ObjectId getAutoMerge(ObjectId mergeCommit) throws Exception {
+    try (Repository repo = repoManager.openRepository(project)) {
+      Ref ref = repo.exactRef(RefNames.refsCacheAutomerge(mergeCommit.name()));
+      return ref != null ? ref.getObjectId() : null;
+    }
+  }
+
   private void assertNoAutoMergeCreated(ObjectId mergeCommit) throws Exception {
     try (Repository repo = repoManager.openRepository(project)) {
       assertThat(repo.exactRef(RefNames.refsCacheAutomerge(mergeCommit.name()))).isNull();
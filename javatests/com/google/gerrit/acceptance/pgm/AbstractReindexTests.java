@@ -29,11 +29,15 @@ import com.google.gerrit.acceptance.StandaloneSiteTest;
 import com.google.gerrit.acceptance.pgm.IndexUpgradeController.UpgradeAttempt;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.client.ChangeStatus;
+import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.common.ChangeInput;
 import com.google.gerrit.index.IndexDefinition;
 import com.google.gerrit.index.Schema;
 import com.google.gerrit.launcher.GerritLauncher;
+import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.index.GerritIndexStatus;
 import com.google.gerrit.server.index.change.ChangeIndexCollection;
 import com.google.gerrit.server.index.change.ChangeSchemaDefinitions;
@@ -45,9 +49,13 @@ import com.google.inject.Provider;
 import com.google.inject.TypeLiteral;
 import java.nio.file.Files;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.storage.file.FileBasedConfig;
 import org.eclipse.jgit.util.FS;
 import org.junit.Assume;
@@ -91,6 +99,45 @@ public abstract class AbstractReindexTests extends StandaloneSiteTest {
     }
   }
 
+  @Test
+  public void reindexStaleChangesReplacesExistingDocuments() throws Exception {
+    setUpChange();
+
+    try (ServerContext ctx = startServer()) {
+      GerritApi gApi = ctx.getInjector().getInstance(GerritApi.class);
+      Change.Id id = Change.id(gApi.changes().id(changeId).get()._number);
+      GitRepositoryManager repoManager = ctx.getInjector().getInstance(GitRepositoryManager.class);
+      try (Repository repo = repoManager.openRepository(project)) {
+        String metaRef = RefNames.changeMetaRef(id);
+        ObjectId openMetaId = repo.exactRef(metaRef).getObjectId();
+        gApi.changes().id(changeId).abandon();
+
+        // Move the change back to the open state behind the index's back.
+        RefUpdate ru = repo.updateRef(metaRef);
+        ru.setNewObjectId(openMetaId);
+        ru.setForceUpdate(true);
+        assertThat(ru.update()).isEqualTo(RefUpdate.Result.FORCED);
+      }
+    }
+
+    runGerrit(
+        "reindex",
+        "--index",
+        CHANGES,
+        "--stale-only",
+        "-d",
+        sitePaths.site_path.toString(),
+        "--show-stack-trace");
+
+    try (ServerContext ctx = startServer()) {
+      GerritApi gApi = ctx.getInjector().getInstance(GerritApi.class);
+      List<ChangeInfo> changes = gApi.changes().query("change:" + changeId).get();
+      assertThat(changes).hasSize(1);
+      assertThat(changes.get(0).status).isEqualTo(ChangeStatus.NEW);
+      assertThat(gApi.changes().query("status:abandoned").get()).isEmpty();
+    }
+  }
+
   @Test
   public void offlineReindexForChangesIsNotPossibleInSlaveMode() throws Exception {
     enableSlaveMode();
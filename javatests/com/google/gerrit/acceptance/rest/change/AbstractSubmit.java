@@ -104,8 +104,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import org.eclipse.jgit.diff.DiffFormatter;
@@ -357,6 +359,36 @@ public abstract class AbstractSubmit extends AbstractDaemonTest {
     change4.assertChange(Change.Status.MERGED, expectedTopic, admin);
   }
 
+  @Test
+  @GerritConfig(name = "change.submitThreads", value = "4")
+  public void submitWholeTopicMultipleProjectsConcurrently() throws Throwable {
+    assume().that(isSubmitWholeTopicEnabled()).isTrue();
+    String topic = "test-topic";
+
+    Map<Project.NameKey, RevCommit> initialHeads = new HashMap<>();
+    List<PushOneCommit.Result> changes = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Project.NameKey project = createProjectForPush(getSubmitType());
+      initialHeads.put(project, projectOperations.project(project).getHead("master"));
+      TestRepository<?> repo = cloneProject(project);
+      changes.add(createChange(repo, "master", "Change " + i + "a", "a.txt", "content", topic));
+      changes.add(createChange(repo, "master", "Change " + i + "b", "b.txt", "content", topic));
+    }
+    for (PushOneCommit.Result change : changes) {
+      approve(change.getChangeId());
+    }
+    submit(changes.get(changes.size() - 1).getChangeId());
+
+    String expectedTopic = name(topic);
+    for (PushOneCommit.Result change : changes) {
+      change.assertChange(Change.Status.MERGED, expectedTopic, admin);
+    }
+    for (Map.Entry<Project.NameKey, RevCommit> e : initialHeads.entrySet()) {
+      assertThat(projectOperations.project(e.getKey()).getHead("master"))
+          .isNotEqualTo(e.getValue());
+    }
+  }
+
   @Test
   public void submitWholeTopicMultipleBranchesOnSameProject() throws Throwable {
     assume().that(isSubmitWholeTopicEnabled()).isTrue();
@@ -20,14 +20,17 @@ import static com.google.gerrit.extensions.client.ListChangesOption.CURRENT_REVI
 import static com.google.gerrit.extensions.client.ListChangesOption.MESSAGES;
 import static java.util.Comparator.comparing;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.gerrit.acceptance.ExtensionRegistry;
 import com.google.gerrit.acceptance.ExtensionRegistry.Registration;
 import com.google.gerrit.acceptance.PushOneCommit;
 import com.google.gerrit.acceptance.TestProjectInput;
+import com.google.gerrit.acceptance.config.GerritConfig;
 import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
 import com.google.gerrit.common.FooterConstants;
 import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.LabelId;
 import com.google.gerrit.entities.PatchSetApproval;
 import com.google.gerrit.entities.Project.NameKey;
@@ -266,6 +269,46 @@ public class SubmitByCherryPickIT extends AbstractSubmit {
     assertChangeMergedEvents(change3.getChangeId(), log.get(0).name());
   }
 
+  @Test
+  @GerritConfig(name = "change.submitWholeTopic", value = "true")
+  @GerritConfig(name = "change.speculativeCherryPick", value = "true")
+  public void submitTopicWithSpeculativeCherryPicks() throws Throwable {
+    RevCommit initialHead = projectOperations.project(project).getHead("master");
+    String topic = "test-topic";
+
+    // Each change touches a path that the changes cherry-picked before it didn't touch, so their
+    // speculative cherry-picks onto the initial head must be combined with the current tip.
+    testRepo.reset(initialHead);
+    PushOneCommit.Result change1 = createChange("Change 1", "a.txt", "a", topic);
+    testRepo.reset(initialHead);
+    PushOneCommit.Result change2 = createChange("Change 2", "b.txt", "b", topic);
+    testRepo.reset(initialHead);
+    PushOneCommit.Result change3 = createChange("Change 3", "c.txt", "c", topic);
+
+    approve(change1.getChangeId());
+    approve(change2.getChangeId());
+    approve(change3.getChangeId());
+    submit(change3.getChangeId());
+
+    String expectedTopic = name(topic);
+    change1.assertChange(Change.Status.MERGED, expectedTopic, admin);
+    change2.assertChange(Change.Status.MERGED, expectedTopic, admin);
+    change3.assertChange(Change.Status.MERGED, expectedTopic, admin);
+
+    List<RevCommit> log = getRemoteLog();
+    assertThat(log).hasSize(4);
+    assertThat(log.get(3).getId()).isEqualTo(initialHead.getId());
+    for (String file : ImmutableList.of("a", "b", "c")) {
+      assertThat(
+              gApi.projects()
+                  .name(project.get())
+                  .branch("master")
+                  .file(file + ".txt")
+                  .asString())
+          .isEqualTo(file);
+    }
+  }
+
   @Test
   public void submitDependentNonConflictingChangesOutOfOrder() throws Throwable {
     RevCommit initialHead = projectOperations.project(project).getHead("master");
@@ -21,6 +21,7 @@ import static com.google.gerrit.entities.Patch.MERGE_LIST;
 import static com.google.gerrit.entities.Patch.PATCHSET_LEVEL;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.MoreCollectors;
 import com.google.gerrit.acceptance.AbstractDaemonTest;
 import com.google.gerrit.acceptance.NoHttpd;
@@ -352,6 +353,63 @@ public class CommentContextIT extends AbstractDaemonTest {
         .containsExactlyElementsIn(createContextLines("7", "line_7", "8", "line_8"));
   }
 
+  @Test
+  public void commentContextForManyCommentsOnSameFileAcrossPatchsets() throws Exception {
+    String unchanged =
+        IntStream.rangeClosed(1, 10).mapToObj(i -> "line_" + i).collect(Collectors.joining("\n"));
+    String changed =
+        IntStream.rangeClosed(1, 10)
+            .mapToObj(i -> "new_line_" + i)
+            .collect(Collectors.joining("\n"));
+    PushOneCommit.Result r1 =
+        pushFactory
+            .create(
+                admin.newIdent(),
+                testRepo,
+                PushOneCommit.SUBJECT,
+                ImmutableMap.of(FILE_NAME, unchanged, "other.txt", "other 1"))
+            .to("refs/for/master");
+    List<PushOneCommit.Result> patchSets = new ArrayList<>();
+    patchSets.add(r1);
+    // The file stays unmodified in patch sets 2 and 3, so that it has the same blob in all of them.
+    for (int ps = 2; ps <= 3; ps++) {
+      patchSets.add(
+          pushFactory
+              .create(
+                  admin.newIdent(),
+                  testRepo,
+                  PushOneCommit.SUBJECT,
+                  ImmutableMap.of(FILE_NAME, unchanged, "other.txt", "other " + ps),
+                  r1.getChangeId())
+              .to("refs/for/master"));
+    }
+    patchSets.add(
+        pushFactory
+            .create(
+                admin.newIdent(),
+                testRepo,
+                PushOneCommit.SUBJECT,
+                ImmutableMap.of(FILE_NAME, changed, "other.txt", "other 4"),
+                r1.getChangeId())
+            .to("refs/for/master"));
+    for (int ps = 1; ps <= patchSets.size(); ps++) {
+      for (int line = 1; line <= 10; line++) {
+        CommentsUtil.addCommentOnLine(gApi, patchSets.get(ps - 1), ps + ":" + line, line);
+      }
+    }
+
+    List<CommentInfo> comments =
+        gApi.changes().id(r1.getChangeId()).commentsRequest().withContext(true).getAsList();
+
+    assertThat(comments).hasSize(40);
+    for (CommentInfo comment : comments) {
+      int ps = Integer.parseInt(comment.message.substring(0, comment.message.indexOf(':')));
+      String prefix = ps == 4 ? "new_line_" : "line_";
+      assertThat(comment.contextLines)
+          .containsExactly(new ContextLineInfo(comment.line, prefix + comment.line));
+    }
+  }
+
   @Test
   public void commentContextIsEmptyForPatchsetLevelComments() throws Exception {
     PushOneCommit.Result result = createChange();
@@ -0,0 +1,113 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.acceptance.server.change;
+
+import static com.google.gerrit.acceptance.GitUtil.pushHead;
+
+import com.google.gerrit.acceptance.AbstractDaemonTest;
+import com.google.gerrit.acceptance.GitUtil;
+import com.google.gerrit.acceptance.config.GerritConfig;
+import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
+import com.google.inject.Inject;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Test;
+
+/**
+ * Tests that the sets of changes that are submitted together, which are cached by {@link
+ * com.google.gerrit.server.submit.MergeSuperSetCache}, are up to date after updates.
+ */
+public class MergeSuperSetCacheIT extends AbstractDaemonTest {
+  @Inject private ProjectOperations projectOperations;
+
+  @Test
+  @GerritConfig(name = "change.submitWholeTopic", value = "true")
+  public void topicEdit() throws Exception {
+    RevCommit initialHead = projectOperations.project(project).getHead("master");
+    String topic = name("topic");
+    RevCommit c1 = commitBuilder().add("a.txt", "1").message("subject: 1").create();
+    String id1 = getChangeId(c1);
+    pushHead(testRepo, "refs/for/master%topic=" + topic, false);
+    testRepo.reset(initialHead);
+    RevCommit c2 = commitBuilder().add("b.txt", "2").message("subject: 2").create();
+    String id2 = getChangeId(c2);
+    pushHead(testRepo, "refs/for/master", false);
+    assertSubmittedTogether(id1);
+
+    gApi.changes().id(id2).topic(topic);
+    assertSubmittedTogether(id1, id2, id1);
+
+    gApi.changes().id(id2).topic("");
+    assertSubmittedTogether(id1);
+  }
+
+  @Test
+  @GerritConfig(name = "change.submitWholeTopic", value = "true")
+  public void restore() throws Exception {
+    RevCommit initialHead = projectOperations.project(project).getHead("master");
+    String topic = name("topic");
+    RevCommit c1 = commitBuilder().add("a.txt", "1").message("subject: 1").create();
+    String id1 = getChangeId(c1);
+    pushHead(testRepo, "refs/for/master%topic=" + topic, false);
+    testRepo.reset(initialHead);
+    RevCommit c2 = commitBuilder().add("b.txt", "2").message("subject: 2").create();
+    String id2 = getChangeId(c2);
+    pushHead(testRepo, "refs/for/master%topic=" + topic, false);
+    assertSubmittedTogether(id1, id2, id1);
+
+    gApi.changes().id(id2).abandon();
+    assertSubmittedTogether(id1);
+
+    gApi.changes().id(id2).restore();
+    assertSubmittedTogether(id1, id2, id1);
+  }
+
+  @Test
+  public void newPatchSet() throws Exception {
+    RevCommit initialHead = projectOperations.project(project).getHead("master");
+    RevCommit c1 = commitBuilder().add("a.txt", "1").message("subject: 1").create();
+    String id1 = getChangeId(c1);
+    RevCommit c2 = commitBuilder().add("b.txt", "2").message("subject: 2").create();
+    String id2 = getChangeId(c2);
+    pushHead(testRepo, "refs/for/master", false);
+    assertSubmittedTogether(id2, id2, id1);
+
+    // Rebase the second change onto the branch tip, so that it no longer depends on the first one.
+    testRepo.reset(initialHead);
+    pushFactory
+        .create(admin.newIdent(), testRepo, "subject: 2", "b.txt", "2", id2)
+        .to("refs/for/master")
+        .assertOkStatus();
+    assertSubmittedTogether(id2);
+  }
+
+  @Test
+  public void branchTipMove() throws Exception {
+    RevCommit c1 = commitBuilder().add("a.txt", "1").message("subject: 1").create();
+    String id1 = getChangeId(c1);
+    RevCommit c2 = commitBuilder().add("b.txt", "2").message("subject: 2").create();
+    String id2 = getChangeId(c2);
+    pushHead(testRepo, "refs/for/master", false);
+    assertSubmittedTogether(id2, id2, id1);
+
+    // Push the first change directly, so that it is no longer submitted with the second one.
+    testRepo.reset(c1);
+    pushHead(testRepo, "refs/heads/master", false);
+    assertSubmittedTogether(id2);
+  }
+
+  private String getChangeId(RevCommit c) throws Exception {
+    return GitUtil.getChangeId(testRepo, c).get();
+  }
+}
@@ -0,0 +1,138 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.gerrit.lucene;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NrtReopenThreadTest {
+  private IndexWriter writer;
+  private SearcherManager manager;
+  private NrtReopenThread reopenThread;
+
+  @Before
+  public void setUp() throws Exception {
+    writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig());
+    manager = new SearcherManager(writer, null);
+    // Without waiters the searcher is only reopened after an hour.
+    reopenThread =
+        new NrtReopenThread(
+            writer,
+            manager,
+            MILLISECONDS.toNanos(10),
+            HOURS.toNanos(1),
+            new LuceneIndexMetrics(new DisabledMetricMaker()).forIndex("test"));
+    reopenThread.setDaemon(true);
+    reopenThread.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    reopenThread.close();
+    manager.close();
+    writer.close();
+  }
+
+  @Test
+  public void writeIsNotVisibleBeforeMaxStaleAge() throws Exception {
+    addDocument("1");
+    Thread.sleep(100);
+    assertThat(count()).isEqualTo(0);
+  }
+
+  @Test
+  public void waiterMakesWriteVisible() throws Exception {
+    long gen = addDocument("1");
+    assertThat(reopenThread.waitForGeneration(gen, 10_000)).isTrue();
+    assertThat(count()).isEqualTo(1);
+
+    gen = addDocument("2");
+    assertThat(reopenThread.waitForGeneration(gen, 10_000)).isTrue();
+    assertThat(count()).isEqualTo(2);
+  }
+
+  @Test
+  public void nonBlockingWaiterMakesWriteVisible() throws Exception {
+    long gen = addDocument("1");
+    assertThat(reopenThread.waitForGeneration(gen, 0)).isFalse();
+    assertThat(reopenThread.waitForGeneration(gen, 10_000)).isTrue();
+    assertThat(count()).isEqualTo(1);
+  }
+
+  @Test
+  public void externalRefreshMakesGenerationVisible() throws Exception {
+    long gen = addDocument("1");
+    manager.maybeRefreshBlocking();
+    assertThat(reopenThread.waitForGeneration(gen, 0)).isTrue();
+  }
+
+  @Test
+  public void waitForUnwrittenGenerationTimesOut() throws Exception {
+    long gen = addDocument("1");
+    assertThat(reopenThread.waitForGeneration(gen + 1, 100)).isFalse();
+  }
+
+  @Test
+  public void closeReleasesWaiters() throws Exception {
+    long gen = addDocument("1");
+    AtomicBoolean covered = new AtomicBoolean();
+    Thread waiter =
+        new Thread(
+            () -> {
+              try {
+                covered.set(reopenThread.waitForGeneration(gen + 1));
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    waiter.start();
+    reopenThread.close();
+    waiter.join(10_000);
+    assertThat(waiter.isAlive()).isFalse();
+    assertThat(covered.get()).isTrue();
+  }
+
+  private long addDocument(String id) throws Exception {
+    Document doc = new Document();
+    doc.add(new StringField("id", id, Field.Store.NO));
+    return writer.addDocument(doc);
+  }
+
+  private int count() throws Exception {
+    IndexSearcher searcher = manager.acquire();
+    try {
+      return searcher.count(new MatchAllDocsQuery());
+    } finally {
+      manager.release(searcher);
+    }
+  }
+}
@@ -20,6 +20,9 @@ import static com.google.gerrit.testing.GerritJUnit.assertThrows;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.server.cancellation.RequestStateContext.NonCancellableOperationContext;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 
 public class RequestStateContextTest {
@@ -251,6 +254,25 @@ public class RequestStateContextTest {
     }
   }
 
+  @Test
+  public void copy() throws Exception {
+    RequestStateProvider requestStateProvider = new TestRequestStateProvider();
+    Callable<ImmutableSet<RequestStateProvider>> callable;
+    try (RequestStateContext requestStateContext =
+        RequestStateContext.open().addRequestStateProvider(requestStateProvider)) {
+      callable = RequestStateContext.copy(RequestStateContext::getRequestStateProviders);
+    }
+    assertNoRequestStateProviders();
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertThat(executor.submit(callable).get()).containsExactly(requestStateProvider);
+    } finally {
+      executor.shutdown();
+    }
+    assertNoRequestStateProviders();
+  }
+
   private void assertNoRequestStateProviders() {
     assertRequestStateProviders(ImmutableSet.of());
   }
@@ -23,7 +23,11 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.extensions.client.SubmitType;
 import com.google.gerrit.proto.testing.SerializedClassSubject;
 import com.google.gerrit.server.cache.proto.Cache.MergeabilityKeyProto;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.Test;
 
 public class MergeabilityCacheImplTest {
@@ -65,4 +69,85 @@ public class MergeabilityCacheImplTest {
                 "submitType", SubmitType.class,
                 "mergeStrategy", String.class));
   }
+
+  @Test
+  public void branchAdvanceNotTouchingFilesOfCommitIsUnaffected() throws Exception {
+    TestRepository<?> tr = newRepo();
+    RevCommit base = tr.commit().add("a", "1").add("b", "1").create();
+    RevCommit commit = tr.commit().parent(base).add("a", "2").create();
+    RevCommit oldInto = tr.commit().parent(base).add("b", "2").create();
+    RevCommit newInto = tr.commit().parent(oldInto).add("c", "1").create();
+    assertThat(isUnaffected(tr, commit, oldInto, newInto)).isTrue();
+  }
+
+  @Test
+  public void branchAdvanceTouchingFilesOfCommitIsAffected() throws Exception {
+    TestRepository<?> tr = newRepo();
+    RevCommit base = tr.commit().add("a", "1").create();
+    RevCommit commit = tr.commit().parent(base).add("a", "2").create();
+    RevCommit oldInto = tr.commit().parent(base).add("b", "1").create();
+    RevCommit newInto = tr.commit().parent(oldInto).add("a", "3").create();
+    assertThat(isUnaffected(tr, commit, oldInto, newInto)).isFalse();
+  }
+
+  @Test
+  public void branchAdvanceWithFileDirectoryConflictIsAffected() throws Exception {
+    TestRepository<?> tr = newRepo();
+    RevCommit base = tr.commit().add("b", "1").create();
+    RevCommit commit = tr.commit().parent(base).add("a", "1").create();
+    RevCommit oldInto = tr.commit().parent(base).add("c", "1").create();
+    RevCommit newInto = tr.commit().parent(oldInto).add("a/x", "1").create();
+    assertThat(isUnaffected(tr, commit, oldInto, newInto)).isFalse();
+  }
+
+  @Test
+  public void branchAdvanceTouchingSiblingInSameDirectoryIsUnaffected() throws Exception {
+    TestRepository<?> tr = newRepo();
+    RevCommit base = tr.commit().add("dir/a", "1").add("dir/b", "1").create();
+    RevCommit commit = tr.commit().parent(base).add("dir/a", "2").create();
+    RevCommit oldInto = tr.commit().parent(base).add("c", "1").create();
+    RevCommit newInto = tr.commit().parent(oldInto).add("dir/b", "2").create();
+    assertThat(isUnaffected(tr, commit, oldInto, newInto)).isTrue();
+  }
+
+  @Test
+  public void branchAdvanceAddingFileInPlaceOfParentDirectoryIsAffected() throws Exception {
+    TestRepository<?> tr = newRepo();
+    RevCommit base = tr.commit().add("b", "1").create();
+    RevCommit commit = tr.commit().parent(base).add("dir/sub/a", "1").create();
+    RevCommit oldInto = tr.commit().parent(base).add("c", "1").create();
+    RevCommit newInto = tr.commit().parent(oldInto).add("dir/sub", "1").create();
+    assertThat(isUnaffected(tr, commit, oldInto, newInto)).isFalse();
+  }
+
+  @Test
+  public void rewoundBranchIsAffected() throws Exception {
+    TestRepository<?> tr = newRepo();
+    RevCommit base = tr.commit().add("a", "1").create();
+    RevCommit commit = tr.commit().parent(base).add("a", "2").create();
+    RevCommit oldInto = tr.commit().parent(base).add("b", "1").create();
+    RevCommit newInto = tr.commit().parent(base).add("c", "1").create();
+    assertThat(isUnaffected(tr, commit, oldInto, newInto)).isFalse();
+  }
+
+  @Test
+  public void branchAdvanceMovingMergeBaseIsAffected() throws Exception {
+    TestRepository<?> tr = newRepo();
+    RevCommit base = tr.commit().add("a", "1").create();
+    RevCommit parent = tr.commit().parent(base).add("b", "1").create();
+    RevCommit commit = tr.commit().parent(parent).add("c", "1").create();
+    RevCommit oldInto = base;
+    RevCommit newInto = tr.commit().parent(parent).add("d", "1").create();
+    assertThat(isUnaffected(tr, commit, oldInto, newInto)).isFalse();
+  }
+
+  private static TestRepository<?> newRepo() throws Exception {
+    return new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("repo")));
+  }
+
+  private static boolean isUnaffected(
+      TestRepository<?> tr, RevCommit commit, RevCommit oldInto, RevCommit newInto)
+      throws Exception {
+    return MergeabilityCacheImpl.isUnaffected(tr.getRevWalk(), commit, oldInto, newInto);
+  }
 }
@@ -0,0 +1,54 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+public class ChangedPathsTest {
+  @Test
+  public void disjointPathsDontOverlap() {
+    assertThat(overlaps(ImmutableSet.of("a/b", "c"), ImmutableSet.of("a/c", "d/c"))).isFalse();
+  }
+
+  @Test
+  public void samePathOverlaps() {
+    assertThat(overlaps(ImmutableSet.of("a/b", "c"), ImmutableSet.of("d", "a/b"))).isTrue();
+  }
+
+  @Test
+  public void siblingsDontOverlap() {
+    assertThat(overlaps(ImmutableSet.of("a/b/c"), ImmutableSet.of("a/b/d", "a/e"))).isFalse();
+  }
+
+  @Test
+  public void fileAndDirectoryOverlap() {
+    assertThat(overlaps(ImmutableSet.of("a"), ImmutableSet.of("a/b"))).isTrue();
+    assertThat(overlaps(ImmutableSet.of("a/b/c"), ImmutableSet.of("a/b"))).isTrue();
+  }
+
+  @Test
+  public void commonPrefixDoesntOverlap() {
+    assertThat(overlaps(ImmutableSet.of("ab"), ImmutableSet.of("a/b"))).isFalse();
+  }
+
+  private static boolean overlaps(ImmutableSet<String> a, ImmutableSet<String> b) {
+    boolean result = ChangedPaths.overlap(a, b);
+    assertThat(ChangedPaths.overlap(b, a)).isEqualTo(result);
+    return result;
+  }
+}
@@ -0,0 +1,171 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ObjectReaderPoolTest {
+  private InMemoryRepository repo;
+  private ObjectId blob;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = newRepository("repo");
+    try (TestRepository<InMemoryRepository> tr = new TestRepository<>(repo)) {
+      blob = tr.blob("content");
+    }
+  }
+
+  @Test
+  public void readerIsReusedAfterClose() throws Exception {
+    ObjectReaderPool pool = new ObjectReaderPool(1, 10, 10);
+
+    try (ObjectReader reader = pool.borrow(repo)) {
+      assertThat(new String(reader.open(blob).getBytes(), UTF_8)).isEqualTo("content");
+    }
+    try (ObjectReader reader = pool.borrow(repo)) {
+      assertThat(new String(reader.open(blob).getBytes(), UTF_8)).isEqualTo("content");
+    }
+
+    assertThat(pool.getExhaustedCount()).isEqualTo(1);
+    assertThat(pool.getReuseCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void readersAreDiscardedWhenPoolIsFull() throws Exception {
+    ObjectReaderPool pool = new ObjectReaderPool(1, 10, 10);
+
+    ObjectReader first = pool.borrow(repo);
+    ObjectReader second = pool.borrow(repo);
+    first.close();
+    second.close();
+
+    assertThat(pool.getExhaustedCount()).isEqualTo(2);
+    assertThat(pool.getDiscardCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void closedReaderCannotBeUsed() throws Exception {
+    ObjectReaderPool pool = new ObjectReaderPool(1, 10, 10);
+    ObjectReader reader = pool.borrow(repo);
+    reader.close();
+    // Closing twice doesn't return the reader to the pool twice.
+    reader.close();
+
+    assertThrows(IllegalStateException.class, () -> reader.open(blob));
+  }
+
+  @Test
+  public void poolingCanBeDisabled() throws Exception {
+    ObjectReaderPool pool = new ObjectReaderPool(0, 10, 10);
+
+    pool.borrow(repo).close();
+    pool.borrow(repo).close();
+
+    assertThat(pool.getReuseCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void idleReadersAreClosedWhenPoolIsDropped() throws Exception {
+    ObjectReaderPool pool = new ObjectReaderPool(1, 10, 10);
+    ObjectReader idle = mock(ObjectReader.class);
+    Repository mockRepo = mock(Repository.class);
+    when(mockRepo.newObjectReader()).thenReturn(idle);
+    ObjectReader borrowed = pool.borrow(mockRepo);
+    borrowed.close();
+
+    pool.invalidateAll();
+
+    verify(idle).close();
+    assertThat(pool.getDiscardCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void readerReturnedAfterPoolIsDroppedIsClosed() throws Exception {
+    ObjectReaderPool pool = new ObjectReaderPool(1, 10, 10);
+    ObjectReader reader = mock(ObjectReader.class);
+    Repository mockRepo = mock(Repository.class);
+    when(mockRepo.newObjectReader()).thenReturn(reader);
+    ObjectReader borrowed = pool.borrow(mockRepo);
+
+    pool.invalidateAll();
+    borrowed.close();
+
+    verify(reader).close();
+    assertThat(pool.getDiscardCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void idleReadersOfLeastRecentlyUsedRepositoryAreClosed() throws Exception {
+    ObjectReaderPool pool = new ObjectReaderPool(1, 1, 10);
+    pool.borrow(repo).close();
+
+    pool.borrow(newRepository("other")).close();
+
+    assertThat(pool.getDiscardCount()).isEqualTo(1);
+    pool.borrow(repo).close();
+    assertThat(pool.getReuseCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void idleReadersAreBoundedAcrossRepositories() throws Exception {
+    ObjectReaderPool pool = new ObjectReaderPool(1, 10, 1);
+    Repository other = newRepository("other");
+    pool.borrow(repo).close();
+
+    pool.borrow(other).close();
+
+    assertThat(pool.getDiscardCount()).isEqualTo(1);
+    pool.borrow(repo).close();
+    assertThat(pool.getReuseCount()).isEqualTo(1);
+    // The reader of repo was borrowed and returned again, so other still has no idle reader.
+    pool.borrow(other).close();
+    assertThat(pool.getReuseCount()).isEqualTo(1);
+    assertThat(pool.getDiscardCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void avoidUnreachableObjectsIsForwardedAndReset() throws Exception {
+    ObjectReaderPool pool = new ObjectReaderPool(1, 10, 10);
+    ObjectReader reader = mock(ObjectReader.class);
+    Repository mockRepo = mock(Repository.class);
+    when(mockRepo.newObjectReader()).thenReturn(reader);
+
+    try (ObjectReader borrowed = pool.borrow(mockRepo)) {
+      borrowed.setAvoidUnreachableObjects(true);
+      verify(reader).setAvoidUnreachableObjects(true);
+    }
+
+    verify(reader).setAvoidUnreachableObjects(false);
+  }
+
+  private static InMemoryRepository newRepository(String name) {
+    return new InMemoryRepository(new DfsRepositoryDescription(name));
+  }
+}
@@ -119,6 +119,37 @@ public class ReceivePackRefCacheTest {
         .containsExactly(PatchSet.Id.fromRef("refs/changes/01/1/1"));
   }
 
+  @Test
+  public void advertisedRefs_prefixOnlyReturnsMatchingRefs() throws Exception {
+    Ref head = newRef("refs/heads/master", "badc0feebadc0feebadc0feebadc0feebadc0fee");
+    Ref headPrefixed =
+        newRef("refs/heads-other/master", "badc0feebadc0feebadc0feebadc0feebadc0fee");
+    Ref tag = newRef("refs/tags/v1", "deadbeefdeadbeefdeadbeefdeadbeefdeadbeef");
+    ReceivePackRefCache cache =
+        ReceivePackRefCache.withAdvertisedRefs(
+            () ->
+                ImmutableMap.of(
+                    tag.getName(), tag,
+                    headPrefixed.getName(), headPrefixed,
+                    head.getName(), head));
+
+    assertThat(cache.byPrefix(RefNames.REFS_HEADS)).containsExactly(head);
+    assertThat(cache.byPrefix("refs/")).containsExactly(headPrefixed, head, tag).inOrder();
+    assertThat(cache.byPrefix("refs/notes/")).isEmpty();
+  }
+
+  @Test
+  public void advertisedRefs_countsLookups() throws Exception {
+    Map<String, Ref> refs = setupTwoChanges();
+    ReceivePackRefCache cache = ReceivePackRefCache.withAdvertisedRefs(() -> refs);
+
+    cache.exactRef("refs/changes/01/1/1");
+    cache.byPrefix(RefNames.changeRefPrefix(Change.id(2)));
+    cache.patchSetIdsFromObjectId(ObjectId.zeroId());
+    assertThat(cache.lookups()).isEqualTo(3);
+    assertThat(ReceivePackRefCache.noCache(mock(RefDatabase.class)).lookups()).isEqualTo(0);
+  }
+
   private static Ref newRef(String name, String sha1) {
     return new ObjectIdRef.Unpeeled(Ref.Storage.NEW, name, ObjectId.fromString(sha1), 1);
   }
@@ -0,0 +1,124 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.MultiProgressMonitor;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.notedb.ChangeNotes.Factory.ChangeNotesResult;
+import com.google.gerrit.server.notedb.ChangeNotes.Factory.ScanResult;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.query.change.ChangeData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AllChangesIndexerTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+
+  private ChangeData.Factory changeDataFactory;
+  private ChangeNotes.Factory notesFactory;
+  private ChangeIndexer indexer;
+  private MultiProgressMonitor.Task done;
+  private MultiProgressMonitor.Task failed;
+  private AllChangesIndexer allChangesIndexer;
+
+  @Before
+  public void setUp() throws Exception {
+    changeDataFactory = mock(ChangeData.Factory.class);
+    notesFactory = mock(ChangeNotes.Factory.class);
+    indexer = mock(ChangeIndexer.class);
+    done = mock(MultiProgressMonitor.Task.class);
+    failed = mock(MultiProgressMonitor.Task.class);
+    GitRepositoryManager repoManager = mock(GitRepositoryManager.class);
+    when(repoManager.openRepository(PROJECT))
+        .thenReturn(new InMemoryRepository(new DfsRepositoryDescription(PROJECT.get())));
+    allChangesIndexer =
+        new AllChangesIndexer(
+            mock(MultiProgressMonitor.Factory.class),
+            changeDataFactory,
+            repoManager,
+            MoreExecutors.newDirectExecutorService(),
+            mock(ChangeIndexer.Factory.class),
+            notesFactory,
+            mock(ProjectCache.class));
+  }
+
+  @Test
+  public void changesAreWrittenInOneBatch() throws Exception {
+    List<ChangeData> cds = mockChanges(3);
+
+    allChangesIndexer.reindexProject(indexer, PROJECT, done, failed).call();
+
+    verify(indexer).index(cds);
+    verify(indexer, never()).replace(any());
+    verify(done, times(3)).update(1);
+    verify(failed, never()).update(1);
+  }
+
+  @Test
+  public void changesOfFailedBatchAreReplacedOneByOne() throws Exception {
+    List<ChangeData> cds = mockChanges(3);
+    doThrow(new StorageException("batch failed")).when(indexer).index(anyList());
+    doThrow(new StorageException("change failed")).when(indexer).replace(cds.get(1));
+
+    allChangesIndexer.reindexProject(indexer, PROJECT, done, failed).call();
+
+    verify(indexer).replace(cds.get(0));
+    verify(indexer).replace(cds.get(1));
+    verify(indexer).replace(cds.get(2));
+    verify(indexer, never()).index(any(ChangeData.class));
+    verify(done, times(2)).update(1);
+    verify(failed).update(1);
+  }
+
+  private List<ChangeData> mockChanges(int count) {
+    List<ChangeNotesResult> results = new ArrayList<>();
+    List<ChangeData> cds = new ArrayList<>();
+    for (int id = 1; id <= count; id++) {
+      ChangeNotes notes = mock(ChangeNotes.class);
+      ChangeNotesResult result = mock(ChangeNotesResult.class);
+      when(result.error()).thenReturn(Optional.empty());
+      when(result.notes()).thenReturn(notes);
+      ChangeData cd = ChangeData.createForTest(PROJECT, Change.id(id), 1, ObjectId.zeroId());
+      when(changeDataFactory.create(notes)).thenReturn(cd);
+      results.add(result);
+      cds.add(cd);
+    }
+    when(notesFactory.scan(any(ScanResult.class), eq(PROJECT), any()))
+        .thenAnswer(invocation -> results.stream());
+    return ImmutableList.copyOf(cds);
+  }
+}
@@ -0,0 +1,119 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.query.change.ChangeData;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ChangeIndexQueueTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+
+  private ChangeIndexer indexer;
+  private ScheduledExecutorService scheduler;
+  private AtomicInteger queued;
+
+  @Before
+  public void setUp() {
+    indexer = mock(ChangeIndexer.class);
+    scheduler = mock(ScheduledExecutorService.class);
+    queued = new AtomicInteger();
+  }
+
+  @Test
+  public void disabledWithoutDelay() {
+    assertThat(newQueue(0, 10).isEnabled()).isFalse();
+    assertThat(newQueue(100, 10).isEnabled()).isTrue();
+  }
+
+  @Test
+  public void requestsForSameChangeAreCoalesced() {
+    ChangeIndexQueue queue = newQueue(100, 10);
+    ListenableFuture<ChangeData> f1 = add(queue, 1);
+    ListenableFuture<ChangeData> f2 = add(queue, 2);
+    ListenableFuture<ChangeData> f3 = add(queue, 1);
+
+    assertThat(f3).isSameInstanceAs(f1);
+    assertThat(f2).isNotSameInstanceAs(f1);
+    assertThat(queue.size()).isEqualTo(2);
+    assertThat(queued.get()).isEqualTo(2);
+    verify(scheduler, times(1)).schedule(any(Runnable.class), eq(100L), eq(TimeUnit.MILLISECONDS));
+
+    queue.flush();
+    assertThat(queue.size()).isEqualTo(0);
+    assertThat(flushedChanges()).containsExactly(1, 2).inOrder();
+  }
+
+  @Test
+  public void changeIsQueuedAgainAfterFlush() {
+    ChangeIndexQueue queue = newQueue(100, 10);
+    ListenableFuture<ChangeData> f1 = add(queue, 1);
+    queue.flush();
+
+    ListenableFuture<ChangeData> f2 = add(queue, 1);
+    assertThat(f2).isNotSameInstanceAs(f1);
+    assertThat(queue.size()).isEqualTo(1);
+    verify(scheduler, times(2)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  public void flushIsLimitedToMaxBatchSize() {
+    ChangeIndexQueue queue = newQueue(100, 2);
+    add(queue, 1);
+    add(queue, 2);
+    add(queue, 3);
+
+    queue.flush();
+    assertThat(flushedChanges()).containsExactly(1, 2).inOrder();
+    assertThat(queue.size()).isEqualTo(1);
+    // The remaining change is flushed right away.
+    verify(scheduler).submit(any(Runnable.class));
+  }
+
+  private ChangeIndexQueue newQueue(long delayMillis, int maxBatchSize) {
+    return new ChangeIndexQueue(
+        delayMillis, maxBatchSize, new DisabledMetricMaker(), Ticker.systemTicker(), scheduler);
+  }
+
+  private ListenableFuture<ChangeData> add(ChangeIndexQueue queue, int id) {
+    return queue.add(indexer, PROJECT, Change.id(id), queued::incrementAndGet);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Integer> flushedChanges() {
+    ArgumentCaptor<List<ChangeIndexQueue.Entry>> captor = ArgumentCaptor.forClass(List.class);
+    verify(indexer).indexBatch(captor.capture());
+    return captor.getValue().stream().map(e -> e.id.get()).collect(toList());
+  }
+}
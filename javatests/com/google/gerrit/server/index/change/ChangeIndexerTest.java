@@ -0,0 +1,165 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.index.options.IsFirstInsertForEntry;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.plugincontext.PluginContext.PluginMetrics;
+import com.google.gerrit.server.plugincontext.PluginSetContext;
+import com.google.gerrit.server.project.NoSuchChangeException;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChangeIndexerTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+
+  private ChangeData.Factory changeDataFactory;
+  private ChangeNotes.Factory notesFactory;
+  private ChangeIndex index;
+  private ListeningExecutorService executor;
+
+  @Before
+  public void setUp() {
+    changeDataFactory = mock(ChangeData.Factory.class);
+    notesFactory = mock(ChangeNotes.Factory.class);
+    index = mock(ChangeIndex.class);
+    when(index.getSchema()).thenReturn(ChangeSchemaDefinitions.INSTANCE.getLatest());
+    executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(3));
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void changesAreLoadedInParallelAndWrittenInOneBatch() throws Exception {
+    // Loading a change only returns once all changes are being loaded at the same time.
+    CountDownLatch loading = new CountDownLatch(3);
+    ChangeData cd1 = mockChange(1, loading);
+    ChangeData cd2 = mockChange(2, loading);
+    ChangeData cd3 = mockChange(3, loading);
+
+    List<ChangeData> result =
+        newIndexer(IsFirstInsertForEntry.NO)
+            .indexAsync(PROJECT, ImmutableList.of(Change.id(1), Change.id(2), Change.id(3)))
+            .get(10, SECONDS);
+
+    assertThat(result).containsExactly(cd1, cd2, cd3).inOrder();
+    verify(index).replaceAll(ImmutableList.of(cd1, cd2, cd3), false);
+    verify(index, never()).replace(any());
+  }
+
+  @Test
+  public void deletedChangeIsDeletedFromIndexAndLeftOutOfBatch() throws Exception {
+    ChangeData cd1 = mockChange(1, null);
+    when(notesFactory.createChecked(PROJECT, Change.id(2)))
+        .thenThrow(new NoSuchChangeException(Change.id(2)));
+
+    List<ChangeData> result =
+        newIndexer(IsFirstInsertForEntry.NO)
+            .indexAsync(PROJECT, ImmutableList.of(Change.id(1), Change.id(2)))
+            .get(10, SECONDS);
+
+    assertThat(result).containsExactly(cd1, null).inOrder();
+    verify(index).delete(Change.id(2));
+    verify(index).replaceAll(ImmutableList.of(cd1), false);
+  }
+
+  @Test
+  public void changeThatFailsToLoadFailsFutureButOtherChangesAreWritten() throws Exception {
+    ChangeData cd1 = mockChange(1, null);
+    when(notesFactory.createChecked(PROJECT, Change.id(2)))
+        .thenThrow(new StorageException("failed to load"));
+
+    assertThrows(
+        ExecutionException.class,
+        () ->
+            newIndexer(IsFirstInsertForEntry.NO)
+                .indexAsync(PROJECT, ImmutableList.of(Change.id(1), Change.id(2)))
+                .get(10, SECONDS));
+    verify(index).replaceAll(ImmutableList.of(cd1), false);
+  }
+
+  @Test
+  public void replaceReplacesDocumentEvenIfIndexerInserts() {
+    ChangeData cd = ChangeData.createForTest(PROJECT, Change.id(1), 1, ObjectId.zeroId());
+
+    newIndexer(IsFirstInsertForEntry.YES).replace(cd);
+
+    verify(index).replace(cd);
+    verify(index, never()).insert(any());
+  }
+
+  private ChangeData mockChange(int id, @Nullable CountDownLatch loading) {
+    Change.Id changeId = Change.id(id);
+    ChangeNotes notes = mock(ChangeNotes.class);
+    ChangeData cd = ChangeData.createForTest(PROJECT, changeId, 1, ObjectId.zeroId());
+    when(notesFactory.createChecked(PROJECT, changeId))
+        .thenAnswer(
+            invocation -> {
+              if (loading != null) {
+                loading.countDown();
+                assertThat(loading.await(10, SECONDS)).isTrue();
+              }
+              return notes;
+            });
+    when(changeDataFactory.create(notes)).thenReturn(cd);
+    return cd;
+  }
+
+  private ChangeIndexer newIndexer(IsFirstInsertForEntry isFirstInsertForEntry) {
+    return new ChangeIndexer(
+        new Config(),
+        changeDataFactory,
+        notesFactory,
+        mock(ThreadLocalRequestContext.class),
+        new PluginSetContext<>(DynamicSet.emptySet(), PluginMetrics.DISABLED_INSTANCE),
+        mock(StalenessChecker.class),
+        executor,
+        executor,
+        index,
+        isFirstInsertForEntry,
+        new ChangeIndexQueue(0, 1, new DisabledMetricMaker(), Ticker.systemTicker(), null));
+  }
+}
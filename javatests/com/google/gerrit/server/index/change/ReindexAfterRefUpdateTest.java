@@ -0,0 +1,131 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.GitBatchRefUpdateListener;
+import com.google.gerrit.server.change.MergeabilityComputationBehavior;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.InternalChangeQuery;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ReindexAfterRefUpdateTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+  private static final BranchNameKey MASTER = BranchNameKey.create(PROJECT, "refs/heads/master");
+
+  private InternalChangeQuery query;
+  private ChangeIndexer.Factory indexerFactory;
+  private ChangeIndexer indexer;
+
+  @Before
+  public void setUp() {
+    query = mock(InternalChangeQuery.class);
+    indexer = mock(ChangeIndexer.class);
+    indexerFactory = mock(ChangeIndexer.Factory.class);
+    when(indexerFactory.create(
+            any(ListeningExecutorService.class), any(ChangeIndexCollection.class)))
+        .thenReturn(indexer);
+  }
+
+  @Test
+  public void openChangesOfUpdatedBranchAreIndexedInBatches() {
+    List<Change.Id> ids = IntStream.rangeClosed(1, 150).mapToObj(Change::id).collect(toList());
+    List<ChangeData> cds = new ArrayList<>();
+    for (Change.Id id : ids) {
+      ChangeData cd = mock(ChangeData.class);
+      when(cd.change())
+          .thenReturn(
+              new Change(Change.key("I" + id), id, Account.id(1000), MASTER, Instant.now()));
+      cds.add(cd);
+    }
+    when(query.byBranchNew(MASTER)).thenReturn(cds);
+
+    newListener(MergeabilityComputationBehavior.API_REF_UPDATED_AND_CHANGE_REINDEX)
+        .onGitBatchRefUpdate(event(MASTER.branch()));
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Collection<Change.Id>> batches = ArgumentCaptor.forClass(Collection.class);
+    verify(indexer, times(2)).indexAsync(eq(PROJECT), batches.capture());
+    assertThat(batches.getAllValues().get(0)).containsExactlyElementsIn(ids.subList(0, 100));
+    assertThat(batches.getAllValues().get(1)).containsExactlyElementsIn(ids.subList(100, 150));
+  }
+
+  @Test
+  public void changeRefUpdateDoesNotReindexOpenChanges() {
+    newListener(MergeabilityComputationBehavior.API_REF_UPDATED_AND_CHANGE_REINDEX)
+        .onGitBatchRefUpdate(event("refs/changes/01/1/meta"));
+
+    verifyNoInteractions(query, indexerFactory);
+  }
+
+  @Test
+  public void openChangesAreNotReindexedIfMergeabilityIsNotIndexed() {
+    newListener(MergeabilityComputationBehavior.NEVER).onGitBatchRefUpdate(event(MASTER.branch()));
+
+    verifyNoInteractions(query, indexerFactory);
+  }
+
+  private ReindexAfterRefUpdate newListener(MergeabilityComputationBehavior behavior) {
+    Config cfg = new Config();
+    cfg.setEnum("change", null, "mergeabilityComputationBehavior", behavior);
+    OneOffRequestContext requestContext = mock(OneOffRequestContext.class);
+    when(requestContext.open()).thenReturn(mock(ManualRequestContext.class));
+    return new ReindexAfterRefUpdate(
+        cfg,
+        requestContext,
+        () -> query,
+        indexerFactory,
+        mock(ChangeIndexCollection.class),
+        new AllUsersName("All-Users"),
+        () -> null,
+        MoreExecutors.newDirectExecutorService());
+  }
+
+  private static GitBatchRefUpdateListener.Event event(String refName) {
+    GitBatchRefUpdateListener.UpdatedRef ref = mock(GitBatchRefUpdateListener.UpdatedRef.class);
+    when(ref.getRefName()).thenReturn(refName);
+    GitBatchRefUpdateListener.Event event = mock(GitBatchRefUpdateListener.Event.class);
+    when(event.getProjectName()).thenReturn(PROJECT.get());
+    when(event.getUpdatedRefs()).thenReturn(ImmutableSet.of(ref));
+    return event;
+  }
+}
@@ -29,6 +29,8 @@ import com.google.gerrit.index.RefState;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.index.change.StalenessChecker.RefStatePattern;
 import com.google.gerrit.testing.InMemoryRepositoryManager;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.stream.Stream;
 import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.lib.ObjectId;
@@ -311,6 +313,89 @@ public class StalenessCheckerTest {
         .isFalse();
   }
 
+  @Test
+  public void isStaleUsingRefSnapshots() throws Exception {
+    String ref1 = "refs/heads/foo";
+    ObjectId id1 = tr1.update(ref1, tr1.commit().message("commit 1"));
+    String ref2 = "refs/heads/bar";
+    ObjectId id2 = tr2.update(ref2, tr2.commit().message("commit 2"));
+
+    // Not stale.
+    assertThat(
+            StalenessChecker.check(
+                    snapshots(),
+                    C,
+                    ImmutableSetMultimap.of(
+                        P1, RefState.create(ref1, id1.name()),
+                        P2, RefState.create(ref2, id2.name())),
+                    ImmutableListMultimap.of(P1, RefStatePattern.create("refs/heads/*")))
+                .isStale())
+        .isFalse();
+
+    // Wrong ref value.
+    assertThat(
+            StalenessChecker.check(
+                    snapshots(),
+                    C,
+                    ImmutableSetMultimap.of(
+                        P1, RefState.create(ref1, SHA1),
+                        P2, RefState.create(ref2, id2.name())),
+                    ImmutableListMultimap.of())
+                .isStale())
+        .isTrue();
+
+    // Missing ref.
+    assertThat(
+            StalenessChecker.check(
+                    snapshots(),
+                    C,
+                    ImmutableSetMultimap.of(P1, RefState.create("refs/heads/missing", SHA1)),
+                    ImmutableListMultimap.of())
+                .isStale())
+        .isTrue();
+
+    // Another ref matches pattern.
+    tr1.update("refs/heads/baz", tr1.commit().message("commit 3"));
+    assertThat(
+            StalenessChecker.check(
+                    snapshots(),
+                    C,
+                    ImmutableSetMultimap.of(P1, RefState.create(ref1, id1.name())),
+                    ImmutableListMultimap.of(P1, RefStatePattern.create("refs/heads/*")))
+                .isStale())
+        .isTrue();
+  }
+
+  @Test
+  public void refSnapshotReadsPrefixOnce() throws Exception {
+    String ref1 = "refs/heads/foo";
+    ObjectId id1 = tr1.update(ref1, tr1.commit().message("commit 1"));
+    RefSnapshot snapshot = new RefSnapshot(r1).preload("refs/heads/");
+    assertThat(snapshot.get(ref1)).isEqualTo(id1);
+
+    // Refs created after the prefix was read are not visible in the snapshot.
+    String ref2 = "refs/heads/bar";
+    tr1.update(ref2, tr1.commit().message("commit 2"));
+    assertThat(snapshot.get(ref2)).isEqualTo(ObjectId.zeroId());
+    assertThat(snapshot.byPrefix("refs/heads/").map(e -> e.getKey()).collect(toList()))
+        .containsExactly(ref1);
+
+    // Refs outside of the preloaded prefixes are read on demand.
+    String ref3 = "refs/tags/baz";
+    ObjectId id3 = tr1.update(ref3, tr1.commit().message("commit 3"));
+    assertThat(snapshot.get(ref3)).isEqualTo(id3);
+  }
+
+  private RefSnapshot.Loader snapshots() {
+    Map<Project.NameKey, RefSnapshot> snapshots = new HashMap<>();
+    return p -> {
+      if (!snapshots.containsKey(p)) {
+        snapshots.put(p, new RefSnapshot(repoManager.openRepository(p)));
+      }
+      return snapshots.get(p);
+    };
+  }
+
   private static Iterable<byte[]> byteArrays(String... strs) {
     return Stream.of(strs).map(s -> s != null ? s.getBytes(UTF_8) : null).collect(toList());
   }
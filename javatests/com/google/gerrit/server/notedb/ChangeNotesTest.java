@@ -32,6 +32,7 @@ import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Iterables;
@@ -3946,6 +3947,23 @@ public class ChangeNotesTest extends AbstractChangeNotesTest {
     assertThat(newNotes(c).getChange().currentPatchSetId().get()).isEqualTo(2);
   }
 
+  @Test
+  public void createAllLoadsNotesOfAllChanges() throws Exception {
+    Change c1 = newChange();
+    Change c2 = newChange();
+    ChangeUpdate update = newUpdate(c2, changeOwner);
+    update.setTopic("topic");
+    update.commit();
+
+    ImmutableMap<Change.Id, ChangeNotes> notes =
+        new ChangeNotes.Factory(args, null, null)
+            .createAll(repo, project, ImmutableList.of(c1.getId(), c2.getId()));
+    assertThat(notes.keySet()).containsExactly(c1.getId(), c2.getId()).inOrder();
+    assertThat(notes.get(c1.getId()).getMetaId()).isEqualTo(newNotes(c1).getMetaId());
+    assertThat(notes.get(c2.getId()).getMetaId()).isEqualTo(newNotes(c2).getMetaId());
+    assertThat(notes.get(c2.getId()).getChange().getTopic()).isEqualTo("topic");
+  }
+
   private String readNote(ChangeNotes notes, ObjectId noteId) throws Exception {
     ObjectId dataId = notes.revisionNoteMap.noteMap.getNote(noteId).getData();
     return new String(rw.getObjectReader().open(dataId, OBJ_BLOB).getCachedBytes(), UTF_8);
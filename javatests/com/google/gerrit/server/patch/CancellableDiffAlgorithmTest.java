@@ -0,0 +1,91 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.server.cancellation.RequestCancelledException;
+import com.google.gerrit.server.cancellation.RequestStateContext;
+import com.google.gerrit.server.cancellation.RequestStateProvider;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.junit.Test;
+
+public class CancellableDiffAlgorithmTest {
+  private static final DiffAlgorithm DIFF = CancellableDiffAlgorithm.wrap(new HistogramDiff());
+
+  @Test
+  public void sameEditsAsWrappedAlgorithm() {
+    RawText a = text("a\nb\nc\nd\n");
+    RawText b = text("a\nx\nc\nd\ny\n");
+    assertThat(DIFF.diff(RawTextComparator.DEFAULT, a, b))
+        .isEqualTo(new HistogramDiff().diff(RawTextComparator.DEFAULT, a, b));
+  }
+
+  @Test
+  public void abortsWhenRequestIsCancelled() {
+    try (RequestStateContext requestStateContext =
+        RequestStateContext.open()
+            .addRequestStateProvider(
+                onCancelled ->
+                    onCancelled.onCancel(
+                        RequestStateProvider.Reason.SERVER_DEADLINE_EXCEEDED, "deadline = 1s"))) {
+      assertThrows(
+          RequestCancelledException.class,
+          () -> DIFF.diff(RawTextComparator.DEFAULT, text("a\nb\n"), text("c\nd\n")));
+    }
+  }
+
+  @Test
+  public void submittedComputationAbortsWhenRequestIsCancelled() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (RequestStateContext requestStateContext =
+        RequestStateContext.open()
+            .addRequestStateProvider(
+                onCancelled ->
+                    onCancelled.onCancel(
+                        RequestStateProvider.Reason.CLIENT_CLOSED_REQUEST, /* message= */ null))) {
+      Future<?> future =
+          CancellableDiffAlgorithm.submit(
+              executor, () -> DIFF.diff(RawTextComparator.DEFAULT, text("a\nb\n"), text("c\nd\n")));
+      ExecutionException e = assertThrows(ExecutionException.class, () -> future.get());
+      assertThat(e).hasCauseThat().isInstanceOf(RequestCancelledException.class);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void submittedComputationRunsWithoutCancellation() throws Exception {
+    Future<?> future =
+        CancellableDiffAlgorithm.submit(
+            MoreExecutors.newDirectExecutorService(),
+            () -> DIFF.diff(RawTextComparator.DEFAULT, text("a\nb\n"), text("c\nd\n")));
+    assertThat(future.get()).isNotNull();
+  }
+
+  private static RawText text(String s) {
+    return new RawText(s.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,258 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.api.changes.NotifyHandling;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.CommitInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import com.google.gerrit.extensions.events.RevisionCreatedListener;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.change.ChangeInserter;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.notedb.Sequences;
+import com.google.gerrit.server.update.BatchUpdate;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.gerrit.testing.InMemoryTestEnvironment;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DiffCacheWarmerTest {
+  private static final int MAX_FILES = 2;
+
+  @Rule
+  public InMemoryTestEnvironment testEnvironment =
+      new InMemoryTestEnvironment(
+          () -> {
+            Config cfg = new Config();
+            cfg.setString("index", null, "type", "fake");
+            return cfg;
+          });
+
+  @Inject private BatchUpdate.Factory batchUpdateFactory;
+  @Inject private ChangeInserter.Factory changeInserterFactory;
+  @Inject private ChangeNotes.Factory notesFactory;
+  @Inject private DiffOperations diffOperations;
+  @Inject private GitRepositoryManager repoManager;
+  @Inject private Provider<CurrentUser> user;
+  @Inject private Sequences sequences;
+
+  private final RecordingMetricMaker metricMaker = new RecordingMetricMaker();
+  private Project.NameKey project;
+  private TestRepository<Repository> repo;
+
+  @Before
+  public void setUp() throws Exception {
+    project = Project.nameKey("project");
+    repo = new TestRepository<>(repoManager.createRepository(project));
+  }
+
+  @Test
+  public void firstViewAfterWarmingIsRecordedAsWarmed() throws Exception {
+    DiffCacheWarmer warmer = newWarmer(MoreExecutors.newDirectExecutorService());
+    RevCommit commit = repo.commit().add("a.txt", "1").message("Change").insertChangeId().create();
+    Change.Id id = createChange(commit);
+
+    warmer.onRevisionCreated(revisionCreated(id, commit));
+    warmer.recordView(commit);
+    warmer.recordView(commit);
+
+    assertThat(metricMaker.getCount("diff/warming/first_views", true)).isEqualTo(1);
+    assertThat(metricMaker.getCount("diff/warming/first_views", false)).isEqualTo(0);
+    assertThat(metricMaker.getCount("diff/warming/skipped")).isEqualTo(0);
+  }
+
+  @Test
+  public void firstViewBeforeWarmingIsRecordedAsNotWarmed() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      DiffCacheWarmer warmer = newWarmer(executor);
+      RevCommit commit =
+          repo.commit().add("a.txt", "1").message("Change").insertChangeId().create();
+      Change.Id id = createChange(commit);
+      @SuppressWarnings("unused")
+      Future<?> possiblyIgnoredError =
+          executor.submit(
+              () -> {
+                release.await();
+                return null;
+              });
+
+      warmer.onRevisionCreated(revisionCreated(id, commit));
+      warmer.recordView(commit);
+      release.countDown();
+      executor.shutdown();
+      assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+      warmer.recordView(commit);
+
+      assertThat(metricMaker.getCount("diff/warming/first_views", false)).isEqualTo(1);
+      assertThat(metricMaker.getCount("diff/warming/first_views", true)).isEqualTo(0);
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void patchSetsModifyingTooManyFilesAreSkipped() throws Exception {
+    DiffCacheWarmer warmer = newWarmer(MoreExecutors.newDirectExecutorService());
+    TestRepository<Repository>.CommitBuilder commitBuilder = repo.commit();
+    for (int i = 0; i <= MAX_FILES; i++) {
+      commitBuilder.add("file" + i + ".txt", Integer.toString(i));
+    }
+    RevCommit commit = commitBuilder.message("Change").insertChangeId().create();
+    Change.Id id = createChange(commit);
+
+    warmer.onRevisionCreated(revisionCreated(id, commit));
+    warmer.recordView(commit);
+
+    assertThat(metricMaker.getCount("diff/warming/skipped")).isEqualTo(1);
+    assertThat(metricMaker.getCount("diff/warming/first_views", true)).isEqualTo(0);
+    assertThat(metricMaker.getCount("diff/warming/first_views", false)).isEqualTo(0);
+  }
+
+  @Test
+  public void disabledWarmerRecordsNothing() throws Exception {
+    DiffCacheWarmer warmer = newWarmer(null);
+    RevCommit commit = repo.commit().add("a.txt", "1").message("Change").insertChangeId().create();
+    Change.Id id = createChange(commit);
+
+    warmer.onRevisionCreated(revisionCreated(id, commit));
+    warmer.recordView(commit);
+
+    assertThat(metricMaker.getCount("diff/warming/first_views", true)).isEqualTo(0);
+    assertThat(metricMaker.getCount("diff/warming/first_views", false)).isEqualTo(0);
+  }
+
+  private DiffCacheWarmer newWarmer(ExecutorService executor) {
+    return new DiffCacheWarmer(
+        diffOperations,
+        notesFactory,
+        new DiffCacheWarmer.Metrics(metricMaker),
+        executor,
+        MAX_FILES);
+  }
+
+  private Change.Id createChange(RevCommit commit) throws Exception {
+    Change.Id id = Change.id(sequences.nextChangeId());
+    try (BatchUpdate bu = batchUpdateFactory.create(project, user.get(), TimeUtil.now())) {
+      bu.insertChange(changeInserterFactory.create(id, commit, "refs/heads/master"));
+      bu.execute();
+    }
+    return id;
+  }
+
+  private RevisionCreatedListener.Event revisionCreated(Change.Id id, RevCommit commit) {
+    ChangeInfo change = new ChangeInfo();
+    change.project = project.get();
+    change._number = id.get();
+    RevisionInfo revision = new RevisionInfo();
+    revision._number = 1;
+    revision.commit = new CommitInfo();
+    revision.commit.commit = commit.name();
+    return new RevisionCreatedListener.Event() {
+      @Override
+      public RevisionInfo getRevision() {
+        return revision;
+      }
+
+      @Override
+      public ChangeInfo getChange() {
+        return change;
+      }
+
+      @Override
+      public AccountInfo getWho() {
+        return null;
+      }
+
+      @Override
+      public Instant getWhen() {
+        return TimeUtil.now();
+      }
+
+      @Override
+      public NotifyHandling getNotify() {
+        return NotifyHandling.NONE;
+      }
+    };
+  }
+
+  private static class RecordingMetricMaker extends DisabledMetricMaker {
+    private final Map<String, Long> counts = new ConcurrentHashMap<>();
+
+    long getCount(String name) {
+      return counts.getOrDefault(name, 0L);
+    }
+
+    long getCount(String name, Object field) {
+      return getCount(name + "/" + field);
+    }
+
+    @Override
+    public Counter0 newCounter(String name, Description desc) {
+      return new Counter0() {
+        @Override
+        public void incrementBy(long value) {
+          counts.merge(name, value, Long::sum);
+        }
+
+        @Override
+        public void remove() {}
+      };
+    }
+
+    @Override
+    public <F1> Counter1<F1> newCounter(String name, Description desc, Field<F1> field1) {
+      return new Counter1<F1>() {
+        @Override
+        public void incrementBy(F1 field, long value) {
+          counts.merge(name + "/" + field, value, Long::sum);
+        }
+
+        @Override
+        public void remove() {}
+      };
+    }
+  }
+}
@@ -0,0 +1,67 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class DiffExecutorModuleTest {
+  @Test
+  public void rejectsTasksWhenQueueIsFull() throws Exception {
+    Config cfg = new Config();
+    cfg.setInt("execution", null, "diffThreadPoolSize", 1);
+    cfg.setInt("execution", null, "diffQueueSize", 1);
+    ExecutorService executor =
+        new DiffExecutorModule().provideDiffExecutor(cfg, new DisabledMetricMaker());
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      Future<?> running =
+          executor.submit(
+              () -> {
+                started.countDown();
+                release.await();
+                return null;
+              });
+      started.await();
+      Future<String> queued = executor.submit(() -> "queued");
+
+      assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> "rejected"));
+
+      release.countDown();
+      running.get();
+      assertThat(queued.get()).isEqualTo("queued");
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void rejectsTasksAfterShutdown() {
+    ExecutorService executor =
+        new DiffExecutorModule().provideDiffExecutor(new Config(), new DisabledMetricMaker());
+    executor.shutdown();
+    assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> "rejected"));
+  }
+}
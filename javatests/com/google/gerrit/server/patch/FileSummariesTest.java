@@ -0,0 +1,161 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.entities.Patch;
+import com.google.gerrit.entities.Patch.ChangeType;
+import com.google.gerrit.entities.Patch.FileMode;
+import com.google.gerrit.entities.Patch.PatchType;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.common.FileInfo;
+import com.google.gerrit.server.patch.filediff.Edit;
+import com.google.gerrit.server.patch.filediff.FileDiffOutput;
+import com.google.gerrit.server.patch.filediff.TaggedEdit;
+import com.google.gerrit.server.patch.gitfilediff.GitFileDiffCacheImpl.DiffAlgorithm;
+import java.util.Map;
+import java.util.Optional;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+public class FileSummariesTest {
+  private static final ImmutableMap<String, FileDiffOutput> FILE_DIFFS =
+      ImmutableMap.of(
+          Patch.COMMIT_MSG,
+          fileDiff(
+              Optional.empty(),
+              Optional.of(Patch.COMMIT_MSG),
+              ChangeType.ADDED,
+              PatchType.UNIFIED,
+              Edit.create(0, 0, 0, 7)),
+          "modified.txt",
+          fileDiff(
+              Optional.of("modified.txt"),
+              Optional.of("modified.txt"),
+              ChangeType.MODIFIED,
+              PatchType.UNIFIED,
+              Edit.create(3, 5, 3, 4)),
+          "new.txt",
+          fileDiff(
+              Optional.of("old.txt"),
+              Optional.of("new.txt"),
+              ChangeType.RENAMED,
+              PatchType.UNIFIED,
+              Edit.create(0, 1, 0, 3)),
+          "image.png",
+          fileDiff(
+              Optional.of("image.png"),
+              Optional.of("image.png"),
+              ChangeType.MODIFIED,
+              PatchType.BINARY));
+
+  @Test
+  public void fileInfos() {
+    Map<String, FileInfo> fileInfos = FileSummaries.create(FILE_DIFFS).toFileInfoMap();
+
+    assertThat(fileInfos.keySet()).containsExactlyElementsIn(FILE_DIFFS.keySet());
+    FileInfo modified = fileInfos.get("modified.txt");
+    assertThat(modified.status).isNull();
+    assertThat(modified.oldPath).isNull();
+    assertThat(modified.linesInserted).isEqualTo(1);
+    assertThat(modified.linesDeleted).isEqualTo(2);
+    assertThat(modified.oldMode).isEqualTo(FileMode.REGULAR_FILE.getMode());
+    assertThat(modified.newMode).isEqualTo(FileMode.REGULAR_FILE.getMode());
+    assertThat(modified.size).isEqualTo(100L);
+    assertThat(modified.sizeDelta).isEqualTo(-10L);
+    assertThat(modified.binary).isNull();
+
+    FileInfo renamed = fileInfos.get("new.txt");
+    assertThat(renamed.status).isEqualTo('R');
+    assertThat(renamed.oldPath).isEqualTo("old.txt");
+
+    FileInfo binary = fileInfos.get("image.png");
+    assertThat(binary.binary).isTrue();
+    assertThat(binary.linesInserted).isNull();
+    assertThat(binary.linesDeleted).isNull();
+  }
+
+  @Test
+  public void diffSummary() {
+    DiffSummary diffSummary = FileSummaries.create(FILE_DIFFS).toDiffSummary();
+
+    assertThat(diffSummary.getPaths())
+        .containsExactly("image.png", "modified.txt", "new.txt", "old.txt")
+        .inOrder();
+    assertThat(diffSummary.getChangedLines().insertions).isEqualTo(4);
+    assertThat(diffSummary.getChangedLines().deletions).isEqualTo(3);
+  }
+
+  @Test
+  public void roundTrip() {
+    FileSummaries fileSummaries = FileSummaries.create(FILE_DIFFS);
+
+    FileSummaries deserialized =
+        FileSummaries.Serializer.INSTANCE.deserialize(
+            FileSummaries.Serializer.INSTANCE.serialize(fileSummaries));
+
+    assertThat(deserialized.toFileInfoMap()).isEqualTo(fileSummaries.toFileInfoMap());
+    assertThat(deserialized.toDiffSummary().getPaths())
+        .isEqualTo(fileSummaries.toDiffSummary().getPaths());
+  }
+
+  @Test
+  public void keyRoundTrip() {
+    FileSummaryCache.Key key =
+        FileSummaryCache.Key.create(
+            Project.nameKey("project"),
+            ObjectId.fromString("1234567812345678123456781234567812345678"),
+            /* base= */ null,
+            /* parentNum= */ 1,
+            DiffAlgorithm.PATIENCE);
+
+    FileSummaryCache.Key deserialized =
+        FileSummaryCache.Key.Serializer.INSTANCE.deserialize(
+            FileSummaryCache.Key.Serializer.INSTANCE.serialize(key));
+
+    assertThat(deserialized).isEqualTo(key);
+  }
+
+  private static FileDiffOutput fileDiff(
+      Optional<String> oldPath,
+      Optional<String> newPath,
+      ChangeType changeType,
+      PatchType patchType,
+      Edit... edits) {
+    ImmutableList.Builder<TaggedEdit> taggedEdits = ImmutableList.builder();
+    for (Edit edit : edits) {
+      taggedEdits.add(TaggedEdit.create(edit, false));
+    }
+    return FileDiffOutput.builder()
+        .oldCommitId(ObjectId.fromString("dd4d2a1498870ca5fe415b33f65d052d69d9eaf5"))
+        .newCommitId(ObjectId.fromString("0cfaab3f2ba76f71798da0a2651f41be8d45f842"))
+        .comparisonType(ComparisonType.againstOtherPatchSet())
+        .oldPath(oldPath)
+        .newPath(newPath)
+        .oldMode(oldPath.map(p -> FileMode.REGULAR_FILE))
+        .newMode(Optional.of(FileMode.REGULAR_FILE))
+        .changeType(changeType)
+        .patchType(Optional.of(patchType))
+        .size(100)
+        .sizeDelta(-10)
+        .headerLines(ImmutableList.of())
+        .edits(taggedEdits.build())
+        .negative(Optional.empty())
+        .build();
+  }
+}
@@ -0,0 +1,145 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.server.patch.GitPositionTransformer.BestPositionOnConflict;
+import com.google.gerrit.server.patch.GitPositionTransformer.FileMapping;
+import com.google.gerrit.server.patch.GitPositionTransformer.Mapping;
+import com.google.gerrit.server.patch.GitPositionTransformer.OmitPositionOnConflict;
+import com.google.gerrit.server.patch.GitPositionTransformer.Position;
+import com.google.gerrit.server.patch.GitPositionTransformer.PositionedEntity;
+import com.google.gerrit.server.patch.GitPositionTransformer.Range;
+import com.google.gerrit.server.patch.GitPositionTransformer.RangeMapping;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class GitPositionTransformerTest {
+  private static final String FILE = "file.txt";
+
+  private final GitPositionTransformer omitting =
+      new GitPositionTransformer(OmitPositionOnConflict.INSTANCE);
+
+  @Test
+  public void positionBeforeMappingIsKept() {
+    assertThat(transform(omitting, ImmutableList.of(position(1, 3)), mapping(5, 7, 5, 9)))
+        .containsExactly(position(1, 3));
+  }
+
+  @Test
+  public void positionAfterMappingIsShifted() {
+    assertThat(transform(omitting, ImmutableList.of(position(10, 12)), mapping(5, 7, 5, 9)))
+        .containsExactly(position(12, 14));
+  }
+
+  @Test
+  public void positionAfterSeveralMappingsIsShiftedByAllOfThem() {
+    assertThat(
+            transform(
+                omitting,
+                ImmutableList.of(position(20, 21)),
+                mapping(2, 4, 2, 2),
+                mapping(8, 8, 6, 9),
+                mapping(12, 13, 13, 16)))
+        .containsExactly(position(23, 24));
+  }
+
+  @Test
+  public void positionAdjacentToMappingIsShifted() {
+    assertThat(
+            transform(
+                omitting, ImmutableList.of(position(3, 5), position(7, 8)), mapping(5, 7, 5, 6)))
+        .containsExactly(position(3, 5), position(6, 7));
+  }
+
+  @Test
+  public void positionAtInsertionIsShifted() {
+    assertThat(transform(omitting, ImmutableList.of(position(5, 6)), mapping(5, 5, 5, 8)))
+        .containsExactly(position(8, 9));
+  }
+
+  @Test
+  public void positionOverlappingMappingIsOmitted() {
+    assertThat(
+            transform(
+                omitting, ImmutableList.of(position(4, 6), position(9, 10)), mapping(5, 7, 5, 9)))
+        .containsExactly(position(11, 12));
+  }
+
+  @Test
+  public void positionOverlappingMappingLosesRangeWithBestPositionStrategy() {
+    GitPositionTransformer best = new GitPositionTransformer(BestPositionOnConflict.INSTANCE);
+    assertThat(transform(best, ImmutableList.of(position(4, 6)), mapping(5, 7, 5, 9)))
+        .containsExactly(Position.builder().filePath(FILE).build());
+  }
+
+  @Test
+  public void positionsOfLargeRebaseAreShifted() {
+    // Each mapping inserts a line before every tenth line, and every other position overlaps with
+    // a mapping which replaces a line.
+    int count = 10_000;
+    List<RangeMapping> ranges = new ArrayList<>();
+    List<Position> positions = new ArrayList<>();
+    List<Position> expected = new ArrayList<>();
+    int shift = 0;
+    for (int i = 0; i < count; i++) {
+      int line = 10 * i;
+      if (i % 2 == 0) {
+        ranges.add(mapping(line, line, line + shift, line + shift + 1));
+        shift++;
+        positions.add(position(line + 5, line + 6));
+        expected.add(position(line + 5 + shift, line + 6 + shift));
+      } else {
+        ranges.add(mapping(line + 4, line + 5, line + 4 + shift, line + 5 + shift));
+        positions.add(position(line + 4, line + 6));
+      }
+    }
+
+    Mapping mapping = Mapping.create(FileMapping.forModifiedFile(FILE), ranges);
+    assertThat(transform(omitting, positions, mapping)).containsExactlyElementsIn(expected);
+  }
+
+  private static ImmutableList<Position> transform(
+      GitPositionTransformer transformer, List<Position> positions, RangeMapping... ranges) {
+    return transform(
+        transformer,
+        positions,
+        Mapping.create(FileMapping.forModifiedFile(FILE), ImmutableList.copyOf(ranges)));
+  }
+
+  private static ImmutableList<Position> transform(
+      GitPositionTransformer transformer, List<Position> positions, Mapping mapping) {
+    List<PositionedEntity<Position>> entities =
+        positions.stream()
+            .map(p -> PositionedEntity.create(p, e -> e, (e, newPosition) -> newPosition))
+            .collect(toImmutableList());
+    return transformer.transform(entities, ImmutableSet.of(mapping)).stream()
+        .map(PositionedEntity::getEntityAtUpdatedPosition)
+        .collect(toImmutableList());
+  }
+
+  private static RangeMapping mapping(int oldStart, int oldEnd, int newStart, int newEnd) {
+    return RangeMapping.create(Range.create(oldStart, oldEnd), Range.create(newStart, newEnd));
+  }
+
+  private static Position position(int start, int end) {
+    return Position.builder().filePath(FILE).lineRange(Range.create(start, end)).build();
+  }
+}
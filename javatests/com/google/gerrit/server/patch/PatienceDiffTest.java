@@ -0,0 +1,143 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.MyersDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.junit.Test;
+
+public class PatienceDiffTest {
+  private static final DiffAlgorithm PATIENCE = new PatienceDiff(MyersDiff.INSTANCE);
+
+  @Test
+  public void identical() {
+    assertThat(diff("a\nb\nc\n", "a\nb\nc\n")).isEmpty();
+  }
+
+  @Test
+  public void insertion() {
+    assertThat(diff("a\nb\nc\n", "a\nb\nx\nc\n")).containsExactly(new Edit(2, 2, 2, 3));
+  }
+
+  @Test
+  public void deletion() {
+    assertThat(diff("a\nb\nc\n", "a\nc\n")).containsExactly(new Edit(1, 2, 1, 1));
+  }
+
+  @Test
+  public void uniqueLinesAreAnchors() {
+    // Patience diff matches the unique function headers rather than the repeated braces.
+    String a = "f() {\n  x\n}\ng() {\n  y\n}\n";
+    String b = "g() {\n  y\n}\nf() {\n  x\n}\n";
+    EditList edits = diff(a, b);
+    assertThat(edits).hasSize(2);
+    assertThat(edits.get(0)).isEqualTo(new Edit(0, 3, 0, 0));
+    assertTransforms(a, b);
+  }
+
+  @Test
+  public void regionWithoutUniqueLinesUsesFallback() {
+    assertThat(diff("a\na\nb\nb\n", "b\nb\na\na\n")).isNotEmpty();
+    assertTransforms("a\na\nb\nb\n", "b\nb\na\na\n");
+  }
+
+  @Test
+  public void transformsLargeGeneratedFiles() {
+    Random random = new Random(42);
+    for (int i = 0; i < 20; i++) {
+      String a = generate(random, 2000);
+      assertTransforms(a, mutate(random, a));
+    }
+  }
+
+  private static EditList diff(String a, String b) {
+    return PATIENCE.diff(RawTextComparator.DEFAULT, text(a), text(b));
+  }
+
+  private static void assertTransforms(String a, String b) {
+    RawText aText = text(a);
+    RawText bText = text(b);
+    EditList edits = PATIENCE.diff(RawTextComparator.DEFAULT, aText, bText);
+    StringBuilder result = new StringBuilder();
+    int aPos = 0;
+    for (Edit edit : edits) {
+      assertThat(edit.getBeginA()).isAtLeast(aPos);
+      for (; aPos < edit.getBeginA(); aPos++) {
+        result.append(aText.getString(aPos)).append('\n');
+      }
+      for (int bPos = edit.getBeginB(); bPos < edit.getEndB(); bPos++) {
+        result.append(bText.getString(bPos)).append('\n');
+      }
+      aPos = edit.getEndA();
+    }
+    for (; aPos < aText.size(); aPos++) {
+      result.append(aText.getString(aPos)).append('\n');
+    }
+    assertThat(result.toString()).isEqualTo(b);
+  }
+
+  /** Generates a source-like file with unique lines and frequently repeated lines. */
+  private static String generate(Random random, int lines) {
+    StringBuilder s = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      switch (random.nextInt(4)) {
+        case 0:
+          s.append("}\n");
+          break;
+        case 1:
+          s.append('\n');
+          break;
+        default:
+          s.append("line ").append(random.nextInt(lines)).append('\n');
+      }
+    }
+    return s.toString();
+  }
+
+  private static String mutate(Random random, String text) {
+    List<String> lines = new ArrayList<>(List.of(text.split("\n", -1)));
+    lines.remove(lines.size() - 1);
+    for (int i = 0; i < lines.size() / 20; i++) {
+      int pos = random.nextInt(lines.size());
+      switch (random.nextInt(3)) {
+        case 0:
+          lines.remove(pos);
+          break;
+        case 1:
+          lines.add(pos, "inserted " + i);
+          break;
+        default:
+          lines.set(pos, "modified " + i);
+      }
+    }
+    StringBuilder s = new StringBuilder();
+    lines.forEach(line -> s.append(line).append('\n'));
+    return s.toString();
+  }
+
+  private static RawText text(String s) {
+    return new RawText(s.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,200 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.gerrit.server.patch.gitfilediff;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ForwardingExecutorService;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.patch.DiffNotAvailableException;
+import com.google.gerrit.server.patch.gitfilediff.GitFileDiffCacheImpl.DiffAlgorithm;
+import com.google.gerrit.server.util.git.CloseablePool;
+import com.google.gerrit.testing.InMemoryRepositoryManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitFileDiffCacheImplTest {
+  private static final int FILES = 100;
+
+  private final InMemoryRepositoryManager repoManager = new InMemoryRepositoryManager();
+  private ExecutorService diffExecutor;
+  private List<GitFileDiffCacheKey> keys;
+
+  @Before
+  public void setUp() throws Exception {
+    diffExecutor = Executors.newCachedThreadPool();
+    keys = new ArrayList<>();
+    for (String name : ImmutableList.of("project-a", "project-b")) {
+      Project.NameKey project = Project.nameKey(name);
+      try (TestRepository<InMemoryRepositoryManager.Repo> tr =
+          new TestRepository<>(repoManager.createRepository(project))) {
+        TestRepository<InMemoryRepositoryManager.Repo>.CommitBuilder oldCommit = tr.commit();
+        TestRepository<InMemoryRepositoryManager.Repo>.CommitBuilder newCommit = tr.commit();
+        for (int i = 0; i < FILES; i++) {
+          String content = lines(i, 20);
+          oldCommit.add(file(i), content);
+          if (i % 10 == 0) {
+            // Deleted files.
+            continue;
+          }
+          if (i % 10 == 1) {
+            // Unchanged files.
+            newCommit.add(file(i), content);
+            continue;
+          }
+          // Modified files, some of them only in whitespace.
+          newCommit.add(file(i), i % 10 == 2 ? content.replace(" ", "  ") : lines(i, 30));
+        }
+        newCommit.add("added.txt", lines(-1, 10));
+        RevCommit oldTree = oldCommit.create();
+        RevCommit newTree = newCommit.create();
+
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+          paths.add(file(i));
+        }
+        paths.add("added.txt");
+        for (Whitespace whitespace :
+            ImmutableList.of(Whitespace.IGNORE_NONE, Whitespace.IGNORE_ALL)) {
+          for (String path : paths) {
+            keys.add(
+                GitFileDiffCacheKey.builder()
+                    .project(project)
+                    .oldTree(oldTree.getTree())
+                    .newTree(newTree.getTree())
+                    .newFilePath(path)
+                    .disableRenameDetection()
+                    .diffAlgorithm(DiffAlgorithm.HISTOGRAM_WITH_FALLBACK_MYERS)
+                    .whitespace(whitespace)
+                    .useTimeout(path.hashCode() % 2 == 0)
+                    .build());
+          }
+        }
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    diffExecutor.shutdownNow();
+  }
+
+  @Test
+  public void parallelLoadReturnsSameDiffsAsSerialLoad() throws Exception {
+    Map<GitFileDiffCacheKey, GitFileDiff> serial = loader(1, diffExecutor).loadAll(keys);
+    Map<GitFileDiffCacheKey, GitFileDiff> parallel = loader(4, diffExecutor).loadAll(keys);
+
+    assertThat(serial).hasSize(keys.size());
+    assertThat(parallel).containsExactlyEntriesIn(serial);
+    assertThat(parallel.values().stream().filter(d -> d.isNegative())).isEmpty();
+  }
+
+  @Test
+  public void parallelLoadSubmitsAtMostMaxParallelismWorkersPerBatch() throws Exception {
+    AtomicInteger submitted = new AtomicInteger();
+    ExecutorService countingExecutor =
+        new ForwardingExecutorService() {
+          @Override
+          protected ExecutorService delegate() {
+            return diffExecutor;
+          }
+
+          @Override
+          public <T> Future<T> submit(Callable<T> task) {
+            submitted.incrementAndGet();
+            return super.submit(task);
+          }
+        };
+    List<GitFileDiffCacheKey> batch = keys.subList(0, FILES + 1);
+
+    Map<GitFileDiffCacheKey, GitFileDiff> result = loader(2, countingExecutor).loadAll(batch);
+
+    assertThat(result).containsExactlyEntriesIn(loader(1, diffExecutor).loadAll(batch));
+    // The files with a timeout are computed by the two workers, not on separate threads.
+    assertThat(submitted.get()).isAtMost(2);
+  }
+
+  @Test
+  public void parallelLoadFailsIfExecutorRejectsWorkers() throws Exception {
+    ExecutorService rejectingExecutor =
+        new ForwardingExecutorService() {
+          @Override
+          protected ExecutorService delegate() {
+            return diffExecutor;
+          }
+
+          @Override
+          public <T> Future<T> submit(Callable<T> task) {
+            throw new RejectedExecutionException("rejected");
+          }
+        };
+
+    assertThrows(
+        DiffNotAvailableException.class,
+        () -> loader(4, rejectingExecutor).loadAll(keys.subList(0, FILES + 1)));
+  }
+
+  @Test
+  public void closedPoolHasNoHandles() throws Exception {
+    CloseablePool<DiffFormatter> pool =
+        new CloseablePool<>(() -> new DiffFormatter(DisabledOutputStream.INSTANCE));
+    try (CloseablePool<DiffFormatter>.Handle handle = pool.getIfOpen()) {
+      assertThat(handle).isNotNull();
+    }
+    pool.close();
+
+    assertThat(pool.getIfOpen()).isNull();
+    assertThrows(IllegalStateException.class, () -> pool.get());
+  }
+
+  private GitFileDiffCacheImpl.Loader loader(int maxParallelism, ExecutorService executor) {
+    Config cfg = new Config();
+    cfg.setInt("cache", "git_file_diff", "maxParallelism", maxParallelism);
+    return new GitFileDiffCacheImpl.Loader(
+        cfg, repoManager, executor, new GitFileDiffCacheImpl.Metrics(new DisabledMetricMaker()));
+  }
+
+  private static String file(int i) {
+    return String.format("dir/file%03d.txt", i);
+  }
+
+  private static String lines(int file, int count) {
+    StringBuilder content = new StringBuilder();
+    for (int line = 0; line < count; line++) {
+      content.append(String.format("file %d line %d\n", file, line % 3 == 0 ? line : line * count));
+    }
+    return content.toString();
+  }
+}
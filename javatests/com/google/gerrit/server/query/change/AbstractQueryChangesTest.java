@@ -35,6 +35,7 @@ import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.fail;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -82,6 +83,7 @@ import com.google.gerrit.extensions.api.projects.ProjectInput;
 import com.google.gerrit.extensions.client.InheritableBoolean;
 import com.google.gerrit.extensions.client.ProjectWatchInfo;
 import com.google.gerrit.extensions.client.ReviewerState;
+import com.google.gerrit.extensions.client.SubmitType;
 import com.google.gerrit.extensions.common.AccountInfo;
 import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.common.ChangeInput;
@@ -139,6 +141,7 @@ import com.google.gerrit.testing.TestTimeUtil;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Provider;
+import com.google.inject.name.Named;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.Instant;
@@ -200,6 +203,11 @@ public abstract class AbstractQueryChangesTest extends GerritServerTests {
   @Inject protected AuthRequest.Factory authRequestFactory;
   @Inject protected ExternalIdFactory externalIdFactory;
   @Inject protected ProjectOperations projectOperations;
+  @Inject protected ConflictsCacheWarmer conflictsCacheWarmer;
+
+  @Inject
+  @Named(ConflictsCacheImpl.NAME)
+  protected Cache<ConflictKey, Boolean> conflictsCache;
 
   @Inject private ProjectConfig.Factory projectConfigFactory;
 
@@ -2723,6 +2731,51 @@ public abstract class AbstractQueryChangesTest extends GerritServerTests {
     assertQuery("conflicts:" + change4.getId().get());
   }
 
+  @Test
+  public void precomputedConflictsAreUsedByConflictsQuery() throws Exception {
+    TestRepository<Repo> repo = createProject("repo");
+    RevCommit commit1 = repo.parseBody(repo.commit().add("file1", "contents1").create());
+    RevCommit commit2 = repo.parseBody(repo.commit().add("file1", "contents2").create());
+    Change change1 = insert(repo, newChangeForCommit(repo, commit1));
+    Change change2 = insert(repo, newChangeForCommit(repo, commit2));
+
+    conflictsCacheWarmer.precompute(change2.getProject(), change2.getId());
+    ConflictKey key = Iterables.getOnlyElement(conflictsCache.asMap().keySet());
+    assertThat(key.submitType()).isNotEqualTo(SubmitType.FAST_FORWARD_ONLY);
+    // The key is normalized, so the result is found for the conflicts of either change.
+    assertThat(ImmutableSet.of(key.commit(), key.otherCommit())).containsExactly(commit1, commit2);
+    assertThat(conflictsCache.getIfPresent(key)).isTrue();
+
+    assertQuery("conflicts:" + change1.getId().get(), change2);
+    assertQuery("conflicts:" + change2.getId().get(), change1);
+    assertThat(conflictsCache.asMap().keySet()).containsExactly(key);
+  }
+
+  @Test
+  public void precomputedConflictsForFastForwardOnlyAreNotNormalized() throws Exception {
+    ProjectInput input = new ProjectInput();
+    input.name = "repo";
+    input.submitType = SubmitType.FAST_FORWARD_ONLY;
+    gApi.projects().create(input).get();
+    TestRepository<Repo> repo =
+        new TestRepository<>(repoManager.openRepository(Project.nameKey("repo")));
+    RevCommit commit1 = repo.parseBody(repo.commit().add("file1", "contents1").create());
+    RevCommit commit2 = repo.parseBody(repo.commit().add("file1", "contents2").create());
+    Change change1 = insert(repo, newChangeForCommit(repo, commit1));
+    Change change2 = insert(repo, newChangeForCommit(repo, commit2));
+
+    conflictsCacheWarmer.precompute(change2.getProject(), change2.getId());
+    ConflictKey key = Iterables.getOnlyElement(conflictsCache.asMap().keySet());
+    assertThat(key.submitType()).isEqualTo(SubmitType.FAST_FORWARD_ONLY);
+    // The check for fast-forward only is not symmetrical, the new patch set is tested against the
+    // other change.
+    assertThat(key.commit()).isEqualTo(commit2);
+    assertThat(key.otherCommit()).isEqualTo(commit1);
+
+    assertQuery("conflicts:" + change2.getId().get(), change1);
+    assertThat(conflictsCache.asMap().keySet()).containsExactly(key);
+  }
+
   @Test
   @GerritConfig(
       name = "change.mergeabilityComputationBehavior",
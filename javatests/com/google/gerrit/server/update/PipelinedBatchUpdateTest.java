@@ -0,0 +1,262 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.update;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Comment;
+import com.google.gerrit.entities.HumanComment;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.restapi.ResourceConflictException;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.change.ChangeInserter;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.notedb.ChangeUpdate;
+import com.google.gerrit.server.notedb.Sequences;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.gerrit.testing.InMemoryTestEnvironment;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Tests for {@link BatchUpdate} with {@code notedb.pipelinedUpdates} enabled. */
+public class PipelinedBatchUpdateTest {
+  @Rule
+  public InMemoryTestEnvironment testEnvironment =
+      new InMemoryTestEnvironment(
+          () -> {
+            Config cfg = new Config();
+            cfg.setBoolean("notedb", null, "pipelinedUpdates", true);
+            cfg.setString("index", null, "type", "fake");
+            return cfg;
+          });
+
+  @Inject private AllUsersName allUsers;
+  @Inject private BatchUpdate.Factory batchUpdateFactory;
+  @Inject private ChangeInserter.Factory changeInserterFactory;
+  @Inject private ChangeNotes.Factory changeNotesFactory;
+  @Inject private GitRepositoryManager repoManager;
+  @Inject private Provider<CurrentUser> user;
+  @Inject private Sequences sequences;
+  @Inject private WorkQueue workQueue;
+
+  private Project.NameKey project1;
+  private Project.NameKey project2;
+  private TestRepository<Repository> repo1;
+  private TestRepository<Repository> repo2;
+
+  @Before
+  public void setUp() throws Exception {
+    project1 = Project.nameKey("project1");
+    project2 = Project.nameKey("project2");
+    repo1 = new TestRepository<>(repoManager.createRepository(project1));
+    repo2 = new TestRepository<>(repoManager.createRepository(project2));
+  }
+
+  @Test
+  public void postUpdateStepsRunInUpdateOrder() throws Exception {
+    Change.Id id1 = createChange(project1, repo1);
+    Change.Id id2 = createChange(project2, repo2);
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    try (BatchUpdate bu1 = batchUpdateFactory.create(project1, user.get(), TimeUtil.now());
+        BatchUpdate bu2 = batchUpdateFactory.create(project2, user.get(), TimeUtil.now())) {
+      bu1.addOp(id1, new RecordingOp("1", events));
+      bu2.addOp(id2, new RecordingOp("2", events));
+      BatchUpdate.execute(ImmutableList.of(bu1, bu2), ImmutableList.of(), false);
+    }
+
+    assertThat(events)
+        .containsExactly("updateChange 1", "updateChange 2", "postUpdate 1", "postUpdate 2")
+        .inOrder();
+    assertThat(changeNotesFactory.create(project1, id1).getUpdateCount()).isEqualTo(2);
+    assertThat(changeNotesFactory.create(project2, id2).getUpdateCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void failureInLaterUpdateSkipsAllPostUpdateSteps() throws Exception {
+    Change.Id id1 = createChange(project1, repo1);
+    Change.Id id2 = createChange(project2, repo2);
+    ObjectId oldMetaId1 = getMetaId(repo1, id1);
+    ObjectId oldMetaId2 = getMetaId(repo2, id2);
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    try (BatchUpdate bu1 = batchUpdateFactory.create(project1, user.get(), TimeUtil.now());
+        BatchUpdate bu2 = batchUpdateFactory.create(project2, user.get(), TimeUtil.now())) {
+      bu1.addOp(id1, new RecordingOp("1", events));
+      bu2.addOp(
+          id2,
+          new BatchUpdateOp() {
+            @Override
+            public boolean updateChange(ChangeContext ctx) throws Exception {
+              throw new ResourceConflictException("kaboom");
+            }
+          });
+      ResourceConflictException thrown =
+          assertThrows(
+              ResourceConflictException.class,
+              () -> BatchUpdate.execute(ImmutableList.of(bu1, bu2), ImmutableList.of(), false));
+      assertThat(thrown).hasMessageThat().isEqualTo("kaboom");
+    }
+
+    assertThat(events).containsExactly("updateChange 1");
+    assertThat(getMetaId(repo1, id1)).isEqualTo(oldMetaId1);
+    assertThat(getMetaId(repo2, id2)).isEqualTo(oldMetaId2);
+  }
+
+  @Test
+  public void dryRunSkipsPostUpdateSteps() throws Exception {
+    Change.Id id1 = createChange(project1, repo1);
+    Change.Id id2 = createChange(project2, repo2);
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    try (BatchUpdate bu1 = batchUpdateFactory.create(project1, user.get(), TimeUtil.now());
+        BatchUpdate bu2 = batchUpdateFactory.create(project2, user.get(), TimeUtil.now())) {
+      bu1.addOp(id1, new RecordingOp("1", events));
+      bu2.addOp(id2, new RecordingOp("2", events));
+      BatchUpdate.execute(ImmutableList.of(bu1, bu2), ImmutableList.of(), true);
+    }
+
+    assertThat(events).containsExactly("updateChange 1", "updateChange 2").inOrder();
+  }
+
+  @Test
+  public void allUsersObjectsAreWrittenOnFanOutExecutor() throws Exception {
+    Change.Id id = createChange(project1, repo1);
+    long fanOutTasks = workQueue.getExecutor("FanOut").getTaskCount();
+
+    try (BatchUpdate bu = batchUpdateFactory.create(project1, user.get(), TimeUtil.now())) {
+      bu.addOp(id, new DraftCommentOp());
+      bu.execute();
+    }
+
+    assertThat(workQueue.getExecutor("FanOut").getTaskCount()).isGreaterThan(fanOutTasks);
+    assertThat(getDraftRef(id)).isNotNull();
+    assertThat(changeNotesFactory.create(project1, id).getUpdateCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void allUsersRefsAreNotUpdatedIfChangeRefUpdateFails() throws Exception {
+    Change.Id id = createChange(project1, repo1);
+    String metaRef = RefNames.changeMetaRef(id);
+
+    try (BatchUpdate bu = batchUpdateFactory.create(project1, user.get(), TimeUtil.now())) {
+      bu.addOp(
+          id,
+          new DraftCommentOp() {
+            @Override
+            public boolean updateChange(ChangeContext ctx) throws Exception {
+              // Move the meta ref behind the back of the update, so that updating the change refs
+              // fails after the objects for All-Users were written.
+              RevCommit meta = repo1.getRevWalk().parseCommit(getMetaId(repo1, id));
+              repo1.update(metaRef, repo1.commit().parent(meta).create());
+              return super.updateChange(ctx);
+            }
+          });
+      assertThrows(UpdateException.class, bu::execute);
+    }
+
+    // The All-Users refs are only updated after the change refs, even if their objects were
+    // written while the change refs were updated.
+    assertThat(getDraftRef(id)).isNull();
+  }
+
+  private Change.Id createChange(Project.NameKey project, TestRepository<Repository> repo)
+      throws Exception {
+    Change.Id id = Change.id(sequences.nextChangeId());
+    try (BatchUpdate bu = batchUpdateFactory.create(project, user.get(), TimeUtil.now())) {
+      bu.insertChange(
+          changeInserterFactory.create(
+              id, repo.commit().message("Change").insertChangeId().create(), "refs/heads/master"));
+      bu.execute();
+    }
+    return id;
+  }
+
+  private static ObjectId getMetaId(TestRepository<Repository> repo, Change.Id changeId)
+      throws Exception {
+    return repo.getRepository().exactRef(RefNames.changeMetaRef(changeId)).getObjectId();
+  }
+
+  @Nullable
+  private Ref getDraftRef(Change.Id changeId) throws Exception {
+    try (Repository repo = repoManager.openRepository(allUsers)) {
+      return repo.exactRef(RefNames.refsDraftComments(changeId, user.get().getAccountId()));
+    }
+  }
+
+  private static class DraftCommentOp implements BatchUpdateOp {
+    @Override
+    public boolean updateChange(ChangeContext ctx) throws Exception {
+      PatchSet ps = ctx.getNotes().getCurrentPatchSet();
+      HumanComment comment =
+          new HumanComment(
+              new Comment.Key("uuid", "a.txt", ps.id().get()),
+              ctx.getAccountId(),
+              ctx.getWhen(),
+              (short) 1,
+              "draft",
+              "gerrit",
+              false);
+      comment.setCommitId(ps.commitId());
+      ChangeUpdate update = ctx.getUpdate(ps.id());
+      update.setChangeMessage("Update");
+      update.putComment(HumanComment.Status.DRAFT, comment);
+      return true;
+    }
+  }
+
+  private static class RecordingOp implements BatchUpdateOp {
+    private final String name;
+    private final List<String> events;
+
+    RecordingOp(String name, List<String> events) {
+      this.name = name;
+      this.events = events;
+    }
+
+    @Override
+    public boolean updateChange(ChangeContext ctx) throws Exception {
+      events.add("updateChange " + name);
+      ctx.getUpdate(ctx.getChange().currentPatchSetId()).setChangeMessage("Update " + name);
+      return true;
+    }
+
+    @Override
+    public void postUpdate(PostUpdateContext ctx) throws Exception {
+      events.add("postUpdate " + name);
+    }
+  }
+}